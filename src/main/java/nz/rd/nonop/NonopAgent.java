@@ -3,24 +3,36 @@
 package nz.rd.nonop;
 
 import nz.rd.nonop.config.AgentConfig;
+import nz.rd.nonop.config.BaselineConfig;
 import nz.rd.nonop.config.LogConfig;
+import nz.rd.nonop.config.OutputConfig;
+import nz.rd.nonop.internal.CoarseClock;
 import nz.rd.nonop.internal.NonopCore;
 import nz.rd.nonop.internal.NonopStaticHooks;
+import nz.rd.nonop.internal.baseline.UsageBaseline;
 import nz.rd.nonop.internal.config.NonopPropertyUtils;
 import nz.rd.nonop.internal.logging.ConsoleNonopLogger;
 import nz.rd.nonop.internal.logging.NonopLogger;
+import nz.rd.nonop.internal.model.ThresholdRetransformPolicy;
+import nz.rd.nonop.internal.reporting.AsyncUsageReporter;
 import nz.rd.nonop.internal.reporting.OutputUsageReporter;
 import nz.rd.nonop.internal.reporting.UsageReporter;
 import nz.rd.nonop.internal.reporting.format.UsageEventFormatter;
 import nz.rd.nonop.internal.transformer.NonopClassfileTransformer;
+import nz.rd.nonop.internal.transformer.RetransformationScheduler;
 
 import java.io.IOException;
 import java.lang.instrument.Instrumentation;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
 
 public class NonopAgent implements AutoCloseable {
 
     private final UsageReporter usageReporter;
+    private final RetransformationScheduler retransformationScheduler;
+    private final NonopClassfileTransformer transformer;
+    private final CoarseClock clock;
     private final NonopLogger nonopLogger;
 
     public static void premain(String agentArgs, Instrumentation instrumentation) throws Exception {
@@ -31,14 +43,14 @@ public class NonopAgent implements AutoCloseable {
         AgentConfig agentConfig;
         // TODO: Make boostrap logger configurable with ultra simple, alternative system property, e.g. -Dnonop.boostrap.debug=true
         try (final NonopLogger bootstrapNonopLogger = new ConsoleNonopLogger(NonopLogger.Level.ERROR)) {
-            bootstrapNonopLogger.debug("[nonop] Initializing Nonop agent with instrumentation: " + instrumentation +
-                    ", args: " + (agentArgs == null ? "<none>" : agentArgs));
+            bootstrapNonopLogger.debug("[nonop] Initializing Nonop agent with instrumentation: {}, args: {}",
+                    instrumentation, agentArgs == null ? "<none>" : agentArgs);
 
             Map<String, String> properties = NonopPropertyUtils.loadNonopSystemPropertiesWithDefaults();
-            bootstrapNonopLogger.debug("[nonop] Loaded nonop properties (system props combined with defaults): " + properties);
+            bootstrapNonopLogger.debug("[nonop] Loaded nonop properties (system props combined with defaults): {}", properties);
 
             agentConfig = AgentConfig.load(bootstrapNonopLogger, properties);
-            bootstrapNonopLogger.debug("[nonop] Agent configuration loaded: " + agentConfig);
+            bootstrapNonopLogger.debug("[nonop] Agent configuration loaded: {}", agentConfig);
         }
 
         @SuppressWarnings("resource") // Closed in shutdown hook
@@ -47,30 +59,77 @@ public class NonopAgent implements AutoCloseable {
     }
 
     public NonopAgent(AgentConfig agentConfig, Instrumentation instrumentation) throws IOException {
-        this.nonopLogger = new ConsoleNonopLogger(agentConfig.getLogConfig().getLevel());
+        this.nonopLogger = NonopLogger.createFromConfig(agentConfig.getLogConfig());
+        // Before the output is opened, since the baseline may be the previous run's output
+        UsageBaseline baseline = loadBaseline(agentConfig.getBaselineConfig());
 
         UsageEventFormatter usageEventFormatter = UsageEventFormatter.createFromConfig(agentConfig.getFormatConfig());
-        usageReporter = new OutputUsageReporter(nonopLogger, agentConfig.getOutputConfig(), usageEventFormatter);
-        NonopCore core = new NonopCore(nonopLogger, instrumentation, usageReporter);
+        OutputConfig outputConfig = agentConfig.getOutputConfig();
+        if (outputConfig.isAsync()) {
+            // The writer thread applies the flush policy
+            usageReporter = new AsyncUsageReporter(nonopLogger,
+                    new OutputUsageReporter(nonopLogger, outputConfig, usageEventFormatter, false),
+                    outputConfig.getAsyncCapacity(), outputConfig.getFullBufferPolicy(), outputConfig.getFlushIntervalMillis());
+        } else {
+            usageReporter = new OutputUsageReporter(nonopLogger, outputConfig, usageEventFormatter, true);
+        }
+        retransformationScheduler = new RetransformationScheduler(nonopLogger, instrumentation, agentConfig.getRetransformConfig());
+        clock = new CoarseClock(CoarseClock.DEFAULT_TICK_MILLIS);
+        NonopCore core = new NonopCore(nonopLogger, retransformationScheduler, usageReporter,
+                new ThresholdRetransformPolicy(agentConfig.getRetransformConfig()), clock);
 
-        NonopClassfileTransformer transformer = new NonopClassfileTransformer(agentConfig.getScanConfig(), core, nonopLogger);
+        transformer = new NonopClassfileTransformer(agentConfig.getScanConfig(), agentConfig.getProbeConfig(), core, core, baseline, nonopLogger);
 
-        NonopStaticHooks.initialize(core);
+        NonopStaticHooks.initialize(core, core);
         instrumentation.addTransformer(transformer, true); // true for canRetransform
+        retransformationScheduler.start();
         nonopLogger.debug("Agent initialized and transformer added.");
 
     }
 
+    private UsageBaseline loadBaseline(BaselineConfig baselineConfig) {
+        Path path = baselineConfig.getBaselinePath();
+        if (path == null) {
+            return UsageBaseline.EMPTY;
+        }
+        if (!Files.exists(path)) {
+            // E.g. the first run, when the baseline is the output of the run before
+            nonopLogger.info("Usage baseline {} doesn't exist yet; instrumenting every method", path);
+            return UsageBaseline.EMPTY;
+        }
+        try {
+            UsageBaseline baseline = UsageBaseline.load(path, nonopLogger);
+            nonopLogger.info("Loaded usage baseline: {}", baseline);
+            return baseline;
+        } catch (IOException e) {
+            // Usage is still recorded, but every method pays for its probe again
+            nonopLogger.error("Error reading usage baseline {}; instrumenting every method", path, e);
+            return UsageBaseline.EMPTY;
+        }
+    }
+
     @Override
     public void close() {
         nonopLogger.debug("Closing agent and reporting usage on shutdown.");
 
+        // No point stripping probes now
+        retransformationScheduler.close();
+        nonopLogger.debug("Scan statistics: {}", transformer.getScanStatistics());
+        nonopLogger.debug("Type pool cache statistics: {}", transformer.getTypePoolCacheStatistics());
+
         try {
             usageReporter.finishUsageReportingOnShutdown();
         } catch (Exception e) {
             nonopLogger.error("Error occurred shutting down usage reporter.", e);
             // Continue shutdown
         }
+        clock.close();
+        // Writes any log records still queued
+        try {
+            nonopLogger.close();
+        } catch (Exception e) {
+            System.err.println("[nonop] Error closing log: " + e);
+        }
         // TODO: Close other resources, e.g. threads
         // TODO: Consider whether to have an optimized close for shutting down faster, i.e. only flush the report, don't worry about other resources
     }
@@ -12,12 +12,18 @@ public class AgentConfig {
     private final OutputConfig outputConfig;
     private final FormatConfig formatConfig;
     private final LogConfig logConfig;
+    private final ProbeConfig probeConfig;
+    private final RetransformConfig retransformConfig;
+    private final BaselineConfig baselineConfig;
 
-    public AgentConfig(ScanConfig scanConfig, OutputConfig outputConfig, FormatConfig formatConfig, LogConfig logConfig) {
+    public AgentConfig(ScanConfig scanConfig, OutputConfig outputConfig, FormatConfig formatConfig, LogConfig logConfig, ProbeConfig probeConfig, RetransformConfig retransformConfig, BaselineConfig baselineConfig) {
         this.scanConfig = scanConfig;
         this.outputConfig = outputConfig;
         this.formatConfig = formatConfig;
         this.logConfig = logConfig;
+        this.probeConfig = probeConfig;
+        this.retransformConfig = retransformConfig;
+        this.baselineConfig = baselineConfig;
     }
 
     public static AgentConfig load(NonopLogger logger, Map<String, String> properties) throws ConfigException {
@@ -25,7 +31,16 @@ public class AgentConfig {
         OutputConfig outputConfig = OutputConfig.load(logger, properties);
         FormatConfig formatConfig = FormatConfig.load(logger, properties);
         LogConfig logConfig = LogConfig.load(logger, properties);
-        return new AgentConfig(scanConfig, outputConfig, formatConfig, logConfig);
+        ProbeConfig probeConfig = ProbeConfig.load(logger, properties);
+        RetransformConfig retransformConfig = RetransformConfig.load(logger, properties);
+        BaselineConfig baselineConfig = BaselineConfig.load(logger, properties);
+        if (formatConfig.getFormatType() == FormatConfig.FormatType.BINARY
+                && outputConfig.getOutputTarget() instanceof OutputConfig.StandardStream) {
+            // Binary records mixed into the app's console output couldn't be decoded
+            throw new ConfigException("nonop.format=binary needs nonop.out to be a file or mmap: log, not "
+                    + properties.get("nonop.out") + ".");
+        }
+        return new AgentConfig(scanConfig, outputConfig, formatConfig, logConfig, probeConfig, retransformConfig, baselineConfig);
     }
 
     public ScanConfig getScanConfig() {
@@ -44,6 +59,18 @@ public class AgentConfig {
         return logConfig;
     }
 
+    public ProbeConfig getProbeConfig() {
+        return probeConfig;
+    }
+
+    public RetransformConfig getRetransformConfig() {
+        return retransformConfig;
+    }
+
+    public BaselineConfig getBaselineConfig() {
+        return baselineConfig;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (!(o instanceof AgentConfig)) return false;
@@ -51,12 +78,15 @@ public class AgentConfig {
         return Objects.equals(scanConfig, that.scanConfig) &&
                 Objects.equals(outputConfig, that.outputConfig) &&
                 Objects.equals(formatConfig, that.formatConfig) &&
-                Objects.equals(logConfig, that.logConfig);
+                Objects.equals(logConfig, that.logConfig) &&
+                Objects.equals(probeConfig, that.probeConfig) &&
+                Objects.equals(retransformConfig, that.retransformConfig) &&
+                Objects.equals(baselineConfig, that.baselineConfig);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(scanConfig, outputConfig, formatConfig, logConfig);
+        return Objects.hash(scanConfig, outputConfig, formatConfig, logConfig, probeConfig, retransformConfig, baselineConfig);
     }
 
     @Override
@@ -66,6 +96,9 @@ public class AgentConfig {
                 ", outputConfig=" + outputConfig +
                 ", formatConfig=" + formatConfig +
                 ", logConfig=" + logConfig +
+                ", probeConfig=" + probeConfig +
+                ", retransformConfig=" + retransformConfig +
+                ", baselineConfig=" + baselineConfig +
                 '}';
     }
 }
\ No newline at end of file
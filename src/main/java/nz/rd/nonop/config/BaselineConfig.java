@@ -0,0 +1,68 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.config;
+
+import nz.rd.nonop.internal.logging.NonopLogger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Configuration for the usage baseline: usage output from a previous run, whose methods aren't instrumented.
+ * This class is immutable.
+ */
+public final class BaselineConfig {
+
+    private final @Nullable Path baselinePath;
+
+    private BaselineConfig(@Nullable Path baselinePath) {
+        this.baselinePath = baselinePath;
+    }
+
+    public static BaselineConfig load(NonopLogger logger, Map<String, String> properties) throws ConfigException {
+        String pathStr = properties.get("nonop.baseline");
+        if (pathStr == null) {
+            throw new ConfigException("Missing required property: nonop.baseline");
+        }
+        pathStr = pathStr.trim();
+        if (pathStr.isEmpty()) {
+            return new BaselineConfig(null);
+        }
+        try {
+            return new BaselineConfig(Paths.get(pathStr));
+        } catch (InvalidPathException e) {
+            throw new ConfigException("Invalid value for nonop.baseline: '" + pathStr + "'. " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return The usage output to read, or null if there's no baseline.
+     */
+    public @Nullable Path getBaselinePath() {
+        return baselinePath;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BaselineConfig that = (BaselineConfig) o;
+        return Objects.equals(baselinePath, that.baselinePath);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(baselinePath);
+    }
+
+    @Override
+    public String toString() {
+        return "BaselineConfig{" +
+                "baselinePath=" + baselinePath +
+                '}';
+    }
+}
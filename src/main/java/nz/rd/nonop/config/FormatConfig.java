@@ -16,7 +16,9 @@ public final class FormatConfig {
         /** Human-readable, single-line format. */
         SIMPLE,
         /** Machine-readable JSON format. */
-        JSON
+        JSON,
+        /** Compact binary format with an inline string dictionary; decode with BinaryUsageDecoder. */
+        BINARY
     }
 
     private static final FormatType DEFAULT_FORMAT_TYPE = FormatType.SIMPLE;
@@ -34,14 +36,14 @@ public final class FormatConfig {
         }
         formatStr = formatStr.trim();
         if (formatStr.isEmpty()) {
-            throw new ConfigException("nonop.format cannot be empty. Specify 'json' or 'simple'.");
+            throw new ConfigException("nonop.format cannot be empty. Specify 'simple', 'json' or 'binary'.");
         }
 
         FormatType formatType;
         try {
             formatType = FormatType.valueOf(formatStr.toUpperCase());
         } catch (IllegalArgumentException e) {
-            throw new ConfigException("Invalid value for nonop.format: '" + formatStr + "'. Must be 'simple' or 'json'.");
+            throw new ConfigException("Invalid value for nonop.format: '" + formatStr + "'. Must be 'simple', 'json' or 'binary'.");
         }
         return new FormatConfig(formatType);
     }
@@ -9,14 +9,22 @@ import java.util.Map;
 import java.util.Objects;
 
 /**
- * Configuration for logging.
+ * Configuration for logging: the level, where log records go, and whether they're written on a background thread.
  */
 public final class LogConfig {
 
     private final NonopLogger.Level level;
+    private final OutputConfig.OutputTarget outputTarget;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final int asyncCapacity;
 
-    private LogConfig(NonopLogger.Level level) {
+    private LogConfig(NonopLogger.Level level, OutputConfig.OutputTarget outputTarget, long maxFileSize, int maxFiles, int asyncCapacity) {
         this.level = Objects.requireNonNull(level, "level must not be null");
+        this.outputTarget = Objects.requireNonNull(outputTarget, "outputTarget must not be null");
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+        this.asyncCapacity = asyncCapacity;
     }
 
     public static LogConfig load(NonopLogger logger, Map<String, String> properties) throws ConfigException {
@@ -37,7 +45,53 @@ public final class LogConfig {
                     "'. Must be one of: " + Arrays.toString(NonopLogger.Level.values()));
         }
 
-        return new LogConfig(logLevel);
+        String outStr = properties.get("nonop.log.out");
+        if (outStr == null) {
+            throw new ConfigException("Missing required property: nonop.log.out");
+        }
+        outStr = outStr.trim();
+        OutputConfig.OutputTarget target;
+        if (outStr.isEmpty()) {
+            throw new ConfigException("nonop.log.out cannot be empty. Specify 'stdout', 'stderr', or a file path.");
+        } else if ("stdout".equalsIgnoreCase(outStr)) {
+            target = new OutputConfig.StandardStream(OutputConfig.StandardStream.Type.STDOUT);
+        } else if ("stderr".equalsIgnoreCase(outStr)) {
+            target = new OutputConfig.StandardStream(OutputConfig.StandardStream.Type.STDERR);
+        } else if (outStr.startsWith("mmap:")) {
+            throw new ConfigException("nonop.log.out can't be a memory-mapped log. Specify 'stdout', 'stderr', or a file path.");
+        } else {
+            target = new OutputConfig.File(outStr);
+        }
+
+        long maxFileSize = parseLong(properties, "nonop.log.out.maxsize");
+        if (maxFileSize < 1) {
+            throw new ConfigException("Invalid value for nonop.log.out.maxsize: '" + maxFileSize + "'. Must be positive.");
+        }
+        long maxFiles = parseLong(properties, "nonop.log.out.files");
+        if (maxFiles < 0 || maxFiles > 1000) {
+            throw new ConfigException("Invalid value for nonop.log.out.files: '" + maxFiles + "'. Must be between 0 and 1000.");
+        }
+        long asyncCapacity = parseLong(properties, "nonop.log.async.capacity");
+        if (asyncCapacity < 0 || asyncCapacity > 1 << 20) {
+            throw new ConfigException("Invalid value for nonop.log.async.capacity: '" + asyncCapacity + "'. Must be between 0 and 2^20.");
+        }
+        if (asyncCapacity == 0 && target instanceof OutputConfig.File) {
+            throw new ConfigException("nonop.log.async.capacity must be positive when nonop.log.out is a file; only the log writer thread writes to it.");
+        }
+
+        return new LogConfig(logLevel, target, maxFileSize, (int) maxFiles, (int) asyncCapacity);
+    }
+
+    private static long parseLong(Map<String, String> properties, String name) throws ConfigException {
+        String value = properties.get(name);
+        if (value == null) {
+            throw new ConfigException("Missing required property: " + name);
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfigException("Invalid number format for " + name + ": '" + value + "'");
+        }
     }
 
     // TODO: Consider if we should abstract this as NonopLogger.Level is technically an internal type
@@ -45,23 +99,60 @@ public final class LogConfig {
         return level;
     }
 
+    /**
+     * Where log records are written: a {@link OutputConfig.StandardStream} or a {@link OutputConfig.File}.
+     */
+    public OutputConfig.OutputTarget getOutputTarget() {
+        return outputTarget;
+    }
+
+    /**
+     * The size in bytes a log file can reach before it's rotated.
+     */
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    /**
+     * The number of rotated log files kept, besides the current one.
+     */
+    public int getMaxFiles() {
+        return maxFiles;
+    }
+
+    /**
+     * The number of log records that can wait for the log writer thread; more are dropped and counted. 0 writes each
+     * record on the thread that logs it, which is only allowed for a {@link OutputConfig.StandardStream}.
+     */
+    public int getAsyncCapacity() {
+        return asyncCapacity;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         LogConfig logConfig = (LogConfig) o;
-        return level == logConfig.level;
+        return level == logConfig.level &&
+                outputTarget.equals(logConfig.outputTarget) &&
+                maxFileSize == logConfig.maxFileSize &&
+                maxFiles == logConfig.maxFiles &&
+                asyncCapacity == logConfig.asyncCapacity;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(level);
+        return Objects.hash(level, outputTarget, maxFileSize, maxFiles, asyncCapacity);
     }
 
     @Override
     public String toString() {
         return "LogConfig{" +
                 "level=" + level +
+                ", outputTarget=" + outputTarget +
+                ", maxFileSize=" + maxFileSize +
+                ", maxFiles=" + maxFiles +
+                ", asyncCapacity=" + asyncCapacity +
                 '}';
     }
-}
\ No newline at end of file
+}
@@ -20,7 +20,7 @@ public final class OutputConfig {
 
     /**
      * A sealed-interface-style ADT representing the output destination.
-     * Can be a {@link StandardStream} or a {@link File}.
+     * Can be a {@link StandardStream}, a {@link File} or a {@link MappedFile}.
      */
     public interface OutputTarget {
     }
@@ -93,15 +93,73 @@ public final class OutputConfig {
         }
     }
 
+    /**
+     * Represents output to a memory-mapped, append-only usage log, which keeps what's been reported if the process is
+     * killed. Selected with an {@code mmap:} prefix on the path.
+     */
+    public static final class MappedFile implements OutputTarget {
+        private final String path;
+
+        public MappedFile(String path) {
+            this.path = Objects.requireNonNull(path, "path must not be null");
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public String toString() {
+            return "MappedFile{path='" + path + "'}";
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            MappedFile that = (MappedFile) o;
+            return path.equals(that.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path);
+        }
+    }
+
     // --- End of ADT ---
 
+    /**
+     * What application threads do when they report a first use and the async reporter's buffer is full.
+     */
+    public enum FullBufferPolicy {
+        /** Wait for the writer thread to make space. */
+        BLOCK,
+        /** Drop the event and count it; the method is never reported. */
+        DROP,
+        /** Queue the event in an unbounded overflow queue, allocating only while the buffer is full. */
+        SPILL
+    }
 
     private final OutputTarget outputTarget;
     private final int bufferSize;
-
-    private OutputConfig(OutputTarget outputTarget, int bufferSize) {
+    private final boolean async;
+    private final int asyncCapacity;
+    private final FullBufferPolicy fullBufferPolicy;
+    private final int flushBytes;
+    private final long flushIntervalMillis;
+    private final int mappedSegmentSize;
+
+    private OutputConfig(OutputTarget outputTarget, int bufferSize, int flushBytes, long flushIntervalMillis, int mappedSegmentSize,
+                         boolean async, int asyncCapacity, FullBufferPolicy fullBufferPolicy) {
         this.outputTarget = outputTarget;
+        this.mappedSegmentSize = mappedSegmentSize;
         this.bufferSize = bufferSize;
+        this.flushBytes = flushBytes;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.async = async;
+        this.asyncCapacity = asyncCapacity;
+        this.fullBufferPolicy = fullBufferPolicy;
     }
 
     /**
@@ -127,6 +185,12 @@ public final class OutputConfig {
             target = new StandardStream(StandardStream.Type.STDOUT); // Default to stdout
         } else if ("stderr".equalsIgnoreCase(outStr)) { // FIXME: Consider locale for case
             target = new StandardStream(StandardStream.Type.STDERR);
+        } else if (outStr.startsWith("mmap:")) {
+            String path = outStr.substring("mmap:".length()).trim();
+            if (path.isEmpty()) {
+                throw new ConfigException("nonop.out 'mmap:' needs a file path, e.g. 'mmap:nonop.log'.");
+            }
+            target = new MappedFile(path);
         } else {
             target = new File(outStr);
         }
@@ -148,7 +212,79 @@ public final class OutputConfig {
             throw new ConfigException("Invalid number format for nonop.out.buffersize: '" + bufferSizeStr + "'");
         }
 
-        return new OutputConfig(target, bufferSize);
+        // 3. Parse the flush policy (nonop.out.flush.*)
+        String flushBytesStr = properties.get("nonop.out.flush.bytes");
+        if (flushBytesStr == null) {
+            throw new ConfigException("Missing required property: nonop.out.flush.bytes");
+        }
+        int flushBytes;
+        try {
+            flushBytes = Integer.parseInt(flushBytesStr.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfigException("Invalid number format for nonop.out.flush.bytes: '" + flushBytesStr + "'");
+        }
+        if (flushBytes < 0) {
+            throw new ConfigException("Invalid value for nonop.out.flush.bytes: '" + flushBytesStr + "'. Must be non-negative.");
+        }
+
+        String flushIntervalStr = properties.get("nonop.out.flush.interval");
+        if (flushIntervalStr == null) {
+            throw new ConfigException("Missing required property: nonop.out.flush.interval");
+        }
+        long flushIntervalMillis;
+        try {
+            flushIntervalMillis = Long.parseLong(flushIntervalStr.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfigException("Invalid number format for nonop.out.flush.interval: '" + flushIntervalStr + "'");
+        }
+        if (flushIntervalMillis < 0) {
+            throw new ConfigException("Invalid value for nonop.out.flush.interval: '" + flushIntervalStr + "'. Must be non-negative.");
+        }
+
+        // 4. Parse the memory-mapped log's segment size (nonop.out.mmap.segmentsize)
+        String segmentSizeStr = properties.get("nonop.out.mmap.segmentsize");
+        if (segmentSizeStr == null) {
+            throw new ConfigException("Missing required property: nonop.out.mmap.segmentsize");
+        }
+        int mappedSegmentSize;
+        try {
+            mappedSegmentSize = Integer.parseInt(segmentSizeStr.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfigException("Invalid number format for nonop.out.mmap.segmentsize: '" + segmentSizeStr + "'");
+        }
+        if (mappedSegmentSize < 4096 || mappedSegmentSize % 4096 != 0) {
+            throw new ConfigException("Invalid value for nonop.out.mmap.segmentsize: '" + segmentSizeStr + "'. Must be a multiple of 4096.");
+        }
+
+        // 5. Parse the async reporting settings (nonop.out.async*)
+        boolean async = Boolean.parseBoolean(properties.get("nonop.out.async"));
+
+        String asyncCapacityStr = properties.get("nonop.out.async.capacity");
+        if (asyncCapacityStr == null) {
+            throw new ConfigException("Missing required property: nonop.out.async.capacity");
+        }
+        int asyncCapacity;
+        try {
+            asyncCapacity = Integer.parseInt(asyncCapacityStr.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfigException("Invalid number format for nonop.out.async.capacity: '" + asyncCapacityStr + "'");
+        }
+        if (asyncCapacity < 1 || asyncCapacity > 1 << 30) {
+            throw new ConfigException("Invalid value for nonop.out.async.capacity: '" + asyncCapacityStr + "'. Must be between 1 and 2^30.");
+        }
+
+        String fullBufferPolicyStr = properties.get("nonop.out.async.full");
+        if (fullBufferPolicyStr == null) {
+            throw new ConfigException("Missing required property: nonop.out.async.full");
+        }
+        FullBufferPolicy fullBufferPolicy;
+        try {
+            fullBufferPolicy = FullBufferPolicy.valueOf(fullBufferPolicyStr.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ConfigException("Invalid value for nonop.out.async.full: '" + fullBufferPolicyStr + "'. Must be 'block', 'drop' or 'spill'.");
+        }
+
+        return new OutputConfig(target, bufferSize, flushBytes, flushIntervalMillis, mappedSegmentSize, async, asyncCapacity, fullBufferPolicy);
     }
 
     public OutputTarget getOutputTarget() {
@@ -159,11 +295,60 @@ public final class OutputConfig {
         return bufferSize;
     }
 
+    /**
+     * Output is flushed once this many bytes are buffered, so at most this much is lost if the process dies without
+     * shutting down cleanly. Capped at the buffer size; 0 flushes after every first use.
+     */
+    public int getFlushBytes() {
+        return flushBytes;
+    }
+
+    /**
+     * Output is flushed once the oldest buffered first use has waited this long, so at most this many milliseconds of
+     * first uses are lost if the process dies without shutting down cleanly. 0 flushes after every first use.
+     */
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    /**
+     * The size in bytes that a {@link MappedFile} usage log grows by.
+     */
+    public int getMappedSegmentSize() {
+        return mappedSegmentSize;
+    }
+
+    /**
+     * Whether first uses are handed to a writer thread, rather than formatted and written by the thread that made the
+     * call.
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * The number of events the async reporter can hold before applying the {@link #getFullBufferPolicy() full buffer
+     * policy}. Rounded up to a power of two.
+     */
+    public int getAsyncCapacity() {
+        return asyncCapacity;
+    }
+
+    public FullBufferPolicy getFullBufferPolicy() {
+        return fullBufferPolicy;
+    }
+
     @Override
     public String toString() {
         return "OutputConfig{" +
                 "outputTarget=" + outputTarget +
                 ", bufferSize=" + bufferSize +
+                ", flushBytes=" + flushBytes +
+                ", flushIntervalMillis=" + flushIntervalMillis +
+                ", mappedSegmentSize=" + mappedSegmentSize +
+                ", async=" + async +
+                ", asyncCapacity=" + asyncCapacity +
+                ", fullBufferPolicy=" + fullBufferPolicy +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.config;
+
+import nz.rd.nonop.internal.logging.NonopLogger;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Configuration for how methods are probed and how probes are removed once a method is used.
+ */
+public final class ProbeConfig {
+
+    public enum ProbeStrategy {
+        /** Probes call the agent; classes are retransformed to strip probes from used methods. */
+        RETRANSFORM,
+        /**
+         * Probes are invokedynamic call sites that relink themselves to a no-op after the first call, so no
+         * retransformation is needed. Classes that can't use invokedynamic fall back to {@link #RETRANSFORM}.
+         */
+        INDY
+    }
+
+    private final ProbeStrategy probeStrategy;
+
+    private ProbeConfig(ProbeStrategy probeStrategy) {
+        this.probeStrategy = Objects.requireNonNull(probeStrategy, "probeStrategy must not be null");
+    }
+
+    public static ProbeConfig load(NonopLogger logger, Map<String, String> properties) throws ConfigException {
+        String strategyStr = properties.get("nonop.probe");
+        if (strategyStr == null) {
+            throw new ConfigException("Missing required property: nonop.probe");
+        }
+        strategyStr = strategyStr.trim();
+        if (strategyStr.isEmpty()) {
+            throw new ConfigException("nonop.probe cannot be empty. Specify 'retransform' or 'indy'.");
+        }
+
+        ProbeStrategy probeStrategy;
+        try {
+            probeStrategy = ProbeStrategy.valueOf(strategyStr.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ConfigException("Invalid value for nonop.probe: '" + strategyStr + "'. Must be 'retransform' or 'indy'.");
+        }
+        return new ProbeConfig(probeStrategy);
+    }
+
+    public ProbeStrategy getProbeStrategy() {
+        return probeStrategy;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ProbeConfig that = (ProbeConfig) o;
+        return probeStrategy == that.probeStrategy;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(probeStrategy);
+    }
+
+    @Override
+    public String toString() {
+        return "ProbeConfig{" +
+                "probeStrategy=" + probeStrategy +
+                '}';
+    }
+}
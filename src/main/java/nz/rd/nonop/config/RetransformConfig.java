@@ -0,0 +1,186 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.config;
+
+import nz.rd.nonop.internal.logging.NonopLogger;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Configuration for retransforming classes to strip probes from used methods.
+ * This class is immutable.
+ */
+public final class RetransformConfig {
+
+    private final long debounceMillis;
+    private final int callsBeforeStripping;
+    private final long minIntervalMillis;
+    private final double minUsedFraction;
+    private final double minCallRate;
+    private final boolean waitForIdle;
+    private final double idleMaxCpuLoad;
+    private final long idleMaxDelayMillis;
+
+    private RetransformConfig(long debounceMillis, int callsBeforeStripping, long minIntervalMillis, double minUsedFraction, double minCallRate,
+                              boolean waitForIdle, double idleMaxCpuLoad, long idleMaxDelayMillis) {
+        this.debounceMillis = debounceMillis;
+        this.callsBeforeStripping = callsBeforeStripping;
+        this.minIntervalMillis = minIntervalMillis;
+        this.minUsedFraction = minUsedFraction;
+        this.minCallRate = minCallRate;
+        this.waitForIdle = waitForIdle;
+        this.idleMaxCpuLoad = idleMaxCpuLoad;
+        this.idleMaxDelayMillis = idleMaxDelayMillis;
+    }
+
+    public static RetransformConfig load(NonopLogger logger, Map<String, String> properties) throws ConfigException {
+        long debounceMillis = loadNonNegativeLong(properties, "nonop.retransform.debounce");
+        long callsBeforeStripping = loadNonNegativeLong(properties, "nonop.retransform.calls");
+        if (callsBeforeStripping < 1 || callsBeforeStripping > Integer.MAX_VALUE) {
+            throw new ConfigException("Invalid value for nonop.retransform.calls: '" + callsBeforeStripping + "'. Must be at least 1.");
+        }
+        long minIntervalMillis = loadNonNegativeLong(properties, "nonop.retransform.interval");
+        double minUsedFraction = loadNonNegativeDouble(properties, "nonop.retransform.usedfraction");
+        if (minUsedFraction > 1) {
+            throw new ConfigException("Invalid value for nonop.retransform.usedfraction: '" + minUsedFraction + "'. Must be between 0 and 1.");
+        }
+        double minCallRate = loadNonNegativeDouble(properties, "nonop.retransform.callrate");
+        boolean waitForIdle = Boolean.parseBoolean(properties.get("nonop.retransform.idle"));
+        double idleMaxCpuLoad = loadNonNegativeDouble(properties, "nonop.retransform.idle.cpu");
+        if (idleMaxCpuLoad > 1) {
+            throw new ConfigException("Invalid value for nonop.retransform.idle.cpu: '" + idleMaxCpuLoad + "'. Must be between 0 and 1.");
+        }
+        long idleMaxDelayMillis = loadNonNegativeLong(properties, "nonop.retransform.idle.maxdelay");
+        return new RetransformConfig(debounceMillis, (int) callsBeforeStripping, minIntervalMillis, minUsedFraction, minCallRate,
+                waitForIdle, idleMaxCpuLoad, idleMaxDelayMillis);
+    }
+
+    private static String loadRequired(Map<String, String> properties, String name) throws ConfigException {
+        String valueStr = properties.get(name);
+        if (valueStr == null) {
+            throw new ConfigException("Missing required property: " + name);
+        }
+        return valueStr.trim();
+    }
+
+    private static long loadNonNegativeLong(Map<String, String> properties, String name) throws ConfigException {
+        String valueStr = loadRequired(properties, name);
+        long value;
+        try {
+            value = Long.parseLong(valueStr);
+        } catch (NumberFormatException e) {
+            throw new ConfigException("Invalid number format for " + name + ": '" + valueStr + "'");
+        }
+        if (value < 0) {
+            throw new ConfigException("Invalid value for " + name + ": '" + valueStr + "'. Must be non-negative.");
+        }
+        return value;
+    }
+
+    private static double loadNonNegativeDouble(Map<String, String> properties, String name) throws ConfigException {
+        String valueStr = loadRequired(properties, name);
+        double value;
+        try {
+            value = Double.parseDouble(valueStr);
+        } catch (NumberFormatException e) {
+            throw new ConfigException("Invalid number format for " + name + ": '" + valueStr + "'");
+        }
+        if (!(value >= 0) || Double.isInfinite(value)) {
+            throw new ConfigException("Invalid value for " + name + ": '" + valueStr + "'. Must be non-negative.");
+        }
+        return value;
+    }
+
+    /**
+     * How long to wait after a class first needs retransforming, to batch it with other classes that need it too.
+     */
+    public long getDebounceMillis() {
+        return debounceMillis;
+    }
+
+    /**
+     * The number of calls after which a method's probe should be stripped.
+     */
+    public int getCallsBeforeStripping() {
+        return callsBeforeStripping;
+    }
+
+    /**
+     * The minimum time between retransformations of a class.
+     */
+    public long getMinIntervalMillis() {
+        return minIntervalMillis;
+    }
+
+    /**
+     * The fraction of a class's methods that must be used before it's retransformed; 0 for no minimum.
+     */
+    public double getMinUsedFraction() {
+        return minUsedFraction;
+    }
+
+    /**
+     * The rate, in calls per second, that a class's probes must call the agent at before it's retransformed; 0 for no
+     * minimum. Calls to guarded methods skip the agent, so aren't counted.
+     */
+    public double getMinCallRate() {
+        return minCallRate;
+    }
+
+    /**
+     * Whether to hold retransformations until the process is idle, since retransforming deoptimizes compiled code.
+     */
+    public boolean isWaitForIdle() {
+        return waitForIdle;
+    }
+
+    /**
+     * The CPU load, from 0 to 1 across all processors, below which the process is idle.
+     */
+    public double getIdleMaxCpuLoad() {
+        return idleMaxCpuLoad;
+    }
+
+    /**
+     * The longest a retransformation is held waiting for the process to be idle.
+     */
+    public long getIdleMaxDelayMillis() {
+        return idleMaxDelayMillis;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RetransformConfig that = (RetransformConfig) o;
+        return debounceMillis == that.debounceMillis &&
+                callsBeforeStripping == that.callsBeforeStripping &&
+                minIntervalMillis == that.minIntervalMillis &&
+                Double.compare(that.minUsedFraction, minUsedFraction) == 0 &&
+                Double.compare(that.minCallRate, minCallRate) == 0 &&
+                waitForIdle == that.waitForIdle &&
+                Double.compare(that.idleMaxCpuLoad, idleMaxCpuLoad) == 0 &&
+                idleMaxDelayMillis == that.idleMaxDelayMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(debounceMillis, callsBeforeStripping, minIntervalMillis, minUsedFraction, minCallRate,
+                waitForIdle, idleMaxCpuLoad, idleMaxDelayMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "RetransformConfig{" +
+                "debounceMillis=" + debounceMillis +
+                ", callsBeforeStripping=" + callsBeforeStripping +
+                ", minIntervalMillis=" + minIntervalMillis +
+                ", minUsedFraction=" + minUsedFraction +
+                ", minCallRate=" + minCallRate +
+                ", waitForIdle=" + waitForIdle +
+                ", idleMaxCpuLoad=" + idleMaxCpuLoad +
+                ", idleMaxDelayMillis=" + idleMaxDelayMillis +
+                '}';
+    }
+}
@@ -2,6 +2,7 @@
 
 package nz.rd.nonop.config;
 
+import nz.rd.nonop.internal.config.MethodScanMatcher;
 import nz.rd.nonop.internal.config.ScanMatcher;
 import nz.rd.nonop.internal.config.ScanRuleParser;
 import nz.rd.nonop.internal.logging.NonopLogger;
@@ -16,13 +17,19 @@ public class ScanConfig {
     private final boolean scanIncludeBootstrap;
     private final boolean scanIncludeUnnamed;
     private final boolean scanIncludeSynthetic;
+    private final int typePoolCacheSize;
+    private final List<MethodScanMatcher> methodScanMatchers;
+    private final int methodMinBytecodeSize;
 
-    public ScanConfig(List<ScanMatcher> builtinScanMatchers, List<ScanMatcher> userScanMatchers, boolean scanIncludeBootstrap, boolean scanIncludeUnnamed, boolean scanIncludeSynthetic) {
+    public ScanConfig(List<ScanMatcher> builtinScanMatchers, List<ScanMatcher> userScanMatchers, boolean scanIncludeBootstrap, boolean scanIncludeUnnamed, boolean scanIncludeSynthetic, int typePoolCacheSize, List<MethodScanMatcher> methodScanMatchers, int methodMinBytecodeSize) {
         this.userScanMatchers = userScanMatchers;
         this.builtinScanMatchers = builtinScanMatchers;
         this.scanIncludeBootstrap = scanIncludeBootstrap;
         this.scanIncludeUnnamed = scanIncludeUnnamed;
         this.scanIncludeSynthetic = scanIncludeSynthetic;
+        this.typePoolCacheSize = typePoolCacheSize;
+        this.methodScanMatchers = methodScanMatchers;
+        this.methodMinBytecodeSize = methodMinBytecodeSize;
     }
 
     public static ScanConfig load(NonopLogger logger, Map<String, String> properties) throws ConfigException {
@@ -37,7 +44,29 @@ public class ScanConfig {
         boolean includeUnnamed = Boolean.parseBoolean(properties.get("nonop.scan.include.unnamed"));
         boolean includeSynthetic = Boolean.parseBoolean(properties.get("nonop.scan.include.synthetic"));
 
-        return new ScanConfig(parsedBuiltinScanMatchers, parsedUserScanMatchers, includeBootstrap, includeUnnamed, includeSynthetic);
+        int typePoolCacheSize = loadNonNegativeInt(properties, "nonop.scan.typepool.cachesize");
+
+        List<MethodScanMatcher> parsedMethodScanMatchers = parser.parseMethodRules(properties.get("nonop.scan.methods"));
+        int methodMinBytecodeSize = loadNonNegativeInt(properties, "nonop.scan.methods.minsize");
+
+        return new ScanConfig(parsedBuiltinScanMatchers, parsedUserScanMatchers, includeBootstrap, includeUnnamed, includeSynthetic, typePoolCacheSize, parsedMethodScanMatchers, methodMinBytecodeSize);
+    }
+
+    private static int loadNonNegativeInt(Map<String, String> properties, String key) throws ConfigException {
+        String valueStr = properties.get(key);
+        if (valueStr == null) {
+            throw new ConfigException("Missing required property: " + key);
+        }
+        int value;
+        try {
+            value = Integer.parseInt(valueStr.trim());
+        } catch (NumberFormatException e) {
+            throw new ConfigException("Invalid number format for " + key + ": '" + valueStr + "'");
+        }
+        if (value < 0) {
+            throw new ConfigException("Invalid value for " + key + ": '" + valueStr + "'. Must be non-negative.");
+        }
+        return value;
     }
 
     public List<ScanMatcher> getUserScanMatchers() {
@@ -60,20 +89,41 @@ public class ScanConfig {
         return scanIncludeSynthetic;
     }
 
+    /**
+     * The maximum number of type descriptions cached for each ClassLoader.
+     */
+    public int getTypePoolCacheSize() {
+        return typePoolCacheSize;
+    }
+
+    /**
+     * Rules selecting which methods of a scanned class are instrumented. If empty, all methods are.
+     */
+    public List<MethodScanMatcher> getMethodScanMatchers() {
+        return methodScanMatchers;
+    }
+
+    /**
+     * Methods with less bytecode than this aren't instrumented.
+     */
+    public int getMethodMinBytecodeSize() {
+        return methodMinBytecodeSize;
+    }
+
     @Override
     public String toString() {
-        return "AgentConfig{" + "userScanMatchers=" + userScanMatchers + ", builtinScanMatchers=" + builtinScanMatchers + ", scanIncludeBootstrap=" + scanIncludeBootstrap + ", scanIncludeUnnamed=" + scanIncludeUnnamed + ", scanIncludeSynthetic=" + scanIncludeSynthetic + '}';
+        return "AgentConfig{" + "userScanMatchers=" + userScanMatchers + ", builtinScanMatchers=" + builtinScanMatchers + ", scanIncludeBootstrap=" + scanIncludeBootstrap + ", scanIncludeUnnamed=" + scanIncludeUnnamed + ", scanIncludeSynthetic=" + scanIncludeSynthetic + ", typePoolCacheSize=" + typePoolCacheSize + ", methodScanMatchers=" + methodScanMatchers + ", methodMinBytecodeSize=" + methodMinBytecodeSize + '}';
     }
 
     @Override
     public boolean equals(Object o) {
         if (!(o instanceof ScanConfig)) return false;
         ScanConfig that = (ScanConfig) o;
-        return scanIncludeBootstrap == that.scanIncludeBootstrap && scanIncludeUnnamed == that.scanIncludeUnnamed && scanIncludeSynthetic == that.scanIncludeSynthetic && Objects.equals(userScanMatchers, that.userScanMatchers) && Objects.equals(builtinScanMatchers, that.builtinScanMatchers);
+        return scanIncludeBootstrap == that.scanIncludeBootstrap && scanIncludeUnnamed == that.scanIncludeUnnamed && scanIncludeSynthetic == that.scanIncludeSynthetic && typePoolCacheSize == that.typePoolCacheSize && methodMinBytecodeSize == that.methodMinBytecodeSize && Objects.equals(methodScanMatchers, that.methodScanMatchers) && Objects.equals(userScanMatchers, that.userScanMatchers) && Objects.equals(builtinScanMatchers, that.builtinScanMatchers);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(userScanMatchers, builtinScanMatchers, scanIncludeBootstrap, scanIncludeUnnamed, scanIncludeSynthetic);
+        return Objects.hash(userScanMatchers, builtinScanMatchers, scanIncludeBootstrap, scanIncludeUnnamed, scanIncludeSynthetic, typePoolCacheSize, methodScanMatchers, methodMinBytecodeSize);
     }
 }
@@ -0,0 +1,107 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The current time, read from a field that a daemon thread updates every tick. Reading it is a volatile read, much
+ * cheaper than {@link System#currentTimeMillis()}, at the cost of being up to a tick behind.
+ * <p>
+ * The ticker thread only runs while the clock is being read. It starts on the first read, and parks once nothing has
+ * read the clock for {@value #DEFAULT_IDLE_MILLIS} ms; the next read takes the time from the system clock and wakes it.
+ */
+public final class CoarseClock implements AutoCloseable {
+
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    static final long DEFAULT_IDLE_MILLIS = 1000;
+
+    private final long tickMillis;
+    private final long idleTicks;
+    private final Thread ticker;
+    private boolean started = false; // Guarded by this
+    private volatile long currentTimeMillis = System.currentTimeMillis();
+    private volatile boolean ticking = false;
+    private volatile boolean read = false; // Since the last tick
+    private volatile boolean closed = false;
+
+    public CoarseClock(long tickMillis) {
+        this(tickMillis, DEFAULT_IDLE_MILLIS);
+    }
+
+    CoarseClock(long tickMillis, long idleMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("tickMillis must be at least 1: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.idleTicks = Math.max(1, idleMillis / tickMillis);
+        this.ticker = new Thread(this::run, "nonop-clock");
+        this.ticker.setDaemon(true);
+    }
+
+    public long currentTimeMillis() {
+        if (ticking) {
+            if (!read) {
+                read = true;
+            }
+            return currentTimeMillis;
+        }
+        return wakeTicker();
+    }
+
+    private long wakeTicker() {
+        if (closed) {
+            return currentTimeMillis;
+        }
+        long now = System.currentTimeMillis();
+        currentTimeMillis = now;
+        read = true;
+        ticking = true;
+        synchronized (this) {
+            if (!started) {
+                started = true;
+                ticker.start();
+                return now;
+            }
+        }
+        LockSupport.unpark(ticker);
+        return now;
+    }
+
+    private void run() {
+        long idle = 0;
+        while (!closed) {
+            try {
+                Thread.sleep(tickMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            currentTimeMillis = System.currentTimeMillis();
+            if (read) {
+                read = false;
+                idle = 0;
+            } else if (++idle >= idleTicks) {
+                // Readers that see this take the time themselves, and set ticking again before unparking this thread
+                ticking = false;
+                while (!ticking && !closed) {
+                    LockSupport.park(this);
+                }
+                idle = 0;
+            }
+        }
+    }
+
+    boolean isTicking() {
+        return ticking;
+    }
+
+    /**
+     * Stops the ticker. The time stays at the last tick.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        ticking = false;
+        ticker.interrupt();
+    }
+}
@@ -2,62 +2,106 @@
 
 package nz.rd.nonop.internal;
 
+import nz.rd.nonop.config.ProbeConfig;
 import nz.rd.nonop.internal.logging.NonopLogger;
-import nz.rd.nonop.internal.model.ClassLoaderRegistry;
 import nz.rd.nonop.internal.model.ClassUsageState;
 import nz.rd.nonop.internal.model.JVMRegistry;
+import nz.rd.nonop.internal.model.MethodUsageSnapshot;
+import nz.rd.nonop.internal.model.RetransformPolicy;
 import nz.rd.nonop.internal.reporting.UsageReporter;
 import nz.rd.nonop.internal.transformer.NonopClassfileTransformer;
-import org.apache.commons.lang3.tuple.Pair;
+import nz.rd.nonop.internal.transformer.RetransformationScheduler;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
-import java.lang.instrument.Instrumentation;
-import java.util.Set;
-
-public final class NonopCore implements NonopStaticHooks.MethodCalled, NonopClassfileTransformer.GetMethodUsageSnapshot {
+public final class NonopCore implements NonopStaticHooks.MethodCalled, NonopStaticHooks.MethodCalledForClassLoader, NonopClassfileTransformer.RegisterMethodTable, NonopClassfileTransformer.GetMethodUsageSnapshot {
 
     private final NonopLogger nonopLogger;
-    private final Instrumentation instrumentation;
+    private final RetransformationScheduler retransformationScheduler;
     private final UsageReporter usageReporter;
+    private final RetransformPolicy retransformPolicy;
+    private final CoarseClock clock;
+
+    private final JVMRegistry jvmRegistry;
 
-    private final JVMRegistry jvmRegistry = new JVMRegistry();
+    // Delay before checking a class the retransform policy turned down again, doubling each time it's turned down
+    private static final long RETRANSFORM_CHECK_MIN_MILLIS = 1000;
+    private static final long RETRANSFORM_CHECK_MAX_MILLIS = 60_000;
 
-    // Private constructor to prevent instantiation
-    public NonopCore(NonopLogger nonopLogger, Instrumentation inst, UsageReporter usageReporter) {
+    public NonopCore(NonopLogger nonopLogger, RetransformationScheduler retransformationScheduler, UsageReporter usageReporter, RetransformPolicy retransformPolicy, CoarseClock clock) {
         this.nonopLogger = nonopLogger;
-        this.instrumentation = inst;
+        this.retransformationScheduler = retransformationScheduler;
         this.usageReporter = usageReporter;
+        this.retransformPolicy = retransformPolicy;
+        this.clock = clock;
+        this.jvmRegistry = new JVMRegistry(retransformPolicy.getCallsBeforeStripping());
     }
 
-    public ClassUsageState getClassUsageState(Class<?> clazz) {
-        ClassLoader classLoader = clazz.getClassLoader();
-        ClassLoaderRegistry classLoaderRegistry = jvmRegistry.getClassLoaderRegistry(classLoader);
-        return classLoaderRegistry.getOrCreateClassUsageState(clazz);
+    public @Nullable ClassUsageState getClassUsageState(Class<?> clazz) {
+        return jvmRegistry.getClassUsageState(clazz);
     }
 
-    // Called by instrumented code (Phase 0)
-    public void methodCalled(Class<?> clazz, String methodName, String methodDescriptor) {
+    // Called by instrumented code (Phase 0). Most calls aren't first calls, so only take the time once we know.
+    public void methodCalled(Class<?> clazz, int methodOrdinal) {
         try {
-            long callTimestamp = System.currentTimeMillis();
-            nonopLogger.debug("=== MethodCalled hook invoked: " + clazz.getCanonicalName() + " " + methodName + methodDescriptor);
             ClassUsageState classUsageState = getClassUsageState(clazz);
-            ClassUsageState.MarkResult markResult = classUsageState.recordMethodUsedAndDecideIfInstrumentationNeeded(methodName, methodDescriptor);
+            if (classUsageState == null) {
+                if (nonopLogger.isDebugEnabled()) {
+                    nonopLogger.debug("Usage of {} isn't tracked; ignoring call to method #{}", clazz.getName(), methodOrdinal);
+                }
+                return;
+            }
+            ClassUsageState.MarkResult markResult = classUsageState.recordMethodUsed(methodOrdinal);
 
-            if (markResult.isInstrumentationNeeded()) {
-                scheduleRetransformation(classUsageState);
+            if (markResult.isNowStrippable()) {
+                considerRetransformation(classUsageState);
             }
 
-            if (markResult.isAdded()) {
+            if (markResult.isFirstCall()) {
+                if (nonopLogger.isDebugEnabled()) {
+                    nonopLogger.debug("=== First call: " + clazz.getName() + " #" + methodOrdinal);
+                }
                 // Retain strong reference until reported
-                usageReporter.recordMethodFirstUsage(callTimestamp, clazz, methodName, methodDescriptor);
+                usageReporter.recordMethodFirstUsage(clock.currentTimeMillis(), clazz, classUsageState.getMethodTable(), methodOrdinal);
             }
         } catch (Exception e) {
             nonopLogger.error("Error in methodCalled", e);
         }
     }
 
-    private void scheduleRetransformation(ClassUsageState classUsageState) {
-        nonopLogger.debug("scheduleRetransformation: " + classUsageState.getClazzWeakRef().get());
-        // TODO: Schedule and run in a different thread, async, etc
+    @Override
+    public long @Nullable [] usageGuard(Class<?> clazz) {
+        try {
+            ClassUsageState classUsageState = getClassUsageState(clazz);
+            return classUsageState != null ? classUsageState.getUsageGuard() : null;
+        } catch (Exception e) {
+            // Without a guard the class's probes always call the hook, which still records usage
+            nonopLogger.error("Error getting usage guard for {}", clazz.getName(), e);
+            return null;
+        }
+    }
+
+    @Override
+    public NonopStaticHooks.MethodCalled methodCalledForClassLoader(@Nullable ClassLoader classLoader) {
+        // Usage state is already attached to each class, so every ClassLoader's hook can call us directly
+        return this;
+    }
+
+    private void considerRetransformation(ClassUsageState classUsageState) {
+        if (classUsageState.getProbeStrategy() == ProbeConfig.ProbeStrategy.INDY) {
+            // Its probes relink themselves to a no-op, so there's nothing to strip; a call that got in first is just
+            // a repeat call
+            return;
+        }
+        // The same clock as the state's timestamps; the coarse clock can be a tick behind them
+        long delayMillis = retransformPolicy.retransformDelayMillis(classUsageState, System.currentTimeMillis());
+        if (delayMillis == RetransformPolicy.NOT_YET) {
+            scheduleRetransformCheck(classUsageState);
+            return;
+        }
+        if (!classUsageState.tryMarkReinstrumentationScheduled()) {
+            return;
+        }
+
         Class<?> clazz = classUsageState.getClazzWeakRef().get();
         if (clazz == null) {
             // Class reference lost (unloaded) since retransformation scheduled; can skip retransformation since
@@ -67,16 +111,49 @@ public final class NonopCore implements NonopStaticHooks.MethodCalled, NonopClas
             return;
         }
 
-        try {
-            instrumentation.retransformClasses(clazz);
-        } catch (Exception e) {
-            nonopLogger.error("Failed to reinstrument classes to remove method usage instrumentation of already used methods; performance may suffer.", e);
+        // The retransform count shows how much churn the policy causes for the class
+        if (nonopLogger.isDebugEnabled()) {
+            nonopLogger.debug("scheduleRetransformation: " + clazz.getName() + " in " + delayMillis + " ms, previous retransforms: " + classUsageState.getRetransformCount());
+        }
+        retransformationScheduler.schedule(clazz, delayMillis);
+    }
+
+    /**
+     * Calls to guarded methods don't reach the hook, so if no other method becomes strippable the class would never be
+     * considered again. Check it again later instead, backing off so classes that are never ready cost little.
+     */
+    private void scheduleRetransformCheck(ClassUsageState classUsageState) {
+        Class<?> clazz = classUsageState.getClazzWeakRef().get();
+        if (clazz == null || !classUsageState.tryMarkRetransformCheckScheduled()) {
+            return;
         }
-        // TODO: Schedule and run in a different thread
+        int previousChecks = classUsageState.getRetransformCheckCount();
+        long delayMillis = Math.min(RETRANSFORM_CHECK_MAX_MILLIS, RETRANSFORM_CHECK_MIN_MILLIS << Math.min(previousChecks, 16));
+        int retransformCount = classUsageState.getRetransformCount();
+        retransformationScheduler.scheduleCheck(clazz, delayMillis, c -> checkRetransformation(c, retransformCount));
+    }
+
+    // Called on the retransformation scheduler's thread
+    private void checkRetransformation(Class<?> clazz, int retransformCountWhenScheduled) {
+        ClassUsageState classUsageState = getClassUsageState(clazz);
+        if (classUsageState == null) {
+            return;
+        }
+        classUsageState.recordRetransformCheck();
+        // Not needed if the class was retransformed in the meantime; its next strippable method makes it a candidate
+        if (classUsageState.getRetransformCount() == retransformCountWhenScheduled) {
+            considerRetransformation(classUsageState);
+        }
+    }
+
+    @Override
+    public void registerMethodTable(@Nullable ClassLoader loader, String className, MethodUsageSnapshot initialUsage, ProbeConfig.ProbeStrategy probeStrategy) {
+        jvmRegistry.getClassLoaderRegistry(loader).registerMethodTable(className, initialUsage, probeStrategy);
     }
 
     @Override
-    public Set<Pair<String, String>> usageSnapshotForInstrumentation(Class<?> clazz) {
-        return getClassUsageState(clazz).recordInstrumentationWithSnapshotOfUsage();
+    public @Nullable MethodUsageSnapshot usageSnapshotForInstrumentation(Class<?> clazz) {
+        ClassUsageState classUsageState = getClassUsageState(clazz);
+        return classUsageState != null ? classUsageState.recordInstrumentationWithSnapshotOfUsage() : null;
     }
 }
\ No newline at end of file
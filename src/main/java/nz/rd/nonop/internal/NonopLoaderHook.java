@@ -0,0 +1,41 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Template for the hook class that is defined inside each instrumented ClassLoader. Instrumented code calls this class
+ * by name, so the call resolves to the copy in the class's own ClassLoader. Its target is a {@code static final} bound
+ * once for that ClassLoader, so the JIT can treat it as a constant and inline the call.
+ * <p>
+ * If a copy couldn't be defined in a ClassLoader then the name resolves through normal delegation to the agent's own
+ * copy, which still works, just without the loader-local binding.
+ */
+public final class NonopLoaderHook {
+
+    private static final NonopStaticHooks.MethodCalled METHOD_CALLED =
+            NonopStaticHooks.methodCalledForClassLoader(NonopLoaderHook.class.getClassLoader());
+
+    private NonopLoaderHook() {
+    }
+
+    // Called by instrumented code (Phase 0)
+    public static void methodCalled(Class<?> clazz, int methodOrdinal) {
+        METHOD_CALLED.methodCalled(clazz, methodOrdinal);
+    }
+
+    // Called from the type initializer of instrumented classes that have a usage guard field
+    public static long @Nullable [] usageGuard(Class<?> clazz) {
+        return METHOD_CALLED.usageGuard(clazz);
+    }
+
+    // Bootstrap for invokedynamic probes, linked once per probe; the method ordinal is a static bootstrap argument
+    public static CallSite bootstrap(MethodHandles.Lookup lookup, String name, MethodType type, int methodOrdinal) {
+        return new SelfDisarmingCallSite(lookup.lookupClass(), methodOrdinal, METHOD_CALLED);
+    }
+}
@@ -2,22 +2,59 @@
 
 package nz.rd.nonop.internal;
 
-// TODO: Instead of having a global hook, add one per ClassLoader to (a) make lookup fast and (b) avoid leaks
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Connects instrumented code to the agent. Instrumented code calls {@link NonopLoaderHook}, which binds to a target
+ * from here once per ClassLoader.
+ */
 public final class NonopStaticHooks {
 
     private static MethodCalled methodCalled;
+    private static @Nullable MethodCalledForClassLoader methodCalledForClassLoader;
 
-    public static void initialize(MethodCalled methodCalled) {
+    public static void initialize(MethodCalled methodCalled, MethodCalledForClassLoader methodCalledForClassLoader) {
         NonopStaticHooks.methodCalled = methodCalled;
+        NonopStaticHooks.methodCalledForClassLoader = methodCalledForClassLoader;
+    }
+
+    // Global dispatch, for hooks bound before a per-ClassLoader target is available
+    public static void methodCalled(Class<?> clazz, int methodOrdinal) {
+        methodCalled.methodCalled(clazz, methodOrdinal);
     }
 
-    // Called by instrumented code (Phase 0)
-    public static void methodCalled(Class<?> clazz, String methodName, String methodDescriptor) {
-        methodCalled.methodCalled(clazz, methodName, methodDescriptor);
+    private static final MethodCalled GLOBAL_DISPATCH = new MethodCalled() {
+        @Override
+        public void methodCalled(Class<?> clazz, int methodOrdinal) {
+            NonopStaticHooks.methodCalled(clazz, methodOrdinal);
+        }
+
+        @Override
+        public long @Nullable [] usageGuard(Class<?> clazz) {
+            return NonopStaticHooks.methodCalled.usageGuard(clazz);
+        }
+    };
+
+    // Called once per ClassLoader, when its NonopLoaderHook class is initialized
+    public static MethodCalled methodCalledForClassLoader(@Nullable ClassLoader classLoader) {
+        MethodCalledForClassLoader forClassLoader = NonopStaticHooks.methodCalledForClassLoader;
+        if (forClassLoader == null) {
+            return GLOBAL_DISPATCH;
+        }
+        return forClassLoader.methodCalledForClassLoader(classLoader);
     }
 
     public static interface MethodCalled {
-        // TODO: Change to take methodName ("method") and methodDescriptor ("()V") separately since they are already stored in classfile constants, so we can reuse them and reduce memory usage
-        void methodCalled(Class<?> clazz, String methodName, String methodDescriptor);
+        // Method ordinal is a constant baked into the instrumented code; see MethodTable for the name and descriptor
+        void methodCalled(Class<?> clazz, int methodOrdinal);
+
+        // Read by instrumented code to skip the hook for methods whose bit is set; null if there's no guard
+        default long @Nullable [] usageGuard(Class<?> clazz) {
+            return null;
+        }
+    }
+
+    public static interface MethodCalledForClassLoader {
+        MethodCalled methodCalledForClassLoader(@Nullable ClassLoader classLoader);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,57 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+
+/**
+ * Call site for an invokedynamic probe. Its first call reports the method as used, then relinks the call site to a
+ * no-op, so once the JIT sees the new target the probe costs nothing and the class never needs retransforming.
+ * <p>
+ * Relinking isn't synchronized with other threads ({@link MutableCallSite#syncAll} is too expensive to call per
+ * method), so a thread racing with the first call may still report the method. That's recorded as a repeat call.
+ */
+public final class SelfDisarmingCallSite extends MutableCallSite {
+
+    private static final MethodType PROBE_TYPE = MethodType.methodType(void.class);
+    private static final MethodHandle FIRST_CALL;
+    private static final MethodHandle NO_OP;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            FIRST_CALL = lookup.findVirtual(SelfDisarmingCallSite.class, "firstCall", PROBE_TYPE);
+            NO_OP = lookup.findStatic(SelfDisarmingCallSite.class, "noOp", PROBE_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Class<?> clazz;
+    private final int methodOrdinal;
+    private final NonopStaticHooks.MethodCalled methodCalled;
+
+    public SelfDisarmingCallSite(Class<?> clazz, int methodOrdinal, NonopStaticHooks.MethodCalled methodCalled) {
+        super(PROBE_TYPE);
+        this.clazz = clazz;
+        this.methodOrdinal = methodOrdinal;
+        this.methodCalled = methodCalled;
+        setTarget(FIRST_CALL.bindTo(this));
+    }
+
+    private void firstCall() {
+        // Disarm before reporting, so a call back into the method while reporting doesn't report again
+        setTarget(NO_OP);
+        try {
+            methodCalled.methodCalled(clazz, methodOrdinal);
+        } catch (Throwable t) {
+            // Same as the Advice probe: never let the agent break the instrumented method
+        }
+    }
+
+    private static void noOp() {
+    }
+}
@@ -0,0 +1,177 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.baseline;
+
+import nz.rd.nonop.internal.logging.ConsoleNonopLogger;
+import nz.rd.nonop.internal.logging.NonopLogger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Converts usage output, in any format, into a {@link MappedUsageBaseline} index, which {@code nonop.baseline} can
+ * name instead of the output itself.
+ * <p>
+ * Run from the agent jar, with the usage output of one or more runs:
+ * <pre>
+ * java -cp nonop-agent.jar nz.rd.nonop.internal.baseline.BaselineIndexBuilder INDEX USAGE_FILE...
+ * </pre>
+ */
+public final class BaselineIndexBuilder {
+
+    static final int DEFAULT_BLOCK_SIZE = 16;
+
+    private final int blockSize;
+    private final Set<String> keys = new HashSet<>();
+    private final Set<String> classKeys = new HashSet<>();
+
+    public BaselineIndexBuilder() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param blockSize Keys per front-coded block. Larger blocks make the index smaller and lookups scan further.
+     */
+    BaselineIndexBuilder(int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be at least 1: " + blockSize);
+        }
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Adds the used methods in a usage output file.
+     *
+     * @return The number of lines that couldn't be read, which are skipped.
+     */
+    public int addUsage(Path usageFile, NonopLogger nonopLogger) throws IOException {
+        if (MappedUsageBaseline.isIndex(usageFile)) {
+            throw new IOException("Already a baseline index, not usage output: " + usageFile);
+        }
+        return UsageLogReader.read(usageFile, this::add, nonopLogger);
+    }
+
+    void add(String classKey, String methodKey) {
+        keys.add(classKey + (char) MappedUsageBaseline.SEPARATOR + methodKey);
+        classKeys.add(classKey);
+    }
+
+    /**
+     * Writes the index. It's written to a temporary file then moved into place, so JVMs opening the index never see
+     * it half written, and JVMs that already mapped an older index keep their copy.
+     *
+     * @return The number of methods in the index.
+     */
+    public int write(Path index) throws IOException {
+        byte[][] sortedKeys = new byte[keys.size()][];
+        int k = 0;
+        for (String key : keys) {
+            sortedKeys[k++] = key.getBytes(StandardCharsets.UTF_8);
+        }
+        Arrays.sort(sortedKeys, BaselineIndexBuilder::compareUnsigned);
+
+        int blockCount = (sortedKeys.length + blockSize - 1) / blockSize;
+        int[] blockOffsets = new int[blockCount];
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (int i = 0; i < sortedKeys.length; i++) {
+            byte[] key = sortedKeys[i];
+            int shared = 0;
+            if (i % blockSize == 0) {
+                blockOffsets[i / blockSize] = data.size();
+            } else {
+                shared = sharedPrefixLength(sortedKeys[i - 1], key);
+                writeVarint(data, shared);
+            }
+            writeVarint(data, key.length - shared);
+            data.write(key, shared, key.length - shared);
+        }
+
+        Path absoluteIndex = index.toAbsolutePath();
+        Path parent = absoluteIndex.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = Files.createTempFile(parent, absoluteIndex.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.write(MappedUsageBaseline.MAGIC);
+                out.writeInt(MappedUsageBaseline.VERSION);
+                out.writeInt(sortedKeys.length);
+                out.writeInt(blockSize);
+                out.writeInt(blockCount);
+                out.writeInt(classKeys.size());
+                for (int offset : blockOffsets) {
+                    out.writeInt(offset);
+                }
+                data.writeTo(out);
+            }
+            try {
+                Files.move(temp, absoluteIndex, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, absoluteIndex, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return sortedKeys.length;
+    }
+
+    private static int compareUnsigned(byte[] a, byte[] b) {
+        int common = Math.min(a.length, b.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private static int sharedPrefixLength(byte[] a, byte[] b) {
+        int common = Math.min(a.length, b.length);
+        int i = 0;
+        while (i < common && a[i] == b[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineIndexBuilder INDEX USAGE_FILE...");
+            System.exit(2);
+            return;
+        }
+        NonopLogger nonopLogger = new ConsoleNonopLogger(NonopLogger.Level.WARN, System.err);
+        BaselineIndexBuilder builder = new BaselineIndexBuilder();
+        for (int i = 1; i < args.length; i++) {
+            Path usageFile = Paths.get(args[i]);
+            int malformed = builder.addUsage(usageFile, nonopLogger);
+            if (malformed > 0) {
+                nonopLogger.warn("Skipped {} unreadable lines in {}", malformed, usageFile);
+            }
+        }
+        Path index = Paths.get(args[0]);
+        int methodCount = builder.write(index);
+        System.err.println("Wrote " + methodCount + " methods of " + builder.classKeys.size() + " classes to " + index);
+    }
+}
@@ -0,0 +1,46 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.baseline;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A baseline held on the heap, read from usage output at startup. Not modified once loaded, so safe to read from any
+ * thread after that.
+ */
+final class HashUsageBaseline implements UsageBaseline {
+
+    private final Path source;
+    private final Map<String, Set<String>> methodsByClass = new HashMap<>();
+    private int methodCount = 0;
+
+    HashUsageBaseline(Path source) {
+        this.source = source;
+    }
+
+    void add(String classKey, String methodKey) {
+        if (methodsByClass.computeIfAbsent(classKey, k -> new HashSet<>()).add(methodKey)) {
+            methodCount++;
+        }
+    }
+
+    @Override
+    public boolean containsClass(String classKey) {
+        return methodsByClass.containsKey(classKey);
+    }
+
+    @Override
+    public boolean isUsed(String classKey, String methodKey) {
+        Set<String> methods = methodsByClass.get(classKey);
+        return methods != null && methods.contains(methodKey);
+    }
+
+    @Override
+    public String toString() {
+        return "HashUsageBaseline{source=" + source + ", classes=" + methodsByClass.size() + ", methods=" + methodCount + '}';
+    }
+}
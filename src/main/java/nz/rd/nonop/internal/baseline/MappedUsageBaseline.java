@@ -0,0 +1,304 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.baseline;
+
+import nz.rd.nonop.internal.model.MethodTable;
+import nz.rd.nonop.internal.model.MethodUsageSnapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A baseline read straight from a memory-mapped index written by {@link BaselineIndexBuilder}, so nothing is parsed or
+ * held on the heap at startup, and JVMs on the same host share the index's pages in the page cache. Lookups take
+ * O(log n) time. Safe to use from any thread.
+ * <p>
+ * The index is a sorted table of keys, each a class key, a tab, and a method key, compared as unsigned UTF-8 bytes. All
+ * numbers are big-endian.
+ * <ul>
+ *     <li>Header: the magic bytes, then ints for the format version, the number of keys, the keys per block, the
+ *     number of blocks and the number of classes.</li>
+ *     <li>Block offsets: an int per block, the offset of the block from the start of the key data. Fixed width, so
+ *     blocks can be binary searched by their first key.</li>
+ *     <li>Key data: the blocks of keys. Each block's first key is written in full, as a varint length then the bytes.
+ *     Later keys are front coded: a varint count of the bytes shared with the key before, then a varint length and the
+ *     bytes of the rest.</li>
+ * </ul>
+ * Varints are unsigned, seven bits to a byte, low bits first, as in the binary usage format.
+ */
+public final class MappedUsageBaseline implements UsageBaseline {
+
+    static final byte[] MAGIC = {'N', 'O', 'N', 'O', 'P', 'I', 'D', 'X'};
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = MAGIC.length + 5 * 4;
+    static final byte SEPARATOR = '\t';
+
+    // Results of scanning a block
+    private static final int FOUND = 0;
+    private static final int NOT_FOUND = 1;
+    private static final int END_OF_BLOCK = 2;
+
+    private final Path source;
+    private final ByteBuffer index;
+    private final int keyCount;
+    private final int blockSize;
+    private final int blockCount;
+    private final int classCount;
+    private final int dataStart;
+
+    private MappedUsageBaseline(Path source, ByteBuffer index) throws IOException {
+        this.source = source;
+        this.index = index;
+        if (index.capacity() < HEADER_SIZE || !isIndex(index)) {
+            throw new IOException("Not a nonop baseline index: " + source);
+        }
+        int version = index.getInt(MAGIC.length);
+        if (version != VERSION) {
+            throw new IOException("Unsupported nonop baseline index version " + version + ": " + source);
+        }
+        this.keyCount = index.getInt(MAGIC.length + 4);
+        this.blockSize = index.getInt(MAGIC.length + 8);
+        this.blockCount = index.getInt(MAGIC.length + 12);
+        this.classCount = index.getInt(MAGIC.length + 16);
+        this.dataStart = HEADER_SIZE + 4 * blockCount;
+        if (keyCount < 0 || blockSize < 1 || blockCount != (keyCount + blockSize - 1) / blockSize || dataStart > index.capacity()) {
+            throw new IOException("Corrupt nonop baseline index header: " + source);
+        }
+        for (int block = 0; block < blockCount; block++) {
+            int offset = blockOffset(block);
+            if (offset < 0 || offset >= index.capacity() - dataStart) {
+                throw new IOException("Corrupt nonop baseline index block offset: " + source);
+            }
+        }
+    }
+
+    /**
+     * Maps the index. The mapping lasts until the baseline is garbage collected.
+     */
+    public static MappedUsageBaseline open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Baseline index too large to map: " + path + " is " + size + " bytes");
+            }
+            return new MappedUsageBaseline(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Whether the file starts like a baseline index.
+     */
+    public static boolean isIndex(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            while (magic.hasRemaining() && channel.read(magic, magic.position()) >= 0) {
+                // Keep reading
+            }
+            return isIndex(magic);
+        }
+    }
+
+    private static boolean isIndex(ByteBuffer buffer) {
+        byte[] magic = new byte[MAGIC.length];
+        for (int i = 0; i < magic.length && i < buffer.capacity(); i++) {
+            magic[i] = buffer.get(i);
+        }
+        return Arrays.equals(magic, MAGIC);
+    }
+
+    @Override
+    public boolean containsClass(String classKey) {
+        return contains((classKey + (char) SEPARATOR).getBytes(StandardCharsets.UTF_8), true);
+    }
+
+    @Override
+    public boolean isUsed(String classKey, String methodKey) {
+        return contains((classKey + (char) SEPARATOR + methodKey).getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    /**
+     * @param prefix Whether any key starting with the target matches, rather than only the target itself.
+     */
+    private boolean contains(byte[] target, boolean prefix) {
+        if (keyCount == 0) {
+            return false;
+        }
+        int block = lastBlockStartingAtMost(target);
+        int result = scanBlock(block, target, prefix);
+        if (result == END_OF_BLOCK && block + 1 < blockCount) {
+            // Every key in the block is before the target, but keys starting with it may begin the next block
+            result = scanBlock(block + 1, target, prefix);
+        }
+        return result == FOUND;
+    }
+
+    /**
+     * Finds the class's keys with one search, then reads them in order, rather than searching for each method.
+     */
+    @Override
+    public MethodUsageSnapshot usedMethods(String className, MethodTable methodTable) {
+        Set<String> methodKeys = methodKeysOf(UsageBaseline.classKey(className));
+        if (methodKeys.isEmpty()) {
+            return MethodUsageSnapshot.noneUsed(methodTable);
+        }
+        BitSet used = new BitSet(methodTable.getMethodCount());
+        for (int i = 0; i < methodTable.getMethodCount(); i++) {
+            if (methodKeys.contains(UsageBaseline.methodKey(methodTable.getMethodName(i), methodTable.getMethodDescriptor(i)))) {
+                used.set(i);
+            }
+        }
+        return new MethodUsageSnapshot(methodTable, used);
+    }
+
+    private Set<String> methodKeysOf(String classKey) {
+        Set<String> methodKeys = new HashSet<>();
+        if (keyCount == 0) {
+            return methodKeys;
+        }
+        byte[] prefix = (classKey + (char) SEPARATOR).getBytes(StandardCharsets.UTF_8);
+        byte[] key = new byte[prefix.length + 64];
+        int position = 0;
+        for (int k = lastBlockStartingAtMost(prefix) * blockSize; k < keyCount; k++) {
+            int shared = 0;
+            if (k % blockSize == 0) {
+                position = dataStart + blockOffset(k / blockSize);
+            } else {
+                long sharedAndSize = readVarint(position);
+                shared = (int) sharedAndSize;
+                position += (int) (sharedAndSize >>> 32);
+            }
+            long lengthAndSize = readVarint(position);
+            int suffixLength = (int) lengthAndSize;
+            position += (int) (lengthAndSize >>> 32);
+            int keyLength = shared + suffixLength;
+            if (key.length < keyLength) {
+                key = Arrays.copyOf(key, Math.max(keyLength, key.length * 2));
+            }
+            for (int i = 0; i < suffixLength; i++) {
+                key[shared + i] = index.get(position + i);
+            }
+            position += suffixLength;
+
+            int common = Math.min(keyLength, prefix.length);
+            int cmp = 0;
+            for (int i = 0; i < common && cmp == 0; i++) {
+                cmp = (key[i] & 0xFF) - (prefix[i] & 0xFF);
+            }
+            if (cmp == 0 && keyLength > prefix.length) {
+                methodKeys.add(new String(key, prefix.length, keyLength - prefix.length, StandardCharsets.UTF_8));
+            } else if (cmp > 0) {
+                break; // Past the class's keys
+            }
+        }
+        return methodKeys;
+    }
+
+    /**
+     * @return The last block whose first key is at most the target, or the first block.
+     */
+    private int lastBlockStartingAtMost(byte[] target) {
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (compareFirstKey(mid, target) <= 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private int compareFirstKey(int block, byte[] target) {
+        int position = dataStart + blockOffset(block);
+        long lengthAndSize = readVarint(position);
+        int length = (int) lengthAndSize;
+        position += (int) (lengthAndSize >>> 32);
+        int common = Math.min(length, target.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = (index.get(position + i) & 0xFF) - (target[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - target.length;
+    }
+
+    /**
+     * Compares the target with each key of the block in order, without decoding them. Tracks how many leading bytes
+     * the current key shares with the target: because keys are sorted, a key that shares fewer bytes with the key
+     * before it than that is past the target, and one that shares more is still before it.
+     */
+    private int scanBlock(int block, byte[] target, boolean prefix) {
+        int keysInBlock = Math.min(blockSize, keyCount - block * blockSize);
+        int position = dataStart + blockOffset(block);
+        int matched = 0; // Leading bytes the previous key shares with the target
+        for (int key = 0; key < keysInBlock; key++) {
+            int shared = 0;
+            if (key > 0) {
+                long sharedAndSize = readVarint(position);
+                shared = (int) sharedAndSize;
+                position += (int) (sharedAndSize >>> 32);
+            }
+            long lengthAndSize = readVarint(position);
+            int suffixLength = (int) lengthAndSize;
+            position += (int) (lengthAndSize >>> 32);
+            int suffixStart = position;
+            position += suffixLength;
+
+            if (shared < matched) {
+                return NOT_FOUND; // Differs from the previous key, and so the target, earlier; past the target
+            }
+            if (shared > matched) {
+                continue; // Differs from the target where the previous key did, the same way; still before it
+            }
+            int i = 0;
+            while (i < suffixLength && matched < target.length && index.get(suffixStart + i) == target[matched]) {
+                i++;
+                matched++;
+            }
+            if (matched == target.length) {
+                // The key starts with the target, so is at or past it
+                return prefix || i == suffixLength ? FOUND : NOT_FOUND;
+            }
+            if (i < suffixLength && (index.get(suffixStart + i) & 0xFF) > (target[matched] & 0xFF)) {
+                return NOT_FOUND;
+            }
+        }
+        return END_OF_BLOCK;
+    }
+
+    private int blockOffset(int block) {
+        return index.getInt(HEADER_SIZE + 4 * block);
+    }
+
+    /**
+     * @return The value in the low 32 bits, and the number of bytes read in the high 32 bits.
+     */
+    private long readVarint(int position) {
+        int value = 0;
+        for (int i = 0; i < 5; i++) {
+            int b = index.get(position + i);
+            value |= (b & 0x7F) << (7 * i);
+            if ((b & 0x80) == 0) {
+                return ((long) (i + 1) << 32) | (value & 0xFFFFFFFFL);
+            }
+        }
+        throw new IllegalStateException("Corrupt nonop baseline index: varint too long at " + position + " in " + source);
+    }
+
+    @Override
+    public String toString() {
+        return "MappedUsageBaseline{source=" + source + ", classes=" + classCount + ", methods=" + keyCount
+                + ", bytes=" + index.capacity() + '}';
+    }
+}
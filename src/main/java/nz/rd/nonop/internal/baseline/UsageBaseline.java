@@ -0,0 +1,97 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.baseline;
+
+import nz.rd.nonop.internal.logging.NonopLogger;
+import nz.rd.nonop.internal.model.MethodTable;
+import nz.rd.nonop.internal.model.MethodUsageSnapshot;
+import nz.rd.nonop.internal.reporting.format.DescriptorCache;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.BitSet;
+
+/**
+ * Methods already known to be used, e.g. from a previous run's usage output. The transformer treats them as used when
+ * a class is first loaded, so they're never instrumented.
+ * <p>
+ * Methods are matched by class name, method name and parameter types, as the simple format writes them. The return
+ * type isn't written by every format, so it's ignored. Class names are compared with {@code $} replaced by {@code .},
+ * because usage output has canonical names while the transformer sees binary names.
+ */
+public interface UsageBaseline {
+
+    UsageBaseline EMPTY = new UsageBaseline() {
+        @Override
+        public boolean containsClass(String classKey) {
+            return false;
+        }
+
+        @Override
+        public boolean isUsed(String classKey, String methodKey) {
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "UsageBaseline{empty}";
+        }
+    };
+
+    /**
+     * @param classKey A class name from {@link #classKey(String)}.
+     */
+    boolean containsClass(String classKey);
+
+    /**
+     * @param classKey  A class name from {@link #classKey(String)}.
+     * @param methodKey A method from {@link #methodKey(String, String)}.
+     */
+    boolean isUsed(String classKey, String methodKey);
+
+    /**
+     * The methods of the class that the baseline records as used; none if the class isn't in the baseline.
+     */
+    default MethodUsageSnapshot usedMethods(String className, MethodTable methodTable) {
+        String classKey = classKey(className);
+        if (!containsClass(classKey)) {
+            return MethodUsageSnapshot.noneUsed(methodTable);
+        }
+        BitSet used = new BitSet(methodTable.getMethodCount());
+        for (int i = 0; i < methodTable.getMethodCount(); i++) {
+            if (isUsed(classKey, methodKey(methodTable.getMethodName(i), methodTable.getMethodDescriptor(i)))) {
+                used.set(i);
+            }
+        }
+        return new MethodUsageSnapshot(methodTable, used);
+    }
+
+    static String classKey(String className) {
+        return className.replace('$', '.');
+    }
+
+    /**
+     * The method's name and parameter types, e.g. {@code equals(java.lang.Object)}.
+     *
+     * @throws IllegalArgumentException If the descriptor is malformed.
+     */
+    static String methodKey(String methodName, String methodDescriptor) {
+        return methodName + '(' + DescriptorCache.shared().parameterTypes(methodDescriptor) + ')';
+    }
+
+    /**
+     * Maps an index written by {@link BaselineIndexBuilder}, or reads the used methods from usage output in any format,
+     * written to a plain file or a memory-mapped log.
+     */
+    static UsageBaseline load(Path path, NonopLogger nonopLogger) throws IOException {
+        if (MappedUsageBaseline.isIndex(path)) {
+            return MappedUsageBaseline.open(path);
+        }
+        HashUsageBaseline baseline = new HashUsageBaseline(path);
+        int malformed = UsageLogReader.read(path, baseline::add, nonopLogger);
+        if (malformed > 0) {
+            nonopLogger.warn("Skipped {} unreadable lines in usage baseline {}", malformed, path);
+        }
+        return baseline;
+    }
+}
@@ -0,0 +1,130 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.baseline;
+
+import nz.rd.nonop.internal.logging.NonopLogger;
+import nz.rd.nonop.internal.out.MappedUsageLog;
+import nz.rd.nonop.internal.reporting.format.BinaryUsageDecoder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Reads the used methods from usage output written in any format, to a plain file or a memory-mapped log. Each used
+ * method is passed on as a class key and method key, as described by {@link UsageBaseline}.
+ */
+final class UsageLogReader {
+
+    private final BiConsumer<String, String> usedMethods;
+    private int malformed = 0;
+
+    private UsageLogReader(BiConsumer<String, String> usedMethods) {
+        this.usedMethods = usedMethods;
+    }
+
+    /**
+     * @return The number of lines that couldn't be read, which are skipped.
+     */
+    static int read(Path path, BiConsumer<String, String> usedMethods, NonopLogger nonopLogger) throws IOException {
+        UsageLogReader reader = new UsageLogReader(usedMethods);
+        if (MappedUsageLog.isUsageLog(path)) {
+            List<byte[]> records = MappedUsageLog.readRecords(path);
+            if (!records.isEmpty() && BinaryUsageDecoder.isBinaryUsageOutput(new ByteArrayInputStream(records.get(0)))) {
+                try (InputStream in = BinaryUsageDecoder.open(path)) {
+                    reader.readBinary(in, path, nonopLogger);
+                }
+            } else {
+                for (byte[] record : records) {
+                    reader.readLine(new String(record, StandardCharsets.UTF_8));
+                }
+            }
+        } else {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+                if (BinaryUsageDecoder.isBinaryUsageOutput(in)) {
+                    reader.readBinary(in, path, nonopLogger);
+                } else {
+                    BufferedReader lines = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                    String line;
+                    while ((line = lines.readLine()) != null) {
+                        reader.readLine(line);
+                    }
+                }
+            }
+        }
+        return reader.malformed;
+    }
+
+    private void readBinary(InputStream in, Path path, NonopLogger nonopLogger) throws IOException {
+        BinaryUsageDecoder decoder = new BinaryUsageDecoder((timestamp, className, methodName, descriptor) -> {
+            try {
+                usedMethods.accept(UsageBaseline.classKey(className), UsageBaseline.methodKey(methodName, descriptor));
+            } catch (IllegalArgumentException e) {
+                malformed++;
+            }
+        });
+        try {
+            decoder.decode(in);
+        } catch (EOFException e) {
+            // Every method before the partial entry has been read
+            nonopLogger.warn("Usage baseline {} ends partway through an entry; it was probably still being written", path);
+        }
+    }
+
+    private void readLine(String line) {
+        line = line.trim();
+        if (line.isEmpty()) {
+            return;
+        }
+        try {
+            if (line.charAt(0) == '{') {
+                readJson(line);
+            } else {
+                readSimple(line);
+            }
+        } catch (IllegalArgumentException e) {
+            malformed++;
+        }
+    }
+
+    // com.example.Foo.bar(java.lang.String,int)
+    private void readSimple(String line) {
+        int open = line.indexOf('(');
+        int dot = open < 0 ? -1 : line.lastIndexOf('.', open);
+        if (dot <= 0 || dot + 1 == open || line.charAt(line.length() - 1) != ')') {
+            throw new IllegalArgumentException("Not a method: " + line);
+        }
+        usedMethods.accept(UsageBaseline.classKey(line.substring(0, dot)), line.substring(dot + 1));
+    }
+
+    // {"timestamp":1700000000000,"type":"method-called","class":"com.example.Foo","method":"bar","descriptor":"(I)V"}
+    private void readJson(String line) {
+        if (!"method-called".equals(jsonString(line, "type"))) {
+            throw new IllegalArgumentException("Not a method-called event: " + line);
+        }
+        usedMethods.accept(UsageBaseline.classKey(jsonString(line, "class")),
+                UsageBaseline.methodKey(jsonString(line, "method"), jsonString(line, "descriptor")));
+    }
+
+    /**
+     * Finds a string field. Enough for what the JSON formatter writes, whose strings never need escaping.
+     */
+    private static String jsonString(String line, String name) {
+        String prefix = "\"" + name + "\":\"";
+        int start = line.indexOf(prefix);
+        int end = start < 0 ? -1 : line.indexOf('"', start + prefix.length());
+        if (end < 0) {
+            throw new IllegalArgumentException("Missing " + name + ": " + line);
+        }
+        return line.substring(start + prefix.length(), end);
+    }
+}
@@ -0,0 +1,213 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.config;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Represents a rule for matching the methods of a scanned class. Like {@link ScanMatcher}, but evaluated for each
+ * method of a class that's already been matched, to leave methods nobody cares about uninstrumented.
+ */
+public interface MethodScanMatcher {
+
+    /**
+     * @return {@link Boolean#TRUE} if this rule positively matches and implies inclusion,
+     *         {@link Boolean#FALSE} if this rule positively matches and implies exclusion,
+     *         {@code null} if this rule does not apply to the given method.
+     */
+    Boolean eval(ScannedMethod method);
+
+    /**
+     * @return {@code true} if the rule's intent is to include, {@code false} if to exclude.
+     */
+    boolean isEffectivelyInclude();
+
+    /**
+     * @return A string representation of the original pattern this matcher was created from.
+     */
+    String getPatternString();
+
+    /**
+     * What method rules can see of a method.
+     */
+    interface ScannedMethod {
+        /**
+         * @return The method's name, or {@code <init>} for constructors.
+         */
+        String getName();
+
+        String getDescriptor();
+
+        /**
+         * @return The fully qualified names of the method's annotations, including those only retained in the
+         *         classfile.
+         */
+        List<String> getAnnotationTypeNames();
+
+        /**
+         * @return True if the method only gets or sets a field.
+         */
+        boolean isTrivialAccessor();
+    }
+
+    abstract class AbstractMethodScanMatcher implements MethodScanMatcher {
+        protected final String originalPatternString;
+
+        public AbstractMethodScanMatcher(String originalPatternString) {
+            this.originalPatternString = originalPatternString;
+        }
+
+        @Override
+        public boolean isEffectivelyInclude() {
+            return true;
+        }
+
+        @Override
+        public String getPatternString() {
+            return originalPatternString;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            AbstractMethodScanMatcher that = (AbstractMethodScanMatcher) o;
+            return Objects.equals(originalPatternString, that.originalPatternString);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(getClass(), originalPatternString);
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "{" + originalPatternString + "}";
+        }
+    }
+
+    class NotMatcher extends AbstractMethodScanMatcher {
+        private final @NonNull MethodScanMatcher innerMatcher;
+
+        public NotMatcher(@NonNull MethodScanMatcher innerMatcher, String originalPatternString) {
+            super(originalPatternString);
+            this.innerMatcher = innerMatcher;
+        }
+
+        @Override
+        public Boolean eval(ScannedMethod method) {
+            Boolean innerEval = innerMatcher.eval(method);
+            return (innerEval == null) ? null : !innerEval;
+        }
+
+        @Override
+        public boolean isEffectivelyInclude() {
+            return !innerMatcher.isEffectivelyInclude();
+        }
+
+        public @NonNull MethodScanMatcher getInnerMatcher() {
+            return innerMatcher;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "{" + innerMatcher + "}";
+        }
+    }
+
+    class MatchAllMatcher extends AbstractMethodScanMatcher {
+        public MatchAllMatcher(String originalPatternString) {
+            super(originalPatternString);
+        }
+
+        @Override
+        public Boolean eval(ScannedMethod method) {
+            return Boolean.TRUE;
+        }
+    }
+
+    /**
+     * Matches methods by name, or by name prefix if the pattern ends with '*', e.g. "get*".
+     */
+    class NameMatcher extends AbstractMethodScanMatcher {
+        private final String name;
+        private final boolean prefix;
+
+        public NameMatcher(String name, boolean prefix, String originalPatternString) {
+            super(originalPatternString);
+            this.name = name;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Boolean eval(ScannedMethod method) {
+            String methodName = method.getName();
+            return (prefix ? methodName.startsWith(name) : methodName.equals(name)) ? Boolean.TRUE : null;
+        }
+    }
+
+    /**
+     * Matches methods with an annotation, by fully qualified name or, if the pattern has no package, by simple name.
+     */
+    class AnnotationMatcher extends AbstractMethodScanMatcher {
+        private final String annotationName;
+
+        public AnnotationMatcher(String annotationName, String originalPatternString) {
+            super(originalPatternString);
+            this.annotationName = annotationName;
+        }
+
+        @Override
+        public Boolean eval(ScannedMethod method) {
+            boolean simpleName = annotationName.indexOf('.') == -1;
+            for (String typeName : method.getAnnotationTypeNames()) {
+                if (simpleName) {
+                    // Nested annotation types are named Outer$Name
+                    int start = Math.max(typeName.lastIndexOf('.'), typeName.lastIndexOf('$')) + 1;
+                    if (typeName.length() - start == annotationName.length() && typeName.startsWith(annotationName, start)) {
+                        return Boolean.TRUE;
+                    }
+                } else if (typeName.equals(annotationName)) {
+                    return Boolean.TRUE;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Matches the equals, hashCode and toString methods declared by {@link Object}.
+     */
+    class ObjectMethodsMatcher extends AbstractMethodScanMatcher {
+        public ObjectMethodsMatcher(String originalPatternString) {
+            super(originalPatternString);
+        }
+
+        @Override
+        public Boolean eval(ScannedMethod method) {
+            String name = method.getName();
+            String descriptor = method.getDescriptor();
+            boolean objectMethod = (name.equals("equals") && descriptor.equals("(Ljava/lang/Object;)Z")) ||
+                    (name.equals("hashCode") && descriptor.equals("()I")) ||
+                    (name.equals("toString") && descriptor.equals("()Ljava/lang/String;"));
+            return objectMethod ? Boolean.TRUE : null;
+        }
+    }
+
+    /**
+     * Matches methods that only get or set a field.
+     */
+    class AccessorMatcher extends AbstractMethodScanMatcher {
+        public AccessorMatcher(String originalPatternString) {
+            super(originalPatternString);
+        }
+
+        @Override
+        public Boolean eval(ScannedMethod method) {
+            return method.isTrivialAccessor() ? Boolean.TRUE : null;
+        }
+    }
+}
@@ -23,6 +23,12 @@ public interface ScanMatcher {
      */
     Boolean eval(String fqClassName);
 
+    /**
+     * Like {@link #eval(String)}, but for a JVM internal class name (e.g., "java/lang/String"). Doesn't allocate, so it
+     * can be used to skip classes before any other work is done on them.
+     */
+    Boolean evalInternalName(String internalClassName);
+
     /**
      * Indicates the fundamental intent of this rule if it were to match something.
      * For example, "com.example.*" is effectively an include rule, while "!com.example.*"
@@ -46,13 +52,46 @@ public interface ScanMatcher {
             this.originalPatternString = originalPatternString;
         }
 
-        protected String normalizeClassName(String fqClassName) {
-            // Match against the main class name, removing inner class suffixes like $Inner
-            int innerClassMarker = fqClassName.indexOf('$');
-            if (innerClassMarker != -1) {
-                return fqClassName.substring(0, innerClassMarker);
+        @Override
+        public Boolean eval(String fqClassName) {
+            return evalName(fqClassName, '.');
+        }
+
+        @Override
+        public Boolean evalInternalName(String internalClassName) {
+            return evalName(internalClassName, '/');
+        }
+
+        /**
+         * @param packageSeparator The separator used in className; patterns always use '.'.
+         */
+        protected abstract Boolean evalName(String className, char packageSeparator);
+
+        /**
+         * Match against the main class name, ignoring inner class suffixes like $Inner.
+         *
+         * @return The end of the main class name within the class name.
+         */
+        protected static int mainClassNameEnd(String className) {
+            int innerClassMarker = className.indexOf('$');
+            return innerClassMarker != -1 ? innerClassMarker : className.length();
+        }
+
+        /**
+         * Whether the region of the class name from start to end equals the pattern, with the class name's package
+         * separators matching the pattern's '.'.
+         */
+        protected static boolean regionEquals(String pattern, String className, int start, int end, char packageSeparator) {
+            if (end - start != pattern.length()) {
+                return false;
+            }
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = className.charAt(start + i);
+                if (c != pattern.charAt(i) && !(c == packageSeparator && pattern.charAt(i) == '.')) {
+                    return false;
+                }
             }
-            return fqClassName;
+            return true;
         }
 
         @Override
@@ -90,8 +129,8 @@ public interface ScanMatcher {
         }
 
         @Override
-        public Boolean eval(String fqClassName) {
-            Boolean innerEval = innerMatcher.eval(fqClassName);
+        protected Boolean evalName(String className, char packageSeparator) {
+            Boolean innerEval = packageSeparator == '/' ? innerMatcher.evalInternalName(className) : innerMatcher.eval(className);
             return (innerEval == null) ? null : !innerEval;
         }
 
@@ -122,7 +161,7 @@ public interface ScanMatcher {
         }
 
         @Override
-        public Boolean eval(String fqClassName) {
+        protected Boolean evalName(String className, char packageSeparator) {
             return Boolean.TRUE; // Always matches and implies inclusion by default
         }
 
@@ -144,20 +183,30 @@ public interface ScanMatcher {
         }
 
         @Override
-        public Boolean eval(String fqClassName) {
-            String mainClassName = normalizeClassName(fqClassName);
-            if (mainClassName.equals(this.pattern)) { // Exact match for package name itself (e.g. "com.foo" matches "com.foo")
+        protected Boolean evalName(String className, char packageSeparator) {
+            int mainEnd = mainClassNameEnd(className);
+            if (regionEquals(this.pattern, className, 0, mainEnd, packageSeparator)) { // Exact match for package name itself (e.g. "com.foo" matches "com.foo")
                 return Boolean.TRUE;
             }
-            if (mainClassName.startsWith(this.pattern + ".")) { // Standard package prefix (e.g. "com.foo" matches "com.foo.Bar")
+            if (mainEnd > this.pattern.length() && className.charAt(this.pattern.length()) == packageSeparator &&
+                    regionEquals(this.pattern, className, 0, this.pattern.length(), packageSeparator)) { // Standard package prefix (e.g. "com.foo" matches "com.foo.Bar")
                 return Boolean.TRUE;
             }
-            if (this.pattern.isEmpty() && !mainClassName.contains(".")) { // Match default package classes if pattern is "" (from "*")
+            if (this.pattern.isEmpty() && hasEmptyPackage(className, mainEnd, packageSeparator)) { // Match default package classes if pattern is "" (from "*")
                 return Boolean.TRUE;
             }
             return null; // No match
         }
 
+        /**
+         * Whether the main class name has no package, or an empty one before a leading separator; the names the empty
+         * prefix matches. Shared with {@link ScanRuleTrie} so the two agree.
+         */
+        static boolean hasEmptyPackage(String className, int mainEnd, char packageSeparator) {
+            int separator = className.indexOf(packageSeparator);
+            return separator <= 0 || separator >= mainEnd;
+        }
+
         @Override
         public boolean isEffectivelyInclude() {
             return true;
@@ -176,9 +225,8 @@ public interface ScanMatcher {
         }
 
         @Override
-        public Boolean eval(String fqClassName) {
-            String mainClassName = normalizeClassName(fqClassName);
-            return mainClassName.equals(this.pattern) ? Boolean.TRUE : null;
+        protected Boolean evalName(String className, char packageSeparator) {
+            return regionEquals(this.pattern, className, 0, mainClassNameEnd(className), packageSeparator) ? Boolean.TRUE : null;
         }
 
         @Override
@@ -199,11 +247,10 @@ public interface ScanMatcher {
         }
 
         @Override
-        public Boolean eval(String fqClassName) {
-            String mainClassName = normalizeClassName(fqClassName);
-            int lastDot = mainClassName.lastIndexOf('.');
-            String simpleName = (lastDot == -1) ? mainClassName : mainClassName.substring(lastDot + 1);
-            return simpleName.equals(this.pattern) ? Boolean.TRUE : null;
+        protected Boolean evalName(String className, char packageSeparator) {
+            int mainEnd = mainClassNameEnd(className);
+            int lastSeparator = className.lastIndexOf(packageSeparator, mainEnd - 1);
+            return regionEquals(this.pattern, className, lastSeparator + 1, mainEnd, packageSeparator) ? Boolean.TRUE : null;
         }
 
         @Override
@@ -56,6 +56,18 @@ public class ScanRuleParser {
             "^(" + PACKAGE_PART + "(?:\\." + PACKAGE_PART + ")*)\\.(" + CLASS_NAME_CONVENTION + ")$"
     );
 
+    // Method rules
+    private static final Pattern METHOD_NAME = Pattern.compile(
+            // e.g., toString, get*, <init>
+            "^(<init>|" + JAVA_IDENTIFIER + ")(\\*)?$"
+    );
+    private static final Pattern ANNOTATION = Pattern.compile(
+            // e.g., @Generated, @javax.annotation.Generated
+            "^@(" + JAVA_IDENTIFIER + "(?:\\." + JAVA_IDENTIFIER + ")*)$"
+    );
+    private static final String ACCESSORS = ":accessors";
+    private static final String OBJECT_METHODS = ":objectmethods";
+
     public ScanRuleParser(NonopLogger logger) {
         this.logger = logger;
     }
@@ -87,6 +99,20 @@ public class ScanRuleParser {
      * @return A list of {@link ScanMatcher}s found on the line.
      */
     @NonNull List<ScanMatcher> parseLine(@NonNull String lineString) {
+        List<ScanMatcher> scanMatchers = new ArrayList<>();
+        for (String ruleString : splitLine(lineString)) {
+            @Nullable ScanMatcher sm = parseSingleRule(ruleString);
+            if (sm != null) {
+                scanMatchers.add(sm);
+            }
+        }
+        return scanMatchers;
+    }
+
+    /**
+     * Splits a line into its trimmed, non-empty rule strings, ignoring comments.
+     */
+    private @NonNull List<String> splitLine(@NonNull String lineString) {
         // Strip comments
         String processedLine = lineString;
         Matcher matcher = COMMENT_PATTERN.matcher(processedLine);
@@ -99,19 +125,16 @@ public class ScanRuleParser {
             return Collections.emptyList();
         }
 
-        List<ScanMatcher> scanMatchers = new ArrayList<>();
+        List<String> trimmedRuleStrings = new ArrayList<>();
         String[] ruleStrings = RULE_SEPARATOR_PATTERN.split(processedLine);
         for (String ruleString : ruleStrings) {
             String trimmedRuleString = ruleString.trim(); // Trim individual rule strings again, split might leave whitespace if not part of separator
             if (trimmedRuleString.isEmpty()) { // Skip empty strings that might result from multiple separators like ",,"
                 continue;
             }
-            @Nullable ScanMatcher sm = parseSingleRule(trimmedRuleString);
-            if (sm != null) {
-                scanMatchers.add(sm);
-            }
+            trimmedRuleStrings.add(trimmedRuleString);
         }
-        return scanMatchers;
+        return trimmedRuleStrings;
     }
 
 
@@ -186,4 +209,74 @@ public class ScanRuleParser {
                         "'. Pattern does not match any recognized format."
         );
     }
-}
\ No newline at end of file
+
+    /**
+     * Parses method rules, using the same layout as class rules: separated by commas, semicolons or whitespace, over
+     * multiple lines, with comments.
+     *
+     * @param rulesInput The string containing method rules.
+     * @return A list of {@link MethodScanMatcher}s. Returns an empty list if rulesInput is null or empty.
+     */
+    public List<MethodScanMatcher> parseMethodRules(@Nullable String rulesInput) {
+        List<MethodScanMatcher> matchers = new ArrayList<>();
+        if (rulesInput == null || rulesInput.trim().isEmpty()) {
+            return matchers;
+        }
+
+        for (String line : rulesInput.split("\\r?\\n")) {
+            for (String ruleString : splitLine(line)) {
+                matchers.add(parseSingleMethodRule(ruleString));
+            }
+        }
+        return matchers;
+    }
+
+    /**
+     * Parses a single method rule string into a {@link MethodScanMatcher}. Rules are a method name ("toString"), a
+     * method name prefix ("get*"), an annotation ("@Generated" or "@javax.annotation.Generated"), ":accessors" for
+     * methods that only get or set a field, ":objectmethods" for equals, hashCode and toString, or "*". Any rule can be
+     * negated with "!".
+     *
+     * @param ruleString The non-null, non-empty, trimmed rule string.
+     * @throws IllegalArgumentException if the ruleString is invalid.
+     */
+    @NonNull
+    MethodScanMatcher parseSingleMethodRule(@NonNull String ruleString) {
+        String trimmedRuleString = ruleString.trim();
+
+        if (trimmedRuleString.startsWith("!")) {
+            if (trimmedRuleString.substring(1).trim().isEmpty()) {
+                throw new IllegalArgumentException(
+                        "[ScanRuleParser] Invalid method rule string: '" + ruleString +
+                                "'. Negation cannot be applied to an empty or null rule."
+                );
+            }
+            return new MethodScanMatcher.NotMatcher(parseSingleMethodRule(trimmedRuleString.substring(1)), trimmedRuleString);
+        }
+
+        if (MATCH_ALL.matcher(trimmedRuleString).matches()) {
+            return new MethodScanMatcher.MatchAllMatcher(trimmedRuleString);
+        }
+        if (trimmedRuleString.equals(ACCESSORS)) {
+            return new MethodScanMatcher.AccessorMatcher(trimmedRuleString);
+        }
+        if (trimmedRuleString.equals(OBJECT_METHODS)) {
+            return new MethodScanMatcher.ObjectMethodsMatcher(trimmedRuleString);
+        }
+
+        Matcher annotationMatcher = ANNOTATION.matcher(trimmedRuleString);
+        if (annotationMatcher.matches()) {
+            return new MethodScanMatcher.AnnotationMatcher(annotationMatcher.group(1), trimmedRuleString);
+        }
+
+        Matcher methodNameMatcher = METHOD_NAME.matcher(trimmedRuleString);
+        if (methodNameMatcher.matches()) {
+            return new MethodScanMatcher.NameMatcher(methodNameMatcher.group(1), methodNameMatcher.group(2) != null, trimmedRuleString);
+        }
+
+        throw new IllegalArgumentException(
+                "[ScanRuleParser] Invalid method rule string: '" + ruleString +
+                        "'. Pattern does not match any recognized format."
+        );
+    }
+}
@@ -0,0 +1,205 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.config;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An ordered list of {@link ScanMatcher}s compiled into character tries, so a class name can be matched against
+ * thousands of rules in time proportional to the name's length, without allocating.
+ * <p>
+ * Gives the same decision as evaluating the matchers in order: the first matcher with a non-null decision wins. If no
+ * matcher applies, the class is matched unless the last matcher was an include, since the user was then listing the
+ * classes they wanted.
+ */
+public final class ScanRuleTrie {
+
+    private static final int NO_RULE = Integer.MAX_VALUE;
+
+    private final List<ScanMatcher> matchers;
+    // The decision each matcher gives when it applies, with any negations unwrapped; null for other rules
+    private final @Nullable Boolean[] decisions;
+    // Package prefixes and fully qualified class names
+    private final Node qualifiedNameRoot;
+    private final Node simpleNameRoot;
+    private final int defaultPackageRule;
+    private final int matchAllRule;
+    // Matchers of unknown types, evaluated in order
+    private final int[] otherRules;
+    private final boolean noRuleDecision;
+
+    private ScanRuleTrie(List<ScanMatcher> matchers, Boolean[] decisions, Node qualifiedNameRoot, Node simpleNameRoot, int defaultPackageRule, int matchAllRule, int[] otherRules, boolean noRuleDecision) {
+        this.matchers = matchers;
+        this.decisions = decisions;
+        this.qualifiedNameRoot = qualifiedNameRoot;
+        this.simpleNameRoot = simpleNameRoot;
+        this.defaultPackageRule = defaultPackageRule;
+        this.matchAllRule = matchAllRule;
+        this.otherRules = otherRules;
+        this.noRuleDecision = noRuleDecision;
+    }
+
+    public static ScanRuleTrie compile(List<ScanMatcher> matchers) {
+        Boolean[] decisions = new Boolean[matchers.size()];
+        Node qualifiedNameRoot = new Node();
+        Node simpleNameRoot = new Node();
+        int defaultPackageRule = NO_RULE;
+        int matchAllRule = NO_RULE;
+        List<Integer> otherRules = new ArrayList<>();
+
+        for (int rule = 0; rule < matchers.size(); rule++) {
+            ScanMatcher matcher = matchers.get(rule);
+            boolean decision = true;
+            while (matcher instanceof ScanMatcher.NotMatcher) {
+                decision = !decision;
+                matcher = ((ScanMatcher.NotMatcher) matcher).getInnerMatcher();
+            }
+
+            // Rules are visited in order, so only the first rule for each pattern is kept
+            if (matcher instanceof ScanMatcher.MatchAllMatcher) {
+                matchAllRule = Math.min(matchAllRule, rule);
+            } else if (matcher instanceof ScanMatcher.PackagePrefixMatcher) {
+                String pattern = ((ScanMatcher.PackagePrefixMatcher) matcher).pattern;
+                if (pattern.isEmpty()) {
+                    defaultPackageRule = Math.min(defaultPackageRule, rule);
+                } else {
+                    Node node = qualifiedNameRoot.getOrAddPath(pattern);
+                    node.packageRule = Math.min(node.packageRule, rule);
+                }
+            } else if (matcher instanceof ScanMatcher.FqcnMatcher) {
+                Node node = qualifiedNameRoot.getOrAddPath(((ScanMatcher.FqcnMatcher) matcher).pattern);
+                node.classRule = Math.min(node.classRule, rule);
+            } else if (matcher instanceof ScanMatcher.ClassNameSuffixMatcher) {
+                Node node = simpleNameRoot.getOrAddPath(((ScanMatcher.ClassNameSuffixMatcher) matcher).pattern);
+                node.classRule = Math.min(node.classRule, rule);
+            } else {
+                otherRules.add(rule);
+                continue;
+            }
+            decisions[rule] = decision;
+        }
+
+        boolean noRuleDecision = !matchers.isEmpty() && !matchers.get(matchers.size() - 1).isEffectivelyInclude();
+        return new ScanRuleTrie(matchers, decisions, qualifiedNameRoot, simpleNameRoot, defaultPackageRule, matchAllRule,
+                otherRules.stream().mapToInt(Integer::intValue).toArray(), noRuleDecision);
+    }
+
+    public boolean matches(String className, char packageSeparator) {
+        int rule = firstApplicableRule(className, packageSeparator);
+        if (rule == NO_RULE) {
+            return noRuleDecision;
+        }
+        Boolean decision = decisions[rule];
+        return decision != null ? decision : evalOtherRule(rule, className, packageSeparator);
+    }
+
+    /**
+     * @return The first matcher with a decision for the class name, or null if none applies.
+     */
+    public @Nullable ScanMatcher firstApplicableMatcher(String className, char packageSeparator) {
+        int rule = firstApplicableRule(className, packageSeparator);
+        return rule == NO_RULE ? null : matchers.get(rule);
+    }
+
+    private int firstApplicableRule(String className, char packageSeparator) {
+        // Match against the main class name, ignoring inner class suffixes like $Inner
+        int innerClassMarker = className.indexOf('$');
+        int mainEnd = innerClassMarker != -1 ? innerClassMarker : className.length();
+
+        int first = matchAllRule;
+
+        Node node = qualifiedNameRoot;
+        for (int i = 0; i < mainEnd && node != null; i++) {
+            char c = className.charAt(i);
+            if (c == packageSeparator) {
+                // A package prefix followed by a separator
+                first = Math.min(first, node.packageRule);
+                c = '.';
+            }
+            node = node.child(c);
+        }
+        if (node != null) {
+            // The whole main class name
+            first = Math.min(first, Math.min(node.packageRule, node.classRule));
+        }
+
+        node = simpleNameRoot;
+        for (int i = className.lastIndexOf(packageSeparator, mainEnd - 1) + 1; i < mainEnd && node != null; i++) {
+            node = node.child(className.charAt(i));
+        }
+        if (node != null) {
+            first = Math.min(first, node.classRule);
+        }
+
+        if (defaultPackageRule < first && ScanMatcher.PackagePrefixMatcher.hasEmptyPackage(className, mainEnd, packageSeparator)) {
+            first = defaultPackageRule;
+        }
+
+        for (int rule : otherRules) {
+            if (rule >= first) {
+                break;
+            }
+            if (evalOtherRule(rule, className, packageSeparator) != null) {
+                first = rule;
+                break;
+            }
+        }
+
+        return first;
+    }
+
+    private @Nullable Boolean evalOtherRule(int rule, String className, char packageSeparator) {
+        ScanMatcher matcher = matchers.get(rule);
+        return packageSeparator == '/' ? matcher.evalInternalName(className) : matcher.eval(className);
+    }
+
+    private static final class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        // Sorted by key, for binary search
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+
+        // The first PackagePrefixMatcher for the path to this node
+        private int packageRule = NO_RULE;
+        // The first FqcnMatcher, or ClassNameSuffixMatcher in the simple name trie, for the path to this node
+        private int classRule = NO_RULE;
+
+        @Nullable Node child(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node getOrAddPath(String path) {
+            Node node = this;
+            for (int i = 0; i < path.length(); i++) {
+                node = node.getOrAddChild(path.charAt(i));
+            }
+            return node;
+        }
+
+        private Node getOrAddChild(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertion = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertion);
+            System.arraycopy(children, 0, newChildren, 0, insertion);
+            newKeys[insertion] = key;
+            newChildren[insertion] = new Node();
+            System.arraycopy(keys, insertion, newKeys, insertion + 1, keys.length - insertion);
+            System.arraycopy(children, insertion, newChildren, insertion + 1, children.length - insertion);
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[insertion];
+        }
+    }
+}
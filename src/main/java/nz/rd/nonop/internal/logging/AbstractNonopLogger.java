@@ -20,6 +20,24 @@ public abstract class AbstractNonopLogger implements NonopLogger {
         outputLog(level, message, throwable);
     }
 
+    /**
+     * Replaces each {@code {}} in the format with the next argument. A trailing {@link Throwable} argument that isn't
+     * used by a placeholder is logged as the throwable.
+     */
+    private void logFormatted(Level level, String format, @Nullable Object[] args) {
+        StringBuilder sb = new StringBuilder(format.length() + 16 * args.length);
+        int used = 0;
+        int start = 0;
+        int placeholder;
+        while (used < args.length && (placeholder = format.indexOf("{}", start)) >= 0) {
+            sb.append(format, start, placeholder).append(args[used++]);
+            start = placeholder + 2;
+        }
+        sb.append(format, start, format.length());
+        Object last = args.length == 0 ? null : args[args.length - 1];
+        outputLog(level, sb.toString(), used < args.length && last instanceof Throwable ? (Throwable) last : null);
+    }
+
     /**
      * Subclasses should override this to output a log item which has been confirmed as needing to be logged.
      */
@@ -43,6 +61,24 @@ public abstract class AbstractNonopLogger implements NonopLogger {
 
     }
     @Override
+    public final void debug(String format, @Nullable Object arg) {
+        if (isDebugEnabled()) {
+            logFormatted(Level.DEBUG, format, new Object[] {arg});
+        }
+    }
+    @Override
+    public final void debug(String format, @Nullable Object arg1, @Nullable Object arg2) {
+        if (isDebugEnabled()) {
+            logFormatted(Level.DEBUG, format, new Object[] {arg1, arg2});
+        }
+    }
+    @Override
+    public final void debug(String format, @Nullable Object... args) {
+        if (isDebugEnabled()) {
+            logFormatted(Level.DEBUG, format, args);
+        }
+    }
+    @Override
     public final boolean isInfoEnabled() {
         return enabledLevel.ordinal() <= Level.INFO.ordinal();
     }
@@ -56,6 +92,24 @@ public abstract class AbstractNonopLogger implements NonopLogger {
 
     }
     @Override
+    public final void info(String format, @Nullable Object arg) {
+        if (isInfoEnabled()) {
+            logFormatted(Level.INFO, format, new Object[] {arg});
+        }
+    }
+    @Override
+    public final void info(String format, @Nullable Object arg1, @Nullable Object arg2) {
+        if (isInfoEnabled()) {
+            logFormatted(Level.INFO, format, new Object[] {arg1, arg2});
+        }
+    }
+    @Override
+    public final void info(String format, @Nullable Object... args) {
+        if (isInfoEnabled()) {
+            logFormatted(Level.INFO, format, args);
+        }
+    }
+    @Override
     public final boolean isWarnEnabled() {
         return enabledLevel.ordinal() <= Level.WARN.ordinal();
     }
@@ -69,6 +123,24 @@ public abstract class AbstractNonopLogger implements NonopLogger {
         logIfEnabled(Level.WARN, message, throwable);
     }
     @Override
+    public final void warn(String format, @Nullable Object arg) {
+        if (isWarnEnabled()) {
+            logFormatted(Level.WARN, format, new Object[] {arg});
+        }
+    }
+    @Override
+    public final void warn(String format, @Nullable Object arg1, @Nullable Object arg2) {
+        if (isWarnEnabled()) {
+            logFormatted(Level.WARN, format, new Object[] {arg1, arg2});
+        }
+    }
+    @Override
+    public final void warn(String format, @Nullable Object... args) {
+        if (isWarnEnabled()) {
+            logFormatted(Level.WARN, format, args);
+        }
+    }
+    @Override
     public final boolean isErrorEnabled() {
         return enabledLevel.ordinal() <= Level.ERROR.ordinal();
     }
@@ -80,4 +152,22 @@ public abstract class AbstractNonopLogger implements NonopLogger {
     public final void error(String message, Throwable throwable) {
         logIfEnabled(Level.ERROR, message, throwable);
     }
+    @Override
+    public final void error(String format, @Nullable Object arg) {
+        if (isErrorEnabled()) {
+            logFormatted(Level.ERROR, format, new Object[] {arg});
+        }
+    }
+    @Override
+    public final void error(String format, @Nullable Object arg1, @Nullable Object arg2) {
+        if (isErrorEnabled()) {
+            logFormatted(Level.ERROR, format, new Object[] {arg1, arg2});
+        }
+    }
+    @Override
+    public final void error(String format, @Nullable Object... args) {
+        if (isErrorEnabled()) {
+            logFormatted(Level.ERROR, format, args);
+        }
+    }
 }
@@ -0,0 +1,155 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.logging;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands log records to a daemon thread, which writes them to a {@link LogOutput}. Threads that log only add the record
+ * to a bounded queue, so they never wait for the output, or for a lock the app's own logging holds. When the queue is
+ * full, records are dropped and counted, and the writer thread logs how many were dropped.
+ */
+public final class AsyncNonopLogger extends AbstractNonopLogger {
+
+    private static final long IDLE_POLL_MILLIS = 100;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 2000;
+
+    private static final class LogRecord {
+        final long timestampMillis;
+        final Level level;
+        final String threadName;
+        final String message;
+        final @Nullable Throwable throwable;
+
+        LogRecord(long timestampMillis, Level level, String threadName, String message, @Nullable Throwable throwable) {
+            this.timestampMillis = timestampMillis;
+            this.level = level;
+            this.threadName = threadName;
+            this.message = message;
+            this.throwable = throwable;
+        }
+    }
+
+    // Queued by close() to wake the writer thread without interrupting it, since an interrupt closes a file channel
+    private static final LogRecord CLOSE = new LogRecord(0, Level.OFF, "", "", null);
+
+    private final LogOutput output;
+    private final ArrayBlockingQueue<LogRecord> queue;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean closed = false;
+
+    // Only used by the writer thread
+    private long reportedDroppedCount = 0;
+
+    AsyncNonopLogger(Level enabledLevel, LogOutput output, int capacity) {
+        super(enabledLevel);
+        this.output = output;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writerThread = new Thread(this::run, "nonop-log");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    protected void outputLog(@NonNull Level level, @NonNull String message, @Nullable Throwable throwable) {
+        LogRecord record = new LogRecord(System.currentTimeMillis(), level, Thread.currentThread().getName(), message, throwable);
+        if (closed || !queue.offer(record)) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * The number of records dropped because the queue was full or the logger was closed.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private void run() {
+        List<LogRecord> batch = new ArrayList<>();
+        while (true) {
+            boolean closing = closed;
+            queue.drainTo(batch);
+            if (batch.isEmpty()) {
+                if (closing) {
+                    break;
+                }
+                try {
+                    LogRecord record = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (record == null || record == CLOSE) {
+                        continue;
+                    }
+                    batch.add(record);
+                } catch (InterruptedException e) {
+                    continue; // Not expected; keep writing until closed
+                }
+            }
+            write(batch);
+            batch.clear();
+        }
+        write(batch);
+        try {
+            output.close();
+        } catch (IOException e) {
+            System.err.println("[nonop] Error closing log output: " + e);
+        }
+    }
+
+    private void write(List<LogRecord> batch) {
+        try {
+            for (LogRecord record : batch) {
+                if (record == CLOSE) {
+                    continue;
+                }
+                output.writeLine(format(record.timestampMillis, record.level, record.threadName, record.message));
+                if (record.throwable != null) {
+                    StringWriter stackTrace = new StringWriter();
+                    record.throwable.printStackTrace(new PrintWriter(stackTrace));
+                    output.writeLine(stackTrace.toString().trim());
+                }
+            }
+            long dropped = droppedCount.get();
+            if (dropped > reportedDroppedCount) {
+                output.writeLine(format(System.currentTimeMillis(), Level.WARN, Thread.currentThread().getName(),
+                        "Dropped " + (dropped - reportedDroppedCount) + " log records because the log queue was full"));
+                reportedDroppedCount = dropped;
+            }
+            output.flush();
+        } catch (IOException e) {
+            // Nowhere else to log it
+            System.err.println("[nonop] Error writing log: " + e);
+        }
+    }
+
+    private static String format(long timestampMillis, Level level, String threadName, String message) {
+        return "[nonop] " + Instant.ofEpochMilli(timestampMillis) + " " + level.name() + " [" + threadName + "] " + message;
+    }
+
+    /**
+     * Writes the records already queued, then stops the writer thread and closes the output. Records logged after this
+     * are dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        // If the queue is full the writer is busy, and sees the flag once it has drained it
+        queue.offer(CLOSE);
+        try {
+            writerThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
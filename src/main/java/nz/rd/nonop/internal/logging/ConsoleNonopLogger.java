@@ -5,17 +5,29 @@ package nz.rd.nonop.internal.logging;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.io.PrintStream;
+
+/**
+ * Writes each record to a standard stream on the thread that logs it.
+ */
 public final class ConsoleNonopLogger extends AbstractNonopLogger {
 
+    private final PrintStream stream;
+
     public ConsoleNonopLogger(Level level) {
+        this(level, System.out);
+    }
+
+    public ConsoleNonopLogger(Level level, PrintStream stream) {
         super(level);
+        this.stream = stream;
     }
 
     @Override
     protected void outputLog(@NonNull Level level, @NonNull String message, @Nullable Throwable throwable) {
-        System.out.println("[nonop] " + level.name() + " " + message);
+        stream.println("[nonop] " + level.name() + " " + message);
         if (throwable != null) {
-            throwable.printStackTrace(System.out);
+            throwable.printStackTrace(stream);
         }
     }
 
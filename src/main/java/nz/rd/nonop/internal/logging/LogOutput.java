@@ -0,0 +1,39 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.logging;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Where an {@link AsyncNonopLogger} writes its lines. Only used by the log writer thread.
+ */
+interface LogOutput extends Closeable {
+
+    void writeLine(String line) throws IOException;
+
+    void flush() throws IOException;
+
+    /**
+     * Writes to a standard stream, which is left open on close.
+     */
+    static LogOutput of(PrintStream stream) {
+        return new LogOutput() {
+            @Override
+            public void writeLine(String line) {
+                stream.println(line);
+            }
+
+            @Override
+            public void flush() {
+                stream.flush();
+            }
+
+            @Override
+            public void close() {
+                stream.flush();
+            }
+        };
+    }
+}
@@ -2,10 +2,23 @@
 
 package nz.rd.nonop.internal.logging;
 
+import nz.rd.nonop.config.LogConfig;
+import nz.rd.nonop.config.OutputConfig;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+
 /**
  * Small embeddable logging framework. We can delegate to others like SLF4J depending on runtime config.
  * <p>
  * Where possible we follow SLF4J naming conventions.
+ * <p>
+ * Like SLF4J, messages can be given as a format with {@code {}} placeholders, which are replaced by the arguments only
+ * if the level is enabled. Callers on hot paths can pass their values without building a string or, for up to two
+ * arguments, an array. If the last argument is a {@link Throwable} that no placeholder uses, it's logged as the
+ * message's throwable.
  */
 public interface NonopLogger extends AutoCloseable {
 
@@ -22,13 +35,51 @@ public interface NonopLogger extends AutoCloseable {
     boolean isDebugEnabled();
     void debug(String message);
     void debug(String message, Throwable throwable);
+    void debug(String format, @Nullable Object arg);
+    void debug(String format, @Nullable Object arg1, @Nullable Object arg2);
+    void debug(String format, @Nullable Object... args);
     boolean isInfoEnabled();
     void info(String message);
     void info(String message, Throwable throwable);
+    void info(String format, @Nullable Object arg);
+    void info(String format, @Nullable Object arg1, @Nullable Object arg2);
+    void info(String format, @Nullable Object... args);
     boolean isWarnEnabled();
     void warn(String message);
     void warn(String message, Throwable throwable);
+    void warn(String format, @Nullable Object arg);
+    void warn(String format, @Nullable Object arg1, @Nullable Object arg2);
+    void warn(String format, @Nullable Object... args);
     boolean isErrorEnabled();
     void error(String message);
     void error(String message, Throwable throwable);
+    void error(String format, @Nullable Object arg);
+    void error(String format, @Nullable Object arg1, @Nullable Object arg2);
+    void error(String format, @Nullable Object... args);
+
+    /**
+     * Creates a logger based on the provided configuration.
+     *
+     * @throws IOException If the log file can't be opened.
+     */
+    static NonopLogger createFromConfig(LogConfig config) throws IOException {
+        OutputConfig.OutputTarget target = config.getOutputTarget();
+        PrintStream stream = null;
+        if (target instanceof OutputConfig.StandardStream) {
+            stream = ((OutputConfig.StandardStream) target).getType() == OutputConfig.StandardStream.Type.STDERR ? System.err : System.out;
+            if (config.getAsyncCapacity() == 0) {
+                return new ConsoleNonopLogger(config.getLevel(), stream);
+            }
+        }
+
+        LogOutput output;
+        if (stream != null) {
+            output = LogOutput.of(stream);
+        } else if (target instanceof OutputConfig.File) {
+            output = new RollingLogFile(Paths.get(((OutputConfig.File) target).getPath()), config.getMaxFileSize(), config.getMaxFiles());
+        } else {
+            throw new IllegalStateException("Unsupported log output target: " + target);
+        }
+        return new AsyncNonopLogger(config.getLevel(), output, config.getAsyncCapacity());
+    }
 }
@@ -0,0 +1,98 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.logging;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A log file that's rotated once it reaches a maximum size. The current file is renamed to {@code <path>.1}, older
+ * files move up one number, and the oldest beyond the number kept is deleted. Appends to an existing file on startup.
+ */
+final class RollingLogFile implements LogOutput {
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final Path path;
+    private final long maxFileSize;
+    private final int maxFiles;
+
+    private OutputStream out;
+    private long size;
+
+    /**
+     * @param maxFiles The number of rotated files to keep; 0 to start the file again when it's full.
+     */
+    RollingLogFile(Path path, long maxFileSize, int maxFiles) throws IOException {
+        this.path = path;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.size = Files.exists(path) ? Files.size(path) : 0;
+        this.out = open(StandardOpenOption.APPEND);
+    }
+
+    private OutputStream open(StandardOpenOption mode) throws IOException {
+        return new BufferedOutputStream(Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode));
+    }
+
+    @Override
+    public void writeLine(String line) throws IOException {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length + LINE_SEPARATOR.length;
+        // A line longer than the maximum size still gets a file to itself
+        if (size > 0 && size + length > maxFileSize) {
+            rotate();
+        }
+        out.write(bytes);
+        out.write(LINE_SEPARATOR);
+        size += length;
+    }
+
+    private void rotate() throws IOException {
+        out.close();
+        boolean rotated = false;
+        try {
+            if (maxFiles > 0) {
+                Files.deleteIfExists(numbered(maxFiles));
+                for (int i = maxFiles - 1; i >= 1; i--) {
+                    Path older = numbered(i);
+                    if (Files.exists(older)) {
+                        Files.move(older, numbered(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                Files.move(path, numbered(1), StandardCopyOption.REPLACE_EXISTING);
+            }
+            rotated = true;
+        } finally {
+            // If a rename failed, keep appending to the current file rather than losing what's logged next
+            out = open(rotated ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND);
+            if (rotated) {
+                size = 0;
+            }
+        }
+    }
+
+    private Path numbered(int number) {
+        return path.resolveSibling(path.getFileName() + "." + number);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
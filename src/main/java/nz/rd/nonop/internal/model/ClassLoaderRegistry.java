@@ -2,25 +2,65 @@
 
 package nz.rd.nonop.internal.model;
 
+import nz.rd.nonop.config.ProbeConfig;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 import java.lang.ref.WeakReference;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class ClassLoaderRegistry {
 
     private final WeakReference<ClassLoader> classLoader;
-    private final Map<Class<?>, ClassUsageState> classUsageStates = new ConcurrentHashMap<>();
+    // Registered at transform time, before the Class object exists, so keyed by class name. Removed once the class's
+    // usage state is created from it.
+    private final Map<String, Registration> registrations = new ConcurrentHashMap<>();
+    // Incremented after each registration, so lookups that found nothing can tell whether to look again
+    private final AtomicInteger registrationCount = new AtomicInteger();
 
     public ClassLoaderRegistry(ClassLoader classLoader) {
         this.classLoader = new WeakReference<>(classLoader);
     }
 
-    public ClassUsageState getOrCreateClassUsageState(Class<?> clazz) {
+    /**
+     * @param initialUsage The class's method table, with any methods that weren't instrumented because they were
+     *                     already known to be used.
+     */
+    public void registerMethodTable(String className, MethodUsageSnapshot initialUsage, ProbeConfig.ProbeStrategy probeStrategy) {
+        registrations.put(className, new Registration(initialUsage, probeStrategy));
+        registrationCount.incrementAndGet();
+    }
+
+    int getRegistrationCount() {
+        return registrationCount.get();
+    }
+
+    /**
+     * @return Null if the class was never given a method table, because it was loaded before the agent or wasn't
+     * instrumented when it was loaded, so its usage isn't tracked. The registration is consumed, so this must only be
+     * called once for a class that's tracked.
+     */
+    @Nullable ClassUsageState createClassUsageState(Class<?> clazz, int callsBeforeStripping) {
         // Sanity check match the class loader of the class with this registry's class loader
         if (clazz.getClassLoader() != classLoader.get()) {
             throw new IllegalArgumentException("Class " + clazz.getName() + " does not belong to this ClassLoaderRegistry's class loader.");
         }
 
-        return classUsageStates.computeIfAbsent(clazz, k -> new ClassUsageState(clazz));
+        Registration registration = registrations.remove(clazz.getName());
+        if (registration == null) {
+            return null;
+        }
+        return new ClassUsageState(clazz, registration.initialUsage, callsBeforeStripping, registration.probeStrategy);
+    }
+
+    private static final class Registration {
+        final MethodUsageSnapshot initialUsage;
+        final ProbeConfig.ProbeStrategy probeStrategy;
+
+        Registration(MethodUsageSnapshot initialUsage, ProbeConfig.ProbeStrategy probeStrategy) {
+            this.initialUsage = initialUsage;
+            this.probeStrategy = probeStrategy;
+        }
     }
 }
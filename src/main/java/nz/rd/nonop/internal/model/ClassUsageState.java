@@ -2,88 +2,291 @@
 
 package nz.rd.nonop.internal.model;
 
-import org.apache.commons.lang3.tuple.ImmutablePair;
-import org.apache.commons.lang3.tuple.Pair;
+import nz.rd.nonop.config.ProbeConfig;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.lang.ref.WeakReference;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Tracks which methods of a class have been called. Lock-free, so many threads calling freshly loaded methods at once
+ * don't contend on a monitor.
+ * <p>
+ * Each method ordinal has two bits of state, packed 32 methods to a word: {@code 00} = unused, {@code 01} = called,
+ * {@code 11} = called enough times that its probe should be stripped. Transitions are made with CAS, and once a method
+ * reaches the final state calls only need a volatile read. When more than two calls are needed before stripping, calls
+ * in between are counted separately.
+ * <p>
+ * The usage guard has one bit per method, set once the method's probe should be stripped. Classes instrumented at
+ * initial load hold it in a static field and check it inline, so later calls skip the hook until the class is
+ * retransformed. Writes are plain, so a bit may be seen late or lost to a racing write to the same word; either way
+ * the call just reaches the hook again, which sets the bit again.
+ */
 public final class ClassUsageState {
     // TODO: Optimize memory by omitting this field if can always be provided by caller
     private final WeakReference<? extends Class<?>> clazzWeakRef;
+    private final MethodTable methodTable;
+    private final int callsBeforeStripping;
+    private final ProbeConfig.ProbeStrategy probeStrategy;
 
-    // Track method call states: no entry = unused, CALLED_ONCE = first call, CALLED_MULTIPLE = second+ call
-    private final Map<Pair<String, String>, MethodCallState> methodCallStates = new HashMap<>();
-    private boolean reinstrumentationScheduled = false;
+    private static final int BITS_PER_METHOD = 2;
+    private static final int METHODS_PER_WORD_SHIFT = 5; // 32 methods per long
+    private static final long STATE_MASK = 0b11L;
+    private static final long CALLED = 0b01L;
+    private static final long STRIPPABLE = 0b11L;
+    private static final long CALLED_BITS = 0x5555555555555555L; // Low bit of every method's state
 
-    public ClassUsageState(Class<?> clazz /*, Collection<String> methodSignatures */) {
+    private final AtomicLongArray methodCallStates;
+    // Calls after the first, while a method is CALLED; only needed when more than two calls are needed to strip
+    private final @Nullable AtomicIntegerArray callCounts;
+    private final long[] usageGuard;
+
+    private static final AtomicIntegerFieldUpdater<ClassUsageState> REINSTRUMENTATION_SCHEDULED =
+            AtomicIntegerFieldUpdater.newUpdater(ClassUsageState.class, "reinstrumentationScheduled");
+    private volatile int reinstrumentationScheduled = 0; // 0 = false, 1 = true
+    private static final AtomicIntegerFieldUpdater<ClassUsageState> RETRANSFORM_CHECK_SCHEDULED =
+            AtomicIntegerFieldUpdater.newUpdater(ClassUsageState.class, "retransformCheckScheduled");
+    private volatile int retransformCheckScheduled = 0; // 0 = false, 1 = true
+    private volatile int retransformCheckCount = 0; // Only updated by the thread running checks
+
+    // Inputs for the RetransformPolicy
+    private final long createdMillis = System.currentTimeMillis();
+    private final LongAdder hookCalls = new LongAdder();
+    private volatile long lastInstrumentationMillis = 0;
+    private volatile int retransformCount = 0; // Only updated by the thread retransforming classes
+
+    public ClassUsageState(Class<?> clazz, MethodTable methodTable) {
+        this(clazz, methodTable, 2);
+    }
+
+    /**
+     * @param callsBeforeStripping The number of calls after which a method is {@link MarkResult#isNowStrippable()
+     *                             strippable}; at least 1.
+     */
+    public ClassUsageState(Class<?> clazz, MethodTable methodTable, int callsBeforeStripping) {
+        this(clazz, MethodUsageSnapshot.noneUsed(methodTable), callsBeforeStripping, ProbeConfig.ProbeStrategy.RETRANSFORM);
+    }
+
+    /**
+     * @param initialUsage  Methods that weren't instrumented because they were already known to be used. They start out
+     *                      strippable and guarded, so they stay uninstrumented when the class is retransformed.
+     * @param probeStrategy How the class's probes were instrumented when it was loaded.
+     */
+    public ClassUsageState(Class<?> clazz, MethodUsageSnapshot initialUsage, int callsBeforeStripping, ProbeConfig.ProbeStrategy probeStrategy) {
+        MethodTable methodTable = initialUsage.getMethodTable();
+        if (callsBeforeStripping < 1) {
+            throw new IllegalArgumentException("callsBeforeStripping must be at least 1: " + callsBeforeStripping);
+        }
         this.clazzWeakRef = new WeakReference<>(clazz);
+        this.methodTable = methodTable;
+        this.callsBeforeStripping = callsBeforeStripping;
+        this.probeStrategy = probeStrategy;
+        int methodCount = methodTable.getMethodCount();
+        this.methodCallStates = new AtomicLongArray((methodCount + (1 << METHODS_PER_WORD_SHIFT) - 1) >>> METHODS_PER_WORD_SHIFT);
+        this.callCounts = callsBeforeStripping > 2 ? new AtomicIntegerArray(methodCount) : null;
+        this.usageGuard = new long[(methodCount + 63) >>> 6];
+        for (int i = initialUsage.nextUsedOrdinal(0); i >= 0; i = initialUsage.nextUsedOrdinal(i + 1)) {
+            int wordIndex = i >>> METHODS_PER_WORD_SHIFT;
+            int shift = (i & ((1 << METHODS_PER_WORD_SHIFT) - 1)) * BITS_PER_METHOD;
+            methodCallStates.set(wordIndex, methodCallStates.get(wordIndex) | (STRIPPABLE << shift));
+            guardMethod(i);
+        }
     }
 
     public WeakReference<? extends Class<?>> getClazzWeakRef() {
         return clazzWeakRef;
     }
 
-    private enum MethodCallState {
-        CALLED_ONCE,
-        CALLED_MULTIPLE
+    public MethodTable getMethodTable() {
+        return methodTable;
+    }
+
+    /**
+     * {@link ProbeConfig.ProbeStrategy#INDY} probes relink themselves to a no-op, so those classes are never
+     * retransformed to strip them.
+     */
+    public ProbeConfig.ProbeStrategy getProbeStrategy() {
+        return probeStrategy;
+    }
+
+    /**
+     * Shared with instrumented code, which must only read it. See the class comment.
+     */
+    public long[] getUsageGuard() {
+        return usageGuard;
     }
 
     public enum MarkResult {
-        FIRST_CALL_NO_ACTION(true, false),
-        SECOND_CALL_INSTRUMENTATION_NEEDED(true, true),
-        SECOND_CALL_INSTRUMENTATION_ALREADY_SCHEDULED(true, false),
+        FIRST_CALL(true, false),
+        FIRST_CALL_NOW_STRIPPABLE(true, true),
+        NOW_STRIPPABLE(false, true),
         SUBSEQUENT_CALL_NO_ACTION(false, false);
 
-        final boolean added;
-        final boolean instrumentationNeeded;
+        final boolean firstCall;
+        final boolean nowStrippable;
 
-        MarkResult(boolean added, boolean instrumentationNeeded) {
-            this.added = added;
-            this.instrumentationNeeded = instrumentationNeeded;
+        MarkResult(boolean firstCall, boolean nowStrippable) {
+            this.firstCall = firstCall;
+            this.nowStrippable = nowStrippable;
         }
 
-        public boolean isAdded() {
-            return added;
+        /**
+         * The method's first call, which should be reported.
+         */
+        public boolean isFirstCall() {
+            return firstCall;
         }
 
-        public boolean isInstrumentationNeeded() {
-            return instrumentationNeeded;
+        /**
+         * The method has just reached the number of calls after which its probe should be stripped. Whether and when
+         * the class is retransformed is up to the {@link RetransformPolicy}.
+         */
+        public boolean isNowStrippable() {
+            return nowStrippable;
         }
     }
 
-    public synchronized MarkResult recordMethodUsedAndDecideIfInstrumentationNeeded(String methodName, String methodDescriptor) {
-        Pair<String, String> methodKey = new ImmutablePair<>(methodName, methodDescriptor);
-        MethodCallState currentState = methodCallStates.get(methodKey);
+    public MarkResult recordMethodUsed(int methodOrdinal) {
+        hookCalls.increment();
+
+        int wordIndex = methodOrdinal >>> METHODS_PER_WORD_SHIFT;
+        int shift = (methodOrdinal & ((1 << METHODS_PER_WORD_SHIFT) - 1)) * BITS_PER_METHOD;
+
+        AtomicIntegerArray callCounts = this.callCounts;
+        if (callCounts != null && ((methodCallStates.get(wordIndex) >>> shift) & STATE_MASK) == CALLED) {
+            // Calls so far are the first call plus those counted here
+            if (callCounts.incrementAndGet(methodOrdinal) + 1 < callsBeforeStripping) {
+                return MarkResult.SUBSEQUENT_CALL_NO_ACTION;
+            }
+        }
+
+        while (true) {
+            long word = methodCallStates.get(wordIndex);
+            long currentState = (word >>> shift) & STATE_MASK;
 
-        if (currentState == null) {
-            // First call - record it but don't trigger reinstrumentation yet
-            methodCallStates.put(methodKey, MethodCallState.CALLED_ONCE);
-            return MarkResult.FIRST_CALL_NO_ACTION;
-        } else if (currentState == MethodCallState.CALLED_ONCE) {
-            // Second call - upgrade state and decide about reinstrumentation
-            methodCallStates.put(methodKey, MethodCallState.CALLED_MULTIPLE);
+            if (currentState == STRIPPABLE) {
+                // No action needed, but the guard bit may have been lost or not yet seen
+                guardMethod(methodOrdinal);
+                return MarkResult.SUBSEQUENT_CALL_NO_ACTION;
+            }
+
+            long newState = currentState == 0 && callsBeforeStripping > 1 ? CALLED : STRIPPABLE;
+            if (!methodCallStates.compareAndSet(wordIndex, word, word | (newState << shift))) {
+                continue; // Another method in the same word changed; retry
+            }
 
-            if (reinstrumentationScheduled) {
-                return MarkResult.SECOND_CALL_INSTRUMENTATION_ALREADY_SCHEDULED;
-            } else {
-                reinstrumentationScheduled = true;
-                return MarkResult.SECOND_CALL_INSTRUMENTATION_NEEDED;
+            if (newState == CALLED) {
+                // First call - record it but don't strip yet
+                return MarkResult.FIRST_CALL;
             }
-        } else {
-            // Third+ call - no action needed
-            return MarkResult.SUBSEQUENT_CALL_NO_ACTION;
+            // Later calls can skip the hook until the class is reinstrumented
+            guardMethod(methodOrdinal);
+            return currentState == 0 ? MarkResult.FIRST_CALL_NOW_STRIPPABLE : MarkResult.NOW_STRIPPABLE;
+        }
+    }
+
+    private void guardMethod(int methodOrdinal) {
+        int index = methodOrdinal >>> 6;
+        long bit = 1L << methodOrdinal;
+        if ((usageGuard[index] & bit) == 0) {
+            usageGuard[index] |= bit;
         }
     }
 
-    public synchronized Set<Pair<String, String>> recordInstrumentationWithSnapshotOfUsage() {
-        // Create snapshot of all methods that have been called at least once
-        // TODO: Performance optimise - perhaps just a wrapped Array?
-        Set<Pair<String, String>> usageSnapshot = new HashSet<>(methodCallStates.keySet());
-        reinstrumentationScheduled = false;
-        return usageSnapshot;
+    /**
+     * @return True if the caller is the first to schedule reinstrumentation since the last one, so should schedule it.
+     */
+    public boolean tryMarkReinstrumentationScheduled() {
+        return REINSTRUMENTATION_SCHEDULED.compareAndSet(this, 0, 1);
+    }
+
+    /**
+     * For a class the {@link RetransformPolicy} wasn't ready to retransform.
+     *
+     * @return True if the caller is the first to schedule a later check of the policy since the last check ran, so
+     * should schedule it.
+     */
+    public boolean tryMarkRetransformCheckScheduled() {
+        return RETRANSFORM_CHECK_SCHEDULED.compareAndSet(this, 0, 1);
+    }
+
+    /**
+     * Called when a scheduled check of the policy runs, before the policy is asked again.
+     */
+    public void recordRetransformCheck() {
+        retransformCheckScheduled = 0;
+        retransformCheckCount++;
+    }
+
+    public MethodUsageSnapshot recordInstrumentationWithSnapshotOfUsage() {
+        // Clear the flag before reading usage: a method becoming strippable while this snapshot is taken is either
+        // included in it, or sees the cleared flag and schedules another reinstrumentation.
+        reinstrumentationScheduled = 0;
+        lastInstrumentationMillis = System.currentTimeMillis();
+        retransformCount++;
+
+        // Create snapshot of all methods that have been called at least once, compacting to one bit per method
+        int wordCount = methodCallStates.length();
+        long[] usedWords = new long[(wordCount + 1) >>> 1];
+        for (int i = 0; i < wordCount; i++) {
+            long usedBits = compactCalledBits(methodCallStates.get(i));
+            usedWords[i >>> 1] |= usedBits << ((i & 1) * 32);
+        }
+        return new MethodUsageSnapshot(methodTable, BitSet.valueOf(usedWords));
+    }
+
+    /**
+     * Gathers the low bit of each of the 32 two-bit states in the word into the low 32 bits of the result.
+     */
+    private static long compactCalledBits(long word) {
+        long x = word & CALLED_BITS;
+        x = (x | (x >>> 1)) & 0x3333333333333333L;
+        x = (x | (x >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | (x >>> 4)) & 0x00FF00FF00FF00FFL;
+        x = (x | (x >>> 8)) & 0x0000FFFF0000FFFFL;
+        x = (x | (x >>> 16)) & 0x00000000FFFFFFFFL;
+        return x;
+    }
+
+    public int getUsedMethodCount() {
+        int usedMethodCount = 0;
+        for (int i = 0; i < methodCallStates.length(); i++) {
+            usedMethodCount += Long.bitCount(methodCallStates.get(i) & CALLED_BITS);
+        }
+        return usedMethodCount;
+    }
+
+    /**
+     * Calls that reached the agent, i.e. calls to methods that were probed and not yet guarded. Calls that skip the
+     * hook because their method is guarded aren't seen by the agent, so aren't counted; they're already cheap.
+     */
+    public long getHookCallCount() {
+        return hookCalls.sum();
+    }
+
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    /**
+     * @return When the class was last retransformed, or 0 if it hasn't been.
+     */
+    public long getLastInstrumentationMillis() {
+        return lastInstrumentationMillis;
+    }
+
+    public int getRetransformCount() {
+        return retransformCount;
+    }
+
+    /**
+     * @return How many scheduled checks of the {@link RetransformPolicy} have run for the class.
+     */
+    public int getRetransformCheckCount() {
+        return retransformCheckCount;
     }
-}
\ No newline at end of file
+}
@@ -2,17 +2,80 @@
 
 package nz.rd.nonop.internal.model;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 import java.util.Map;
 import java.util.WeakHashMap;
 
 public final class JVMRegistry {
-    // TODO: Make a static class in each ClassLoader that holds this reference - classes can call directly without a Map; frees automatically when ClassLoader unloads
     private final Map<ClassLoader, ClassLoaderRegistry> classLoaderRegWeakRefs = new WeakHashMap<>();
-    // TODO: Use a threadlocal cache of the last used WeakReference<ClassLoader> to avoid repeated lookups
+    private final int callsBeforeStripping;
 
-    // TODO: Synchronized is slow; improve with a more efficient concurrent structure later
+    // Usage state is attached directly to each Class, so lookups from instrumented code are lock-free and the state
+    // is freed when the class is unloaded. Creation only happens on a class's first call.
+    private final ClassValue<ClassUsageSlot> classUsageSlots = new ClassValue<ClassUsageSlot>() {
+        @Override
+        protected ClassUsageSlot computeValue(Class<?> clazz) {
+            return new ClassUsageSlot(getClassLoaderRegistry(clazz.getClassLoader()));
+        }
+    };
+
+    /**
+     * Holds a class's usage state once it's created. Untracked classes keep an empty slot, which remembers how many
+     * method tables its ClassLoader had registered when it was checked, so they're only checked again after another
+     * registration.
+     */
+    private static final class ClassUsageSlot {
+        final ClassLoaderRegistry classLoaderRegistry;
+        volatile @Nullable ClassUsageState classUsageState;
+        volatile int checkedRegistrationCount = -1;
+
+        ClassUsageSlot(ClassLoaderRegistry classLoaderRegistry) {
+            this.classLoaderRegistry = classLoaderRegistry;
+        }
+    }
+
+    public JVMRegistry(int callsBeforeStripping) {
+        this.callsBeforeStripping = callsBeforeStripping;
+    }
 
-    public synchronized ClassLoaderRegistry getClassLoaderRegistry(ClassLoader classLoader) {
+    /**
+     * @return The class's usage state, or null if the class has no method table registered, so its usage isn't
+     * tracked.
+     */
+    public @Nullable ClassUsageState getClassUsageState(Class<?> clazz) {
+        ClassUsageSlot slot = classUsageSlots.get(clazz);
+        ClassUsageState classUsageState = slot.classUsageState;
+        if (classUsageState != null) {
+            return classUsageState;
+        }
+        int registrationCount = slot.classLoaderRegistry.getRegistrationCount();
+        if (registrationCount == slot.checkedRegistrationCount) {
+            // Nothing registered in the class's ClassLoader since it was found untracked
+            return null;
+        }
+        return createClassUsageState(clazz, slot, registrationCount);
+    }
+
+    // Locks only the class's own slot, so its registration is consumed exactly once
+    private @Nullable ClassUsageState createClassUsageState(Class<?> clazz, ClassUsageSlot slot, int registrationCount) {
+        synchronized (slot) {
+            ClassUsageState classUsageState = slot.classUsageState;
+            if (classUsageState == null && registrationCount != slot.checkedRegistrationCount) {
+                classUsageState = slot.classLoaderRegistry.createClassUsageState(clazz, callsBeforeStripping);
+                if (classUsageState == null) {
+                    slot.checkedRegistrationCount = registrationCount;
+                } else {
+                    slot.classUsageState = classUsageState;
+                }
+            }
+            return classUsageState;
+        }
+    }
+
+    // Only used at transform time and when a class is first called, so not on the hot path
+    // TODO: Synchronized is slow; improve with a more efficient concurrent structure later
+    public synchronized ClassLoaderRegistry getClassLoaderRegistry(@Nullable ClassLoader classLoader) {
         // Check if the registry already exists
         ClassLoaderRegistry registry = classLoaderRegWeakRefs.get(classLoader);
         if (registry == null) {
@@ -0,0 +1,80 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The instrumentable methods of a class, indexed by a dense ordinal assigned at transform time.
+ * <p>
+ * Instrumented code only passes the ordinal to the hook, so names and descriptors are only looked up here when a usage
+ * event is formatted.
+ */
+public final class MethodTable {
+
+    private final String[] methodNames;
+    private final String[] methodDescriptors;
+
+    // Lazily built, only needed when mapping methods back to ordinals during retransformation
+    private volatile Map<String, Integer> ordinalsByKey;
+
+    public MethodTable(String[] methodNames, String[] methodDescriptors) {
+        if (methodNames.length != methodDescriptors.length) {
+            throw new IllegalArgumentException("Method names and descriptors must have the same length");
+        }
+        this.methodNames = methodNames;
+        this.methodDescriptors = methodDescriptors;
+    }
+
+    public static MethodTable of(List<String> methodNames, List<String> methodDescriptors) {
+        return new MethodTable(methodNames.toArray(new String[0]), methodDescriptors.toArray(new String[0]));
+    }
+
+    public int getMethodCount() {
+        return methodNames.length;
+    }
+
+    public String getMethodName(int methodOrdinal) {
+        return methodNames[methodOrdinal];
+    }
+
+    public String getMethodDescriptor(int methodOrdinal) {
+        return methodDescriptors[methodOrdinal];
+    }
+
+    /**
+     * @param ordinalHint The expected ordinal, checked before falling back to a lookup. When the table was built from
+     *                    the same method list, this avoids the lookup entirely.
+     * @return The ordinal of the given method, or -1 if the method isn't in this table.
+     */
+    public int ordinalOf(String methodName, String methodDescriptor, int ordinalHint) {
+        if (ordinalHint >= 0 && ordinalHint < methodNames.length &&
+                methodNames[ordinalHint].equals(methodName) && methodDescriptors[ordinalHint].equals(methodDescriptor)) {
+            return ordinalHint;
+        }
+        Map<String, Integer> ordinals = ordinalsByKey;
+        if (ordinals == null) {
+            ordinals = new HashMap<>(methodNames.length * 2);
+            for (int i = 0; i < methodNames.length; i++) {
+                ordinals.put(methodNames[i] + methodDescriptors[i], i);
+            }
+            ordinalsByKey = ordinals;
+        }
+        Integer ordinal = ordinals.get(methodName + methodDescriptor);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("MethodTable{");
+        for (int i = 0; i < methodNames.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(i).append('=').append(methodNames[i]).append(methodDescriptors[i]);
+        }
+        return sb.append('}').toString();
+    }
+}
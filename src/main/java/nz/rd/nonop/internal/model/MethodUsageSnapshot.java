@@ -0,0 +1,47 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.model;
+
+import java.util.BitSet;
+
+/**
+ * A point-in-time view of which methods of a class have been used, taken when the class is (re)instrumented.
+ */
+public final class MethodUsageSnapshot {
+
+    private final MethodTable methodTable;
+    private final BitSet usedOrdinals;
+
+    public MethodUsageSnapshot(MethodTable methodTable, BitSet usedOrdinals) {
+        this.methodTable = methodTable;
+        this.usedOrdinals = usedOrdinals;
+    }
+
+    public static MethodUsageSnapshot noneUsed(MethodTable methodTable) {
+        return new MethodUsageSnapshot(methodTable, new BitSet());
+    }
+
+    public MethodTable getMethodTable() {
+        return methodTable;
+    }
+
+    public boolean isUsed(int methodOrdinal) {
+        return usedOrdinals.get(methodOrdinal);
+    }
+
+    /**
+     * @return The first used ordinal at or after the given one, or -1 if there are none.
+     */
+    public int nextUsedOrdinal(int fromOrdinal) {
+        return usedOrdinals.nextSetBit(fromOrdinal);
+    }
+
+    public int getUsedCount() {
+        return usedOrdinals.cardinality();
+    }
+
+    @Override
+    public String toString() {
+        return "MethodUsageSnapshot{usedOrdinals=" + usedOrdinals + '}';
+    }
+}
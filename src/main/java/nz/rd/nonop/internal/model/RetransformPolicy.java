@@ -0,0 +1,27 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.model;
+
+/**
+ * Decides when a class's used methods have their probes stripped by retransforming the class.
+ */
+public interface RetransformPolicy {
+
+    long NOT_YET = -1;
+
+    /**
+     * The number of calls after which a method is strippable. Calls after this skip the hook if the class has a usage
+     * guard, so aren't seen by the policy.
+     */
+    int getCallsBeforeStripping();
+
+    /**
+     * Called each time one of the class's methods becomes strippable, unless a retransformation is already scheduled.
+     * Retransforming the class strips every used method, not just the strippable ones.
+     *
+     * @return How long to wait before retransforming the class, or {@link #NOT_YET} to ask again later: when another
+     * of its methods becomes strippable, or after a delay that grows each time the class is turned down, whichever is
+     * first.
+     */
+    long retransformDelayMillis(ClassUsageState classUsageState, long nowMillis);
+}
@@ -0,0 +1,62 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.model;
+
+import nz.rd.nonop.config.RetransformConfig;
+
+/**
+ * The configured retransform policy: a class is retransformed once enough of its methods are used and it's being
+ * called often enough, but no sooner than a minimum interval after its last retransformation.
+ * <p>
+ * The call rate is the rate of {@link ClassUsageState#getHookCallCount() hook calls}, i.e. calls that still pay for a
+ * probe, not of all calls to the class.
+ */
+public final class ThresholdRetransformPolicy implements RetransformPolicy {
+
+    private final int callsBeforeStripping;
+    private final long minIntervalMillis;
+    private final double minUsedFraction;
+    private final double minCallRate;
+
+    public ThresholdRetransformPolicy(RetransformConfig retransformConfig) {
+        this.callsBeforeStripping = retransformConfig.getCallsBeforeStripping();
+        this.minIntervalMillis = retransformConfig.getMinIntervalMillis();
+        this.minUsedFraction = retransformConfig.getMinUsedFraction();
+        this.minCallRate = retransformConfig.getMinCallRate();
+    }
+
+    @Override
+    public int getCallsBeforeStripping() {
+        return callsBeforeStripping;
+    }
+
+    @Override
+    public long retransformDelayMillis(ClassUsageState classUsageState, long nowMillis) {
+        if (minUsedFraction > 0 &&
+                classUsageState.getUsedMethodCount() < minUsedFraction * classUsageState.getMethodTable().getMethodCount()) {
+            return NOT_YET;
+        }
+        if (minCallRate > 0) {
+            long elapsedMillis = Math.max(1, nowMillis - classUsageState.getCreatedMillis());
+            double callRate = classUsageState.getHookCallCount() * 1000.0 / elapsedMillis;
+            if (callRate < minCallRate) {
+                return NOT_YET;
+            }
+        }
+        long lastInstrumentationMillis = classUsageState.getLastInstrumentationMillis();
+        if (lastInstrumentationMillis == 0) {
+            return 0;
+        }
+        return Math.max(0, lastInstrumentationMillis + minIntervalMillis - nowMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "ThresholdRetransformPolicy{" +
+                "callsBeforeStripping=" + callsBeforeStripping +
+                ", minIntervalMillis=" + minIntervalMillis +
+                ", minUsedFraction=" + minUsedFraction +
+                ", minCallRate=" + minCallRate +
+                '}';
+    }
+}
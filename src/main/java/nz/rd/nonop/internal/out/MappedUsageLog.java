@@ -0,0 +1,320 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.out;
+
+import nz.rd.nonop.internal.logging.NonopLogger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An append-only log of usage lines or binary records in a memory-mapped file. Appending only copies the record into
+ * the mapping, with no write syscall, and once it's there it's in the OS page cache, so it reaches the file even if the
+ * process is killed. {@link #flush()} forces the mapping to disk, so records also survive an OS crash or power loss;
+ * {@link #flushIfDue()} does that at most once per flush interval.
+ * <p>
+ * The file grows in fixed-size segments, which are mapped one at a time. It starts with a {@value #HEADER_SIZE} byte
+ * header: the magic bytes {@code NONOPLOG}, a format version and the segment size. Each record is a 4-byte length then
+ * that many bytes of UTF-8 text or binary data, padded to a multiple of 4 bytes. The length is the commit marker: it's
+ * written after the data, so a record whose length is still 0 was never completed. A length of -1 means the rest of
+ * the segment is unused because the next record didn't fit; records never span segments.
+ * <p>
+ * When an existing log is opened, recovery finds the last complete record, clears anything after it, and appending
+ * continues from there.
+ */
+public final class MappedUsageLog implements UsageOutput {
+
+    static final int HEADER_SIZE = 16;
+    private static final byte[] MAGIC = {'N', 'O', 'N', 'O', 'P', 'L', 'O', 'G'};
+    private static final int VERSION = 1;
+    private static final int SKIP_TO_NEXT_SEGMENT = -1;
+
+    private final NonopLogger nonopLogger;
+    private final FileChannel channel;
+    private final int segmentSize;
+    private final long flushIntervalNanos;
+
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    private int position; // Of the next record in the current segment
+    private byte[] scratch = new byte[256];
+
+    // Written between a record's text and its length, so the length can't be stored first
+    @SuppressWarnings("unused")
+    private volatile int commitFence;
+
+    private boolean unforced = false;
+    private long lastForceNanos = System.nanoTime();
+    private long recordCount = 0;
+    private long droppedCount = 0;
+    private long forceCount = 0;
+
+    /**
+     * @param segmentSize         The size the file grows by, for a new log; an existing log keeps its segment size.
+     * @param flushIntervalMillis How often {@link #flushIfDue()} forces appended lines to disk; 0 forces after every
+     *                            line.
+     */
+    public MappedUsageLog(NonopLogger nonopLogger, Path path, int segmentSize, long flushIntervalMillis) throws IOException {
+        this.nonopLogger = nonopLogger;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                this.segmentSize = segmentSize;
+                this.segment = mapSegment(channel, 0, segmentSize);
+                this.segmentIndex = 0;
+                segment.put(MAGIC).putInt(VERSION).putInt(segmentSize);
+                this.position = HEADER_SIZE;
+            } else {
+                this.segmentSize = readSegmentSize(channel, path);
+                if (this.segmentSize != segmentSize) {
+                    nonopLogger.info("Appending to existing usage log {} with its segment size of {}", path, this.segmentSize);
+                }
+                long end = scan(channel, this.segmentSize, null);
+                this.segmentIndex = (int) (end / this.segmentSize);
+                this.position = (int) (end % this.segmentSize);
+                // Drop later segments, and clear any incomplete record so its text can't be mistaken for a length
+                if (channel.size() > (long) (segmentIndex + 1) * this.segmentSize) {
+                    channel.truncate((long) (segmentIndex + 1) * this.segmentSize);
+                }
+                this.segment = mapSegment(channel, segmentIndex, this.segmentSize);
+                for (int i = position; i < this.segmentSize; i++) {
+                    segment.put(i, (byte) 0);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static int readSegmentSize(FileChannel channel, Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // Keep reading
+        }
+        header.flip();
+        IOException notUsageLog = new IOException("Not a version " + VERSION + " nonop usage log: " + path);
+        if (header.remaining() < HEADER_SIZE) {
+            throw notUsageLog;
+        }
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || header.getInt() != VERSION) {
+            throw notUsageLog;
+        }
+        int segmentSize = header.getInt();
+        if (segmentSize < HEADER_SIZE || segmentSize % 4 != 0) {
+            throw new IOException("Invalid segment size " + segmentSize + " in nonop usage log: " + path);
+        }
+        return segmentSize;
+    }
+
+    // Grows the file if the segment is new
+    private static MappedByteBuffer mapSegment(FileChannel channel, int segmentIndex, int segmentSize) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, (long) segmentIndex * segmentSize, segmentSize);
+    }
+
+    private interface RecordVisitor {
+        void visit(ByteBuffer segment, int offset, int length);
+    }
+
+    /**
+     * Reads records in order until one that isn't complete.
+     *
+     * @return The file offset after the last complete record.
+     */
+    private static long scan(FileChannel channel, int segmentSize, @Nullable RecordVisitor visitor) throws IOException {
+        long fileSize = channel.size();
+        long segmentCount = (fileSize + segmentSize - 1) / segmentSize;
+        int segmentIndex = 0;
+        int position = HEADER_SIZE;
+        // Map no more than the file holds, in case it's been truncated
+        ByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(segmentSize, fileSize));
+        while (true) {
+            if (position + 4 <= segment.capacity()) {
+                int length = segment.getInt(position);
+                if (length != SKIP_TO_NEXT_SEGMENT) {
+                    if (length <= 0 || length > segment.capacity() - position - 4) {
+                        // Never committed, or corrupt
+                        return (long) segmentIndex * segmentSize + position;
+                    }
+                    if (visitor != null) {
+                        visitor.visit(segment, position + 4, length);
+                    }
+                    position += recordSize(length);
+                    continue;
+                }
+            }
+            if (segment.capacity() < segmentSize) {
+                return (long) segmentIndex * segmentSize + position;
+            }
+            if (segmentIndex + 1 >= segmentCount) {
+                // The next record goes at the start of a segment that hasn't been created yet
+                return (long) (segmentIndex + 1) * segmentSize;
+            }
+            segmentIndex++;
+            position = 0;
+            long offset = (long) segmentIndex * segmentSize;
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(segmentSize, fileSize - offset));
+        }
+    }
+
+    private static int recordSize(int length) {
+        return 4 + ((length + 3) & ~3);
+    }
+
+    /**
+     * Whether the file starts like a usage log.
+     */
+    public static boolean isUsageLog(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            while (magic.hasRemaining() && channel.read(magic, magic.position()) >= 0) {
+                // Keep reading
+            }
+            return Arrays.equals(magic.array(), MAGIC);
+        }
+    }
+
+    /**
+     * Reads every complete record of a usage log, e.g. one left behind by a process that was killed.
+     */
+    public static List<byte[]> readRecords(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<byte[]> records = new ArrayList<>();
+            if (channel.size() == 0) {
+                return records;
+            }
+            scan(channel, readSegmentSize(channel, path), (segment, offset, length) -> {
+                byte[] bytes = new byte[length];
+                for (int i = 0; i < length; i++) {
+                    bytes[i] = segment.get(offset + i);
+                }
+                records.add(bytes);
+            });
+            return records;
+        }
+    }
+
+    /**
+     * Reads every complete record of a usage log written as lines of text.
+     */
+    public static List<String> readLines(Path path) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (byte[] record : readRecords(path)) {
+            lines.add(new String(record, StandardCharsets.UTF_8));
+        }
+        return lines;
+    }
+
+    /**
+     * Appends the line as one record. Empty lines aren't recorded, and lines too long for a segment are dropped.
+     */
+    @Override
+    public synchronized void appendLine(CharSequence line) throws IOException {
+        int maxLength = Utf8.maxEncodedLength(line);
+        if (isTooLong(maxLength)) {
+            return;
+        }
+        if (scratch.length < maxLength) {
+            scratch = new byte[Math.max(maxLength, scratch.length * 2)];
+        }
+        append(scratch, 0, Utf8.encode(line, scratch, 0));
+    }
+
+    /**
+     * Empty records aren't recorded, and records too long for a segment are dropped.
+     */
+    @Override
+    public synchronized void appendRecord(byte[] bytes, int offset, int length) throws IOException {
+        if (!isTooLong(length)) {
+            append(bytes, offset, length);
+        }
+    }
+
+    private boolean isTooLong(int length) {
+        if (recordSize(length) <= segmentSize - HEADER_SIZE) {
+            return false;
+        }
+        if (droppedCount++ == 0) {
+            nonopLogger.warn("Dropping usage record too long for the usage log's {} byte segments", segmentSize);
+        }
+        return true;
+    }
+
+    private void append(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        int recordSize = recordSize(length);
+        if (position + recordSize > segmentSize) {
+            if (position + 4 <= segmentSize) {
+                segment.putInt(position, SKIP_TO_NEXT_SEGMENT);
+            }
+            // Only the current segment is forced on flush
+            flush();
+            segmentIndex++;
+            segment = mapSegment(channel, segmentIndex, segmentSize);
+            position = 0;
+        }
+        segment.position(position + 4);
+        segment.put(bytes, offset, length);
+        commitFence = 0;
+        segment.putInt(position, length); // Commit
+        position += recordSize;
+        recordCount++;
+        unforced = true;
+
+        if (flushIntervalNanos == 0) {
+            flush();
+        }
+    }
+
+    @Override
+    public synchronized void flushIfDue() {
+        if (unforced && System.nanoTime() - lastForceNanos >= flushIntervalNanos) {
+            flush();
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (unforced) {
+            segment.force();
+            forceCount++;
+            unforced = false;
+            lastForceNanos = System.nanoTime();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "MappedUsageLog{" +
+                "segmentSize=" + segmentSize +
+                ", segments=" + (segmentIndex + 1) +
+                ", records=" + recordCount +
+                ", dropped=" + droppedCount +
+                ", forces=" + forceCount +
+                '}';
+    }
+}
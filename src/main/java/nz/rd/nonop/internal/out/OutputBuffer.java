@@ -0,0 +1,156 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.out;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Buffers lines and records of output and writes them to an unbuffered stream according to a flush policy: once the buffered bytes
+ * reach a threshold, once the oldest buffered line has waited for the flush interval, and on close. Each flush is a
+ * single write of the whole buffer, so on a file or standard stream it's one write syscall.
+ * <p>
+ * The threshold and interval bound what can be lost if the process dies without closing the buffer. The interval is
+ * only checked when a line is appended or {@link #flushIfDue()} is called, so someone should call it regularly.
+ * <p>
+ * Lines are encoded as UTF-8 straight into the buffer, so there's no encoder or other buffer between the caller and the
+ * stream.
+ */
+public final class OutputBuffer implements UsageOutput {
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private final int flushBytes;
+    private final long flushIntervalNanos;
+    private final LongSupplier nanoClock;
+
+    private int count = 0;
+    private long firstPendingNanos = 0; // When the oldest buffered line was appended, if count > 0
+    private long writeCount = 0;
+    private long bytesWritten = 0;
+
+    /**
+     * @param capacity            The buffer size in bytes. Lines longer than this are written straight through.
+     * @param flushBytes          Flush once at least this many bytes are buffered; 0 to flush after every line.
+     * @param flushIntervalMillis Flush once the oldest buffered line has waited this long; 0 to flush after every line.
+     */
+    public OutputBuffer(OutputStream out, int capacity, int flushBytes, long flushIntervalMillis) {
+        this(out, capacity, flushBytes, flushIntervalMillis, System::nanoTime);
+    }
+
+    // Visible for testing
+    OutputBuffer(OutputStream out, int capacity, int flushBytes, long flushIntervalMillis, LongSupplier nanoClock) {
+        this.out = out;
+        this.buffer = new byte[capacity];
+        this.flushBytes = Math.min(flushBytes, buffer.length);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public synchronized void appendLine(CharSequence line) throws IOException {
+        int maxLength = Utf8.maxEncodedLength(line) + LINE_SEPARATOR.length;
+        if (startAppend(maxLength)) {
+            count = appendSeparator(buffer, Utf8.encode(line, buffer, count));
+        } else {
+            byte[] bytes = new byte[maxLength];
+            writeThrough(bytes, 0, appendSeparator(bytes, Utf8.encode(line, bytes, 0)));
+        }
+        finishAppend();
+    }
+
+    @Override
+    public synchronized void appendRecord(byte[] bytes, int offset, int length) throws IOException {
+        if (startAppend(length)) {
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count += length;
+        } else {
+            writeThrough(bytes, offset, length);
+        }
+        finishAppend();
+    }
+
+    /**
+     * Makes room for the given number of bytes.
+     *
+     * @return False if there can't be room, because it's longer than the whole buffer.
+     */
+    private boolean startAppend(int maxLength) throws IOException {
+        if (count > 0 && maxLength > buffer.length - count) {
+            writeBuffer();
+        }
+        if (count == 0) {
+            firstPendingNanos = nanoClock.getAsLong();
+        }
+        return maxLength <= buffer.length;
+    }
+
+    // For appends longer than the whole buffer
+    private void writeThrough(byte[] bytes, int offset, int length) throws IOException {
+        out.write(bytes, offset, length);
+        out.flush();
+        writeCount++;
+        bytesWritten += length;
+    }
+
+    private void finishAppend() throws IOException {
+        if (count >= flushBytes || flushIntervalNanos == 0 || nanoClock.getAsLong() - firstPendingNanos >= flushIntervalNanos) {
+            flush();
+        }
+    }
+
+    private static int appendSeparator(byte[] dest, int pos) {
+        System.arraycopy(LINE_SEPARATOR, 0, dest, pos, LINE_SEPARATOR.length);
+        return pos + LINE_SEPARATOR.length;
+    }
+
+    /**
+     * Flushes if the oldest buffered line has waited for the flush interval.
+     */
+    @Override
+    public synchronized void flushIfDue() throws IOException {
+        if (count > 0 && nanoClock.getAsLong() - firstPendingNanos >= flushIntervalNanos) {
+            flush();
+        }
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if (count > 0) {
+            writeBuffer();
+            out.flush();
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        out.write(buffer, 0, count);
+        writeCount++;
+        bytesWritten += count;
+        count = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "OutputBuffer{" +
+                "capacity=" + buffer.length +
+                ", flushBytes=" + flushBytes +
+                ", flushIntervalMillis=" + TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos) +
+                ", writes=" + writeCount +
+                ", bytesWritten=" + bytesWritten +
+                '}';
+    }
+}
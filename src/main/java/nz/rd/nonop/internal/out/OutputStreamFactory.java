@@ -5,13 +5,13 @@ package nz.rd.nonop.internal.out;
 import nz.rd.nonop.config.OutputConfig;
 import nz.rd.nonop.internal.logging.NonopLogger;
 
-import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Paths;
 
 /**
- * A factory for creating an {@link OutputStream} based on an {@link OutputConfig}.
+ * A factory for creating an {@link OutputStream} or {@link UsageOutput} based on an {@link OutputConfig}.
  * This class is not meant to be instantiated.
  */
 public final class OutputStreamFactory {
@@ -20,9 +20,27 @@ public final class OutputStreamFactory {
         // Prevent instantiation
     }
 
+    /**
+     * Creates the {@link UsageOutput} for the configured target: a {@link MappedUsageLog} for a mapped file, otherwise
+     * an {@link OutputBuffer} over the target's stream.
+     */
+    public static UsageOutput createUsageOutput(OutputConfig config, NonopLogger logger) throws IOException {
+        if (config.getOutputTarget() instanceof OutputConfig.MappedFile) {
+            String path = ((OutputConfig.MappedFile) config.getOutputTarget()).getPath();
+            logger.info("Configuring output to memory-mapped usage log: {}", path);
+            try {
+                return new MappedUsageLog(logger, Paths.get(path), config.getMappedSegmentSize(), config.getFlushIntervalMillis());
+            } catch (IOException e) {
+                logger.error("Failed to open usage log '{}'.", path, e);
+                throw e; // Re-throw to halt agent initialization
+            }
+        }
+        return new OutputBuffer(create(config, logger), config.getBufferSize(), config.getFlushBytes(), config.getFlushIntervalMillis());
+    }
+
     /**
      * Creates and returns an appropriate {@link OutputStream} based on the provided configuration.
-     * The stream will be buffered if the configured buffer size is greater than zero.
+     * The stream isn't buffered; callers buffer with an {@link OutputBuffer}, so there's only one buffer to flush.
      *
      * @param config The output configuration.
      * @param logger The logger for reporting errors during file creation.
@@ -44,11 +62,11 @@ public final class OutputStreamFactory {
         } else if (target instanceof OutputConfig.File) {
             OutputConfig.File fileTarget = (OutputConfig.File) target;
             String path = fileTarget.getPath();
-            logger.info("Configuring output to file: " + path);
+            logger.info("Configuring output to file: {}", path);
             try {
                 rawStream = new FileOutputStream(path);
             } catch (IOException e) {
-                logger.error("Failed to open output file '"+ path + "'.", e);
+                logger.error("Failed to open output file '{}'.", path, e);
                 throw e; // Re-throw to halt agent initialization
             }
         } else {
@@ -56,13 +74,6 @@ public final class OutputStreamFactory {
             // It's a safeguard against future programming errors.
             throw new IllegalStateException("Unknown OutputTarget type: " + target.getClass().getName());
         }
-
-        // Apply buffering if configured
-        int bufferSize = config.getBufferSize();
-        if (bufferSize > 0) {
-            return new BufferedOutputStream(rawStream, bufferSize);
-        } else {
-            return rawStream; // Return unbuffered stream if size is 0 or less
-        }
+        return rawStream;
     }
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.out;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Where formatted usage events are written, as lines of text or as binary records. Implementations decide how they're
+ * buffered and when they're durable; closing makes everything appended so far durable.
+ */
+public interface UsageOutput extends Closeable {
+
+    void appendLine(CharSequence line) throws IOException;
+
+    /**
+     * Appends an already encoded record, which is kept whole: it's never split between flushes or segments.
+     */
+    void appendRecord(byte[] bytes, int offset, int length) throws IOException;
+
+    /**
+     * Makes everything appended so far durable.
+     */
+    void flush() throws IOException;
+
+    /**
+     * Flushes if the flush policy says it's due. Should be called regularly, so lines don't wait indefinitely when no
+     * more are appended.
+     */
+    void flushIfDue() throws IOException;
+}
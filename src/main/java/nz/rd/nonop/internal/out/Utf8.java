@@ -0,0 +1,51 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.out;
+
+/**
+ * Encodes text as UTF-8 into a caller's array, without the encoder and intermediate buffers of a Writer or
+ * {@link String#getBytes}.
+ */
+public final class Utf8 {
+
+    private Utf8() {
+    }
+
+    /**
+     * An upper bound on the encoded length of the text: 3 bytes per char, since a surrogate pair takes 4 bytes for 2
+     * chars.
+     */
+    public static int maxEncodedLength(CharSequence s) {
+        return s.length() * 3;
+    }
+
+    /**
+     * @param dest Must have at least {@link #maxEncodedLength} bytes from {@code pos}.
+     * @return The position after the encoded text.
+     */
+    public static int encode(CharSequence s, byte[] dest, int pos) {
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                dest[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                dest[pos++] = (byte) (0xC0 | (c >> 6));
+                dest[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                dest[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                dest[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                dest[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                dest[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                dest[pos++] = '?'; // Unpaired, as String.getBytes would encode it
+            } else {
+                dest[pos++] = (byte) (0xE0 | (c >> 12));
+                dest[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dest[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,295 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.reporting;
+
+import nz.rd.nonop.config.OutputConfig;
+import nz.rd.nonop.internal.logging.NonopLogger;
+import nz.rd.nonop.internal.model.MethodTable;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands first uses to a writer thread, which formats and writes them in batches through another reporter. Application
+ * threads only copy the event into a preallocated slot. The writer thread calls {@link UsageReporter#flushIfDue()}
+ * after each batch, and once more when the flush interval has passed since the last batch, so the delegate doesn't
+ * need its own flush thread. Otherwise the writer thread stays parked until a producer publishes an event.
+ * <p>
+ * The buffer is a bounded multi-producer, single-consumer ring. Each slot has a sequence number: producers claim a
+ * position with CAS, fill its slot, then publish it by advancing the slot's sequence; the writer thread reads slots in
+ * order once they're published, then advances the sequence again to free the slot for the next lap.
+ */
+public final class AsyncUsageReporter implements UsageReporter {
+
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+
+    private final NonopLogger nonopLogger;
+    private final UsageReporter delegate;
+    private final OutputConfig.FullBufferPolicy fullBufferPolicy;
+    private final long flushIntervalNanos;
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final long[] timestamps;
+    private final Class<?>[] classes;
+    private final MethodTable[] methodTables;
+    private final int[] methodOrdinals;
+
+    private final AtomicLong tail = new AtomicLong(); // Next position for producers to claim
+    private long head = 0; // Next position for the writer thread to read; only used by the writer thread
+
+    private final Queue<Event> spilled = new ConcurrentLinkedQueue<>();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilledCount = new LongAdder();
+
+    private final Thread writerThread;
+    private volatile boolean writerParked = false;
+    private volatile boolean closed = false;
+
+    /**
+     * @param flushIntervalMillis The delegate's flush interval, after which the writer thread wakes to call
+     *                            {@link UsageReporter#flushIfDue()} if nothing else has; 0 if the delegate flushes
+     *                            every event as it's written.
+     */
+    public AsyncUsageReporter(NonopLogger nonopLogger, UsageReporter delegate, int capacity, OutputConfig.FullBufferPolicy fullBufferPolicy, long flushIntervalMillis) {
+        this.nonopLogger = nonopLogger;
+        this.delegate = delegate;
+        this.fullBufferPolicy = fullBufferPolicy;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i); // Free for position i
+        }
+        this.timestamps = new long[size];
+        this.classes = new Class<?>[size];
+        this.methodTables = new MethodTable[size];
+        this.methodOrdinals = new int[size];
+
+        this.writerThread = new Thread(this::runWriter, "nonop-usage-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void recordMethodFirstUsage(long timestampMillis, Class<?> clazz, MethodTable methodTable, int methodOrdinal) {
+        if (closed) {
+            dropped.increment();
+            return;
+        }
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    timestamps[slot] = timestampMillis;
+                    classes[slot] = clazz;
+                    methodTables[slot] = methodTable;
+                    methodOrdinals[slot] = methodOrdinal;
+                    sequences.set(slot, position + 1); // Publish to the writer thread
+                    wakeWriter();
+                    return;
+                }
+            } else if (sequence < position) {
+                // The writer thread hasn't freed this slot yet, so the buffer is full
+                if (!handleFullBuffer(timestampMillis, clazz, methodTable, methodOrdinal)) {
+                    return;
+                }
+            }
+            // Otherwise another producer claimed the position first; try the next one
+        }
+    }
+
+    /**
+     * @return True if the caller should try to claim a slot again.
+     */
+    private boolean handleFullBuffer(long timestampMillis, Class<?> clazz, MethodTable methodTable, int methodOrdinal) {
+        switch (fullBufferPolicy) {
+            case BLOCK:
+                if (closed || Thread.currentThread() == writerThread) {
+                    dropped.increment();
+                    return false;
+                }
+                wakeWriter();
+                LockSupport.parkNanos(this, FULL_PARK_NANOS);
+                return true;
+            case SPILL:
+                spilled.add(new Event(timestampMillis, clazz, methodTable, methodOrdinal));
+                spilledCount.increment();
+                wakeWriter();
+                return false;
+            case DROP:
+            default:
+                dropped.increment();
+                return false;
+        }
+    }
+
+    private void wakeWriter() {
+        if (writerParked) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    private void runWriter() {
+        long lastBatchNanos = 0;
+        boolean flushPending = false; // Whether the last batch may still be waiting in the delegate
+        while (true) {
+            boolean wasClosed = closed;
+            int written = writeAvailable();
+            long now = System.nanoTime();
+            flushDelegateIfDue();
+            if (written > 0) {
+                lastBatchNanos = now;
+                flushPending = flushIntervalNanos > 0;
+                continue;
+            }
+            if (wasClosed) {
+                // Nothing was left when closed, so nothing more will be published
+                return;
+            }
+            long untilFlushDue = lastBatchNanos + flushIntervalNanos - now;
+            if (flushPending && untilFlushDue <= 0) {
+                // Everything written was due by now, so the flushIfDue after it flushed it all
+                flushPending = false;
+            }
+            // Producers publish before reading writerParked, so one of them unparks this thread if it misses an event
+            writerParked = true;
+            if (!hasAvailable()) {
+                if (flushPending) {
+                    LockSupport.parkNanos(this, untilFlushDue);
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+            writerParked = false;
+        }
+    }
+
+    private boolean hasAvailable() {
+        return sequences.get((int) head & mask) == head + 1 || !spilled.isEmpty();
+    }
+
+    /**
+     * Writes every published event as one batch.
+     *
+     * @return The number of events written.
+     */
+    private int writeAvailable() {
+        int written = 0;
+        while (true) {
+            int slot = (int) head & mask;
+            if (sequences.get(slot) != head + 1) {
+                break;
+            }
+            long timestampMillis = timestamps[slot];
+            Class<?> clazz = classes[slot];
+            MethodTable methodTable = methodTables[slot];
+            int methodOrdinal = methodOrdinals[slot];
+            // Don't keep classes reachable from the buffer
+            classes[slot] = null;
+            methodTables[slot] = null;
+            sequences.set(slot, head + mask + 1); // Free for the next lap
+            head++;
+            write(timestampMillis, clazz, methodTable, methodOrdinal);
+            written++;
+        }
+        Event event;
+        while ((event = spilled.poll()) != null) {
+            write(event.timestampMillis, event.clazz, event.methodTable, event.methodOrdinal);
+            written++;
+        }
+        return written;
+    }
+
+    private void write(long timestampMillis, Class<?> clazz, MethodTable methodTable, int methodOrdinal) {
+        try {
+            delegate.recordMethodFirstUsage(timestampMillis, clazz, methodTable, methodOrdinal);
+        } catch (Throwable t) {
+            nonopLogger.error("Error reporting first use of method in class: {}", clazz, t);
+        }
+    }
+
+    private void flushDelegate() {
+        try {
+            delegate.flush();
+        } catch (Throwable t) {
+            nonopLogger.error("Error flushing usage report", t);
+        }
+    }
+
+    private void flushDelegateIfDue() {
+        try {
+            delegate.flushIfDue();
+        } catch (Throwable t) {
+            nonopLogger.error("Error flushing usage report", t);
+        }
+    }
+
+    @Override
+    public void flush() {
+        // Writer thread checks the delegate's flush policy when woken, as well as after each batch
+        wakeWriter();
+    }
+
+    @Override
+    public void finishUsageReportingOnShutdown() throws Exception {
+        closed = true;
+        LockSupport.unpark(writerThread);
+        writerThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+        if (writerThread.isAlive()) {
+            nonopLogger.warn("Usage writer thread didn't finish within " + SHUTDOWN_TIMEOUT_MILLIS + " ms; some first uses may not be reported");
+        } else if (writeAvailable() > 0) {
+            // Published by threads that got past the closed check just before closing; the writer thread has stopped,
+            // so this thread is now the only consumer
+            flushDelegate();
+        }
+        long droppedCount = dropped.sum();
+        if (droppedCount > 0) {
+            nonopLogger.warn("Dropped {} first uses because the usage report buffer was full or closed", droppedCount);
+        }
+        nonopLogger.debug("Async usage reporter statistics: {}", this);
+        delegate.finishUsageReportingOnShutdown();
+    }
+
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    long getSpilledCount() {
+        return spilledCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncUsageReporter{" +
+                "capacity=" + (mask + 1) +
+                ", fullBufferPolicy=" + fullBufferPolicy +
+                ", dropped=" + getDroppedCount() +
+                ", spilled=" + getSpilledCount() +
+                '}';
+    }
+
+    private static final class Event {
+        final long timestampMillis;
+        final Class<?> clazz;
+        final MethodTable methodTable;
+        final int methodOrdinal;
+
+        Event(long timestampMillis, Class<?> clazz, MethodTable methodTable, int methodOrdinal) {
+            this.timestampMillis = timestampMillis;
+            this.clazz = clazz;
+            this.methodTable = methodTable;
+            this.methodOrdinal = methodOrdinal;
+        }
+    }
+}
@@ -3,25 +3,29 @@
 package nz.rd.nonop.internal.reporting;
 
 import nz.rd.nonop.internal.logging.NonopLogger;
-import nz.rd.nonop.internal.reporting.format.UsageEventFormatter;
+import nz.rd.nonop.internal.model.MethodTable;
+import nz.rd.nonop.internal.reporting.format.TextUsageEventFormatter;
 
-// TODO: Make optimised version to run in a different thread, async etc
+/**
+ * Reports first uses through the agent's logger. Logs on the calling thread; wrap it in an {@link AsyncUsageReporter}
+ * to do that on a writer thread instead.
+ */
 public final class LoggingUsageReporter implements UsageReporter {
 
     private final NonopLogger nonopLogger;
-    private final UsageEventFormatter formatter;
+    private final TextUsageEventFormatter formatter;
 
-    public LoggingUsageReporter(NonopLogger nonopLogger, UsageEventFormatter formatter) {
+    public LoggingUsageReporter(NonopLogger nonopLogger, TextUsageEventFormatter formatter) {
         this.nonopLogger = nonopLogger;
         this.formatter = formatter;
     }
 
-    public void recordMethodFirstUsage(long callTimestampMillis, Class<?> clazz, String methodName, String methodDescriptor) {
+    public void recordMethodFirstUsage(long callTimestampMillis, Class<?> clazz, MethodTable methodTable, int methodOrdinal) {
         nonopLogger.info(formatter.formatMethodCalled(
                 callTimestampMillis,
                 clazz.getCanonicalName(),
-                methodName,
-                methodDescriptor
+                methodTable.getMethodName(methodOrdinal),
+                methodTable.getMethodDescriptor(methodOrdinal)
         ));
     }
 
@@ -4,42 +4,93 @@ package nz.rd.nonop.internal.reporting;
 
 import nz.rd.nonop.config.OutputConfig;
 import nz.rd.nonop.internal.logging.NonopLogger;
+import nz.rd.nonop.internal.model.MethodTable;
+import nz.rd.nonop.internal.out.UsageOutput;
 import nz.rd.nonop.internal.out.OutputStreamFactory;
+import nz.rd.nonop.internal.reporting.format.DescriptorCache;
 import nz.rd.nonop.internal.reporting.format.UsageEventFormatter;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
-import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.PrintWriter;
 
-// TODO: Make optimised version to run in a different thread, async etc
+/**
+ * Writes first uses to the configured output. Formats and writes on the calling thread; wrap it in an
+ * {@link AsyncUsageReporter} to do that on a writer thread instead.
+ * <p>
+ * Output is buffered and flushed according to the configured flush policy; see {@link UsageOutput}.
+ */
 public final class OutputUsageReporter implements UsageReporter {
 
     private final NonopLogger nonopLogger;
     private final UsageEventFormatter formatter;
-    private final PrintWriter writer;
+    private final UsageOutput output;
+    private final @Nullable Thread flushThread;
+    private volatile boolean closed = false;
 
-    public OutputUsageReporter(NonopLogger nonopLogger, OutputConfig outputConfig, UsageEventFormatter formatter) throws IOException {
+    /**
+     * @param startFlushThread Whether to start a thread that flushes once the flush interval has passed. Not needed if
+     *                         the caller calls {@link #flushIfDue()} regularly.
+     */
+    public OutputUsageReporter(NonopLogger nonopLogger, OutputConfig outputConfig, UsageEventFormatter formatter, boolean startFlushThread) throws IOException {
         this.nonopLogger = nonopLogger;
         this.formatter = formatter;
+        this.output = OutputStreamFactory.createUsageOutput(outputConfig, nonopLogger);
 
-        OutputStream configuredOutputStream = OutputStreamFactory.create(outputConfig, nonopLogger);
-        OutputStream bufferedOutputStream = new BufferedOutputStream(configuredOutputStream, outputConfig.getBufferSize());
-        this.writer = new PrintWriter(bufferedOutputStream, true); // Auto-flush on newline // TODO: Consider buffering/flushing
+        long flushIntervalMillis = outputConfig.getFlushIntervalMillis();
+        if (startFlushThread && flushIntervalMillis > 0) {
+            this.flushThread = new Thread(() -> runFlushThread(flushIntervalMillis), "nonop-usage-flush");
+            this.flushThread.setDaemon(true);
+            this.flushThread.start();
+        } else {
+            this.flushThread = null;
+        }
     }
 
-    public void recordMethodFirstUsage(long callTimestampMillis, Class<?> clazz, String methodName, String methodDescriptor) {
-        this.writer.println(formatter.formatMethodCalled(
-                callTimestampMillis,
-                clazz.getCanonicalName(),
-                methodName,
-                methodDescriptor
-        ));
+    public void recordMethodFirstUsage(long callTimestampMillis, Class<?> clazz, MethodTable methodTable, int methodOrdinal) {
+        try {
+            formatter.writeMethodCalled(
+                    output,
+                    callTimestampMillis,
+                    clazz.getCanonicalName(),
+                    methodTable.getMethodName(methodOrdinal),
+                    methodTable.getMethodDescriptor(methodOrdinal)
+            );
+        } catch (IOException e) {
+            nonopLogger.error("Error writing first use of method in class: {}", clazz, e);
+        }
+    }
+
+    private void runFlushThread(long flushIntervalMillis) {
+        while (!closed) {
+            try {
+                Thread.sleep(flushIntervalMillis);
+                output.flushIfDue();
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                nonopLogger.error("Error flushing usage report", e);
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public void flushIfDue() throws IOException {
+        output.flushIfDue();
     }
 
     @Override
     public void finishUsageReportingOnShutdown() throws IOException {
-        writer.flush();
-        writer.close();
+        closed = true;
+        if (flushThread != null) {
+            flushThread.interrupt();
+        }
+        output.close();
+        nonopLogger.debug("Usage output statistics: {}", output);
+        nonopLogger.debug("Descriptor cache statistics: {}", DescriptorCache.shared());
     }
 }
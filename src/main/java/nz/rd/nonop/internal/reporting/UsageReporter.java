@@ -2,8 +2,25 @@
 
 package nz.rd.nonop.internal.reporting;
 
+import nz.rd.nonop.internal.model.MethodTable;
+
 public interface UsageReporter {
     // TODO: Consider using class name as a String
-    void recordMethodFirstUsage(long timestampMillis, Class<?> clazz, String methodName, String methodDescriptor);
+    // Method name and descriptor are resolved from the MethodTable only when the event is formatted
+    void recordMethodFirstUsage(long timestampMillis, Class<?> clazz, MethodTable methodTable, int methodOrdinal);
+
+    /**
+     * Writes out any buffered first uses. Reporters that write each event straight through don't need to do anything.
+     */
+    default void flush() throws Exception {
+    }
+
+    /**
+     * Writes out buffered first uses if the flush policy says they're due. Called regularly by whoever drives the
+     * reporter, so first uses don't wait in a buffer indefinitely when no more arrive.
+     */
+    default void flushIfDue() throws Exception {
+    }
+
     void finishUsageReportingOnShutdown() throws Exception;
 }
@@ -0,0 +1,224 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.reporting.format;
+
+import nz.rd.nonop.internal.out.MappedUsageLog;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads back output written by {@link BinaryUsageEventFormatter}, as events that can be turned back into text with a
+ * {@link TextUsageEventFormatter}.
+ * <p>
+ * Run from the agent jar to decode a file, which may be a plain file or a memory-mapped usage log:
+ * <pre>
+ * java -cp nonop-agent.jar nz.rd.nonop.internal.reporting.format.BinaryUsageDecoder [--format simple|json] FILE
+ * </pre>
+ */
+public final class BinaryUsageDecoder {
+
+    public interface MethodCalled {
+        void methodCalled(long callTimestampMillis, String className, String methodName, String methodDescriptor);
+    }
+
+    private final MethodCalled events;
+
+    // The dictionary, rebuilt for each run of entries that starts with the magic bytes
+    private final List<String> strings = new ArrayList<>();
+    private final List<String> classNames = new ArrayList<>();
+    private long lastTimestampMillis = 0;
+
+    public BinaryUsageDecoder(MethodCalled events) {
+        this.events = events;
+    }
+
+    /**
+     * Decodes every event in the input, passing each to the decoder's {@link MethodCalled} as it's read.
+     *
+     * @throws EOFException If the input ends partway through an entry, e.g. if the process writing it was killed.
+     *                      Every event before that has been passed to the consumer.
+     */
+    public void decode(InputStream in) throws IOException {
+        boolean started = false;
+        int tag;
+        while ((tag = in.read()) != -1) {
+            if (tag == BinaryUsageEventFormatter.MAGIC[0]) {
+                readMagic(in);
+                started = true;
+                continue;
+            }
+            if (!started) {
+                throw new IOException("Not nonop binary usage output: missing magic bytes");
+            }
+            switch (tag) {
+                case BinaryUsageEventFormatter.STRING:
+                    byte[] bytes = new byte[readUnsignedInt(in)];
+                    readFully(in, bytes);
+                    strings.add(new String(bytes, StandardCharsets.UTF_8));
+                    break;
+                case BinaryUsageEventFormatter.CLASS:
+                    String packageName = string(readUnsignedInt(in));
+                    String name = string(readUnsignedInt(in));
+                    classNames.add(packageName.isEmpty() ? name : packageName + '.' + name);
+                    break;
+                case BinaryUsageEventFormatter.METHOD_CALLED:
+                    long zigZagDelta = readVarint(in);
+                    lastTimestampMillis += (zigZagDelta >>> 1) ^ -(zigZagDelta & 1);
+                    int classId = readUnsignedInt(in);
+                    if (classId >= classNames.size()) {
+                        throw new IOException("Reference to class " + classId + " before it was defined");
+                    }
+                    String methodName = string(readUnsignedInt(in));
+                    String descriptor = string(readUnsignedInt(in));
+                    events.methodCalled(lastTimestampMillis, classNames.get(classId), methodName, descriptor);
+                    break;
+                default:
+                    throw new IOException("Unknown entry tag " + tag);
+            }
+        }
+    }
+
+    private void readMagic(InputStream in) throws IOException {
+        byte[] magic = new byte[BinaryUsageEventFormatter.MAGIC.length];
+        magic[0] = BinaryUsageEventFormatter.MAGIC[0];
+        readFully(in, magic, 1);
+        if (!Arrays.equals(magic, BinaryUsageEventFormatter.MAGIC)) {
+            throw new IOException("Not nonop binary usage output: bad magic bytes");
+        }
+        int version = readUnsignedInt(in);
+        if (version != BinaryUsageEventFormatter.VERSION) {
+            throw new IOException("Unsupported nonop binary usage format version " + version);
+        }
+        strings.clear();
+        classNames.clear();
+        lastTimestampMillis = 0;
+    }
+
+    private String string(int id) throws IOException {
+        if (id >= strings.size()) {
+            throw new IOException("Reference to string " + id + " before it was defined");
+        }
+        return strings.get(id);
+    }
+
+    private static int readUnsignedInt(InputStream in) throws IOException {
+        long value = readVarint(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Value out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    private static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Input ended partway through an entry");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint too long");
+    }
+
+    private static void readFully(InputStream in, byte[] bytes) throws IOException {
+        readFully(in, bytes, 0);
+    }
+
+    private static void readFully(InputStream in, byte[] bytes, int offset) throws IOException {
+        while (offset < bytes.length) {
+            int read = in.read(bytes, offset, bytes.length - offset);
+            if (read == -1) {
+                throw new EOFException("Input ended partway through an entry");
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * Whether the input starts with binary usage output's magic bytes. Reads ahead without consuming the input.
+     *
+     * @param in Must support {@link InputStream#mark(int) mark}.
+     */
+    public static boolean isBinaryUsageOutput(InputStream in) throws IOException {
+        byte[] magic = new byte[BinaryUsageEventFormatter.MAGIC.length];
+        in.mark(magic.length);
+        try {
+            int length = 0;
+            int read;
+            while (length < magic.length && (read = in.read(magic, length, magic.length - length)) != -1) {
+                length += read;
+            }
+            return Arrays.equals(magic, BinaryUsageEventFormatter.MAGIC);
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Opens a file of binary usage output, joining the records of a memory-mapped usage log back into one stream.
+     */
+    public static InputStream open(Path path) throws IOException {
+        if (!MappedUsageLog.isUsageLog(path)) {
+            return new BufferedInputStream(Files.newInputStream(path));
+        }
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        for (byte[] record : MappedUsageLog.readRecords(path)) {
+            records.write(record, 0, record.length);
+        }
+        return new ByteArrayInputStream(records.toByteArray());
+    }
+
+    public static void main(String[] args) throws IOException {
+        String format = "simple";
+        String file = null;
+        for (int i = 0; i < args.length; i++) {
+            if ("--format".equals(args[i]) && i + 1 < args.length) {
+                format = args[++i];
+            } else {
+                file = args[i];
+            }
+        }
+        TextUsageEventFormatter formatter;
+        if ("simple".equalsIgnoreCase(format)) {
+            formatter = new SimpleUsageEventFormatter();
+        } else if ("json".equalsIgnoreCase(format)) {
+            formatter = new JsonUsageEventFormatter();
+        } else {
+            formatter = null;
+        }
+        if (file == null || formatter == null) {
+            System.err.println("Usage: BinaryUsageDecoder [--format simple|json] FILE");
+            System.exit(2);
+            return;
+        }
+
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        try (InputStream in = open(Paths.get(file))) {
+            new BinaryUsageDecoder((timestamp, className, methodName, descriptor) ->
+                    out.println(formatter.formatMethodCalled(timestamp, className, methodName, descriptor))).decode(in);
+        } catch (EOFException e) {
+            out.flush();
+            System.err.println("Warning: " + file + " ends partway through an entry; it was probably still being written");
+        } finally {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.reporting.format;
+
+import nz.rd.nonop.internal.out.UsageOutput;
+import nz.rd.nonop.internal.out.Utf8;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes method call events in a compact binary form. Each distinct string is written once, into a dictionary inline
+ * in the output, and events refer to it by number, so repeated packages, classes, method names and descriptors cost a
+ * byte or two. Read it back with {@link BinaryUsageDecoder}.
+ * <p>
+ * The output starts with the magic bytes {@code NONOPBIN} and a varint format version. Then each entry is a tag byte
+ * followed by unsigned varints:
+ * <ul>
+ *     <li>{@value #STRING}: a string, numbered from 0 in the order written. Its UTF-8 length, then its bytes.</li>
+ *     <li>{@value #CLASS}: a class, numbered from 0 in the order written. The string numbers of its package (the name
+ *     up to the last dot) and of the rest of its name.</li>
+ *     <li>{@value #METHOD_CALLED}: a method's first call. The zig-zag encoded milliseconds since the previous event's
+ *     timestamp (or since the epoch, for the first), then the class number, and the string numbers of the method name
+ *     and descriptor.</li>
+ * </ul>
+ * Dictionary entries come just before the first event that uses them, in the same {@link UsageOutput#appendRecord
+ * record}. If the magic bytes appear again, e.g. when a process appends to an existing log, the dictionary starts
+ * again. The formatter also starts a new dictionary itself once the current one reaches a maximum size, so a long
+ * running process with many classes doesn't hold every string it has written.
+ */
+public final class BinaryUsageEventFormatter implements UsageEventFormatter {
+
+    static final byte[] MAGIC = {'N', 'O', 'N', 'O', 'P', 'B', 'I', 'N'};
+    static final int VERSION = 1;
+    static final int STRING = 1;
+    static final int CLASS = 2;
+    static final int METHOD_CALLED = 3;
+
+    // Strings and classes. Checked before each event, which adds at most five
+    static final int DEFAULT_MAX_DICTIONARY_SIZE = 1 << 16;
+
+    private final int maxDictionarySize;
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final Map<String, Integer> classIds = new HashMap<>();
+    private long lastTimestampMillis = 0;
+    private boolean started = false;
+
+    private byte[] buffer = new byte[256];
+    private int count;
+
+    public BinaryUsageEventFormatter() {
+        this(DEFAULT_MAX_DICTIONARY_SIZE);
+    }
+
+    BinaryUsageEventFormatter(int maxDictionarySize) {
+        this.maxDictionarySize = maxDictionarySize;
+    }
+
+    @Override
+    public synchronized void writeMethodCalled(UsageOutput output, long callTimestampMillis, String className, String methodName, String methodDescriptor) throws IOException {
+        count = 0;
+        if (stringIds.size() + classIds.size() > maxDictionarySize) {
+            restart();
+        }
+        if (!started) {
+            ensureCapacity(MAGIC.length + 5);
+            System.arraycopy(MAGIC, 0, buffer, 0, MAGIC.length);
+            count = MAGIC.length;
+            writeVarint(VERSION);
+            started = true;
+        }
+        int classId = classId(className);
+        int methodNameId = stringId(methodName);
+        int descriptorId = stringId(methodDescriptor);
+
+        ensureCapacity(1 + 10 + 3 * 5);
+        buffer[count++] = METHOD_CALLED;
+        long delta = callTimestampMillis - lastTimestampMillis;
+        writeVarint((delta << 1) ^ (delta >> 63));
+        writeVarint(classId);
+        writeVarint(methodNameId);
+        writeVarint(descriptorId);
+        lastTimestampMillis = callTimestampMillis;
+
+        try {
+            output.appendRecord(buffer, 0, count);
+        } catch (IOException | RuntimeException e) {
+            // Entries added to the dictionary for this event may not have been written, so start a new one
+            restart();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts a new dictionary, with the magic bytes before the next event.
+     */
+    private void restart() {
+        stringIds.clear();
+        classIds.clear();
+        lastTimestampMillis = 0;
+        started = false;
+    }
+
+    private int classId(String className) {
+        Integer id = classIds.get(className);
+        if (id != null) {
+            return id;
+        }
+        int lastDot = className.lastIndexOf('.');
+        int packageId = stringId(lastDot < 0 ? "" : className.substring(0, lastDot));
+        int nameId = stringId(className.substring(lastDot + 1));
+        ensureCapacity(1 + 2 * 5);
+        buffer[count++] = CLASS;
+        writeVarint(packageId);
+        writeVarint(nameId);
+        int newId = classIds.size();
+        classIds.put(className, newId);
+        return newId;
+    }
+
+    private int stringId(String s) {
+        Integer id = stringIds.get(s);
+        if (id != null) {
+            return id;
+        }
+        int maxLength = Utf8.maxEncodedLength(s);
+        ensureCapacity(1 + 5 + maxLength);
+        buffer[count++] = STRING;
+        // Encode after room for the longest length prefix, then move it back if the prefix is shorter
+        int lengthPos = count;
+        int end = Utf8.encode(s, buffer, lengthPos + 5);
+        int length = end - (lengthPos + 5);
+        writeVarint(length);
+        System.arraycopy(buffer, lengthPos + 5, buffer, count, length);
+        count += length;
+        int newId = stringIds.size();
+        stringIds.put(s, newId);
+        return newId;
+    }
+
+    private void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[count++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[count++] = (byte) value;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (buffer.length - count < additional) {
+            byte[] newBuffer = new byte[Math.max(buffer.length * 2, count + additional)];
+            System.arraycopy(buffer, 0, newBuffer, 0, count);
+            buffer = newBuffer;
+        }
+    }
+}
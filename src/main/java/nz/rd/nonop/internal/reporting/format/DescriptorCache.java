@@ -0,0 +1,80 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.reporting.format;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rendered parameter lists of method descriptors, so each distinct descriptor is only parsed once. A few descriptors,
+ * like {@code ()V} and {@code (Ljava/lang/Object;)Z}, account for most methods in an app, so most lookups hit.
+ * <p>
+ * Safe to use from any thread. Bounded: once full, new descriptors are rendered each time without being cached. Use
+ * the {@link #shared() shared} instance so every formatter and report shares one copy of each rendered string.
+ */
+public final class DescriptorCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 8192;
+
+    private static final DescriptorCache SHARED = new DescriptorCache(DEFAULT_MAX_ENTRIES);
+
+    private final int maxEntries;
+    private final ConcurrentHashMap<String, String> parameterTypes = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // Visible for testing
+    DescriptorCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public static DescriptorCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Gets the parameter types of a method descriptor, comma separated, e.g. {@code java.lang.String,int[]} for
+     * {@code (Ljava/lang/String;[I)V}.
+     *
+     * @throws IllegalArgumentException If the descriptor is malformed.
+     */
+    public String parameterTypes(String methodDescriptor) {
+        String rendered = parameterTypes.get(methodDescriptor);
+        if (rendered != null) {
+            hits.increment();
+            return rendered;
+        }
+        misses.increment();
+        StringBuilder sb = new StringBuilder(methodDescriptor.length() * 2);
+        Descriptors.appendParameterTypes(sb, methodDescriptor);
+        rendered = sb.toString();
+        if (parameterTypes.size() < maxEntries) {
+            // If another thread rendered it first, use theirs so there's only one copy
+            String existing = parameterTypes.putIfAbsent(methodDescriptor, rendered);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return rendered;
+    }
+
+    public int size() {
+        return parameterTypes.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        long hitCount = getHits();
+        long lookups = hitCount + getMisses();
+        return String.format("%d descriptors cached (max %d), %d of %d lookups hit (%.1f%%)",
+                size(), maxEntries, hitCount, lookups, lookups == 0 ? 0.0 : 100.0 * hitCount / lookups);
+    }
+}
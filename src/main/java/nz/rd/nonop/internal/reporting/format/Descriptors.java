@@ -0,0 +1,83 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.reporting.format;
+
+/**
+ * Converts method descriptors to Java source-style names, appending straight into the caller's builder rather than
+ * parsing into ASM {@code Type} objects first.
+ */
+final class Descriptors {
+
+    private Descriptors() {
+    }
+
+    /**
+     * Appends the parameter types of a method descriptor, comma separated, e.g. {@code java.lang.String,int[]} for
+     * {@code (Ljava/lang/String;[I)V}. Names are as {@code Type.getClassName} gives them, so nested classes keep their
+     * {@code $}.
+     *
+     * @throws IllegalArgumentException If the descriptor is malformed.
+     */
+    static void appendParameterTypes(StringBuilder sb, String methodDescriptor) {
+        if (methodDescriptor.isEmpty() || methodDescriptor.charAt(0) != '(') {
+            throw new IllegalArgumentException("Not a method descriptor: " + methodDescriptor);
+        }
+        int i = 1;
+        boolean first = true;
+        while (i < methodDescriptor.length() && methodDescriptor.charAt(i) != ')') {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            i = appendType(sb, methodDescriptor, i);
+        }
+        if (i >= methodDescriptor.length()) {
+            throw new IllegalArgumentException("Not a method descriptor: " + methodDescriptor);
+        }
+    }
+
+    /**
+     * Appends the type starting at the given index.
+     *
+     * @return The index after the type.
+     */
+    private static int appendType(StringBuilder sb, String descriptor, int start) {
+        int i = start;
+        while (i < descriptor.length() && descriptor.charAt(i) == '[') {
+            i++;
+        }
+        int dimensions = i - start;
+        if (i >= descriptor.length()) {
+            throw new IllegalArgumentException("Not a method descriptor: " + descriptor);
+        }
+        char c = descriptor.charAt(i++);
+        switch (c) {
+            case 'Z': sb.append("boolean"); break;
+            case 'B': sb.append("byte"); break;
+            case 'C': sb.append("char"); break;
+            case 'S': sb.append("short"); break;
+            case 'I': sb.append("int"); break;
+            case 'J': sb.append("long"); break;
+            case 'F': sb.append("float"); break;
+            case 'D': sb.append("double"); break;
+            case 'V': sb.append("void"); break;
+            case 'L':
+                int end = descriptor.indexOf(';', i);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Not a method descriptor: " + descriptor);
+                }
+                for (; i < end; i++) {
+                    char n = descriptor.charAt(i);
+                    sb.append(n == '/' ? '.' : n);
+                }
+                i = end + 1;
+                break;
+            default:
+                throw new IllegalArgumentException("Not a method descriptor: " + descriptor);
+        }
+        for (int d = 0; d < dimensions; d++) {
+            sb.append("[]");
+        }
+        return i;
+    }
+}
@@ -1,16 +1,15 @@
 package nz.rd.nonop.internal.reporting.format;
 
-public class JsonUsageEventFormatter implements UsageEventFormatter {
+public class JsonUsageEventFormatter extends TextUsageEventFormatter {
 
-    // TODO: Consider a StringBuilder interface if we want to save allocations at some point
-    public String formatMethodCalled(long callTimestampMillis, String className, String methodName, String methodDescriptor) {
-        return "{" +
-                "\"timestamp\":" + callTimestampMillis + "," +
-                "\"type\":\"method-called\"," +
-                "\"class\":\"" + className + "\"," +
-                "\"method\":\"" + methodName + "\"," +
-                "\"descriptor\":\"" + methodDescriptor + "\"" +
-                "}";
+    @Override
+    public void appendMethodCalled(StringBuilder sb, long callTimestampMillis, String className, String methodName, String methodDescriptor) {
+        sb.append("{\"timestamp\":").append(callTimestampMillis)
+                .append(",\"type\":\"method-called\"")
+                .append(",\"class\":\"").append(className)
+                .append("\",\"method\":\"").append(methodName)
+                .append("\",\"descriptor\":\"").append(methodDescriptor)
+                .append("\"}");
     }
 
 }
@@ -2,33 +2,31 @@
 
 package nz.rd.nonop.internal.reporting.format;
 
-import net.bytebuddy.jar.asm.Type;
-
 /**
  * Formats method call events into a simple, human-readable string.
  * Example: com.example.MyClass.myMethod(java.lang.String,int)
  */
-public class SimpleUsageEventFormatter implements UsageEventFormatter {
+public class SimpleUsageEventFormatter extends TextUsageEventFormatter {
+
+    private final DescriptorCache descriptorCache;
+
+    public SimpleUsageEventFormatter() {
+        this(DescriptorCache.shared());
+    }
+
+    // Visible for testing
+    SimpleUsageEventFormatter(DescriptorCache descriptorCache) {
+        this.descriptorCache = descriptorCache;
+    }
 
     @Override
-    public String formatMethodCalled(long callTimestampMillis, String className, String methodName, String methodDescriptor) {
-        StringBuilder sb = new StringBuilder();
+    public void appendMethodCalled(StringBuilder sb, long callTimestampMillis, String className, String methodName, String methodDescriptor) {
         sb.append(className);
         sb.append('.');
         sb.append(methodName); // TODO: Think about formatting for constructors, currently Class.<init>(), could be Class() or new Class()
         sb.append('(');
-        // TODO: Think about storing the parsed type in the usage type information so we can reuse
-        // TODO: Consider parsing/printing ourselves directly for performance
-        Type[] argumentTypes = Type.getArgumentTypes(methodDescriptor);
-        for (int i = 0; i < argumentTypes.length; i++) {
-            Type type = argumentTypes[i];
-            if (i > 0) {
-                sb.append(',');
-            }
-            sb.append(type.getClassName());
-        }
+        sb.append(descriptorCache.parameterTypes(methodDescriptor));
         sb.append(')');
-        return sb.toString();
     }
 
-}
\ No newline at end of file
+}
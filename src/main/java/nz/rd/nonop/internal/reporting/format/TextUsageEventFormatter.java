@@ -0,0 +1,34 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.reporting.format;
+
+import nz.rd.nonop.internal.out.UsageOutput;
+
+import java.io.IOException;
+
+/**
+ * A format that writes each event as a line of text. Formatting appends into a builder that's reused for every event
+ * written, so writing an event doesn't allocate.
+ */
+public abstract class TextUsageEventFormatter implements UsageEventFormatter {
+
+    private final StringBuilder line = new StringBuilder(256);
+
+    /**
+     * Appends the formatted event, without a line separator.
+     */
+    public abstract void appendMethodCalled(StringBuilder sb, long callTimestampMillis, String className, String methodName, String methodDescriptor);
+
+    public String formatMethodCalled(long callTimestampMillis, String className, String methodName, String methodDescriptor) {
+        StringBuilder sb = new StringBuilder();
+        appendMethodCalled(sb, callTimestampMillis, className, methodName, methodDescriptor);
+        return sb.toString();
+    }
+
+    @Override
+    public synchronized void writeMethodCalled(UsageOutput output, long callTimestampMillis, String className, String methodName, String methodDescriptor) throws IOException {
+        line.setLength(0);
+        appendMethodCalled(line, callTimestampMillis, className, methodName, methodDescriptor);
+        output.appendLine(line);
+    }
+}
@@ -3,11 +3,18 @@
 package nz.rd.nonop.internal.reporting.format;
 
 import nz.rd.nonop.config.FormatConfig;
+import nz.rd.nonop.internal.out.UsageOutput;
+
+import java.io.IOException;
 
 // TODO: Consider a close() method in case formatters hold resources
 public interface UsageEventFormatter {
 
-    String formatMethodCalled(long callTimestampMillis, String className, String methodName, String methodDescriptor);
+    /**
+     * Formats a method call event and writes it to the output. Text formats write the formatted line; see
+     * {@link TextUsageEventFormatter} for formats that can also format an event as a string.
+     */
+    void writeMethodCalled(UsageOutput output, long callTimestampMillis, String className, String methodName, String methodDescriptor) throws IOException;
 
     /**
      * Creates a {@link UsageEventFormatter} instance based on the provided configuration.
@@ -21,6 +28,8 @@ public interface UsageEventFormatter {
                 return new SimpleUsageEventFormatter();
             case JSON:
                 return new JsonUsageEventFormatter();
+            case BINARY:
+                return new BinaryUsageEventFormatter();
             default:
                 // This case should be unreachable if the enum is exhaustive
                 throw new IllegalStateException("Unsupported format type: " + config.getFormatType());
@@ -0,0 +1,151 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.transformer;
+
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.dynamic.loading.ClassInjector;
+import nz.rd.nonop.internal.NonopLoaderHook;
+import nz.rd.nonop.internal.NonopStaticHooks;
+import nz.rd.nonop.internal.SelfDisarmingCallSite;
+import nz.rd.nonop.internal.logging.NonopLogger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.security.ProtectionDomain;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Defines a copy of {@link NonopLoaderHook} in each ClassLoader that has instrumented classes, so that instrumented
+ * code calls a hook local to its own ClassLoader.
+ */
+final class ClassLoaderHookInjector {
+
+    // How long to wait for another thread that is defining the hook in the same ClassLoader
+    private static final long DEFINITION_WAIT_MILLIS = 1000;
+
+    private final NonopLogger nonopLogger;
+    private final String hookClassName = NonopLoaderHook.class.getName();
+    private final byte[] hookClassBytes = ClassFileLocator.ForClassLoader.read(NonopLoaderHook.class);
+    private final @Nullable ClassLoader agentClassLoader = NonopLoaderHook.class.getClassLoader();
+    // Classes the hook links against, which a copy defined in another ClassLoader resolves through that ClassLoader
+    private final Class<?>[] hookDependencies = {NonopStaticHooks.class, SelfDisarmingCallSite.class};
+
+    // Weak keys so we don't keep ClassLoaders alive
+    private final Map<ClassLoader, HookDefinition> hookedClassLoaders = Collections.synchronizedMap(new WeakHashMap<>());
+
+    ClassLoaderHookInjector(NonopLogger nonopLogger) {
+        this.nonopLogger = nonopLogger;
+    }
+
+    /**
+     * Whether the hook class resolves from a ClassLoader, once the thread defining it there has found out.
+     */
+    private static final class HookDefinition {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean resolvable;
+
+        void complete(boolean resolvable) {
+            this.resolvable = resolvable;
+            done.countDown();
+        }
+
+        /**
+         * @return Whether the hook resolves, or false if that isn't known within the timeout.
+         */
+        boolean await(long timeoutMillis) {
+            try {
+                return done.await(timeoutMillis, TimeUnit.MILLISECONDS) && resolvable;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Must be called before instrumented code is returned for a class in the ClassLoader, so the hook is defined
+     * before instrumented code can resolve it.
+     *
+     * @return Whether instrumented code in the ClassLoader can resolve the hook class and the agent classes it links
+     * against, either through the copy defined here or the agent's own copy. Probes that fail at link time rather than
+     * being suppressed, like invokedynamic probes, and code that calls the hook from a type initializer must only be
+     * used when this is true.
+     */
+    boolean ensureHookDefined(@Nullable ClassLoader loader, @Nullable ProtectionDomain protectionDomain) {
+        if (loader == agentClassLoader) {
+            // The agent's ClassLoader already has the hook
+            return true;
+        }
+        if (loader == null) {
+            // Can't define classes in the bootstrap ClassLoader this way, and it can't see the agent's copy
+            return false;
+        }
+        HookDefinition definition = new HookDefinition();
+        HookDefinition existing = hookedClassLoaders.putIfAbsent(loader, definition);
+        if (existing != null) {
+            // Another thread defines the hook. Don't hold a lock while defining it, since defining takes the
+            // ClassLoader's lock; if this thread holds that lock the other thread can't finish, so don't wait for it.
+            // Until it's known, the hook is treated as unresolvable, so only suppressed probes are used.
+            return existing.await(Thread.holdsLock(loader) ? 0 : DEFINITION_WAIT_MILLIS);
+        }
+
+        boolean resolvable = false;
+        try {
+            resolvable = defineHook(loader, protectionDomain);
+        } finally {
+            definition.complete(resolvable);
+        }
+        return resolvable;
+    }
+
+    private boolean defineHook(ClassLoader loader, @Nullable ProtectionDomain protectionDomain) {
+        try {
+            ClassInjector injector;
+            if (ClassInjector.UsingReflection.isAvailable()) {
+                injector = new ClassInjector.UsingReflection(loader, protectionDomain);
+            } else if (ClassInjector.UsingUnsafe.isAvailable()) {
+                injector = new ClassInjector.UsingUnsafe(loader, protectionDomain);
+            } else {
+                nonopLogger.warn("No class injection strategy available; ClassLoader {} will use the agent's global hook.", loader);
+                return isAgentHookVisible(loader);
+            }
+            injector.injectRaw(Collections.singletonMap(hookClassName, hookClassBytes));
+            nonopLogger.debug("Defined {} in ClassLoader: {}", hookClassName, loader);
+        } catch (Exception | LinkageError e) {
+            nonopLogger.warn("Failed to define {} in ClassLoader {}; it will use the agent's global hook.", hookClassName, loader, e);
+            return isAgentHookVisible(loader);
+        }
+        // The copy links against the agent's classes through the ClassLoader, which might not delegate to the agent's
+        for (Class<?> dependency : hookDependencies) {
+            if (!resolvesTo(loader, dependency)) {
+                nonopLogger.warn("ClassLoader {} can't resolve {}, which {} needs; usage of its classes won't be recorded.",
+                        loader, dependency.getName(), hookClassName);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isAgentHookVisible(ClassLoader loader) {
+        boolean resolvable = resolvesTo(loader, NonopLoaderHook.class);
+        if (!resolvable) {
+            nonopLogger.warn("ClassLoader {} can't resolve {}; usage of its classes won't be recorded.", loader, hookClassName);
+        }
+        return resolvable;
+    }
+
+    /**
+     * Whether resolving the class's name from the ClassLoader gives the agent's class, not a missing class or another
+     * copy.
+     */
+    private static boolean resolvesTo(ClassLoader loader, Class<?> agentClass) {
+        try {
+            return Class.forName(agentClass.getName(), false, loader) == agentClass;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.transformer;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Rejects classes using only their ClassLoader, JVM internal name and classfile header, before any TypePool or
+ * ByteBuddy work is done. Most classes loaded are excluded, so this is the common path; it doesn't allocate.
+ */
+final class ClassfilePreFilter {
+
+    private static final int ACC_SYNTHETIC = 0x1000;
+    private static final int ACC_MODULE = 0x8000;
+
+    private final boolean scanIncludeUnnamed;
+    private final boolean scanIncludeBootstrap;
+    private final boolean scanIncludeSynthetic;
+    private final NameBasedScanRuleMatcher nameMatcher;
+
+    ClassfilePreFilter(boolean scanIncludeUnnamed, boolean scanIncludeBootstrap, boolean scanIncludeSynthetic, NameBasedScanRuleMatcher nameMatcher) {
+        this.scanIncludeUnnamed = scanIncludeUnnamed;
+        this.scanIncludeBootstrap = scanIncludeBootstrap;
+        this.scanIncludeSynthetic = scanIncludeSynthetic;
+        this.nameMatcher = nameMatcher;
+    }
+
+    /**
+     * @return The stage that rejected the class, or null if it should be scanned further.
+     */
+    ScanStatistics.@Nullable Stage reject(@Nullable ClassLoader loader, @Nullable String internalClassName, byte[] classfile) {
+        // Not documented in Javadoc, but have observed that class names can be null somtimes
+        // This is apparently due to synthetic lambda generation
+        // See:
+        // - https://github.com/puniverse/quasar/issues/160
+        // - https://hibernate.atlassian.net/browse/HHH-9541
+        if (!scanIncludeUnnamed && internalClassName == null) {
+            // TODO: Consider if we want to allow this - would be hard to record usage, technically live code could be in a lambda
+            return ScanStatistics.Stage.UNNAMED;
+        }
+        // TODO: Add option to include boot classloader - excludes lots of java and weird classes
+        // Example unusual class: net.bytebuddy.pool.TypePool$Resolution$NoSuchTypeException: Cannot resolve type description for java.lang.invoke.BoundMethodHandle$Species_L4
+        if (!scanIncludeBootstrap && loader == null) {
+            return ScanStatistics.Stage.BOOTSTRAP;
+        }
+        if (internalClassName != null && !nameMatcher.matchesInternalName(internalClassName)) {
+            return ScanStatistics.Stage.NAME;
+        }
+        int accessFlags = readAccessFlags(classfile);
+        if (accessFlags != -1) {
+            if ((accessFlags & ACC_MODULE) != 0 || (!scanIncludeSynthetic && (accessFlags & ACC_SYNTHETIC) != 0)) {
+                return ScanStatistics.Stage.CLASSFILE_HEADER;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The class's access flags, or -1 if the classfile couldn't be read; ByteBuddy can report the problem later.
+     */
+    static int readAccessFlags(byte[] classfile) {
+        int offset = accessFlagsOffset(classfile);
+        return offset == -1 ? -1 : readUnsignedShort(classfile, offset);
+    }
+
+    /**
+     * The access flags follow the constant pool, so finding them means skipping over each constant.
+     *
+     * @return The offset of the access flags, or -1 if the classfile couldn't be read.
+     */
+    static int accessFlagsOffset(byte[] classfile) {
+        if (classfile.length < 10 || readInt(classfile, 0) != 0xCAFEBABE) {
+            return -1;
+        }
+        int constantPoolCount = readUnsignedShort(classfile, 8);
+        int offset = 10;
+        for (int i = 1; i < constantPoolCount; i++) {
+            if (offset >= classfile.length) {
+                return -1;
+            }
+            int tag = classfile[offset];
+            switch (tag) {
+                case 1: // Utf8
+                    if (offset + 3 > classfile.length) {
+                        return -1;
+                    }
+                    offset += 3 + readUnsignedShort(classfile, offset + 1);
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    offset += 5;
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    offset += 9;
+                    i++; // Takes two entries
+                    break;
+                case 7: // Class
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    offset += 3;
+                    break;
+                case 15: // MethodHandle
+                    offset += 4;
+                    break;
+                default:
+                    return -1;
+            }
+        }
+        return offset + 2 > classfile.length ? -1 : offset;
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (readUnsignedShort(bytes, offset) << 16) | readUnsignedShort(bytes, offset + 2);
+    }
+}
@@ -0,0 +1,68 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.transformer;
+
+import net.bytebuddy.asm.AsmVisitorWrapper;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.implementation.Implementation;
+import net.bytebuddy.jar.asm.Handle;
+import net.bytebuddy.jar.asm.MethodVisitor;
+import net.bytebuddy.jar.asm.Opcodes;
+import net.bytebuddy.jar.asm.Type;
+import net.bytebuddy.pool.TypePool;
+import net.bytebuddy.utility.OpenedClassReader;
+import nz.rd.nonop.internal.NonopLoaderHook;
+import nz.rd.nonop.internal.SelfDisarmingCallSite;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Inserts an invokedynamic probe at the start of a method. The call site is linked by
+ * {@link NonopLoaderHook#bootstrap} to a {@link SelfDisarmingCallSite}, with the method ordinal as a static argument.
+ * The probe takes no arguments and leaves nothing on the stack, so it's safe before a constructor's super call and
+ * doesn't change the method's max stack.
+ */
+final class InvokeDynamicProbe implements AsmVisitorWrapper.ForDeclaredMethods.MethodVisitorWrapper {
+
+    private static final int JAVA_7_MAJOR_VERSION = 51;
+
+    private static final Handle BOOTSTRAP = new Handle(
+            Opcodes.H_INVOKESTATIC,
+            Type.getInternalName(NonopLoaderHook.class),
+            "bootstrap",
+            Type.getMethodDescriptor(Type.getType(CallSite.class),
+                    Type.getType(MethodHandles.Lookup.class), Type.getType(String.class), Type.getType(MethodType.class), Type.INT_TYPE),
+            false);
+
+    private final int methodOrdinal;
+
+    InvokeDynamicProbe(int methodOrdinal) {
+        this.methodOrdinal = methodOrdinal;
+    }
+
+    /**
+     * invokedynamic needs a Java 7+ classfile. Reads the major version from the classfile header.
+     */
+    static boolean isSupportedBy(byte[] classfileBuffer) {
+        if (classfileBuffer.length < 8) {
+            return false;
+        }
+        int majorVersion = ((classfileBuffer[6] & 0xFF) << 8) | (classfileBuffer[7] & 0xFF);
+        return majorVersion >= JAVA_7_MAJOR_VERSION;
+    }
+
+    @Override
+    public MethodVisitor wrap(TypeDescription instrumentedType, MethodDescription instrumentedMethod, MethodVisitor methodVisitor,
+                              Implementation.Context implementationContext, TypePool typePool, int writerFlags, int readerFlags) {
+        return new MethodVisitor(OpenedClassReader.ASM_API, methodVisitor) {
+            @Override
+            public void visitCode() {
+                super.visitCode();
+                super.visitInvokeDynamicInsn("methodCalled", "()V", BOOTSTRAP, methodOrdinal);
+            }
+        };
+    }
+}
@@ -0,0 +1,142 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.transformer;
+
+import net.bytebuddy.jar.asm.ClassReader;
+import net.bytebuddy.jar.asm.Opcodes;
+import net.bytebuddy.utility.OpenedClassReader;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The size and shape of each method's bytecode, read from a classfile for method scan rules. Type descriptions don't
+ * include method bodies, so these are read from the classfile's Code attributes directly.
+ */
+final class MethodBodies {
+
+    // ASM expands these short forms, so doesn't define them; each is followed by the forms for locals 1 to 3
+    private static final int ILOAD_0 = 0x1a;
+    private static final int LLOAD_0 = 0x1e;
+    private static final int FLOAD_0 = 0x22;
+    private static final int DLOAD_0 = 0x26;
+    private static final int ALOAD_0 = 0x2a;
+
+    static final MethodBodies UNKNOWN = new MethodBodies(Collections.emptyMap());
+
+    // Keyed by method name + descriptor
+    private final Map<String, Body> bodies;
+
+    private MethodBodies(Map<String, Body> bodies) {
+        this.bodies = bodies;
+    }
+
+    private static final class Body {
+        final int codeLength;
+        final boolean trivialAccessor;
+
+        Body(int codeLength, boolean trivialAccessor) {
+            this.codeLength = codeLength;
+            this.trivialAccessor = trivialAccessor;
+        }
+    }
+
+    /**
+     * @return The method bodies, or {@link #UNKNOWN} if the classfile couldn't be read.
+     */
+    static MethodBodies read(byte[] classfile) {
+        try {
+            ClassReader reader = OpenedClassReader.of(classfile);
+            char[] buffer = new char[reader.getMaxStringLength()];
+
+            // Skip access flags, this class and super class, then interfaces
+            int offset = reader.header + 6;
+            offset += 2 + 2 * reader.readUnsignedShort(offset);
+            // Skip fields
+            int fieldCount = reader.readUnsignedShort(offset);
+            offset += 2;
+            for (int i = 0; i < fieldCount; i++) {
+                offset = skipAttributes(reader, offset + 6);
+            }
+
+            int methodCount = reader.readUnsignedShort(offset);
+            offset += 2;
+            Map<String, Body> bodies = new HashMap<>(methodCount * 2);
+            for (int i = 0; i < methodCount; i++) {
+                String name = reader.readUTF8(offset + 2, buffer);
+                String descriptor = reader.readUTF8(offset + 4, buffer);
+                int attributeCount = reader.readUnsignedShort(offset + 6);
+                offset += 8;
+                for (int a = 0; a < attributeCount; a++) {
+                    int attributeLength = reader.readInt(offset + 2);
+                    if ("Code".equals(reader.readUTF8(offset, buffer))) {
+                        // Skip attribute name, length, max_stack and max_locals
+                        int codeLength = reader.readInt(offset + 10);
+                        bodies.put(name + descriptor, new Body(codeLength, isTrivialAccessor(reader, offset + 14, codeLength)));
+                    }
+                    offset += 6 + attributeLength;
+                }
+            }
+            return new MethodBodies(bodies);
+        } catch (RuntimeException e) {
+            // Unsupported or malformed classfile; ByteBuddy will report it if it's instrumented
+            return UNKNOWN;
+        }
+    }
+
+    private static int skipAttributes(ClassReader reader, int offset) {
+        int attributeCount = reader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < attributeCount; i++) {
+            offset += 6 + reader.readInt(offset + 2);
+        }
+        return offset;
+    }
+
+    /**
+     * Recognises code that loads a field and returns it, or stores its argument in a field and returns, as compiled
+     * by javac for getters and setters.
+     */
+    private static boolean isTrivialAccessor(ClassReader reader, int code, int codeLength) {
+        int op0 = reader.readByte(code);
+        switch (codeLength) {
+            case 4: // getstatic; xreturn
+                return op0 == Opcodes.GETSTATIC && isReturnValue(reader.readByte(code + 3));
+            case 5:
+                if (op0 == ALOAD_0 && reader.readByte(code + 1) == Opcodes.GETFIELD) {
+                    // aload_0; getfield; xreturn
+                    return isReturnValue(reader.readByte(code + 4));
+                }
+                // xload_0; putstatic; return
+                return isLoad(op0, 0) && reader.readByte(code + 1) == Opcodes.PUTSTATIC && reader.readByte(code + 4) == Opcodes.RETURN;
+            case 6: // aload_0; xload_1; putfield; return
+                return op0 == ALOAD_0 && isLoad(reader.readByte(code + 1), 1) &&
+                        reader.readByte(code + 2) == Opcodes.PUTFIELD && reader.readByte(code + 5) == Opcodes.RETURN;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isLoad(int opcode, int local) {
+        return opcode == ILOAD_0 + local || opcode == LLOAD_0 + local || opcode == FLOAD_0 + local ||
+                opcode == DLOAD_0 + local || opcode == ALOAD_0 + local;
+    }
+
+    private static boolean isReturnValue(int opcode) {
+        return opcode >= Opcodes.IRETURN && opcode <= Opcodes.ARETURN;
+    }
+
+    /**
+     * @return The length of the method's bytecode, or -1 if it has none or isn't known.
+     */
+    int getCodeLength(String name, String descriptor) {
+        Body body = bodies.get(name + descriptor);
+        return body != null ? body.codeLength : -1;
+    }
+
+    boolean isTrivialAccessor(String name, String descriptor) {
+        Body body = bodies.get(name + descriptor);
+        return body != null && body.trivialAccessor;
+    }
+}
@@ -0,0 +1,103 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.transformer;
+
+import net.bytebuddy.description.annotation.AnnotationDescription;
+import net.bytebuddy.description.method.MethodDescription;
+import nz.rd.nonop.internal.config.MethodScanMatcher;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Selects the methods of a scanned class to instrument, using the method scan rules and minimum bytecode size.
+ */
+class MethodScanRuleMatcher {
+    private final List<MethodScanMatcher> matchers;
+    private final int minBytecodeSize;
+
+    MethodScanRuleMatcher(List<MethodScanMatcher> matchers, int minBytecodeSize) {
+        this.matchers = matchers;
+        this.minBytecodeSize = minBytecodeSize;
+    }
+
+    /**
+     * @return True if matching needs method bodies, which are read from the classfile.
+     */
+    boolean needsMethodBodies() {
+        return !matchers.isEmpty() || minBytecodeSize > 0;
+    }
+
+    boolean matches(MethodDescription method, MethodBodies bodies) {
+        String name = method.getInternalName();
+        String descriptor = method.getDescriptor();
+
+        if (minBytecodeSize > 0) {
+            int codeLength = bodies.getCodeLength(name, descriptor);
+            if (codeLength != -1 && codeLength < minBytecodeSize) {
+                return false;
+            }
+        }
+
+        if (matchers.isEmpty()) {
+            return true;
+        }
+
+        // As with class rules, the first matcher that provides a non-null decision wins
+        ScannedMethod scannedMethod = new ScannedMethod(method, name, descriptor, bodies);
+        boolean lastWasInclude = false;
+        for (MethodScanMatcher matcher : matchers) {
+            Boolean ruleEval = matcher.eval(scannedMethod);
+            if (ruleEval != null) {
+                return ruleEval;
+            }
+            lastWasInclude = matcher.isEffectivelyInclude();
+        }
+        // If the rules only excluded methods, keep everything else; if they only included methods, skip everything else
+        return !lastWasInclude;
+    }
+
+    private static final class ScannedMethod implements MethodScanMatcher.ScannedMethod {
+        private final MethodDescription method;
+        private final String name;
+        private final String descriptor;
+        private final MethodBodies bodies;
+        private @Nullable List<String> annotationTypeNames;
+
+        ScannedMethod(MethodDescription method, String name, String descriptor, MethodBodies bodies) {
+            this.method = method;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.bodies = bodies;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getDescriptor() {
+            return descriptor;
+        }
+
+        @Override
+        public List<String> getAnnotationTypeNames() {
+            List<String> names = annotationTypeNames;
+            if (names == null) {
+                names = new ArrayList<>();
+                for (AnnotationDescription annotation : method.getDeclaredAnnotations()) {
+                    names.add(annotation.getAnnotationType().getName());
+                }
+                annotationTypeNames = names;
+            }
+            return names;
+        }
+
+        @Override
+        public boolean isTrivialAccessor() {
+            return bodies.isTrivialAccessor(name, descriptor);
+        }
+    }
+}
@@ -3,16 +3,17 @@ package nz.rd.nonop.internal.transformer;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.matcher.ElementMatcher;
 import nz.rd.nonop.internal.config.ScanMatcher;
+import nz.rd.nonop.internal.config.ScanRuleTrie;
 import nz.rd.nonop.internal.logging.NonopLogger;
 
 import java.util.List;
 
 class NameBasedScanRuleMatcher implements ElementMatcher<TypeDescription> {
-    private final List<ScanMatcher> matchers; // Changed from rules
+    private final ScanRuleTrie rules;
     private final NonopLogger logger;
 
     public NameBasedScanRuleMatcher(List<ScanMatcher> matchers, NonopLogger logger) {
-        this.matchers = matchers;
+        this.rules = ScanRuleTrie.compile(matchers);
         this.logger = logger;
     }
 
@@ -23,28 +24,23 @@ class NameBasedScanRuleMatcher implements ElementMatcher<TypeDescription> {
     }
 
     public boolean matchesClassName(String className) {
-        if (matchers.isEmpty()) {
-            return false;
-        }
-
-        // Iterate through all matchers. The last one that provides a non-null decision wins.
-        boolean lastWasInclude = false;
-        for (ScanMatcher matcher : matchers) {
-            Boolean ruleEval = matcher.eval(className);
-            if (ruleEval != null) {
-                if (className.startsWith("nz.rd.nonoptest.")) {
-                    logger.debug("[Matcher] Rule " + matcher.getPatternString() + " evaluated for " + className + " -> " + ruleEval);
-                }
-                return ruleEval;
-            }
-            lastWasInclude = matcher.isEffectivelyInclude();
-        }
-
-        // If the last matcher was a 'not' matcher then the user was just excluding some classes, so they probably
-        // want to match anything they didn't exclude. Conversely, if the last matcher was not a 'not' matcher then they
-        // were just including some classes, so they probably want to skip anything they didn't include.
+        return matchesName(className, '.');
+    }
 
-        return !lastWasInclude;
+    /**
+     * Like {@link #matchesClassName(String)}, but for a JVM internal class name, without allocating.
+     */
+    public boolean matchesInternalName(String internalClassName) {
+        return matchesName(internalClassName, '/');
+    }
 
+    private boolean matchesName(String className, char packageSeparator) {
+        // The first matcher that provides a non-null decision wins. See ScanRuleTrie for when none do.
+        boolean matches = rules.matches(className, packageSeparator);
+        if (className.startsWith(packageSeparator == '/' ? "nz/rd/nonoptest/" : "nz.rd.nonoptest.")) {
+            ScanMatcher matcher = rules.firstApplicableMatcher(className, packageSeparator);
+            logger.debug("[Matcher] Rule {} evaluated for {} -> {}", matcher != null ? matcher.getPatternString() : "(none)", className, matches);
+        }
+        return matches;
     }
 }
@@ -4,72 +4,95 @@ package nz.rd.nonop.internal.transformer;
 
 import net.bytebuddy.ByteBuddy;
 import net.bytebuddy.asm.Advice;
+import net.bytebuddy.asm.AsmVisitorWrapper;
 import net.bytebuddy.description.method.MethodDescription;
 import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.dynamic.ClassFileLocator;
 import net.bytebuddy.dynamic.DynamicType;
-import net.bytebuddy.matcher.ElementMatcher;
 import net.bytebuddy.matcher.ElementMatchers;
-import net.bytebuddy.pool.TypePool;
+import nz.rd.nonop.config.ProbeConfig;
 import nz.rd.nonop.config.ScanConfig;
-import nz.rd.nonop.internal.NonopStaticHooks;
+import nz.rd.nonop.internal.NonopLoaderHook;
+import nz.rd.nonop.internal.baseline.UsageBaseline;
 import nz.rd.nonop.internal.config.ScanMatcher;
 import nz.rd.nonop.internal.logging.NonopLogger;
-import org.apache.commons.lang3.tuple.ImmutablePair;
-import org.apache.commons.lang3.tuple.Pair;
+import nz.rd.nonop.internal.model.MethodTable;
+import nz.rd.nonop.internal.model.MethodUsageSnapshot;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.IllegalClassFormatException;
 import java.security.ProtectionDomain;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 
 public class NonopClassfileTransformer implements ClassFileTransformer {
 
+    public interface RegisterMethodTable {
+        /**
+         * @param initialUsage  The class's method table, with the methods that weren't instrumented because the
+         *                      {@link UsageBaseline} records them as used.
+         * @param probeStrategy The class's probes; classes with {@link ProbeConfig.ProbeStrategy#INDY} probes mustn't
+         *                      be retransformed to strip them.
+         */
+        void registerMethodTable(@Nullable ClassLoader loader, String className, MethodUsageSnapshot initialUsage, ProbeConfig.ProbeStrategy probeStrategy);
+    }
+
     public interface GetMethodUsageSnapshot {
-        Set<Pair<String, String>> usageSnapshotForInstrumentation(Class<?> clazz);
+        /**
+         * @return Null if the class has no method table registered, because it wasn't instrumented when it was loaded.
+         */
+        @Nullable MethodUsageSnapshot usageSnapshotForInstrumentation(Class<?> clazz);
     }
 
+    private final RegisterMethodTable methodTableRegistration;
     private final GetMethodUsageSnapshot usageSnapshot;
+    private final UsageBaseline baseline;
     private final NonopLogger nonopLogger;
+    private final ClassLoaderHookInjector hookInjector;
+    private final TypePoolCache typePoolCache;
+    private final ProbeConfig.ProbeStrategy probeStrategy;
+    private final ScanStatistics scanStatistics = new ScanStatistics();
 
     // Pre-compile matchers for efficiency
+    private final ClassfilePreFilter preFilter;
     private final net.bytebuddy.matcher.ElementMatcher<TypeDescription> typeMatcher;
     private final net.bytebuddy.matcher.ElementMatcher<MethodDescription> methodMatcher;
+    private final MethodScanRuleMatcher methodScanRuleMatcher;
 
-    private final boolean scanIncludeBootstrap;
-    private final boolean scanIncludeUnnamed;
-
-    public NonopClassfileTransformer(ScanConfig scanConfig, GetMethodUsageSnapshot usageSnapshot, NonopLogger nonopLogger) {
+    /**
+     * @param baseline Methods known to be used before the JVM started. They're treated as used when their class is
+     *                 first loaded, so they're never instrumented.
+     */
+    public NonopClassfileTransformer(ScanConfig scanConfig, ProbeConfig probeConfig, RegisterMethodTable methodTableRegistration, GetMethodUsageSnapshot usageSnapshot, UsageBaseline baseline, NonopLogger nonopLogger) {
 
+        this.methodTableRegistration = methodTableRegistration;
         this.usageSnapshot = usageSnapshot;
+        this.baseline = baseline;
         this.nonopLogger = nonopLogger;
-
-        ElementMatcher.Junction<TypeDescription> typeMatcherTemp =
-                ElementMatchers.isSubTypeOf(Object.class)
-                .or(ElementMatchers.isInterface());
-
-        if (!scanConfig.isScanIncludeSynthetic()) {
-            typeMatcherTemp = typeMatcherTemp.and(ElementMatchers.not(ElementMatchers.isSynthetic()));
-        }
+        this.hookInjector = new ClassLoaderHookInjector(nonopLogger);
+        this.typePoolCache = new TypePoolCache(scanConfig.getTypePoolCacheSize());
+        this.probeStrategy = probeConfig.getProbeStrategy();
 
         List<ScanMatcher> allScanMatchers = new ArrayList<>();
         allScanMatchers.addAll(scanConfig.getBuiltinScanMatchers());
         allScanMatchers.addAll(scanConfig.getUserScanMatchers());
-        nonopLogger.debug("[nonop-config] Loaded scan matchers: " + allScanMatchers);
+        nonopLogger.debug("[nonop-config] Loaded scan matchers: {}", allScanMatchers);
         NameBasedScanRuleMatcher nameBasedScanRuleMatcher = new NameBasedScanRuleMatcher(allScanMatchers, nonopLogger);
-        typeMatcherTemp = typeMatcherTemp.and(nameBasedScanRuleMatcher);
 
-        // The NameBasedScanRuleMatcher now incorporates all include/exclude logic based on the ordered list.
-        this.typeMatcher = typeMatcherTemp;
+        // The NameBasedScanRuleMatcher incorporates all include/exclude logic based on the ordered list. It and the
+        // synthetic check only need the class name and classfile header, so they run before the type is described.
+        this.preFilter = new ClassfilePreFilter(scanConfig.isScanIncludeUnnamed(), scanConfig.isScanIncludeBootstrap(), scanConfig.isScanIncludeSynthetic(), nameBasedScanRuleMatcher);
+        this.typeMatcher = ElementMatchers.isSubTypeOf(Object.class)
+                .or(ElementMatchers.isInterface());
 
-        this.scanIncludeBootstrap = scanConfig.isScanIncludeBootstrap();
-        this.scanIncludeUnnamed = scanConfig.isScanIncludeUnnamed();
+        this.methodScanRuleMatcher = new MethodScanRuleMatcher(scanConfig.getMethodScanMatchers(), scanConfig.getMethodMinBytecodeSize());
 
         // Updated method matcher to include default methods and static methods in interfaces
         this.methodMatcher = ElementMatchers.isMethod()
@@ -98,22 +121,9 @@ public class NonopClassfileTransformer implements ClassFileTransformer {
         // TODO: Thinka about Modules and ProectionDomains
 
         try {
-            // Not documented in Javadoc, but have observed that class names can be null somtimes
-            // This is apparently due to synthetic lambda generation
-            // See:
-            // - https://github.com/puniverse/quasar/issues/160
-            // - https://hibernate.atlassian.net/browse/HHH-9541
-            if (!this.scanIncludeUnnamed && classNameJVM == null) {
-                // TODO: Consider if we want to allow this - would be hard to record usage, technically live code could be in a lambda
-//                nonopLogger.debug("Skipping instrumentation for unnamed synthetic class in ClassLoader: " + loader);
-                return null;
-            }
-
-            // TODO: Filter on classnames here before running other code - by excluding java/* early we can also exclude lots of weird synthetic classes, etc
-            // TODO: Add option to include boot classloader - excludes lots of java and weird classes
-            // Example unusual class: net.bytebuddy.pool.TypePool$Resolution$NoSuchTypeException: Cannot resolve type description for java.lang.invoke.BoundMethodHandle$Species_L4
-            if (!this.scanIncludeBootstrap && loader == null) {
-//                nonopLogger.debug("Skipping instrumentation for bootstrap ClassLoader for className: " + classNameJVM);
+            ScanStatistics.Stage rejectedBy = preFilter.reject(loader, classNameJVM, classfileBuffer);
+            if (rejectedBy != null) {
+                scanStatistics.recordRejected(rejectedBy);
                 return null;
             }
 
@@ -123,37 +133,142 @@ public class NonopClassfileTransformer implements ClassFileTransformer {
 
             // Create TypeDescription based on whether the class is being redefined or initially loaded
             TypeDescription typeDescription;
-            Set<Pair<String, String>> usedMethods;
             if (classBeingRedefined != null) {
                 // For retransformation, use the loaded class
                 typeDescription = new TypeDescription.ForLoadedType(classBeingRedefined);
-                // TODO: Verify that the JVM guarantees no concurrent retransformations, otherwise we could revert implementation (but would only be a perf loss / re-logged usage?)
-                usedMethods = usageSnapshot.usageSnapshotForInstrumentation(classBeingRedefined);
             } else {
-                // For initial load, use TypePool to resolve from JVM internal name
-                TypePool typePool = loader != null ? TypePool.Default.of(loader) : TypePool.Default.ofBootLoader();
-                typeDescription = typePool.describe(canonicalClassName).resolve();
-                usedMethods = Collections.emptySet(); // New class definition - cannot have been used; use singleton empty set; avoid creating objects yet
+                // For initial load, parse the classfile we were given; the ClassLoader is only read for other types
+                typeDescription = typePoolCache.describeLoadingClass(loader, canonicalClassName, classfileBuffer);
             }
 
             if (!typeMatcher.matches(typeDescription)) {
 //                nonopLogger.debug("Skipping transformation for excluded class named: " + canonicalClassName + ", loader: " + loader);
+                scanStatistics.recordRejected(ScanStatistics.Stage.TYPE);
                 return null; // Do not transform
             }
 
-            nonopLogger.debug("Transforming class: " + canonicalClassName +
-                    (classBeingRedefined != null ? " (redefining)" : " (initial)") + " for ClassLoader: " + loader + ". Used methods: " + usedMethods);
+            // TODO: Verify that the JVM guarantees no concurrent retransformations, otherwise we could revert implementation (but would only be a perf loss / re-logged usage?)
+            // Reuse the method table from the initial load so ordinals stay stable across retransformations
+            MethodUsageSnapshot usedMethods = classBeingRedefined != null
+                    ? usageSnapshot.usageSnapshotForInstrumentation(classBeingRedefined)
+                    : null;
+            boolean newMethodTable = usedMethods == null;
+            if (usedMethods == null) {
+                // New class definition - cannot have been used in this JVM, but may have been in a previous run; assign
+                // ordinals and register them before the class can run. A class being redefined without a table was
+                // loaded before the agent, or had nothing to instrument then, so its current bytes are used instead.
+                MethodTable methodTable = createMethodTable(typeDescription, classfileBuffer);
+                if (methodTable.getMethodCount() == 0) {
+                    scanStatistics.recordRejected(ScanStatistics.Stage.NO_METHODS);
+                    return null; // Nothing to instrument
+                }
+                usedMethods = baseline.usedMethods(canonicalClassName, methodTable);
+                int baselineMethodCount = usedMethods.getUsedCount();
+                if (baselineMethodCount > 0) {
+                    scanStatistics.recordBaselineMethods(baselineMethodCount);
+                    if (baselineMethodCount == methodTable.getMethodCount()) {
+                        // Registered even though nothing is instrumented, in case another agent retransforms the class
+                        methodTableRegistration.registerMethodTable(loader, canonicalClassName, usedMethods, ProbeConfig.ProbeStrategy.RETRANSFORM);
+                        scanStatistics.recordRejected(ScanStatistics.Stage.BASELINE);
+                        return null; // Every method already used; no probes or usage guard needed
+                    }
+                }
+            }
 
-            return instrumentUnusedMethods(typeDescription, canonicalClassName, classfileBuffer, usedMethods);
+            if (nonopLogger.isDebugEnabled()) {
+                nonopLogger.debug("Transforming class: {} ({}) for ClassLoader: {}. Used methods: {}", canonicalClassName,
+                        classBeingRedefined != null ? "redefining" : "initial", loader, usedMethods);
+            }
+
+            // Define the hook before returning code that calls it; on retransformation this is just a lookup
+            boolean hookResolvable = hookInjector.ensureHookDefined(loader, protectionDomain);
+            ProbeConfig.ProbeStrategy classProbeStrategy = probeStrategyFor(hookResolvable, classfileBuffer);
+            if (newMethodTable) {
+                // Before the class can run. Registered even if nothing is instrumented, in case another agent
+                // retransforms the class
+                methodTableRegistration.registerMethodTable(loader, canonicalClassName, usedMethods, classProbeStrategy);
+            }
+            // The guard is set by the class's own type initializer, which isn't suppressed like the probes, so a hook
+            // that can't link would stop the class initializing
+            boolean usageGuard = classBeingRedefined != null
+                    ? UsageGuardField.isDeclaredBy(typeDescription)
+                    : classProbeStrategy == ProbeConfig.ProbeStrategy.RETRANSFORM && hookResolvable && UsageGuardField.canBeDeclaredBy(typeDescription);
+
+            scanStatistics.recordTransformed();
+            return instrumentUnusedMethods(typeDescription, canonicalClassName, classfileBuffer, usedMethods, classProbeStrategy, usageGuard);
 
         } catch (Exception e) {
-            nonopLogger.error("Exception during transform for class: " + classNameJVM, e);
+            nonopLogger.error("Exception during transform for class: {}", classNameJVM, e);
             return null;
         }
     }
 
-    // Public for testing or direct use
-    public byte @Nullable [] instrumentUnusedMethods(TypeDescription typeDescription, String canonicalClassName, byte[] classfileBuffer, Set<Pair<String, String>> usedMethods) {
+    /**
+     * How many classes were rejected at each scan stage, and how many were transformed.
+     */
+    public String getScanStatistics() {
+        return scanStatistics.toString();
+    }
+
+    /**
+     * Hit and miss counts for the per-ClassLoader TypePool caches, for tuning nonop.scan.typepool.cachesize.
+     */
+    public String getTypePoolCacheStatistics() {
+        return typePoolCache.toString();
+    }
+
+    /**
+     * An invokedynamic probe that can't link throws from the instrumented method, rather than being suppressed like
+     * the Advice probe, so only use one when it's sure to link: the hook's bootstrap method, and the call site class it
+     * creates, must resolve from the class's ClassLoader. Otherwise fall back to the retransform strategy.
+     */
+    private ProbeConfig.ProbeStrategy probeStrategyFor(boolean hookResolvable, byte[] classfileBuffer) {
+        if (probeStrategy == ProbeConfig.ProbeStrategy.INDY && hookResolvable && InvokeDynamicProbe.isSupportedBy(classfileBuffer)) {
+            return ProbeConfig.ProbeStrategy.INDY;
+        }
+        return ProbeConfig.ProbeStrategy.RETRANSFORM;
+    }
+
+    /**
+     * Assigns each instrumentable method of the type a dense ordinal, in declaration order. The ordinal is baked into
+     * the method's hook so the hook never needs to pass or hash the method's name and descriptor.
+     * <p>
+     * Only methods selected by the method scan rules are included. Methods left out of the table are never
+     * instrumented, including when the class is retransformed.
+     *
+     * @param classfile Used to read method bodies for rules that need them; without it those rules don't apply.
+     */
+    public MethodTable createMethodTable(TypeDescription typeDescription, byte @Nullable [] classfile) {
+        List<MethodDescription.InDefinedShape> methods = getInstrumentableMethods(typeDescription);
+        MethodBodies bodies = classfile != null && methodScanRuleMatcher.needsMethodBodies()
+                ? MethodBodies.read(classfile)
+                : MethodBodies.UNKNOWN;
+        List<String> methodNames = new ArrayList<>(methods.size());
+        List<String> methodDescriptors = new ArrayList<>(methods.size());
+        for (MethodDescription.InDefinedShape method : methods) {
+            if (methodScanRuleMatcher.matches(method, bodies)) {
+                methodNames.add(method.getInternalName()); // Method name or <init>
+                methodDescriptors.add(method.getDescriptor());
+            }
+        }
+        scanStatistics.recordMethods(methodNames.size(), methods.size() - methodNames.size());
+        return MethodTable.of(methodNames, methodDescriptors);
+    }
+
+    private List<MethodDescription.InDefinedShape> getInstrumentableMethods(TypeDescription typeDescription) {
+        return typeDescription.getDeclaredMethods().stream()
+                .filter(methodMatcher::matches)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Public for testing or direct use.
+     *
+     * @param usageGuard Whether retransform strategy probes check the class's {@link UsageGuardField} before calling
+     *                   the hook. The field is declared if the type doesn't already declare it, which is only allowed
+     *                   when the class is first loaded.
+     */
+    public byte @Nullable [] instrumentUnusedMethods(TypeDescription typeDescription, String canonicalClassName, byte[] classfileBuffer, MethodUsageSnapshot usedMethods, ProbeConfig.ProbeStrategy probeStrategy, boolean usageGuard) {
         // TODO: If this code can be called concurrently for a class we are entering a race at this point which could result in incorrect instrumentation if ordering is reversed
         // TODO: Double check if we should be using something like AgentBuilder.disableClassFormatChanges to ensure we're doing conservative/low impact changes to classes
         DynamicType.Builder<?> builder = new ByteBuddy()
@@ -161,58 +276,112 @@ public class NonopClassfileTransformer implements ClassFileTransformer {
                 .redefine(typeDescription, ClassFileLocator.Simple.of(canonicalClassName, classfileBuffer));
 
         boolean changed = false;
-        List<MethodDescription.InDefinedShape> methods = typeDescription.getDeclaredMethods().stream()
-            .filter(methodMatcher::matches)
-            .collect(Collectors.toList());
+        if (usageGuard) {
+            if (!UsageGuardField.isDeclaredBy(typeDescription)) {
+                builder = UsageGuardField.declare(builder);
+            }
+            // A loaded class's fields can't be removed, so write the class out even if no probes are left
+            changed = true;
+        }
+
+        List<MethodDescription.InDefinedShape> methods = getInstrumentableMethods(typeDescription);
+        MethodTable methodTable = usedMethods.getMethodTable();
 
         // Print used methods for debugging
 //        nonopLogger.debug("Used methods for " + canonicalClassName + ": " + usedMethods);
 
+        int ordinalHint = 0;
         for (MethodDescription.InDefinedShape method : methods) {
-            // TODO: Decide on which string representation for usage tracking is the fastest and most useful
             String methodName = method.getInternalName(); // Method name or <init>
             String methodDescriptor = method.getDescriptor();
-            Pair<String, String> methodKey = ImmutablePair.of(methodName, methodDescriptor);
+            // Declaration order matches the table on initial load; retransformation may list methods in another order
+            int methodOrdinal = methodTable.ordinalOf(methodName, methodDescriptor, ordinalHint);
 
 //            nonopLogger.debug("Processing method: " + methodName + " " + methodDescriptor);
 
-            // Used methods should be an empty set if this hasn't been called yet
-            boolean shouldInstrumentThisMethod = !usedMethods.contains(methodKey);
+            if (methodOrdinal < 0) {
+                // Excluded by the method scan rules, or not known when the class was first loaded, so usage can't be
+                // recorded for it
+                nonopLogger.debug("Method transformation: {}: NOT IN METHOD TABLE - skipping", method);
+                continue;
+            }
+            ordinalHint = methodOrdinal + 1;
+
+            // Used methods should be empty if this hasn't been called yet
+            boolean shouldInstrumentThisMethod = !usedMethods.isUsed(methodOrdinal);
 
             if (shouldInstrumentThisMethod) {
                 // This method has not been called yet, so instrument it to call the hook
-                nonopLogger.debug("Method transformation: " + canonicalClassName + " " + methodName + " " + methodDescriptor + ": UNUSED - instrumenting");
-                // TODO: Consider micro-optimisations like caching Advice object
-                builder = builder.visit(Advice.to(CallMethodCalledHook.class).on(ElementMatchers.is(method)));
+                if (nonopLogger.isDebugEnabled()) {
+                    nonopLogger.debug("Method transformation: {} #{}: UNUSED - instrumenting", method, methodOrdinal);
+                }
+                builder = builder.visit(createProbe(method, methodOrdinal, probeStrategy, usageGuard));
                 changed = true;
             } else {
                 // By not transforming this method, we are not generating instrumentation for this method.
                 // If the method was previously instrumented, this effectively strips the instrumentation, making
                 // future method calls zero overhead.
-                nonopLogger.debug("Method transformation: " + canonicalClassName + " " + methodName + " " + methodDescriptor + ": ALREADY USED - skipping");
+                nonopLogger.debug("Method transformation: {}: ALREADY USED - skipping", method);
             }
         }
 
         if (changed) {
-            nonopLogger.debug("Applying changes to: " + canonicalClassName);
+            nonopLogger.debug("Applying changes to: {}", canonicalClassName);
             // builder.make().saveIn(new File("./dump")); - dump to analyse, use javap -v -constants -c -classpath dump nz.rd.nonoptest.integration.SampleInterface
             return builder.make().getBytes();
         } else {
-            nonopLogger.debug("No changes needed for: " + canonicalClassName);
+            nonopLogger.debug("No changes needed for: {}", canonicalClassName);
             // TODO: RecorderAPI.allMethodsUsed() - can possibly free any structures taken to record usage now, esp if have recorded some usage already
             return null;
         }
     }
 
+    private static AsmVisitorWrapper createProbe(MethodDescription.InDefinedShape method, int methodOrdinal, ProbeConfig.ProbeStrategy probeStrategy, boolean usageGuard) {
+        switch (probeStrategy) {
+            case INDY:
+                return new AsmVisitorWrapper.ForDeclaredMethods()
+                        .method(ElementMatchers.is(method), new InvokeDynamicProbe(methodOrdinal));
+            case RETRANSFORM:
+                // TODO: Consider micro-optimisations like caching Advice object
+                return Advice.withCustomMapping()
+                        .bind(MethodOrdinal.class, methodOrdinal)
+                        .to(usageGuard ? CallMethodCalledHookUnlessGuarded.class : CallMethodCalledHook.class)
+                        .on(ElementMatchers.is(method));
+            default:
+                throw new IllegalArgumentException("Unknown probe strategy: " + probeStrategy);
+        }
+    }
+
+    /**
+     * Binds the method's ordinal in its class's {@link MethodTable} as a constant in the hook.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.PARAMETER)
+    public @interface MethodOrdinal {
+    }
+
     public static class CallMethodCalledHook {
         @Advice.OnMethodEnter(suppress = Throwable.class) // TODO: Remove suppression if generates try/catch bytecode
         public static void enter(
                 @Advice.Origin Class<?> clazz,
-                @Advice.Origin("#m") String methodName,
-                @Advice.Origin("#d") String methodDescriptor
+                @MethodOrdinal int methodOrdinal
         ) {
             // TODO: Check bytecode generated is minimised
-            NonopStaticHooks.methodCalled(clazz, methodName, methodDescriptor);
+            NonopLoaderHook.methodCalled(clazz, methodOrdinal);
+        }
+    }
+
+    public static class CallMethodCalledHookUnlessGuarded {
+        @Advice.OnMethodEnter(suppress = Throwable.class)
+        public static void enter(
+                @Advice.Origin Class<?> clazz,
+                @MethodOrdinal int methodOrdinal,
+                @Advice.FieldValue(UsageGuardField.NAME) long[] usageGuard
+        ) {
+            // Null until the type initializer has set it, or if the agent couldn't provide a guard
+            if (usageGuard == null || (usageGuard[methodOrdinal >>> 6] & (1L << methodOrdinal)) == 0) {
+                NonopLoaderHook.methodCalled(clazz, methodOrdinal);
+            }
         }
     }
 
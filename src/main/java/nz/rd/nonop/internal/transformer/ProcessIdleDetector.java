@@ -0,0 +1,51 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.transformer;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * Judges whether the process is idle from its recent CPU load. Falls back to the system load average per processor
+ * where process CPU load isn't available. If neither is available the process is always treated as idle, so nothing is
+ * held waiting for a measurement that will never come.
+ */
+final class ProcessIdleDetector {
+
+    private final double maxCpuLoad;
+    // Looked up on first use, from the scheduler thread, to keep management classes out of agent startup
+    private @Nullable OperatingSystemMXBean operatingSystem;
+
+    ProcessIdleDetector(double maxCpuLoad) {
+        this.maxCpuLoad = maxCpuLoad;
+    }
+
+    boolean isIdle() {
+        double cpuLoad = cpuLoad();
+        return cpuLoad < 0 || cpuLoad < maxCpuLoad;
+    }
+
+    /**
+     * @return Recent CPU load from 0 to 1, or negative if unknown.
+     */
+    private double cpuLoad() {
+        OperatingSystemMXBean operatingSystem = this.operatingSystem;
+        if (operatingSystem == null) {
+            operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+            this.operatingSystem = operatingSystem;
+        }
+        if (operatingSystem instanceof com.sun.management.OperatingSystemMXBean) {
+            double processCpuLoad = ((com.sun.management.OperatingSystemMXBean) operatingSystem).getProcessCpuLoad();
+            if (processCpuLoad >= 0) {
+                return processCpuLoad;
+            }
+        }
+        double loadAverage = operatingSystem.getSystemLoadAverage();
+        if (loadAverage >= 0) {
+            return loadAverage / operatingSystem.getAvailableProcessors();
+        }
+        return -1;
+    }
+}
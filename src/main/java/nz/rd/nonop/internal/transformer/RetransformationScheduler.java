@@ -0,0 +1,203 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.transformer;
+
+import nz.rd.nonop.config.RetransformConfig;
+import nz.rd.nonop.internal.logging.NonopLogger;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Retransforms classes on a background daemon thread, so application threads only enqueue the class and return.
+ * <p>
+ * Once a class is due the thread waits for the debounce window, then retransforms every class that's due by then with
+ * a single {@link Instrumentation#retransformClasses} call. If the call fails then none of the batch has been
+ * retransformed, so the batch is split in half and each half retried, until the classes that can't be retransformed
+ * are isolated.
+ * <p>
+ * Retransforming deoptimizes the class's compiled code, which is a visible latency hit under load. So batches can be
+ * held until the process is idle, up to a maximum delay after the first class in the batch was due.
+ * <p>
+ * The thread also runs checks of whether a class should be scheduled, for classes that weren't ready to be
+ * retransformed but may be later.
+ */
+public final class RetransformationScheduler implements AutoCloseable {
+
+    private final NonopLogger nonopLogger;
+    private final Instrumentation instrumentation;
+    private final long debounceMillis;
+    private final boolean waitForIdle;
+    private final long idleMaxDelayNanos;
+    private final BooleanSupplier isIdle;
+
+    private final DelayQueue<ScheduledClass> scheduledClasses = new DelayQueue<>();
+    private final Thread thread;
+    private volatile boolean closed = false;
+
+    private static final long IDLE_POLL_MILLIS = 250;
+
+    public RetransformationScheduler(NonopLogger nonopLogger, Instrumentation instrumentation, RetransformConfig retransformConfig) {
+        this(nonopLogger, instrumentation, retransformConfig, new ProcessIdleDetector(retransformConfig.getIdleMaxCpuLoad())::isIdle);
+    }
+
+    // Visible for testing
+    RetransformationScheduler(NonopLogger nonopLogger, Instrumentation instrumentation, RetransformConfig retransformConfig, BooleanSupplier isIdle) {
+        this.nonopLogger = nonopLogger;
+        this.instrumentation = instrumentation;
+        this.debounceMillis = retransformConfig.getDebounceMillis();
+        this.waitForIdle = retransformConfig.isWaitForIdle();
+        this.idleMaxDelayNanos = TimeUnit.MILLISECONDS.toNanos(retransformConfig.getIdleMaxDelayMillis());
+        this.isIdle = isIdle;
+        this.thread = new Thread(this::run, "nonop-retransform");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    // Called by application threads
+    public void schedule(Class<?> clazz, long delayMillis) {
+        scheduledClasses.offer(new ScheduledClass(clazz, dueNanos(delayMillis), null));
+    }
+
+    /**
+     * Runs the check on the scheduler thread after the delay, unless the class has been unloaded by then. The check can
+     * schedule the class, or schedule another check.
+     */
+    public void scheduleCheck(Class<?> clazz, long delayMillis, Consumer<Class<?>> check) {
+        scheduledClasses.offer(new ScheduledClass(clazz, dueNanos(delayMillis), check));
+    }
+
+    private static long dueNanos(long delayMillis) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+    }
+
+    private void run() {
+        List<ScheduledClass> batch = new ArrayList<>();
+        while (!closed) {
+            try {
+                ScheduledClass first = scheduledClasses.take();
+                if (first.check != null) {
+                    // Checks aren't retransformations, so don't start a batch
+                    runCheck(first);
+                    continue;
+                }
+                batch.add(first);
+                if (debounceMillis > 0) {
+                    Thread.sleep(debounceMillis);
+                }
+                if (waitForIdle) {
+                    awaitIdle(first.dueNanos + idleMaxDelayNanos);
+                }
+            } catch (InterruptedException e) {
+                // Closed; classes still scheduled keep their probes, which only costs performance
+                return;
+            }
+            scheduledClasses.drainTo(batch);
+            retransformBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void awaitIdle(long deadlineNanos) throws InterruptedException {
+        while (!isIdle.getAsBoolean()) {
+            long remainingNanos = deadlineNanos - System.nanoTime();
+            if (remainingNanos <= 0) {
+                nonopLogger.debug("Process not idle, but retransforming anyway after waiting the maximum delay");
+                return;
+            }
+            Thread.sleep(Math.min(IDLE_POLL_MILLIS, TimeUnit.NANOSECONDS.toMillis(remainingNanos) + 1));
+        }
+    }
+
+    private void retransformBatch(List<ScheduledClass> batch) {
+        Set<Class<?>> uniqueClasses = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Class<?>> classes = new ArrayList<>(batch.size());
+        for (ScheduledClass scheduledClass : batch) {
+            if (scheduledClass.check != null) {
+                runCheck(scheduledClass);
+                continue;
+            }
+            Class<?> clazz = scheduledClass.classRef.get();
+            // A class unloaded since it was scheduled can't be called again, so doesn't need its probes stripped.
+            // The usage of its methods will already have been recorded.
+            if (clazz != null && uniqueClasses.add(clazz)) {
+                classes.add(clazz);
+            }
+        }
+        if (!classes.isEmpty()) {
+            nonopLogger.debug("Retransforming batch of {} classes", classes.size());
+            retransform(classes);
+        }
+    }
+
+    private void runCheck(ScheduledClass scheduledClass) {
+        Class<?> clazz = scheduledClass.classRef.get();
+        Consumer<Class<?>> check = scheduledClass.check;
+        if (clazz == null || check == null) {
+            return;
+        }
+        try {
+            check.accept(clazz);
+        } catch (Exception e) {
+            nonopLogger.error("Failed to check whether to retransform class {}", clazz.getName(), e);
+        }
+    }
+
+    private void retransform(List<Class<?>> classes) {
+        try {
+            instrumentation.retransformClasses(classes.toArray(new Class<?>[0]));
+        } catch (Exception | LinkageError e) {
+            if (classes.size() == 1) {
+                nonopLogger.error("Failed to reinstrument class {} to remove method usage instrumentation of already used methods; performance may suffer.", classes.get(0).getName(), e);
+                return;
+            }
+            int middle = classes.size() / 2;
+            retransform(classes.subList(0, middle));
+            retransform(classes.subList(middle, classes.size()));
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+
+    private static final class ScheduledClass implements Delayed {
+        // Weak reference so scheduled classes can still be unloaded
+        final WeakReference<Class<?>> classRef;
+        final long dueNanos;
+        // Run instead of retransforming the class, if set
+        final @Nullable Consumer<Class<?>> check;
+
+        ScheduledClass(Class<?> clazz, long dueNanos, @Nullable Consumer<Class<?>> check) {
+            this.classRef = new WeakReference<>(clazz);
+            this.dueNanos = dueNanos;
+            this.check = check;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.signum(dueNanos - ((ScheduledClass) other).dueNanos);
+        }
+    }
+}
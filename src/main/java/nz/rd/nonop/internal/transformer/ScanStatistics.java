@@ -0,0 +1,86 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.transformer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the classes seen by the transformer, by the stage that rejected them.
+ */
+final class ScanStatistics {
+
+    /**
+     * In the order they're applied. Stages before {@link #TYPE} run before any TypePool or ByteBuddy work.
+     */
+    enum Stage {
+        UNNAMED,
+        BOOTSTRAP,
+        NAME,
+        CLASSFILE_HEADER,
+        TYPE,
+        NO_METHODS,
+        /** Every method is recorded as used in the usage baseline. */
+        BASELINE
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final LongAdder[] rejected = new LongAdder[STAGES.length];
+    private final LongAdder transformed = new LongAdder();
+    private final LongAdder methodsIncluded = new LongAdder();
+    private final LongAdder methodsExcluded = new LongAdder();
+    private final LongAdder methodsInBaseline = new LongAdder();
+
+    ScanStatistics() {
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] = new LongAdder();
+        }
+    }
+
+    void recordRejected(Stage stage) {
+        rejected[stage.ordinal()].increment();
+    }
+
+    void recordTransformed() {
+        transformed.increment();
+    }
+
+    /**
+     * Records the methods of a class that are included in its method table, or excluded by the method scan rules.
+     */
+    void recordMethods(int included, int excluded) {
+        methodsIncluded.add(included);
+        methodsExcluded.add(excluded);
+    }
+
+    /**
+     * Records the methods of a class that aren't instrumented because the usage baseline records them as used.
+     */
+    void recordBaselineMethods(int count) {
+        methodsInBaseline.add(count);
+    }
+
+    long getRejectedCount(Stage stage) {
+        return rejected[stage.ordinal()].sum();
+    }
+
+    long getTransformedCount() {
+        return transformed.sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ScanStatistics{rejected={");
+        for (Stage stage : STAGES) {
+            if (stage.ordinal() > 0) {
+                sb.append(", ");
+            }
+            sb.append(stage).append('=').append(getRejectedCount(stage));
+        }
+        return sb.append("}, transformed=").append(getTransformedCount())
+                .append(", methodsIncluded=").append(methodsIncluded.sum())
+                .append(", methodsExcluded=").append(methodsExcluded.sum())
+                .append(", methodsInBaseline=").append(methodsInBaseline.sum())
+                .append('}').toString();
+    }
+}
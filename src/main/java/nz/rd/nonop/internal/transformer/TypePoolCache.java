@@ -0,0 +1,141 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.transformer;
+
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.pool.TypePool;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps a {@link TypePool} for each ClassLoader, so supertypes and interfaces are parsed once per ClassLoader rather
+ * than once for every class that's loaded. Each pool's cache is bounded, evicting the least recently used types.
+ */
+final class TypePoolCache {
+
+    private final int maxTypesPerClassLoader;
+
+    // Weak keys so we don't keep ClassLoaders alive; pools only reference their ClassLoader weakly
+    private final Map<ClassLoader, TypePool> typePools = Collections.synchronizedMap(new WeakHashMap<>());
+    private final TypePool bootTypePool;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    TypePoolCache(int maxTypesPerClassLoader) {
+        this.maxTypesPerClassLoader = maxTypesPerClassLoader;
+        this.bootTypePool = createTypePool(ClassFileLocator.ForClassLoader.ofBootLoader());
+    }
+
+    TypePool typePoolFor(@Nullable ClassLoader loader) {
+        if (loader == null) {
+            return bootTypePool;
+        }
+        return typePools.computeIfAbsent(loader,
+                classLoader -> createTypePool(ClassFileLocator.ForClassLoader.WeaklyReferenced.of(classLoader)));
+    }
+
+    /**
+     * Describes a class that's being loaded from its classfile, without reading the classfile again through its
+     * ClassLoader. Other types it refers to, such as its supertypes, are described by the ClassLoader's pool.
+     */
+    TypeDescription describeLoadingClass(@Nullable ClassLoader loader, String className, byte[] classfile) {
+        return new LoadingClassTypePool(className, classfile, typePoolFor(loader)).describe(className).resolve();
+    }
+
+    private TypePool createTypePool(ClassFileLocator classFileLocator) {
+        return new TypePool.Default(new BoundedCacheProvider(), classFileLocator, TypePool.Default.ReaderMode.FAST);
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "TypePoolCache{" +
+                "classLoaders=" + typePools.size() +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", evictions=" + getEvictions() +
+                '}';
+    }
+
+    /**
+     * Not cached itself: the class isn't defined yet, so it shouldn't be visible to other lookups, which would read it
+     * through the ClassLoader and may not find it.
+     */
+    private static final class LoadingClassTypePool extends TypePool.Default {
+
+        private final String className;
+        private final TypePool classLoaderTypePool;
+
+        LoadingClassTypePool(String className, byte[] classfile, TypePool classLoaderTypePool) {
+            super(new TypePool.CacheProvider.Simple(), ClassFileLocator.Simple.of(className, classfile), TypePool.Default.ReaderMode.FAST);
+            this.className = className;
+            this.classLoaderTypePool = classLoaderTypePool;
+        }
+
+        @Override
+        public Resolution describe(String name) {
+            return name.equals(className) ? super.describe(name) : classLoaderTypePool.describe(name);
+        }
+    }
+
+    private final class BoundedCacheProvider implements TypePool.CacheProvider {
+
+        // Access order, so the eldest entry is the least recently used
+        private final Map<String, TypePool.Resolution> resolutions = new LinkedHashMap<String, TypePool.Resolution>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TypePool.Resolution> eldest) {
+                if (size() > maxTypesPerClassLoader) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        @Override
+        public synchronized TypePool.@Nullable Resolution find(String name) {
+            TypePool.Resolution resolution = resolutions.get(name);
+            if (resolution == null) {
+                misses.increment();
+            } else {
+                hits.increment();
+            }
+            return resolution;
+        }
+
+        @Override
+        public synchronized TypePool.Resolution register(String name, TypePool.Resolution resolution) {
+            // Like the default cache, keep a resolution registered by a racing thread
+            TypePool.Resolution registered = resolutions.get(name);
+            if (registered != null) {
+                return registered;
+            }
+            resolutions.put(name, resolution);
+            return resolution;
+        }
+
+        @Override
+        public synchronized void clear() {
+            resolutions.clear();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.transformer;
+
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.modifier.FieldManifestation;
+import net.bytebuddy.description.modifier.Ownership;
+import net.bytebuddy.description.modifier.SyntheticState;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.DynamicType;
+import net.bytebuddy.implementation.Implementation;
+import net.bytebuddy.implementation.bytecode.ByteCodeAppender;
+import net.bytebuddy.implementation.bytecode.StackManipulation;
+import net.bytebuddy.implementation.bytecode.constant.ClassConstant;
+import net.bytebuddy.jar.asm.MethodVisitor;
+import net.bytebuddy.jar.asm.Opcodes;
+import net.bytebuddy.jar.asm.Type;
+import net.bytebuddy.matcher.ElementMatchers;
+import nz.rd.nonop.internal.NonopLoaderHook;
+
+import java.io.Serializable;
+
+/**
+ * A synthetic {@code static final long[]} field holding the class's usage guard, so probes can skip the hook for
+ * methods that no longer need it with a single array load. The type initializer sets it from
+ * {@link NonopLoaderHook#usageGuard}.
+ * <p>
+ * Fields can only be added when a class is first loaded. Once added, retransformations must keep the field, which
+ * happens because they describe the loaded class, and that declares it.
+ */
+final class UsageGuardField {
+
+    static final String NAME = "nonop$usageGuard";
+    private static final String DESCRIPTOR = "[J";
+    private static final String SERIAL_VERSION_UID = "serialVersionUID";
+
+    private UsageGuardField() {
+    }
+
+    static boolean isDeclaredBy(TypeDescription typeDescription) {
+        return isDeclaredBy(typeDescription, NAME);
+    }
+
+    private static boolean isDeclaredBy(TypeDescription typeDescription, String fieldName) {
+        return !typeDescription.getDeclaredFields().filter(ElementMatchers.named(fieldName)).isEmpty();
+    }
+
+    /**
+     * Interface fields must be public, so only classes get a guard. Classes whose default serialVersionUID would change
+     * don't get one either.
+     */
+    static boolean canBeDeclaredBy(TypeDescription typeDescription) {
+        return !typeDescription.isInterface() && !changesSerialVersionUid(typeDescription);
+    }
+
+    /**
+     * The field itself is private static, so it's left out of the default serialVersionUID, but whether the class has
+     * a type initializer is not. Adding one to a Serializable class that relies on the default would stop JVMs with and
+     * without the agent reading each other's serialized objects.
+     */
+    private static boolean changesSerialVersionUid(TypeDescription typeDescription) {
+        if (!typeDescription.getDeclaredMethods().filter(ElementMatchers.isTypeInitializer()).isEmpty()
+                || isDeclaredBy(typeDescription, SERIAL_VERSION_UID)) {
+            return false;
+        }
+        try {
+            return typeDescription.isAssignableTo(Serializable.class);
+        } catch (RuntimeException e) {
+            // A supertype couldn't be described, so it might be Serializable
+            return true;
+        }
+    }
+
+    static <T> DynamicType.Builder<T> declare(DynamicType.Builder<T> builder) {
+        return builder
+                .defineField(NAME, long[].class, Visibility.PRIVATE, Ownership.STATIC, FieldManifestation.FINAL, SyntheticState.SYNTHETIC)
+                .initializer(new Initializer());
+    }
+
+    private static final class Initializer implements ByteCodeAppender {
+        @Override
+        public Size apply(MethodVisitor methodVisitor, Implementation.Context implementationContext, MethodDescription instrumentedMethod) {
+            TypeDescription instrumentedType = implementationContext.getInstrumentedType();
+            StackManipulation.Size size = ClassConstant.of(instrumentedType).apply(methodVisitor, implementationContext);
+            methodVisitor.visitMethodInsn(Opcodes.INVOKESTATIC, Type.getInternalName(NonopLoaderHook.class), "usageGuard",
+                    "(Ljava/lang/Class;)" + DESCRIPTOR, false);
+            methodVisitor.visitFieldInsn(Opcodes.PUTSTATIC, instrumentedType.getInternalName(), NAME, DESCRIPTOR);
+            return new Size(size.getMaximalSize(), instrumentedMethod.getStackSize());
+        }
+    }
+}
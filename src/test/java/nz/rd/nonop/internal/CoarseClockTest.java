@@ -0,0 +1,66 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CoarseClockTest {
+
+    @Test
+    void shouldTrackTheSystemClock() throws Exception {
+        try (CoarseClock clock = new CoarseClock(1)) {
+            long start = clock.currentTimeMillis();
+            assertThat(start, lessThanOrEqualTo(System.currentTimeMillis()));
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (clock.currentTimeMillis() == start && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertThat(clock.currentTimeMillis(), greaterThan(start));
+        }
+    }
+
+    @Test
+    void shouldOnlyTickWhileRead() throws Exception {
+        try (CoarseClock clock = new CoarseClock(1, 20)) {
+            assertThat(clock.isTicking(), is(false));
+            long first = clock.currentTimeMillis();
+            assertThat(clock.isTicking(), is(true));
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (clock.isTicking() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertThat(clock.isTicking(), is(false));
+
+            // Read from the system clock, rather than the last tick before the ticker parked
+            Thread.sleep(20);
+            long beforeRead = System.currentTimeMillis();
+            assertThat(clock.currentTimeMillis(), greaterThanOrEqualTo(Math.max(first, beforeRead)));
+            assertThat(clock.isTicking(), is(true));
+        }
+    }
+
+    @Test
+    void shouldStopTickingWhenClosed() throws Exception {
+        CoarseClock clock = new CoarseClock(1);
+        clock.close();
+        Thread.sleep(20); // Let a tick already in progress finish
+        long stopped = clock.currentTimeMillis();
+        Thread.sleep(20);
+
+        assertThat(clock.currentTimeMillis(), is(stopped));
+    }
+
+    @Test
+    void shouldRejectZeroTick() {
+        assertThrows(IllegalArgumentException.class, () -> new CoarseClock(0));
+    }
+}
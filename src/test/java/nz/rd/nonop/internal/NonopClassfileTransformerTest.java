@@ -3,7 +3,6 @@
 package nz.rd.nonop.internal;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
 import net.bytebuddy.ByteBuddy;
 import net.bytebuddy.description.modifier.Visibility;
 import net.bytebuddy.description.type.TypeDescription;
@@ -11,19 +10,31 @@ import net.bytebuddy.dynamic.ClassFileLocator;
 import net.bytebuddy.dynamic.loading.ByteArrayClassLoader;
 import net.bytebuddy.implementation.StubMethod;
 import net.bytebuddy.pool.TypePool;
+import nz.rd.nonop.config.ProbeConfig;
 import nz.rd.nonop.config.ScanConfig;
+import nz.rd.nonop.internal.baseline.UsageBaseline;
 import nz.rd.nonop.internal.config.NonopPropertyUtils;
 import nz.rd.nonop.internal.logging.ConsoleNonopLogger;
 import nz.rd.nonop.internal.logging.NonopLogger;
+import nz.rd.nonop.internal.model.MethodTable;
+import nz.rd.nonop.internal.model.MethodUsageSnapshot;
 import nz.rd.nonop.internal.transformer.NonopClassfileTransformer;
-import org.apache.commons.lang3.tuple.ImmutableTriple;
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
-import org.apache.commons.lang3.tuple.Triple;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 import java.lang.reflect.Method;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -35,9 +46,12 @@ class NonopClassfileTransformerTest {
 
     private NonopLogger nonopLogger;
     private ScanConfig scanConfig;
+    private ProbeConfig probeConfig;
+    private NonopClassfileTransformer.RegisterMethodTable registerMethodTable;
     private NonopClassfileTransformer.GetMethodUsageSnapshot getMethodUsageSnapshot;
 
-    private final AtomicReference<Triple<Class<?>, String, String>> hookArgs = new AtomicReference<>();
+    private final AtomicReference<Pair<Class<?>, Integer>> hookArgs = new AtomicReference<>();
+    private final AtomicInteger hookCalls = new AtomicInteger();
 
     private static final String TEST_CLASS_NAME = "nz.rd.nonoptest.Dynamic1";
     private static final String TEST_METHOD_NAME = "myMethod";
@@ -47,15 +61,40 @@ class NonopClassfileTransformerTest {
     void setUp() throws Exception {
         nonopLogger = new ConsoleNonopLogger(NonopLogger.Level.OFF); // Set to true for debugging output from transformer
         scanConfig = ScanConfig.load(nonopLogger, NonopPropertyUtils.loadNonopDefaults());
-        getMethodUsageSnapshot = clazz -> Collections.emptySet();
+        probeConfig = ProbeConfig.load(nonopLogger, NonopPropertyUtils.loadNonopDefaults());
+        registerMethodTable = (loader, className, initialUsage, probeStrategy) -> {};
+        getMethodUsageSnapshot = clazz -> {
+            throw new AssertionError("No retransformation expected");
+        };
 
         hookArgs.set(null);
+        hookCalls.set(0);
 
-        NonopStaticHooks.MethodCalled methodCalledHook = (clazz, methodName, methodDescriptor) -> {
-            hookArgs.set(ImmutableTriple.of(clazz, methodName, methodDescriptor));
-            // System.out.println("Hook called: " + clazz.getName() + "#" + methodSignature); // For test debugging
+        NonopStaticHooks.MethodCalled methodCalledHook = (clazz, methodOrdinal) -> {
+            hookArgs.set(ImmutablePair.of(clazz, methodOrdinal));
+            hookCalls.incrementAndGet();
+            // System.out.println("Hook called: " + clazz.getName() + "#" + methodOrdinal); // For test debugging
         };
-        NonopStaticHooks.initialize(methodCalledHook);
+        initializeHooks(methodCalledHook);
+    }
+
+    // Each ClassLoader binds to its hook once, so route every loader through a dispatcher to the current test's hook
+    private static volatile NonopStaticHooks.MethodCalled currentHook;
+    private static final NonopStaticHooks.MethodCalled DISPATCH_TO_CURRENT_HOOK = new NonopStaticHooks.MethodCalled() {
+        @Override
+        public void methodCalled(Class<?> clazz, int methodOrdinal) {
+            currentHook.methodCalled(clazz, methodOrdinal);
+        }
+
+        @Override
+        public long[] usageGuard(Class<?> clazz) {
+            return currentHook.usageGuard(clazz);
+        }
+    };
+
+    private static void initializeHooks(NonopStaticHooks.MethodCalled hook) {
+        currentHook = hook;
+        NonopStaticHooks.initialize(DISPATCH_TO_CURRENT_HOOK, classLoader -> DISPATCH_TO_CURRENT_HOOK);
     }
 
     /**
@@ -71,7 +110,7 @@ class NonopClassfileTransformerTest {
 
     @Test
     public void instrumentUnusedMethods_shouldInstrumentMethodAndTriggerHook() throws Exception {
-        NonopClassfileTransformer transformer = new NonopClassfileTransformer(scanConfig, getMethodUsageSnapshot, nonopLogger);
+        NonopClassfileTransformer transformer = new NonopClassfileTransformer(scanConfig, probeConfig, registerMethodTable, getMethodUsageSnapshot, UsageBaseline.EMPTY, nonopLogger);
 
         // 1. Create original class bytes
         byte[] originalBytes = new ByteBuddy()
@@ -93,11 +132,16 @@ class NonopClassfileTransformerTest {
 
 
         // 3. Instrument the class
+        MethodTable methodTable = transformer.createMethodTable(typeDescription, originalBytes);
+        int methodOrdinal = methodTable.ordinalOf(TEST_METHOD_NAME, TEST_METHOD_DESCRIPTOR, -1);
+        assertThat("Method should have an ordinal", methodOrdinal, greaterThanOrEqualTo(0));
         byte[] instrumentedBytes = transformer.instrumentUnusedMethods(
                 typeDescription,
                 TEST_CLASS_NAME,
                 originalBytes,
-                Collections.emptySet()
+                MethodUsageSnapshot.noneUsed(methodTable),
+                ProbeConfig.ProbeStrategy.RETRANSFORM,
+                false
         );
         assertThat("Instrumented bytes should not be null", instrumentedBytes, notNullValue());
 
@@ -115,14 +159,121 @@ class NonopClassfileTransformerTest {
         method.invoke(instance);
 
         // 6. Assertions
-        assertEquals(new ImmutableTriple<>(instrumentedClass, TEST_METHOD_NAME, TEST_METHOD_DESCRIPTOR), hookArgs.get(), "Hook called with correct class and method signature");
+        assertEquals(ImmutablePair.of(instrumentedClass, methodOrdinal), hookArgs.get(), "Hook called with correct class and method ordinal");
+        assertEquals(TEST_METHOD_NAME, methodTable.getMethodName(methodOrdinal));
+        assertEquals(TEST_METHOD_DESCRIPTOR, methodTable.getMethodDescriptor(methodOrdinal));
+    }
+
+    @Test
+    public void instrumentUnusedMethods_withIndyProbe_shouldTriggerHookOnlyOnce() throws Exception {
+        NonopClassfileTransformer transformer = new NonopClassfileTransformer(scanConfig, probeConfig, registerMethodTable, getMethodUsageSnapshot, UsageBaseline.EMPTY, nonopLogger);
+
+        byte[] originalBytes = new ByteBuddy()
+                .subclass(Object.class)
+                .name(TEST_CLASS_NAME)
+                .defineMethod(TEST_METHOD_NAME, void.class, Visibility.PUBLIC)
+                .intercept(StubMethod.INSTANCE)
+                .make()
+                .getBytes();
+
+        TypePool typePool = createComprehensiveTypePool(TEST_CLASS_NAME, originalBytes);
+        TypeDescription typeDescription = typePool.describe(TEST_CLASS_NAME).resolve();
+
+        // Only instrument the method, so constructor calls don't reach the hook
+        MethodTable methodTable = transformer.createMethodTable(typeDescription, originalBytes);
+        int methodOrdinal = methodTable.ordinalOf(TEST_METHOD_NAME, TEST_METHOD_DESCRIPTOR, -1);
+        BitSet usedOrdinals = new BitSet();
+        usedOrdinals.set(methodTable.ordinalOf("<init>", "()V", -1));
+        byte[] instrumentedBytes = transformer.instrumentUnusedMethods(
+                typeDescription,
+                TEST_CLASS_NAME,
+                originalBytes,
+                new MethodUsageSnapshot(methodTable, usedOrdinals),
+                ProbeConfig.ProbeStrategy.INDY,
+                false
+        );
+        assertThat("Instrumented bytes should not be null", instrumentedBytes, notNullValue());
+
+        ClassLoader instrumentedClassLoader = new ByteArrayClassLoader(
+                getClass().getClassLoader(),
+                ImmutableMap.of(TEST_CLASS_NAME, instrumentedBytes),
+                ByteArrayClassLoader.PersistenceHandler.MANIFEST);
+        Class<?> instrumentedClass = instrumentedClassLoader.loadClass(TEST_CLASS_NAME);
+        Object instance = instrumentedClass.getDeclaredConstructor().newInstance();
+        Method method = instrumentedClass.getDeclaredMethod(TEST_METHOD_NAME);
+        for (int i = 0; i < 3; i++) {
+            method.invoke(instance);
+        }
+
+        // The call site relinks itself to a no-op after the first call
+        assertEquals(ImmutablePair.of(instrumentedClass, methodOrdinal), hookArgs.get(), "Hook called with correct class and method ordinal");
+        assertEquals(1, hookCalls.get(), "Hook called once");
+    }
+
+    @Test
+    public void instrumentUnusedMethods_withUsageGuard_shouldSkipHookOnceGuarded() throws Exception {
+        NonopClassfileTransformer transformer = new NonopClassfileTransformer(scanConfig, probeConfig, registerMethodTable, getMethodUsageSnapshot, UsageBaseline.EMPTY, nonopLogger);
+
+        // Guard each method as soon as it is first called
+        long[] usageGuard = new long[1];
+        initializeHooks(new NonopStaticHooks.MethodCalled() {
+            @Override
+            public void methodCalled(Class<?> clazz, int methodOrdinal) {
+                hookArgs.set(ImmutablePair.of(clazz, methodOrdinal));
+                hookCalls.incrementAndGet();
+                usageGuard[0] |= 1L << methodOrdinal;
+            }
+
+            @Override
+            public long[] usageGuard(Class<?> clazz) {
+                return usageGuard;
+            }
+        });
+
+        byte[] originalBytes = new ByteBuddy()
+                .subclass(Object.class)
+                .name(TEST_CLASS_NAME)
+                .defineMethod(TEST_METHOD_NAME, void.class, Visibility.PUBLIC)
+                .intercept(StubMethod.INSTANCE)
+                .make()
+                .getBytes();
+
+        TypePool typePool = createComprehensiveTypePool(TEST_CLASS_NAME, originalBytes);
+        TypeDescription typeDescription = typePool.describe(TEST_CLASS_NAME).resolve();
+
+        MethodTable methodTable = transformer.createMethodTable(typeDescription, originalBytes);
+        int methodOrdinal = methodTable.ordinalOf(TEST_METHOD_NAME, TEST_METHOD_DESCRIPTOR, -1);
+        BitSet usedOrdinals = new BitSet();
+        usedOrdinals.set(methodTable.ordinalOf("<init>", "()V", -1));
+        byte[] instrumentedBytes = transformer.instrumentUnusedMethods(
+                typeDescription,
+                TEST_CLASS_NAME,
+                originalBytes,
+                new MethodUsageSnapshot(methodTable, usedOrdinals),
+                ProbeConfig.ProbeStrategy.RETRANSFORM,
+                true
+        );
+        assertThat("Instrumented bytes should not be null", instrumentedBytes, notNullValue());
+
+        ClassLoader instrumentedClassLoader = new ByteArrayClassLoader(
+                getClass().getClassLoader(),
+                ImmutableMap.of(TEST_CLASS_NAME, instrumentedBytes),
+                ByteArrayClassLoader.PersistenceHandler.MANIFEST);
+        Class<?> instrumentedClass = instrumentedClassLoader.loadClass(TEST_CLASS_NAME);
+        Object instance = instrumentedClass.getDeclaredConstructor().newInstance();
+        Method method = instrumentedClass.getDeclaredMethod(TEST_METHOD_NAME);
+        for (int i = 0; i < 3; i++) {
+            method.invoke(instance);
+        }
+
+        assertEquals(ImmutablePair.of(instrumentedClass, methodOrdinal), hookArgs.get(), "Hook called with correct class and method ordinal");
+        assertEquals(1, hookCalls.get(), "Hook skipped once the method is guarded");
     }
 
     @Test
     public void instrumentUnusedMethods_shouldNotInstrumentAlreadyUsedMethod() throws Exception {
         // Arrange: This time, the method is "already used"
-        getMethodUsageSnapshot = clazz -> Collections.singleton(Pair.of(TEST_METHOD_NAME, TEST_METHOD_DESCRIPTOR));
-        NonopClassfileTransformer transformer = new NonopClassfileTransformer(scanConfig, getMethodUsageSnapshot, nonopLogger);
+        NonopClassfileTransformer transformer = new NonopClassfileTransformer(scanConfig, probeConfig, registerMethodTable, getMethodUsageSnapshot, UsageBaseline.EMPTY, nonopLogger);
 
         byte[] originalBytes = new ByteBuddy()
                 .subclass(Object.class)
@@ -137,14 +288,18 @@ class NonopClassfileTransformerTest {
         TypeDescription typeDescription = typePool.describe(TEST_CLASS_NAME).resolve();
         assertNotNull(typeDescription, "TypeDescription should be resolved");
 
-        // Act: Instrument, providing the "used" method signature
+        // Act: Instrument, providing the "used" method ordinals
+        MethodTable methodTable = transformer.createMethodTable(typeDescription, originalBytes);
+        BitSet usedOrdinals = new BitSet();
+        usedOrdinals.set(methodTable.ordinalOf("<init>", "()V", -1));
+        usedOrdinals.set(methodTable.ordinalOf(TEST_METHOD_NAME, TEST_METHOD_DESCRIPTOR, -1)); // Mark method as used
         byte[] resultBytes = transformer.instrumentUnusedMethods(
                 typeDescription,
                 TEST_CLASS_NAME,
                 originalBytes,
-                ImmutableSet.of(
-                        Pair.of("<init>", "()V"),
-                        Pair.of(TEST_METHOD_NAME, TEST_METHOD_DESCRIPTOR)) // Mark method as used
+                new MethodUsageSnapshot(methodTable, usedOrdinals),
+                ProbeConfig.ProbeStrategy.RETRANSFORM,
+                false
         );
 
         // Assert: No transformation should occur, so resultBytes should be null
@@ -165,4 +320,172 @@ class NonopClassfileTransformerTest {
         // Verify hook was NOT called because the method was skipped for instrumentation
         assertNull(hookArgs.get(), "Hook not called");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void createMethodTable_shouldLeaveOutMethodsExcludedByMethodRules() throws Exception {
+        Map<String, String> properties = new HashMap<>(NonopPropertyUtils.loadNonopDefaults());
+        properties.put("nonop.scan.methods", "!:accessors, !:objectmethods, !@Generated");
+        NonopClassfileTransformer transformer = new NonopClassfileTransformer(ScanConfig.load(nonopLogger, properties), probeConfig, registerMethodTable, getMethodUsageSnapshot, UsageBaseline.EMPTY, nonopLogger);
+
+        MethodTable methodTable = createMethodTable(transformer, MethodRulesSample.class);
+
+        assertThat(methodNames(methodTable), contains("<init>", "describe"));
+    }
+
+    @Test
+    public void createMethodTable_shouldLeaveOutMethodsBelowMinimumSize() throws Exception {
+        Map<String, String> properties = new HashMap<>(NonopPropertyUtils.loadNonopDefaults());
+        properties.put("nonop.scan.methods.minsize", "6");
+        NonopClassfileTransformer transformer = new NonopClassfileTransformer(ScanConfig.load(nonopLogger, properties), probeConfig, registerMethodTable, getMethodUsageSnapshot, UsageBaseline.EMPTY, nonopLogger);
+
+        MethodTable methodTable = createMethodTable(transformer, MethodRulesSample.class);
+
+        // The constructor, getters and static setter are all shorter than 6 bytes
+        assertThat(methodNames(methodTable), not(hasItem("<init>")));
+        assertThat(methodNames(methodTable), not(hasItem("getValue")));
+        assertThat(methodNames(methodTable), hasItem("setValue"));
+        assertThat(methodNames(methodTable), hasItem("describe"));
+    }
+
+    @Test
+    public void transform_shouldNotInstrumentMethodsInBaseline() throws Exception {
+        AtomicReference<MethodUsageSnapshot> registered = new AtomicReference<>();
+        UsageBaseline baseline = new UsageBaseline() {
+            @Override
+            public boolean containsClass(String classKey) {
+                return classKey.equals(TEST_CLASS_NAME);
+            }
+
+            @Override
+            public boolean isUsed(String classKey, String methodKey) {
+                return methodKey.equals(TEST_METHOD_NAME + "()");
+            }
+        };
+        NonopClassfileTransformer transformer = new NonopClassfileTransformer(scanConfig, probeConfig,
+                (loader, className, initialUsage, probeStrategy) -> registered.set(initialUsage), getMethodUsageSnapshot, baseline, nonopLogger);
+
+        byte[] originalBytes = new ByteBuddy()
+                .subclass(Object.class)
+                .name(TEST_CLASS_NAME)
+                .defineMethod(TEST_METHOD_NAME, void.class, Visibility.PUBLIC)
+                .intercept(StubMethod.INSTANCE)
+                .make()
+                .getBytes();
+        ClassLoader loader = getClass().getClassLoader();
+        String classNameJVM = TEST_CLASS_NAME.replace('.', '/');
+
+        // The constructor isn't in the baseline, so the class is still instrumented
+        assertNotNull(transformer.transform(loader, classNameJVM, null, null, originalBytes));
+        MethodUsageSnapshot initialUsage = registered.get();
+        int methodOrdinal = initialUsage.getMethodTable().ordinalOf(TEST_METHOD_NAME, TEST_METHOD_DESCRIPTOR, -1);
+        assertTrue(initialUsage.isUsed(methodOrdinal));
+        assertThat(initialUsage.getUsedCount(), is(1));
+
+        // Once every method is in the baseline, the class is left alone
+        NonopClassfileTransformer allUsedTransformer = new NonopClassfileTransformer(scanConfig, probeConfig,
+                (l, className, usage, probeStrategy) -> registered.set(usage), getMethodUsageSnapshot, new UsageBaseline() {
+                    @Override
+                    public boolean containsClass(String classKey) {
+                        return true;
+                    }
+
+                    @Override
+                    public boolean isUsed(String classKey, String methodKey) {
+                        return true;
+                    }
+                }, nonopLogger);
+        assertNull(allUsedTransformer.transform(loader, classNameJVM, null, null, originalBytes));
+        assertThat(registered.get().getUsedCount(), is(registered.get().getMethodTable().getMethodCount()));
+        assertThat(allUsedTransformer.getScanStatistics(), containsString("BASELINE=1"));
+    }
+
+    @Test
+    public void transform_shouldKeepDefaultSerialVersionUid() throws Exception {
+        NonopClassfileTransformer transformer = new NonopClassfileTransformer(scanConfig, probeConfig, registerMethodTable, getMethodUsageSnapshot, UsageBaseline.EMPTY, nonopLogger);
+        byte[] originalBytes = new ByteBuddy()
+                .subclass(Object.class)
+                .implement(Serializable.class)
+                .name(TEST_CLASS_NAME)
+                .defineMethod(TEST_METHOD_NAME, void.class, Visibility.PUBLIC)
+                .intercept(StubMethod.INSTANCE)
+                .make()
+                .getBytes();
+        ClassLoader loader = getClass().getClassLoader();
+
+        byte[] instrumentedBytes = transformer.transform(loader, TEST_CLASS_NAME.replace('.', '/'), null, null, originalBytes);
+        assertNotNull(instrumentedBytes);
+
+        // No usage guard, since its type initializer would change the default serialVersionUID
+        Class<?> originalClass = new ByteArrayClassLoader(loader, ImmutableMap.of(TEST_CLASS_NAME, originalBytes),
+                ByteArrayClassLoader.PersistenceHandler.MANIFEST).loadClass(TEST_CLASS_NAME);
+        Class<?> instrumentedClass = new ByteArrayClassLoader(loader, ImmutableMap.of(TEST_CLASS_NAME, instrumentedBytes),
+                ByteArrayClassLoader.PersistenceHandler.MANIFEST).loadClass(TEST_CLASS_NAME);
+        assertThrows(NoSuchFieldException.class, () -> instrumentedClass.getDeclaredField("nonop$usageGuard"));
+        assertEquals(ObjectStreamClass.lookup(originalClass).getSerialVersionUID(),
+                ObjectStreamClass.lookup(instrumentedClass).getSerialVersionUID());
+    }
+
+    private MethodTable createMethodTable(NonopClassfileTransformer transformer, Class<?> clazz) {
+        TypeDescription typeDescription = TypePool.Default.of(getClass().getClassLoader()).describe(clazz.getName()).resolve();
+        return transformer.createMethodTable(typeDescription, ClassFileLocator.ForClassLoader.read(clazz));
+    }
+
+    private static List<String> methodNames(MethodTable methodTable) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < methodTable.getMethodCount(); i++) {
+            names.add(methodTable.getMethodName(i));
+        }
+        return names;
+    }
+
+    @Retention(RetentionPolicy.CLASS)
+    @interface Generated {
+    }
+
+    @SuppressWarnings("unused")
+    static class MethodRulesSample {
+        private static int count;
+        private long value;
+        private String name;
+
+        long getValue() {
+            return value;
+        }
+
+        void setValue(long value) {
+            this.value = value;
+        }
+
+        static int getCount() {
+            return count;
+        }
+
+        static void setCount(int count) {
+            MethodRulesSample.count = count;
+        }
+
+        String describe() {
+            return name + value;
+        }
+
+        @Generated
+        void generated() {
+            value++;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof MethodRulesSample && ((MethodRulesSample) o).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(value);
+        }
+
+        @Override
+        public String toString() {
+            return "MethodRulesSample{" + value + "}";
+        }
+    }
+}
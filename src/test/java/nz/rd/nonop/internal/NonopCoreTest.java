@@ -0,0 +1,95 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal;
+
+import nz.rd.nonop.config.ProbeConfig;
+import nz.rd.nonop.config.RetransformConfig;
+import nz.rd.nonop.internal.config.NonopPropertyUtils;
+import nz.rd.nonop.internal.logging.ConsoleNonopLogger;
+import nz.rd.nonop.internal.logging.NonopLogger;
+import nz.rd.nonop.internal.model.ClassUsageState;
+import nz.rd.nonop.internal.model.MethodTable;
+import nz.rd.nonop.internal.model.MethodUsageSnapshot;
+import nz.rd.nonop.internal.model.RetransformPolicy;
+import nz.rd.nonop.internal.reporting.UsageReporter;
+import nz.rd.nonop.internal.transformer.RetransformationScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class NonopCoreTest {
+
+    private static final NonopLogger LOGGER = new ConsoleNonopLogger(NonopLogger.Level.OFF);
+    private static final MethodTable METHOD_TABLE = new MethodTable(new String[]{"a", "b"}, new String[]{"()V", "()V"});
+
+    // Strips after the first call, and counts how often it's asked
+    private final AtomicInteger policyCalls = new AtomicInteger();
+    private final RetransformPolicy policy = new RetransformPolicy() {
+        @Override
+        public int getCallsBeforeStripping() {
+            return 1;
+        }
+
+        @Override
+        public long retransformDelayMillis(ClassUsageState classUsageState, long nowMillis) {
+            policyCalls.incrementAndGet();
+            return 0;
+        }
+    };
+    private final UsageReporter discardingReporter = new UsageReporter() {
+        @Override
+        public void recordMethodFirstUsage(long timestampMillis, Class<?> clazz, MethodTable methodTable, int methodOrdinal) {
+        }
+
+        @Override
+        public void finishUsageReportingOnShutdown() {
+        }
+    };
+
+    private CoarseClock clock;
+    private NonopCore core;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        RetransformConfig retransformConfig = RetransformConfig.load(LOGGER, NonopPropertyUtils.loadNonopDefaults());
+        clock = new CoarseClock(CoarseClock.DEFAULT_TICK_MILLIS);
+        // Never started, so scheduled classes are queued but not retransformed
+        core = new NonopCore(LOGGER, new RetransformationScheduler(LOGGER, null, retransformConfig), discardingReporter, policy, clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        clock.close();
+    }
+
+    @Test
+    void shouldNotRetransformClassesWithIndyProbes() {
+        core.registerMethodTable(NonopCoreTest.class.getClassLoader(), NonopCoreTest.class.getName(),
+                MethodUsageSnapshot.noneUsed(METHOD_TABLE), ProbeConfig.ProbeStrategy.INDY);
+        core.methodCalled(NonopCoreTest.class, 0);
+        core.methodCalled(NonopCoreTest.class, 0);
+        core.methodCalled(NonopCoreTest.class, 1);
+
+        ClassUsageState classUsageState = core.getClassUsageState(NonopCoreTest.class);
+        assertThat(classUsageState.getUsedMethodCount(), is(2));
+        assertThat(policyCalls.get(), is(0));
+        assertThat(classUsageState.tryMarkReinstrumentationScheduled(), is(true));
+    }
+
+    @Test
+    void shouldRetransformClassesWithRetransformProbes() {
+        core.registerMethodTable(NonopCoreTest.class.getClassLoader(), NonopCoreTest.class.getName(),
+                MethodUsageSnapshot.noneUsed(METHOD_TABLE), ProbeConfig.ProbeStrategy.RETRANSFORM);
+        core.methodCalled(NonopCoreTest.class, 0);
+
+        ClassUsageState classUsageState = core.getClassUsageState(NonopCoreTest.class);
+        assertThat(policyCalls.get(), is(1));
+        // Already marked when it was scheduled
+        assertThat(classUsageState.tryMarkReinstrumentationScheduled(), is(false));
+    }
+}
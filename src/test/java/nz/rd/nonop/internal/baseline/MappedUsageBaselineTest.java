@@ -0,0 +1,126 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.baseline;
+
+import nz.rd.nonop.internal.logging.ConsoleNonopLogger;
+import nz.rd.nonop.internal.logging.NonopLogger;
+import nz.rd.nonop.internal.model.MethodTable;
+import nz.rd.nonop.internal.model.MethodUsageSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedUsageBaselineTest {
+
+    private static final NonopLogger LOGGER = new ConsoleNonopLogger(NonopLogger.Level.OFF);
+
+    // The methods below, in the same order
+    private static final MethodTable METHOD_TABLE = new MethodTable(
+            new String[]{"m", "m", "m", "mm", "n", "<init>"},
+            new String[]{"()V", "(I)V", "(II)V", "()V", "()Z", "()V"});
+
+    private Path dir;
+    private Path index;
+
+    @BeforeEach
+    void createDir() throws IOException {
+        dir = Files.createTempDirectory("nonop-baseline");
+        index = dir.resolve("baseline.idx");
+    }
+
+    @AfterEach
+    void deleteDir() throws IOException {
+        Files.deleteIfExists(index);
+        Files.deleteIfExists(dir.resolve("usage.log"));
+        Files.delete(dir);
+    }
+
+    @Test
+    void shouldFindExactlyTheMethodsAdded() throws Exception {
+        // Keys that share long prefixes, are prefixes of each other, and sort near the class separator
+        String[] classes = {"a.A", "a.AB", "a.A.Inner", "a.B", "b", "b.\u00e9t\u00e9"};
+        String[] methods = {"m()", "m(int)", "m(int,int)", "mm()", "n()", "<init>()"};
+        for (int blockSize : new int[]{1, 2, 3, 16}) {
+            HashUsageBaseline expected = new HashUsageBaseline(index);
+            BaselineIndexBuilder builder = new BaselineIndexBuilder(blockSize);
+            Random random = new Random(blockSize);
+            for (String className : classes) {
+                for (String method : methods) {
+                    if (random.nextBoolean()) {
+                        builder.add(className, method);
+                        expected.add(className, method);
+                    }
+                }
+            }
+            builder.write(index);
+            MappedUsageBaseline baseline = MappedUsageBaseline.open(index);
+
+            for (String className : classes) {
+                assertThat(className + " with block size " + blockSize,
+                        baseline.containsClass(className), is(expected.containsClass(className)));
+                for (String method : methods) {
+                    assertThat(className + " " + method + " with block size " + blockSize,
+                            baseline.isUsed(className, method), is(expected.isUsed(className, method)));
+                }
+                MethodUsageSnapshot expectedUsage = expected.usedMethods(className, METHOD_TABLE);
+                MethodUsageSnapshot usage = baseline.usedMethods(className, METHOD_TABLE);
+                for (int i = 0; i < methods.length; i++) {
+                    assertThat(className + " #" + i + " with block size " + blockSize,
+                            usage.isUsed(i), is(expectedUsage.isUsed(i)));
+                }
+                assertThat(baseline.isUsed(className, "m("), is(false));
+                assertThat(baseline.isUsed(className, "m(int)x"), is(false));
+            }
+            assertThat(baseline.containsClass("a"), is(false));
+            assertThat(baseline.containsClass("0"), is(false));
+            assertThat(baseline.containsClass("z"), is(false));
+        }
+    }
+
+    @Test
+    void shouldOpenEmptyIndex() throws Exception {
+        new BaselineIndexBuilder().write(index);
+        MappedUsageBaseline baseline = MappedUsageBaseline.open(index);
+        assertThat(baseline.containsClass("a.A"), is(false));
+        assertThat(baseline.isUsed("a.A", "m()"), is(false));
+    }
+
+    @Test
+    void shouldBuildFromUsageOutputAndLoadAsBaseline() throws Exception {
+        Path usage = dir.resolve("usage.log");
+        Files.write(usage, Arrays.asList(
+                "com.example.Foo.bar(java.lang.String,int[])",
+                "com.example.Foo.Inner.run()"),
+                StandardCharsets.UTF_8);
+        BaselineIndexBuilder builder = new BaselineIndexBuilder();
+        assertThat(builder.addUsage(usage, LOGGER), is(0));
+        assertThat(builder.write(index), is(2));
+
+        UsageBaseline baseline = UsageBaseline.load(index, LOGGER);
+        assertThat(baseline, instanceOf(MappedUsageBaseline.class));
+        assertThat(baseline.isUsed("com.example.Foo", "bar(java.lang.String,int[])"), is(true));
+        assertThat(baseline.containsClass("com.example.Foo.Inner"), is(true));
+        assertThat(baseline.isUsed("com.example.Foo", "run()"), is(false));
+
+        assertThrows(IOException.class, () -> builder.addUsage(index, LOGGER));
+    }
+
+    @Test
+    void shouldRejectOtherFiles() throws Exception {
+        Files.write(index, "com.example.Foo.bar()".getBytes(StandardCharsets.UTF_8));
+        assertThat(MappedUsageBaseline.isIndex(index), is(false));
+        assertThrows(IOException.class, () -> MappedUsageBaseline.open(index));
+    }
+}
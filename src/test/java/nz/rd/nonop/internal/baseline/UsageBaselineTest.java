@@ -0,0 +1,154 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.baseline;
+
+import nz.rd.nonop.internal.logging.ConsoleNonopLogger;
+import nz.rd.nonop.internal.logging.NonopLogger;
+import nz.rd.nonop.internal.model.MethodTable;
+import nz.rd.nonop.internal.model.MethodUsageSnapshot;
+import nz.rd.nonop.internal.out.MappedUsageLog;
+import nz.rd.nonop.internal.reporting.format.BinaryUsageEventFormatter;
+import nz.rd.nonop.internal.reporting.format.JsonUsageEventFormatter;
+import nz.rd.nonop.internal.reporting.format.SimpleUsageEventFormatter;
+import nz.rd.nonop.internal.reporting.format.TextUsageEventFormatter;
+import nz.rd.nonop.internal.reporting.format.UsageEventFormatter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class UsageBaselineTest {
+
+    private static final NonopLogger LOGGER = new ConsoleNonopLogger(NonopLogger.Level.OFF);
+
+    private static final MethodTable FOO_METHODS = new MethodTable(
+            new String[]{"<init>", "bar", "bar", "baz"},
+            new String[]{"()V", "(Ljava/lang/String;[I)V", "()V", "()I"});
+
+    private Path path;
+
+    @BeforeEach
+    void createPath() throws IOException {
+        path = Files.createTempFile("nonop-baseline", ".log");
+        Files.delete(path);
+    }
+
+    @AfterEach
+    void deletePath() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    private void writeFile(TextUsageEventFormatter formatter) throws IOException {
+        StringBuilder text = new StringBuilder();
+        text.append(formatter.formatMethodCalled(1000, "com.example.Foo", "bar", "(Ljava/lang/String;[I)Z")).append('\n');
+        text.append(formatter.formatMethodCalled(2000, "com.example.Foo.Inner", "run", "()V")).append('\n');
+        Files.write(path, text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeMappedLog(UsageEventFormatter formatter) throws IOException {
+        try (MappedUsageLog log = new MappedUsageLog(LOGGER, path, 4096, 1000)) {
+            formatter.writeMethodCalled(log, 1000, "com.example.Foo", "bar", "(Ljava/lang/String;[I)Z");
+            formatter.writeMethodCalled(log, 2000, "com.example.Foo.Inner", "run", "()V");
+        }
+    }
+
+    private void assertBaselineLoaded() throws IOException {
+        UsageBaseline baseline = UsageBaseline.load(path, LOGGER);
+        // The return type isn't part of the match
+        assertThat(baseline.isUsed("com.example.Foo", "bar(java.lang.String,int[])"), is(true));
+        assertThat(baseline.isUsed("com.example.Foo", "bar()"), is(false));
+        assertThat(baseline.containsClass("com.example.Foo.Inner"), is(true));
+        assertThat(baseline.containsClass("com.example.Other"), is(false));
+    }
+
+    @Test
+    void shouldLoadSimpleFormat() throws Exception {
+        writeFile(new SimpleUsageEventFormatter());
+        assertBaselineLoaded();
+    }
+
+    @Test
+    void shouldLoadJsonFormat() throws Exception {
+        writeFile(new JsonUsageEventFormatter());
+        assertBaselineLoaded();
+    }
+
+    @Test
+    void shouldLoadBinaryFormat() throws Exception {
+        // Binary output to a plain file is the same records, one after another
+        writeMappedLog(new BinaryUsageEventFormatter());
+        byte[] joined = joinRecords();
+        Files.delete(path);
+        Files.write(path, joined);
+        assertBaselineLoaded();
+    }
+
+    @Test
+    void shouldLoadMappedLogs() throws Exception {
+        writeMappedLog(new BinaryUsageEventFormatter());
+        assertBaselineLoaded();
+
+        Files.delete(path);
+        writeMappedLog(new SimpleUsageEventFormatter());
+        assertBaselineLoaded();
+    }
+
+    private byte[] joinRecords() throws IOException {
+        int length = 0;
+        for (byte[] record : MappedUsageLog.readRecords(path)) {
+            length += record.length;
+        }
+        byte[] joined = new byte[length];
+        int offset = 0;
+        for (byte[] record : MappedUsageLog.readRecords(path)) {
+            System.arraycopy(record, 0, joined, offset, record.length);
+            offset += record.length;
+        }
+        return joined;
+    }
+
+    @Test
+    void shouldSkipUnreadableLines() throws Exception {
+        Files.write(path, Arrays.asList(
+                "com.example.Foo.bar(java.lang.String,int[])",
+                "not a method",
+                "",
+                "{\"timestamp\":1,\"type\":\"method-called\",\"class\":\"com.example.Foo\",\"method\":\"baz\",\"descriptor\":\"(\"}",
+                "{\"timestamp\":1,\"type\":\"method-called\",\"class\":\"com.example.Foo\",\"method\":\"baz\",\"descriptor\":\"()I\"}"),
+                StandardCharsets.UTF_8);
+        int malformed = UsageLogReader.read(path, (classKey, methodKey) -> {}, LOGGER);
+        assertThat(malformed, is(2));
+
+        UsageBaseline baseline = UsageBaseline.load(path, LOGGER);
+        assertThat(baseline.isUsed("com.example.Foo", "bar(java.lang.String,int[])"), is(true));
+        assertThat(baseline.isUsed("com.example.Foo", "baz()"), is(true));
+    }
+
+    @Test
+    void shouldMatchMethodTableOfNestedClass() throws Exception {
+        Files.write(path, Arrays.asList(
+                "com.example.Outer.Foo.<init>()",
+                "com.example.Outer.Foo.bar(java.lang.String,int[])"),
+                StandardCharsets.UTF_8);
+        UsageBaseline baseline = UsageBaseline.load(path, LOGGER);
+
+        // The transformer sees the binary name
+        MethodUsageSnapshot used = baseline.usedMethods("com.example.Outer$Foo", FOO_METHODS);
+        assertThat(used.isUsed(0), is(true));
+        assertThat(used.isUsed(1), is(true));
+        assertThat(used.isUsed(2), is(false));
+        assertThat(used.isUsed(3), is(false));
+        assertThat(used.getUsedCount(), is(2));
+
+        assertThat(baseline.usedMethods("com.example.Outer", FOO_METHODS).getUsedCount(), is(0));
+        assertThat(UsageBaseline.EMPTY.usedMethods("com.example.Outer$Foo", FOO_METHODS).getUsedCount(), is(0));
+    }
+}
@@ -322,6 +322,36 @@ class ScanRuleParserTest {
         Assertions.assertEquals(new ScanMatcher.FqcnMatcher("pkg.MyClass", "pkg.MyClass"), result);
     }
 
+    @ParameterizedTest
+    @CsvSource({
+            "com.example, com.example.Foo",
+            "com.example, com.example",
+            "com.example, com.examples.Foo",
+            "com.example, com.example.Foo$Inner",
+            "com.example.Foo, com.example.Foo$Inner",
+            "com.example.Foo, com.example.FooBar",
+            "Foo, com.example.Foo",
+            "Foo, Foo$Inner",
+            "Foo, com.example.Foo.Bar",
+            "!com.example.*, com.example.Foo",
+            "!com.example.*, org.example.Foo",
+            "*, com.example.Foo"
+    })
+    @DisplayName("evalInternalName: Should agree with eval on the fully qualified class name")
+    void testEvalInternalName_agreesWithEval(String ruleString, String fqClassName) {
+        ScanMatcher matcher = scanRuleParser.parseSingleRule(ruleString);
+        MatcherAssert.assertThat(matcher.evalInternalName(fqClassName.replace('.', '/')), Matchers.equalTo(matcher.eval(fqClassName)));
+    }
+
+    @Test
+    @DisplayName("evalInternalName: Default package rule should only match classes in the default package")
+    void testEvalInternalName_defaultPackage() {
+        ScanMatcher matcher = new ScanMatcher.PackagePrefixMatcher("", "*");
+        Assertions.assertEquals(Boolean.TRUE, matcher.evalInternalName("Foo"));
+        Assertions.assertEquals(Boolean.TRUE, matcher.evalInternalName("Foo$Inner/Bar"));
+        Assertions.assertNull(matcher.evalInternalName("com/Foo"));
+    }
+
     // Tests for parseLine
 
     @Test
@@ -451,4 +481,50 @@ class ScanRuleParserTest {
         Assertions.assertEquals(new ScanMatcher.PackagePrefixMatcher("another.package", "another.package.**"), matchers.get(4));
         Assertions.assertEquals(new ScanMatcher.PackagePrefixMatcher("implicit.pkgName", "implicit.pkgName"), matchers.get(5));
     }
-}
\ No newline at end of file
+
+    // Tests for method rules
+
+    @Test
+    @DisplayName("parseMethodRules: Each kind of method rule, with negation")
+    void testParseMethodRules() {
+        List<MethodScanMatcher> matchers = scanRuleParser.parseMethodRules("!:accessors, !:objectmethods # Trivial\n!@Generated !@lombok.Generated; get* <init> *");
+        MatcherAssert.assertThat(matchers, Matchers.hasSize(7));
+
+        MatcherAssert.assertThat(((MethodScanMatcher.NotMatcher) matchers.get(0)).getInnerMatcher(), Matchers.instanceOf(MethodScanMatcher.AccessorMatcher.class));
+        MatcherAssert.assertThat(((MethodScanMatcher.NotMatcher) matchers.get(1)).getInnerMatcher(), Matchers.instanceOf(MethodScanMatcher.ObjectMethodsMatcher.class));
+        Assertions.assertEquals(new MethodScanMatcher.AnnotationMatcher("Generated", "@Generated"), ((MethodScanMatcher.NotMatcher) matchers.get(2)).getInnerMatcher());
+        Assertions.assertEquals(new MethodScanMatcher.AnnotationMatcher("lombok.Generated", "@lombok.Generated"), ((MethodScanMatcher.NotMatcher) matchers.get(3)).getInnerMatcher());
+        Assertions.assertEquals(new MethodScanMatcher.NameMatcher("get", true, "get*"), matchers.get(4));
+        Assertions.assertEquals(new MethodScanMatcher.NameMatcher("<init>", false, "<init>"), matchers.get(5));
+        MatcherAssert.assertThat(matchers.get(6), Matchers.instanceOf(MethodScanMatcher.MatchAllMatcher.class));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {":unknown", "@", "@1Foo", "get*Foo", "a.b", "!"})
+    @DisplayName("parseSingleMethodRule: Invalid method rule strings should throw IllegalArgumentException")
+    void testParseSingleMethodRule_withInvalidRuleString(String ruleString) {
+        IllegalArgumentException exception = Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> scanRuleParser.parseSingleMethodRule(ruleString)
+        );
+        MatcherAssert.assertThat(exception.getMessage(), Matchers.containsString("Invalid method rule string"));
+    }
+
+    @Test
+    @DisplayName("Method rules: Annotation rules match by simple or fully qualified name")
+    void testAnnotationMatcher() {
+        MethodScanMatcher.ScannedMethod method = new MethodScanMatcher.ScannedMethod() {
+            public String getName() { return "foo"; }
+            public String getDescriptor() { return "()V"; }
+            public List<String> getAnnotationTypeNames() { return java.util.Arrays.asList("lombok.Generated", "com.example.Outer$Marker"); }
+            public boolean isTrivialAccessor() { return false; }
+        };
+
+        Assertions.assertEquals(Boolean.TRUE, scanRuleParser.parseSingleMethodRule("@Generated").eval(method));
+        Assertions.assertEquals(Boolean.TRUE, scanRuleParser.parseSingleMethodRule("@lombok.Generated").eval(method));
+        Assertions.assertEquals(Boolean.TRUE, scanRuleParser.parseSingleMethodRule("@Marker").eval(method));
+        Assertions.assertEquals(Boolean.FALSE, scanRuleParser.parseSingleMethodRule("!@Generated").eval(method));
+        Assertions.assertNull(scanRuleParser.parseSingleMethodRule("@javax.annotation.Generated").eval(method));
+        Assertions.assertNull(scanRuleParser.parseSingleMethodRule("@Gen").eval(method));
+    }
+}
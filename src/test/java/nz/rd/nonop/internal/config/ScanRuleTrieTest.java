@@ -0,0 +1,127 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.config;
+
+import nz.rd.nonop.internal.logging.ConsoleNonopLogger;
+import nz.rd.nonop.internal.logging.NonopLogger;
+import org.hamcrest.MatcherAssert;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class ScanRuleTrieTest {
+
+    private final ScanRuleParser scanRuleParser = new ScanRuleParser(new ConsoleNonopLogger(NonopLogger.Level.OFF));
+
+    private static final String[] SEGMENTS = {"com", "org", "example", "Foo", "Bar", "util", "a"};
+
+    /**
+     * Evaluates the matchers in order, as the transformer did before they were compiled.
+     */
+    private static boolean evalInOrder(List<ScanMatcher> matchers, String fqClassName) {
+        if (matchers.isEmpty()) {
+            return false;
+        }
+        boolean lastWasInclude = false;
+        for (ScanMatcher matcher : matchers) {
+            Boolean ruleEval = matcher.eval(fqClassName);
+            if (ruleEval != null) {
+                return ruleEval;
+            }
+            lastWasInclude = matcher.isEffectivelyInclude();
+        }
+        return !lastWasInclude;
+    }
+
+    private static String randomName(Random random, int maxSegments) {
+        StringBuilder sb = new StringBuilder();
+        int segments = 1 + random.nextInt(maxSegments);
+        for (int i = 0; i < segments; i++) {
+            if (i > 0) {
+                sb.append('.');
+            }
+            sb.append(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+        }
+        return sb.toString();
+    }
+
+    private String randomRule(Random random) {
+        String name = randomName(random, 3);
+        String rule;
+        switch (random.nextInt(6)) {
+            case 0:
+                rule = name + ".*";
+                break;
+            case 1:
+                rule = name + ".**";
+                break;
+            case 2:
+                rule = "*." + SEGMENTS[random.nextInt(SEGMENTS.length)];
+                break;
+            case 3:
+                rule = random.nextInt(10) == 0 ? "*" : name;
+                break;
+            default:
+                rule = name;
+                break;
+        }
+        return random.nextBoolean() ? "!" + rule : rule;
+    }
+
+    @Test
+    void agreesWithEvaluatingMatchersInOrder() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            List<ScanMatcher> matchers = new ArrayList<>();
+            int ruleCount = random.nextInt(8);
+            for (int r = 0; r < ruleCount; r++) {
+                matchers.add(scanRuleParser.parseSingleRule(randomRule(random)));
+            }
+            ScanRuleTrie trie = ScanRuleTrie.compile(matchers);
+
+            for (int n = 0; n < 50; n++) {
+                String className = randomName(random, 4);
+                if (random.nextBoolean()) {
+                    className += "$Inner";
+                }
+                boolean expected = evalInOrder(matchers, className);
+                MatcherAssert.assertThat(matchers + " for " + className, trie.matches(className, '.'), Matchers.equalTo(expected));
+                MatcherAssert.assertThat(matchers + " for " + className, trie.matches(className.replace('.', '/'), '/'), Matchers.equalTo(expected));
+            }
+        }
+    }
+
+    @Test
+    void firstApplicableRuleWins() {
+        List<ScanMatcher> matchers = scanRuleParser.parse("!com.example.internal.*, com.example.*, !*");
+        ScanRuleTrie trie = ScanRuleTrie.compile(matchers);
+
+        MatcherAssert.assertThat(trie.matches("com.example.internal.Foo", '.'), Matchers.equalTo(false));
+        MatcherAssert.assertThat(trie.matches("com/example/Foo$Inner", '/'), Matchers.equalTo(true));
+        MatcherAssert.assertThat(trie.matches("org.example.Foo", '.'), Matchers.equalTo(false));
+        MatcherAssert.assertThat(trie.firstApplicableMatcher("com.example.Foo", '.'), Matchers.sameInstance(matchers.get(1)));
+    }
+
+    @Test
+    void agreesWithMatchersOnEmptyPackages() {
+        for (String rules : new String[]{"*, !com.*", "!*, com.*", "com.*, !*"}) {
+            List<ScanMatcher> matchers = scanRuleParser.parse(rules);
+            ScanRuleTrie trie = ScanRuleTrie.compile(matchers);
+            for (String className : new String[]{"Foo", "Foo$Inner.Bar", ".Foo", ".", "$Foo", "com.Foo"}) {
+                boolean expected = evalInOrder(matchers, className);
+                MatcherAssert.assertThat(rules + " for " + className, trie.matches(className, '.'), Matchers.equalTo(expected));
+            }
+        }
+        MatcherAssert.assertThat(ScanRuleTrie.compile(scanRuleParser.parse("*")).matches(".Foo", '.'), Matchers.equalTo(true));
+    }
+
+    @Test
+    void usesLastRuleWhenNoRuleApplies() {
+        MatcherAssert.assertThat(ScanRuleTrie.compile(scanRuleParser.parse("com.example.*")).matches("org.Foo", '.'), Matchers.equalTo(false));
+        MatcherAssert.assertThat(ScanRuleTrie.compile(scanRuleParser.parse("!com.example.*")).matches("org.Foo", '.'), Matchers.equalTo(true));
+        MatcherAssert.assertThat(ScanRuleTrie.compile(new ArrayList<>()).matches("org.Foo", '.'), Matchers.equalTo(false));
+    }
+}
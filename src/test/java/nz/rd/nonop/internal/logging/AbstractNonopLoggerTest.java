@@ -432,6 +432,56 @@ class AbstractNonopLoggerTest {
         assertThat(logger.getLastThrowable(), is(nullValue()));
     }
 
+    @Test
+    @DisplayName("should replace placeholders with arguments")
+    void shouldReplacePlaceholdersWithArguments() {
+        logger = new TestLogger(Level.DEBUG);
+
+        logger.debug("one {}", "a");
+        assertThat(logger.getLastMessage(), is("one a"));
+        logger.info("two {} and {}", 1, null);
+        assertThat(logger.getLastMessage(), is("two 1 and null"));
+        logger.warn("three {}, {}, {}", "a", "b", "c");
+        assertThat(logger.getLastMessage(), is("three a, b, c"));
+        logger.error("too few {} {}", "a");
+        assertThat(logger.getLastMessage(), is("too few a {}"));
+        logger.error("too many {}", "a", "b");
+        assertThat(logger.getLastMessage(), is("too many a"));
+        assertThat(logger.getLastThrowable(), is(nullValue()));
+    }
+
+    @Test
+    @DisplayName("should log a trailing unused Throwable argument as the throwable")
+    void shouldLogTrailingThrowableArgument() {
+        logger = new TestLogger(Level.DEBUG);
+
+        logger.error("failed for {}", "a", testException);
+        assertThat(logger.getLastLevel(), is(Level.ERROR));
+        assertThat(logger.getLastMessage(), is("failed for a"));
+        assertThat(logger.getLastThrowable(), is(testException));
+
+        logger.warn("failed for {} because {}", "a", testException);
+        assertThat(logger.getLastMessage(), is("failed for a because " + testException));
+        assertThat(logger.getLastThrowable(), is(nullValue()));
+    }
+
+    @Test
+    @DisplayName("should not format arguments when level is disabled")
+    void shouldNotFormatArgumentsWhenLevelIsDisabled() {
+        logger = new TestLogger(Level.INFO);
+        Object unformattable = new Object() {
+            @Override
+            public String toString() {
+                throw new AssertionError("Formatted a disabled message");
+            }
+        };
+
+        logger.debug("{}", unformattable);
+        logger.debug("{} {}", unformattable, unformattable);
+        logger.debug("{} {} {}", unformattable, unformattable, unformattable);
+        assertFalse(logger.wasOutputLogCalled());
+    }
+
     // Simple test implementation of AbstractNonopLogger
     private static class TestLogger extends AbstractNonopLogger {
         private boolean outputLogCalled = false;
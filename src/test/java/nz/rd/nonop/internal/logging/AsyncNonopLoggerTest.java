@@ -0,0 +1,184 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.logging;
+
+import nz.rd.nonop.internal.logging.NonopLogger.Level;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncNonopLoggerTest {
+
+    private static final Pattern DROPPED = Pattern.compile(" WARN \\[nonop-log\\] Dropped (\\d+) log records");
+
+    // Records lines, optionally holding the writer thread on its first line until released
+    private static final class RecordingOutput implements LogOutput {
+        final List<String> lines = new ArrayList<>();
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release;
+        volatile boolean closed = false;
+        volatile boolean interrupted = false; // An interrupt would close a file output's channel
+
+        RecordingOutput(boolean hold) {
+            release = new CountDownLatch(hold ? 1 : 0);
+        }
+
+        @Override
+        public synchronized void writeLine(String line) {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                Thread.currentThread().interrupt();
+            }
+            lines.add(line);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        synchronized List<String> lines() {
+            return new ArrayList<>(lines);
+        }
+    }
+
+    @Test
+    void shouldWriteRecordsInOrderOnClose() {
+        RecordingOutput output = new RecordingOutput(false);
+        AsyncNonopLogger logger = new AsyncNonopLogger(Level.INFO, output, 16);
+        logger.info("first");
+        logger.debug("not enabled");
+        logger.warn("second {}", 2);
+        logger.close();
+
+        List<String> lines = output.lines();
+        assertThat(lines.size(), is(2));
+        assertThat(lines.get(0), startsWith("[nonop] "));
+        assertThat(lines.get(0), endsWith(" INFO [" + Thread.currentThread().getName() + "] first"));
+        assertThat(lines.get(1), endsWith(" WARN [" + Thread.currentThread().getName() + "] second 2"));
+        assertTrue(output.closed);
+    }
+
+    @Test
+    void shouldWriteStackTraceAfterMessage() {
+        RecordingOutput output = new RecordingOutput(false);
+        AsyncNonopLogger logger = new AsyncNonopLogger(Level.INFO, output, 16);
+        logger.error("failed", new IllegalStateException("broken"));
+        logger.close();
+
+        List<String> lines = output.lines();
+        assertThat(lines.size(), is(2));
+        assertThat(lines.get(0), endsWith(" ERROR [" + Thread.currentThread().getName() + "] failed"));
+        assertThat(lines.get(1), startsWith("java.lang.IllegalStateException: broken"));
+    }
+
+    @Test
+    void shouldDropAndCountRecordsWhenQueueIsFull() throws Exception {
+        RecordingOutput output = new RecordingOutput(true);
+        AsyncNonopLogger logger = new AsyncNonopLogger(Level.INFO, output, 2);
+        logger.info("taken by writer");
+        assertTrue(output.writing.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            logger.info("queued {}", i);
+        }
+        assertThat(logger.getDroppedCount(), is(3L));
+
+        output.release.countDown();
+        logger.close();
+
+        List<String> lines = output.lines();
+        assertThat(lines.size(), is(4));
+        // Reported after the batch being written when they were dropped
+        assertThat(lines.get(1), endsWith(" WARN [nonop-log] Dropped 3 log records because the log queue was full"));
+        assertThat(lines.get(2), endsWith("] queued 0"));
+        assertThat(lines.get(3), endsWith("] queued 1"));
+    }
+
+    @Test
+    void shouldNotInterruptWriterOnClose() throws Exception {
+        RecordingOutput output = new RecordingOutput(true);
+        AsyncNonopLogger logger = new AsyncNonopLogger(Level.INFO, output, 16);
+        logger.info("first");
+        assertTrue(output.writing.await(5, TimeUnit.SECONDS));
+        logger.info("second");
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            output.release.countDown();
+        });
+        releaser.start();
+        logger.close();
+        releaser.join();
+
+        assertThat(output.interrupted, is(false));
+        assertThat(output.lines().size(), is(2));
+        assertTrue(output.closed);
+    }
+
+    @Test
+    void shouldDropRecordsAfterClose() {
+        RecordingOutput output = new RecordingOutput(false);
+        AsyncNonopLogger logger = new AsyncNonopLogger(Level.INFO, output, 16);
+        logger.close();
+        logger.info("too late");
+
+        assertThat(output.lines().size(), is(0));
+        assertThat(logger.getDroppedCount(), is(1L));
+    }
+
+    @Test
+    void shouldWriteBurstToFileOnClose() throws IOException {
+        Path dir = Files.createTempDirectory("nonop-log");
+        Path path = dir.resolve("nonop.log");
+        try {
+            AsyncNonopLogger logger = new AsyncNonopLogger(Level.INFO, new RollingLogFile(path, Long.MAX_VALUE, 0), 1024);
+            for (int i = 0; i < 10000; i++) {
+                logger.info("line {}", i);
+            }
+            logger.close();
+
+            // Every record is either written or counted in a "Dropped" line, including the last batch's
+            long written = 0;
+            long reportedDropped = 0;
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                Matcher dropped = DROPPED.matcher(line);
+                if (dropped.find()) {
+                    reportedDropped += Long.parseLong(dropped.group(1));
+                } else {
+                    assertThat(line, containsString(" INFO [" + Thread.currentThread().getName() + "] line "));
+                    written++;
+                }
+            }
+            assertThat(reportedDropped, is(logger.getDroppedCount()));
+            assertThat(written + reportedDropped, is(10000L));        } finally {
+            Files.deleteIfExists(path);
+            Files.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.logging;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class RollingLogFileTest {
+
+    private static final int LINE_SIZE = 5 + System.lineSeparator().length(); // "line0"
+
+    private Path dir;
+    private Path path;
+
+    @BeforeEach
+    void createDir() throws IOException {
+        dir = Files.createTempDirectory("nonop-log");
+        path = dir.resolve("nonop.log");
+    }
+
+    @AfterEach
+    void deleteDir() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private List<String> lines(String fileName) throws IOException {
+        Path file = dir.resolve(fileName);
+        return Files.exists(file) ? Files.readAllLines(file, StandardCharsets.UTF_8) : Collections.emptyList();
+    }
+
+    @Test
+    void shouldRotateWhenFullKeepingOldFiles() throws Exception {
+        try (RollingLogFile log = new RollingLogFile(path, 2 * LINE_SIZE, 2)) {
+            for (int i = 0; i < 7; i++) {
+                log.writeLine("line" + i);
+            }
+        }
+
+        assertThat(lines("nonop.log"), is(Collections.singletonList("line6")));
+        assertThat(lines("nonop.log.1"), is(Arrays.asList("line4", "line5")));
+        assertThat(lines("nonop.log.2"), is(Arrays.asList("line2", "line3")));
+        assertThat(lines("nonop.log.3"), is(Collections.emptyList()));
+    }
+
+    @Test
+    void shouldStartAgainWhenNoFilesKept() throws Exception {
+        try (RollingLogFile log = new RollingLogFile(path, 2 * LINE_SIZE, 0)) {
+            for (int i = 0; i < 3; i++) {
+                log.writeLine("line" + i);
+            }
+        }
+
+        assertThat(lines("nonop.log"), is(Collections.singletonList("line2")));
+        assertThat(lines("nonop.log.1"), is(Collections.emptyList()));
+    }
+
+    @Test
+    void shouldAppendToExistingFileAndCountItsSize() throws Exception {
+        try (RollingLogFile log = new RollingLogFile(path, 2 * LINE_SIZE, 1)) {
+            log.writeLine("line0");
+        }
+        try (RollingLogFile log = new RollingLogFile(path, 2 * LINE_SIZE, 1)) {
+            log.writeLine("line1");
+            log.writeLine("line2");
+        }
+
+        assertThat(lines("nonop.log"), is(Collections.singletonList("line2")));
+        assertThat(lines("nonop.log.1"), is(Arrays.asList("line0", "line1")));
+    }
+}
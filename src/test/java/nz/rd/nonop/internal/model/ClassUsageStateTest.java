@@ -0,0 +1,172 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.model;
+
+import nz.rd.nonop.config.ProbeConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class ClassUsageStateTest {
+
+    private static MethodTable methodTable(int methodCount) {
+        String[] names = new String[methodCount];
+        String[] descriptors = new String[methodCount];
+        for (int i = 0; i < methodCount; i++) {
+            names[i] = "method" + i;
+            descriptors[i] = "()V";
+        }
+        return new MethodTable(names, descriptors);
+    }
+
+    @Test
+    void shouldTransitionThroughCallStates() {
+        ClassUsageState state = new ClassUsageState(ClassUsageStateTest.class, methodTable(3));
+
+        assertThat(state.recordMethodUsed(1), is(ClassUsageState.MarkResult.FIRST_CALL));
+        assertThat(state.recordMethodUsed(1), is(ClassUsageState.MarkResult.NOW_STRIPPABLE));
+        assertThat(state.recordMethodUsed(1), is(ClassUsageState.MarkResult.SUBSEQUENT_CALL_NO_ACTION));
+        assertThat(state.tryMarkReinstrumentationScheduled(), is(true));
+
+        assertThat(state.recordMethodUsed(2), is(ClassUsageState.MarkResult.FIRST_CALL));
+        assertThat(state.recordMethodUsed(2), is(ClassUsageState.MarkResult.NOW_STRIPPABLE));
+        assertThat(state.tryMarkReinstrumentationScheduled(), is(false));
+
+        assertThat(state.getUsedMethodCount(), is(2));
+        assertThat(state.getHookCallCount(), is(5L));
+    }
+
+    @Test
+    void shouldBecomeStrippableAfterConfiguredCalls() {
+        ClassUsageState once = new ClassUsageState(ClassUsageStateTest.class, methodTable(3), 1);
+        assertThat(once.recordMethodUsed(0), is(ClassUsageState.MarkResult.FIRST_CALL_NOW_STRIPPABLE));
+        assertThat(once.recordMethodUsed(0), is(ClassUsageState.MarkResult.SUBSEQUENT_CALL_NO_ACTION));
+
+        ClassUsageState fourTimes = new ClassUsageState(ClassUsageStateTest.class, methodTable(3), 4);
+        assertThat(fourTimes.recordMethodUsed(2), is(ClassUsageState.MarkResult.FIRST_CALL));
+        assertThat(fourTimes.recordMethodUsed(2), is(ClassUsageState.MarkResult.SUBSEQUENT_CALL_NO_ACTION));
+        assertThat(fourTimes.recordMethodUsed(2), is(ClassUsageState.MarkResult.SUBSEQUENT_CALL_NO_ACTION));
+        assertThat(fourTimes.getUsageGuard()[0], is(0L));
+        assertThat(fourTimes.recordMethodUsed(2), is(ClassUsageState.MarkResult.NOW_STRIPPABLE));
+        assertThat(fourTimes.getUsageGuard()[0], is(1L << 2));
+        assertThat(fourTimes.recordMethodUsed(2), is(ClassUsageState.MarkResult.SUBSEQUENT_CALL_NO_ACTION));
+    }
+
+    @Test
+    void usageGuardShouldBeSetFromSecondCall() {
+        ClassUsageState state = new ClassUsageState(ClassUsageStateTest.class, methodTable(70));
+        long[] usageGuard = state.getUsageGuard();
+        assertThat(usageGuard.length, is(2));
+
+        state.recordMethodUsed(65);
+        assertThat(usageGuard[1], is(0L));
+        state.recordMethodUsed(65);
+        assertThat(usageGuard[1], is(1L << 65));
+
+        // A lost guard write is repaired by the next call that reaches the state
+        usageGuard[1] = 0L;
+        assertThat(state.recordMethodUsed(65), is(ClassUsageState.MarkResult.SUBSEQUENT_CALL_NO_ACTION));
+        assertThat(usageGuard[1], is(1L << 65));
+    }
+
+    @Test
+    void initialUsageShouldStartStrippableAndStayUsedInSnapshots() {
+        BitSet baseline = new BitSet();
+        baseline.set(1);
+        baseline.set(65);
+        ClassUsageState state = new ClassUsageState(ClassUsageStateTest.class, new MethodUsageSnapshot(methodTable(70), baseline), 2, ProbeConfig.ProbeStrategy.RETRANSFORM);
+        assertThat(state.getUsageGuard()[0], is(1L << 1));
+        assertThat(state.getUsageGuard()[1], is(1L << 65));
+        assertThat(state.getUsedMethodCount(), is(2));
+
+        assertThat(state.recordMethodUsed(1), is(ClassUsageState.MarkResult.SUBSEQUENT_CALL_NO_ACTION));
+        assertThat(state.recordMethodUsed(2), is(ClassUsageState.MarkResult.FIRST_CALL));
+
+        MethodUsageSnapshot snapshot = state.recordInstrumentationWithSnapshotOfUsage();
+        assertThat(snapshot.isUsed(1), is(true));
+        assertThat(snapshot.isUsed(2), is(true));
+        assertThat(snapshot.isUsed(65), is(true));
+        assertThat(snapshot.getUsedCount(), is(3));
+    }
+
+    @Test
+    void snapshotShouldContainCalledMethodsAndResetScheduling() {
+        // Span several words to check the two-bit states are compacted correctly
+        ClassUsageState state = new ClassUsageState(ClassUsageStateTest.class, methodTable(100));
+        int[] calledOrdinals = {0, 31, 32, 63, 64, 99};
+        for (int ordinal : calledOrdinals) {
+            state.recordMethodUsed(ordinal);
+        }
+        state.recordMethodUsed(31); // Second call
+        assertThat(state.tryMarkReinstrumentationScheduled(), is(true));
+
+        MethodUsageSnapshot snapshot = state.recordInstrumentationWithSnapshotOfUsage();
+        int usedCount = 0;
+        for (int i = 0; i < 100; i++) {
+            if (snapshot.isUsed(i)) {
+                usedCount++;
+            }
+        }
+        assertThat(usedCount, is(calledOrdinals.length));
+        for (int ordinal : calledOrdinals) {
+            assertThat("ordinal " + ordinal, snapshot.isUsed(ordinal), is(true));
+        }
+
+        // Scheduling flag is reset, so the next strippable method can schedule instrumentation again
+        assertThat(state.getRetransformCount(), is(1));
+        assertThat(state.tryMarkReinstrumentationScheduled(), is(true));
+        assertThat(state.tryMarkReinstrumentationScheduled(), is(false));
+    }
+
+    @Test
+    void concurrentCallsShouldRecordEachTransitionExactlyOnce() throws Exception {
+        int methodCount = 64;
+        int threadCount = 8;
+        ClassUsageState state = new ClassUsageState(ClassUsageStateTest.class, methodTable(methodCount));
+        AtomicInteger firstCalls = new AtomicInteger();
+        AtomicInteger strippableCalls = new AtomicInteger();
+        AtomicInteger instrumentationScheduled = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                for (int i = 0; i < methodCount; i++) {
+                    ClassUsageState.MarkResult result = state.recordMethodUsed(i);
+                    if (result.isFirstCall()) {
+                        firstCalls.incrementAndGet();
+                    }
+                    if (result.isNowStrippable()) {
+                        strippableCalls.incrementAndGet();
+                        if (state.tryMarkReinstrumentationScheduled()) {
+                            instrumentationScheduled.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(firstCalls.get(), is(methodCount));
+        assertThat(strippableCalls.get(), is(methodCount));
+        assertThat(instrumentationScheduled.get(), is(1));
+        assertThat(state.getHookCallCount(), is((long) methodCount * threadCount));
+    }
+}
@@ -0,0 +1,90 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.model;
+
+import nz.rd.nonop.config.ProbeConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+class JVMRegistryTest {
+
+    private static final MethodTable METHOD_TABLE = new MethodTable(new String[]{"run"}, new String[]{"()V"});
+
+    @Test
+    void shouldNotTrackClassesWithoutMethodTable() {
+        JVMRegistry registry = new JVMRegistry(2);
+
+        assertThat(registry.getClassUsageState(JVMRegistryTest.class), is(nullValue()));
+    }
+
+    @Test
+    void shouldTrackClassOnceMethodTableRegistered() {
+        JVMRegistry registry = new JVMRegistry(2);
+        // Looked up before it's registered, as when a class loaded before the agent is retransformed
+        assertThat(registry.getClassUsageState(JVMRegistryTest.class), is(nullValue()));
+
+        registry.getClassLoaderRegistry(JVMRegistryTest.class.getClassLoader())
+                .registerMethodTable(JVMRegistryTest.class.getName(), MethodUsageSnapshot.noneUsed(METHOD_TABLE), ProbeConfig.ProbeStrategy.RETRANSFORM);
+
+        ClassUsageState classUsageState = registry.getClassUsageState(JVMRegistryTest.class);
+        assertThat(classUsageState, is(notNullValue()));
+        assertThat(classUsageState.getMethodTable(), is(sameInstance(METHOD_TABLE)));
+        assertThat(registry.getClassUsageState(JVMRegistryTest.class), is(sameInstance(classUsageState)));
+    }
+
+    @Test
+    void shouldConsumeRegistrationWhenClassIsTracked() {
+        JVMRegistry registry = new JVMRegistry(2);
+        ClassLoaderRegistry classLoaderRegistry = registry.getClassLoaderRegistry(JVMRegistryTest.class.getClassLoader());
+        classLoaderRegistry.registerMethodTable(JVMRegistryTest.class.getName(), MethodUsageSnapshot.noneUsed(METHOD_TABLE), ProbeConfig.ProbeStrategy.RETRANSFORM);
+
+        ClassUsageState classUsageState = registry.getClassUsageState(JVMRegistryTest.class);
+        assertThat(classUsageState, is(notNullValue()));
+        assertThat(classLoaderRegistry.createClassUsageState(JVMRegistryTest.class, 2), is(nullValue()));
+        assertThat(registry.getClassUsageState(JVMRegistryTest.class), is(sameInstance(classUsageState)));
+    }
+
+    @Test
+    void shouldCreateOneClassUsageStateForConcurrentFirstCalls() throws Exception {
+        JVMRegistry registry = new JVMRegistry(2);
+        registry.getClassLoaderRegistry(JVMRegistryTest.class.getClassLoader())
+                .registerMethodTable(JVMRegistryTest.class.getName(), MethodUsageSnapshot.noneUsed(METHOD_TABLE), ProbeConfig.ProbeStrategy.RETRANSFORM);
+
+        int threadCount = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ClassUsageState[] classUsageStates = new ClassUsageState[threadCount];
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            int index = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                classUsageStates[index] = registry.getClassUsageState(JVMRegistryTest.class);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(classUsageStates[0], is(notNullValue()));
+        for (ClassUsageState classUsageState : classUsageStates) {
+            assertThat(classUsageState, is(sameInstance(classUsageStates[0])));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.model;
+
+import nz.rd.nonop.config.RetransformConfig;
+import nz.rd.nonop.internal.config.NonopPropertyUtils;
+import nz.rd.nonop.internal.logging.ConsoleNonopLogger;
+import nz.rd.nonop.internal.logging.NonopLogger;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class ThresholdRetransformPolicyTest {
+
+    private static ThresholdRetransformPolicy policy(String name, String value) throws Exception {
+        NonopLogger nonopLogger = new ConsoleNonopLogger(NonopLogger.Level.OFF);
+        Map<String, String> properties = NonopPropertyUtils.loadNonopDefaults();
+        properties.put(name, value);
+        return new ThresholdRetransformPolicy(RetransformConfig.load(nonopLogger, properties));
+    }
+
+    private static ClassUsageState state(int methodCount) {
+        String[] names = new String[methodCount];
+        String[] descriptors = new String[methodCount];
+        for (int i = 0; i < methodCount; i++) {
+            names[i] = "method" + i;
+            descriptors[i] = "()V";
+        }
+        return new ClassUsageState(ThresholdRetransformPolicyTest.class, new MethodTable(names, descriptors));
+    }
+
+    @Test
+    void shouldWaitForMinimumUsedFraction() throws Exception {
+        ThresholdRetransformPolicy policy = policy("nonop.retransform.usedfraction", "0.5");
+        ClassUsageState state = state(4);
+        long now = System.currentTimeMillis();
+
+        state.recordMethodUsed(0);
+        assertThat(policy.retransformDelayMillis(state, now), is(RetransformPolicy.NOT_YET));
+        state.recordMethodUsed(1);
+        assertThat(policy.retransformDelayMillis(state, now), is(0L));
+    }
+
+    @Test
+    void shouldWaitForMinimumCallRate() throws Exception {
+        ThresholdRetransformPolicy policy = policy("nonop.retransform.callrate", "10");
+        ClassUsageState state = state(1);
+        state.recordMethodUsed(0);
+        state.recordMethodUsed(0);
+
+        // 2 calls in 1 second is below the minimum, 2 calls in 100 ms is above it
+        assertThat(policy.retransformDelayMillis(state, state.getCreatedMillis() + 1000), is(RetransformPolicy.NOT_YET));
+        assertThat(policy.retransformDelayMillis(state, state.getCreatedMillis() + 100), is(0L));
+    }
+
+    @Test
+    void shouldDelayUntilMinimumIntervalSinceLastRetransform() throws Exception {
+        ThresholdRetransformPolicy policy = policy("nonop.retransform.interval", "1000");
+        ClassUsageState state = state(1);
+        assertThat(policy.retransformDelayMillis(state, System.currentTimeMillis()), is(0L));
+
+        state.recordInstrumentationWithSnapshotOfUsage();
+        long lastRetransform = state.getLastInstrumentationMillis();
+        assertThat(policy.retransformDelayMillis(state, lastRetransform + 400), is(600L));
+        assertThat(policy.retransformDelayMillis(state, lastRetransform + 1500), is(0L));
+    }
+}
@@ -0,0 +1,118 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.out;
+
+import nz.rd.nonop.internal.logging.ConsoleNonopLogger;
+import nz.rd.nonop.internal.logging.NonopLogger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MappedUsageLogTest {
+
+    private static final NonopLogger LOGGER = new ConsoleNonopLogger(NonopLogger.Level.OFF);
+    private static final int SEGMENT_SIZE = 4096;
+
+    private Path path;
+
+    @BeforeEach
+    void createPath() throws IOException {
+        path = Files.createTempFile("nonop-usage", ".log");
+        Files.delete(path);
+    }
+
+    @AfterEach
+    void deletePath() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    private MappedUsageLog open() throws IOException {
+        return new MappedUsageLog(LOGGER, path, SEGMENT_SIZE, 1000);
+    }
+
+    @Test
+    void shouldReadBackAppendedLines() throws Exception {
+        try (MappedUsageLog log = open()) {
+            log.appendLine("first");
+            log.appendLine("second \u00E9");
+        }
+        assertThat(MappedUsageLog.readLines(path), is(Arrays.asList("first", "second \u00E9")));
+    }
+
+    @Test
+    void shouldReadLinesBeforeClose() throws Exception {
+        try (MappedUsageLog log = open()) {
+            log.appendLine("first");
+            // As a reader would see it if the process was killed now
+            assertThat(MappedUsageLog.readLines(path), is(Arrays.asList("first")));
+        }
+    }
+
+    @Test
+    void shouldGrowInSegments() throws Exception {
+        List<String> expected = new ArrayList<>();
+        try (MappedUsageLog log = open()) {
+            for (int i = 0; i < 1000; i++) {
+                String line = "com.example.Class" + i + ".method" + i + "()V";
+                log.appendLine(line);
+                expected.add(line);
+            }
+        }
+        assertThat(Files.size(path) > SEGMENT_SIZE, is(true));
+        assertThat(Files.size(path) % SEGMENT_SIZE, is(0L));
+        assertThat(MappedUsageLog.readLines(path), is(expected));
+    }
+
+    @Test
+    void shouldAppendToExistingLog() throws Exception {
+        try (MappedUsageLog log = open()) {
+            log.appendLine("a");
+        }
+        try (MappedUsageLog log = new MappedUsageLog(LOGGER, path, SEGMENT_SIZE * 2, 1000)) {
+            log.appendLine("b");
+        }
+        assertThat(MappedUsageLog.readLines(path), is(Arrays.asList("a", "b")));
+    }
+
+    @Test
+    void shouldIgnoreAndClearIncompleteRecord() throws Exception {
+        try (MappedUsageLog log = open()) {
+            log.appendLine("a");
+            log.appendLine("b");
+        }
+        // A record whose text was written but whose length wasn't, as if the process died mid-append
+        int end = MappedUsageLog.HEADER_SIZE + 8 + 8;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap("incomplete record".getBytes(StandardCharsets.UTF_8)), end + 4);
+        }
+        assertThat(MappedUsageLog.readLines(path), is(Arrays.asList("a", "b")));
+
+        try (MappedUsageLog log = open()) {
+            log.appendLine("c");
+            log.appendLine("d");
+        }
+        assertThat(MappedUsageLog.readLines(path), is(Arrays.asList("a", "b", "c", "d")));
+    }
+
+    @Test
+    void shouldRejectOtherFiles() throws Exception {
+        Files.write(path, "not a usage log".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, this::open);
+        assertThrows(IOException.class, () -> MappedUsageLog.readLines(path));
+    }
+}
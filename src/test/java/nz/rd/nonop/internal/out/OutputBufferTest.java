@@ -0,0 +1,116 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.out;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class OutputBufferTest {
+
+    private static final String NL = System.lineSeparator();
+
+    // Counts calls to write, i.e. syscalls for a file or standard stream
+    private static final class CountingOutputStream extends ByteArrayOutputStream {
+        int writes = 0;
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            writes++;
+            super.write(b, off, len);
+        }
+
+        String contents() {
+            return new String(toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private long nanos = 0;
+
+    private OutputBuffer buffer(CountingOutputStream out, int capacity, int flushBytes, long flushIntervalMillis) {
+        return new OutputBuffer(out, capacity, flushBytes, flushIntervalMillis, () -> nanos);
+    }
+
+    @Test
+    void shouldWriteOnceWhenFlushBytesReached() throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        OutputBuffer buffer = buffer(out, 1024, 20, 1000);
+        buffer.appendLine("0123456789");
+        assertThat(out.writes, is(0));
+        buffer.appendLine("0123456789");
+        assertThat(out.writes, is(1));
+        assertThat(out.contents(), is("0123456789" + NL + "0123456789" + NL));
+    }
+
+    @Test
+    void shouldFlushOnceIntervalHasPassed() throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        OutputBuffer buffer = buffer(out, 1024, 1024, 1000);
+        buffer.appendLine("a");
+        nanos += TimeUnit.MILLISECONDS.toNanos(500);
+        buffer.appendLine("b");
+        buffer.flushIfDue();
+        assertThat(out.writes, is(0));
+
+        // Interval is measured from the oldest buffered line
+        nanos += TimeUnit.MILLISECONDS.toNanos(500);
+        buffer.flushIfDue();
+        assertThat(out.writes, is(1));
+        assertThat(out.contents(), is("a" + NL + "b" + NL));
+
+        buffer.flushIfDue();
+        assertThat(out.writes, is(1));
+    }
+
+    @Test
+    void shouldFlushAfterEveryLineWhenIntervalIsZero() throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        OutputBuffer buffer = buffer(out, 1024, 1024, 0);
+        buffer.appendLine("a");
+        buffer.appendLine("b");
+        assertThat(out.writes, is(2));
+    }
+
+    @Test
+    void shouldFlushOnClose() throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        OutputBuffer buffer = buffer(out, 1024, 1024, 1000);
+        buffer.appendLine("a");
+        buffer.close();
+        assertThat(out.writes, is(1));
+        assertThat(out.contents(), is("a" + NL));
+    }
+
+    @Test
+    void shouldWriteLinesLongerThanCapacityStraightThrough() throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        OutputBuffer buffer = buffer(out, 64, 64, 1000);
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            line.append((char) ('a' + i % 26));
+        }
+        buffer.appendLine("a");
+        buffer.appendLine(line);
+        assertThat(out.writes, is(2));
+        assertThat(out.contents(), is("a" + NL + line + NL));
+    }
+
+    @Test
+    void shouldEncodeAsUtf8() throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        OutputBuffer buffer = buffer(out, 1024, 1024, 1000);
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            line.append("\u00E9\u20AC\uD83D\uDE00x"); // e-acute, euro sign, emoji
+        }
+        line.append('\uD800'); // Unpaired surrogate
+        buffer.appendLine(line);
+        buffer.close();
+        assertThat(out.contents(), is(new String((line + NL).getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8)));
+    }
+}
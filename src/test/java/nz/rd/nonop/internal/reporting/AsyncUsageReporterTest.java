@@ -0,0 +1,184 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.reporting;
+
+import nz.rd.nonop.config.OutputConfig;
+import nz.rd.nonop.internal.logging.ConsoleNonopLogger;
+import nz.rd.nonop.internal.logging.NonopLogger;
+import nz.rd.nonop.internal.model.MethodTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class AsyncUsageReporterTest {
+
+    private static final NonopLogger LOGGER = new ConsoleNonopLogger(NonopLogger.Level.OFF);
+    private static final MethodTable METHOD_TABLE = new MethodTable(new String[]{"method"}, new String[]{"()V"});
+
+    // Records timestamps, optionally waiting for a latch before recording the first one
+    private static final class RecordingReporter implements UsageReporter {
+        final List<Long> timestamps = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release;
+        final List<Long> flushIfDueNanos = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean finished = false;
+
+        RecordingReporter(boolean blockFirstEvent) {
+            this.release = new CountDownLatch(blockFirstEvent ? 1 : 0);
+        }
+
+        @Override
+        public void recordMethodFirstUsage(long timestampMillis, Class<?> clazz, MethodTable methodTable, int methodOrdinal) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            timestamps.add(timestampMillis);
+        }
+
+        @Override
+        public void flushIfDue() {
+            flushIfDueNanos.add(System.nanoTime());
+        }
+
+        @Override
+        public void finishUsageReportingOnShutdown() {
+            finished = true;
+        }
+    }
+
+    private static List<Long> range(int count) {
+        List<Long> expected = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            expected.add(i);
+        }
+        return expected;
+    }
+
+    @Test
+    void shouldDeliverEventsInOrder() throws Exception {
+        RecordingReporter delegate = new RecordingReporter(false);
+        AsyncUsageReporter reporter = new AsyncUsageReporter(LOGGER, delegate, 16, OutputConfig.FullBufferPolicy.BLOCK, 0);
+        for (long i = 0; i < 1000; i++) {
+            reporter.recordMethodFirstUsage(i, AsyncUsageReporterTest.class, METHOD_TABLE, 0);
+        }
+        reporter.finishUsageReportingOnShutdown();
+
+        assertThat(delegate.timestamps, is(range(1000)));
+        assertThat(delegate.finished, is(true));
+        assertThat(reporter.getDroppedCount(), is(0L));
+    }
+
+    @Test
+    void shouldDeliverEventsFromManyThreads() throws Exception {
+        RecordingReporter delegate = new RecordingReporter(false);
+        AsyncUsageReporter reporter = new AsyncUsageReporter(LOGGER, delegate, 64, OutputConfig.FullBufferPolicy.BLOCK, 0);
+        int threadCount = 4;
+        int eventsPerThread = 5000;
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            long base = (long) t * eventsPerThread;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < eventsPerThread; i++) {
+                    reporter.recordMethodFirstUsage(base + i, AsyncUsageReporterTest.class, METHOD_TABLE, 0);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        reporter.finishUsageReportingOnShutdown();
+
+        List<Long> received = new ArrayList<>(delegate.timestamps);
+        Collections.sort(received);
+        assertThat(received, is(range(threadCount * eventsPerThread)));
+    }
+
+    @Test
+    void shouldCallFlushIfDueOnceFlushIntervalHasPassed() throws Exception {
+        RecordingReporter delegate = new RecordingReporter(false);
+        long flushIntervalMillis = 50;
+        AsyncUsageReporter reporter = new AsyncUsageReporter(LOGGER, delegate, 4, OutputConfig.FullBufferPolicy.BLOCK, flushIntervalMillis);
+        long recordedNanos = System.nanoTime();
+        reporter.recordMethodFirstUsage(0, AsyncUsageReporterTest.class, METHOD_TABLE, 0);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!flushedAfter(delegate, recordedNanos + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis))
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(flushedAfter(delegate, recordedNanos + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis)), is(true));
+
+        // Then it parks until there's another event
+        int calls = delegate.flushIfDueNanos.size();
+        Thread.sleep(5 * flushIntervalMillis);
+        assertThat(delegate.flushIfDueNanos.size(), is(calls));
+        reporter.finishUsageReportingOnShutdown();
+    }
+
+    private static boolean flushedAfter(RecordingReporter delegate, long nanos) {
+        synchronized (delegate.flushIfDueNanos) {
+            for (long flushNanos : delegate.flushIfDueNanos) {
+                if (flushNanos - nanos >= 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void shouldDropWhenFull() throws Exception {
+        RecordingReporter delegate = new RecordingReporter(true);
+        AsyncUsageReporter reporter = new AsyncUsageReporter(LOGGER, delegate, 4, OutputConfig.FullBufferPolicy.DROP, 0);
+        reporter.recordMethodFirstUsage(0, AsyncUsageReporterTest.class, METHOD_TABLE, 0);
+        // The writer thread is now stuck on the first event, so four more fill the buffer
+        assertThat(delegate.started.await(5, TimeUnit.SECONDS), is(true));
+        for (long i = 1; i <= 10; i++) {
+            reporter.recordMethodFirstUsage(i, AsyncUsageReporterTest.class, METHOD_TABLE, 0);
+        }
+        assertThat(reporter.getDroppedCount(), is(6L));
+
+        delegate.release.countDown();
+        reporter.finishUsageReportingOnShutdown();
+        assertThat(delegate.timestamps, is(range(5)));
+    }
+
+    @Test
+    void shouldSpillWhenFull() throws Exception {
+        RecordingReporter delegate = new RecordingReporter(true);
+        AsyncUsageReporter reporter = new AsyncUsageReporter(LOGGER, delegate, 4, OutputConfig.FullBufferPolicy.SPILL, 0);
+        reporter.recordMethodFirstUsage(0, AsyncUsageReporterTest.class, METHOD_TABLE, 0);
+        assertThat(delegate.started.await(5, TimeUnit.SECONDS), is(true));
+        for (long i = 1; i <= 10; i++) {
+            reporter.recordMethodFirstUsage(i, AsyncUsageReporterTest.class, METHOD_TABLE, 0);
+        }
+        assertThat(reporter.getSpilledCount(), is(6L));
+
+        delegate.release.countDown();
+        reporter.finishUsageReportingOnShutdown();
+        assertThat(reporter.getDroppedCount(), is(0L));
+        assertThat(delegate.timestamps, is(range(11)));
+    }
+
+    @Test
+    void shouldDropEventsAfterShutdown() throws Exception {
+        RecordingReporter delegate = new RecordingReporter(false);
+        AsyncUsageReporter reporter = new AsyncUsageReporter(LOGGER, delegate, 4, OutputConfig.FullBufferPolicy.BLOCK, 0);
+        reporter.finishUsageReportingOnShutdown();
+        reporter.recordMethodFirstUsage(0, AsyncUsageReporterTest.class, METHOD_TABLE, 0);
+
+        assertThat(delegate.timestamps.isEmpty(), is(true));
+        assertThat(reporter.getDroppedCount(), is(1L));
+    }
+}
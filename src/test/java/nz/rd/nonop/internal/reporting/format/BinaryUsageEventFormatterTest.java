@@ -0,0 +1,181 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.reporting.format;
+
+import nz.rd.nonop.internal.logging.ConsoleNonopLogger;
+import nz.rd.nonop.internal.logging.NonopLogger;
+import nz.rd.nonop.internal.out.MappedUsageLog;
+import nz.rd.nonop.internal.out.UsageOutput;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryUsageEventFormatterTest {
+
+    // Collects records into one stream, as an OutputBuffer would write them
+    private static final class RecordingOutput implements UsageOutput {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final List<Integer> recordLengths = new ArrayList<>();
+        boolean failNext = false;
+
+        @Override
+        public void appendLine(CharSequence line) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void appendRecord(byte[] record, int offset, int length) throws IOException {
+            if (failNext) {
+                failNext = false;
+                throw new IOException("Simulated failure");
+            }
+            bytes.write(record, offset, length);
+            recordLengths.add(length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void flushIfDue() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static BinaryUsageDecoder.MethodCalled text(List<String> lines) {
+        return (timestamp, className, methodName, descriptor) -> lines.add(timestamp + " " + className + "." + methodName + descriptor);
+    }
+
+    private static List<String> decode(InputStream in) throws IOException {
+        List<String> lines = new ArrayList<>();
+        new BinaryUsageDecoder(text(lines)).decode(in);
+        return lines;
+    }
+
+    private static List<String> decode(byte[] bytes) throws IOException {
+        return decode(new ByteArrayInputStream(bytes));
+    }
+
+    @Test
+    void shouldDecodeWhatWasWritten() throws Exception {
+        BinaryUsageEventFormatter formatter = new BinaryUsageEventFormatter();
+        RecordingOutput output = new RecordingOutput();
+        formatter.writeMethodCalled(output, 1700000000000L, "com.example.Foo", "bar", "()V");
+        formatter.writeMethodCalled(output, 1700000000005L, "com.example.Foo", "baz", "(I)V");
+        formatter.writeMethodCalled(output, 1700000000010L, "com.example.Other", "bar", "()V");
+        formatter.writeMethodCalled(output, 1700000000003L, "DefaultPackage", "caf\u00E9", "()V"); // Earlier timestamp
+        formatter.writeMethodCalled(output, 1700000000003L, "com.example.Foo", "<init>", "()V");
+
+        assertThat(decode(output.bytes.toByteArray()), is(Arrays.asList(
+                "1700000000000 com.example.Foo.bar()V",
+                "1700000000005 com.example.Foo.baz(I)V",
+                "1700000000010 com.example.Other.bar()V",
+                "1700000000003 DefaultPackage.caf\u00E9()V",
+                "1700000000003 com.example.Foo.<init>()V")));
+    }
+
+    @Test
+    void shouldWriteRepeatedStringsAsReferences() throws Exception {
+        BinaryUsageEventFormatter formatter = new BinaryUsageEventFormatter();
+        RecordingOutput output = new RecordingOutput();
+        formatter.writeMethodCalled(output, 1700000000000L, "com.example.SomeLongClassName", "someMethod", "(Ljava/lang/String;)V");
+        formatter.writeMethodCalled(output, 1700000000001L, "com.example.SomeLongClassName", "someMethod", "(Ljava/lang/String;)V");
+
+        // Tag, timestamp delta, then class, method name and descriptor references
+        assertThat(output.recordLengths.get(1), is(5));
+    }
+
+    @Test
+    void shouldRestartDictionaryAfterMagic() throws Exception {
+        RecordingOutput output = new RecordingOutput();
+        // As when a restarted process appends to the same log
+        new BinaryUsageEventFormatter().writeMethodCalled(output, 1000, "a.A", "m", "()V");
+        new BinaryUsageEventFormatter().writeMethodCalled(output, 2000, "b.B", "n", "()V");
+
+        assertThat(decode(output.bytes.toByteArray()), is(Arrays.asList("1000 a.A.m()V", "2000 b.B.n()V")));
+    }
+
+    @Test
+    void shouldRestartDictionaryAfterFailedWrite() throws Exception {
+        BinaryUsageEventFormatter formatter = new BinaryUsageEventFormatter();
+        RecordingOutput output = new RecordingOutput();
+        formatter.writeMethodCalled(output, 1000, "a.A", "m", "()V");
+        output.failNext = true;
+        assertThrows(IOException.class, () -> formatter.writeMethodCalled(output, 2000, "b.B", "n", "()V"));
+        formatter.writeMethodCalled(output, 3000, "b.B", "n", "()V");
+
+        assertThat(decode(output.bytes.toByteArray()), is(Arrays.asList("1000 a.A.m()V", "3000 b.B.n()V")));
+    }
+
+    @Test
+    void shouldRestartDictionaryOnceFull() throws Exception {
+        // The first event adds its package, class name, class, method name and descriptor, the second a method name
+        BinaryUsageEventFormatter formatter = new BinaryUsageEventFormatter(5);
+        RecordingOutput output = new RecordingOutput();
+        formatter.writeMethodCalled(output, 1000, "a.A", "m", "()V");
+        formatter.writeMethodCalled(output, 2000, "a.A", "n", "()V");
+        formatter.writeMethodCalled(output, 3000, "b.B", "n", "()V");
+
+        byte[] bytes = output.bytes.toByteArray();
+        assertThat(decode(bytes), is(Arrays.asList("1000 a.A.m()V", "2000 a.A.n()V", "3000 b.B.n()V")));
+        int thirdStart = output.recordLengths.get(0) + output.recordLengths.get(1);
+        assertArrayEquals(BinaryUsageEventFormatter.MAGIC,
+                Arrays.copyOfRange(bytes, thirdStart, thirdStart + BinaryUsageEventFormatter.MAGIC.length));
+    }
+
+    @Test
+    void shouldDecodeEventsBeforeTruncation() throws Exception {
+        BinaryUsageEventFormatter formatter = new BinaryUsageEventFormatter();
+        RecordingOutput output = new RecordingOutput();
+        formatter.writeMethodCalled(output, 1000, "a.A", "m", "()V");
+        formatter.writeMethodCalled(output, 2000, "a.A", "n", "()V");
+        byte[] bytes = output.bytes.toByteArray();
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 1);
+
+        List<String> lines = new ArrayList<>();
+        assertThrows(EOFException.class, () -> new BinaryUsageDecoder(text(lines)).decode(new ByteArrayInputStream(truncated)));
+        assertThat(lines, is(Arrays.asList("1000 a.A.m()V")));
+    }
+
+    @Test
+    void shouldRejectOtherInput() {
+        assertThrows(IOException.class, () -> decode("com.example.Foo.bar()".getBytes()));
+    }
+
+    @Test
+    void shouldDecodeMappedUsageLog() throws Exception {
+        Path path = Files.createTempFile("nonop-usage", ".log");
+        Files.delete(path);
+        try {
+            NonopLogger logger = new ConsoleNonopLogger(NonopLogger.Level.OFF);
+            BinaryUsageEventFormatter formatter = new BinaryUsageEventFormatter();
+            try (MappedUsageLog log = new MappedUsageLog(logger, path, 4096, 1000)) {
+                formatter.writeMethodCalled(log, 1000, "a.A", "m", "()V");
+                formatter.writeMethodCalled(log, 2000, "a.A", "n", "()V");
+            }
+            try (InputStream in = BinaryUsageDecoder.open(path)) {
+                assertThat(decode(in), is(Arrays.asList("1000 a.A.m()V", "2000 a.A.n()V")));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.reporting.format;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DescriptorCacheTest {
+
+    @Test
+    void shouldReturnTheSameRenderingForRepeatedDescriptors() {
+        DescriptorCache cache = new DescriptorCache(10);
+        String first = cache.parameterTypes("(Ljava/lang/String;I)V");
+        String second = cache.parameterTypes(new String("(Ljava/lang/String;I)V"));
+
+        assertThat(first, is("java.lang.String,int"));
+        assertThat(second, sameInstance(first));
+        assertThat(cache.getHits(), is(1L));
+        assertThat(cache.getMisses(), is(1L));
+        assertThat(cache.toString(), is("1 descriptors cached (max 10), 1 of 2 lookups hit (50.0%)"));
+    }
+
+    @Test
+    void shouldStopCachingWhenFull() {
+        DescriptorCache cache = new DescriptorCache(2);
+        cache.parameterTypes("()V");
+        cache.parameterTypes("(I)V");
+        assertThat(cache.parameterTypes("(J)V"), is("long"));
+        assertThat(cache.parameterTypes("(J)V"), is("long"));
+
+        assertThat(cache.size(), is(2));
+        assertThat(cache.getMisses(), is(4L));
+        cache.parameterTypes("()V");
+        assertThat(cache.getHits(), is(1L));
+    }
+
+    @Test
+    void shouldNotCacheMalformedDescriptors() {
+        DescriptorCache cache = new DescriptorCache(10);
+        assertThrows(IllegalArgumentException.class, () -> cache.parameterTypes("(I"));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    void shouldBeUsedBySimpleFormatter() {
+        DescriptorCache cache = new DescriptorCache(10);
+        SimpleUsageEventFormatter formatter = new SimpleUsageEventFormatter(cache);
+        formatter.formatMethodCalled(0, "a.A", "m", "(I)V");
+
+        assertThat(formatter.formatMethodCalled(0, "b.B", "n", "(I)V"), is("b.B.n(int)"));
+        assertThat(cache.getHits(), is(1L));
+    }
+}
@@ -0,0 +1,36 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.reporting.format;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DescriptorsTest {
+
+    private static String parameterTypes(String methodDescriptor) {
+        StringBuilder sb = new StringBuilder();
+        Descriptors.appendParameterTypes(sb, methodDescriptor);
+        return sb.toString();
+    }
+
+    @Test
+    void shouldFormatParameterTypes() {
+        assertThat(parameterTypes("()V"), is(""));
+        assertThat(parameterTypes("(ZBCSIJFD)V"), is("boolean,byte,char,short,int,long,float,double"));
+        assertThat(parameterTypes("(Ljava/lang/String;I)Ljava/lang/Object;"), is("java.lang.String,int"));
+        assertThat(parameterTypes("([I[[Ljava/util/Map$Entry;)V"), is("int[],java.util.Map$Entry[][]"));
+        assertThat(parameterTypes("(LNoPackage;)V"), is("NoPackage"));
+    }
+
+    @Test
+    void shouldRejectMalformedDescriptors() {
+        assertThrows(IllegalArgumentException.class, () -> parameterTypes("I"));
+        assertThrows(IllegalArgumentException.class, () -> parameterTypes("(Ljava/lang/String"));
+        assertThrows(IllegalArgumentException.class, () -> parameterTypes("(I"));
+        assertThrows(IllegalArgumentException.class, () -> parameterTypes("(Q)V"));
+        assertThrows(IllegalArgumentException.class, () -> parameterTypes("(["));
+    }
+}
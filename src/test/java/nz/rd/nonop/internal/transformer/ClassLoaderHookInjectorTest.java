@@ -0,0 +1,124 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.transformer;
+
+import nz.rd.nonop.internal.NonopLoaderHook;
+import nz.rd.nonop.internal.logging.AbstractNonopLogger;
+import nz.rd.nonop.internal.logging.NonopLogger.Level;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassLoaderHookInjectorTest {
+
+    private static final String DEFINED_MESSAGE = "Defined " + NonopLoaderHook.class.getName() + " in ClassLoader: ";
+
+    private static final class RecordingLogger extends AbstractNonopLogger {
+        final List<String> messages = new ArrayList<>();
+
+        RecordingLogger() {
+            super(Level.DEBUG);
+        }
+
+        @Override
+        protected synchronized void outputLog(@NonNull Level level, @NonNull String message, @Nullable Throwable throwable) {
+            messages.add(level + " " + message);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        synchronized long count(String prefix) {
+            return messages.stream().filter(m -> m.startsWith(prefix)).count();
+        }
+    }
+
+    private final RecordingLogger logger = new RecordingLogger();
+    private final ClassLoaderHookInjector injector = new ClassLoaderHookInjector(logger);
+
+    private static URLClassLoader delegatingClassLoader() {
+        return new URLClassLoader(new URL[0], ClassLoaderHookInjectorTest.class.getClassLoader());
+    }
+
+    @Test
+    void shouldDefineHookInNewClassLoader() throws Exception {
+        try (URLClassLoader loader = delegatingClassLoader()) {
+            assertTrue(injector.ensureHookDefined(loader, null));
+
+            Class<?> hook = Class.forName(NonopLoaderHook.class.getName(), false, loader);
+            assertNotSame(NonopLoaderHook.class, hook);
+            assertThat(hook.getClassLoader(), is(loader));
+            assertThat(logger.count("DEBUG " + DEFINED_MESSAGE), is(1L));
+        }
+    }
+
+    @Test
+    void shouldNotResolveHookInClassLoaderThatCantLinkAgainstAgent() throws Exception {
+        // Doesn't delegate to the agent's ClassLoader, so the copy can't link against the agent's classes
+        try (URLClassLoader loader = new URLClassLoader(new URL[0], null)) {
+            assertFalse(injector.ensureHookDefined(loader, null));
+            // Remembered, not defined again
+            assertFalse(injector.ensureHookDefined(loader, null));
+            assertThat(logger.count("DEBUG " + DEFINED_MESSAGE), is(1L));
+        }
+    }
+
+    @Test
+    void shouldNotResolveHookInBootstrapClassLoader() {
+        assertFalse(injector.ensureHookDefined(null, null));
+    }
+
+    @Test
+    void shouldResolveHookInAgentClassLoader() {
+        assertTrue(injector.ensureHookDefined(NonopLoaderHook.class.getClassLoader(), null));
+        assertThat(logger.count("DEBUG " + DEFINED_MESSAGE), is(0L));
+    }
+
+    @Test
+    void shouldDefineHookOnceForConcurrentFirstTransforms() throws Exception {
+        int threadCount = 8;
+        try (URLClassLoader loader = delegatingClassLoader()) {
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger resolved = new AtomicInteger();
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (injector.ensureHookDefined(loader, null)) {
+                        resolved.incrementAndGet();
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertThat(resolved.get(), is(threadCount));
+            // Defining it twice would fail with a LinkageError, which is logged as a warning
+            assertThat(logger.count("DEBUG " + DEFINED_MESSAGE), is(1L));
+            assertThat(logger.count("WARN "), is(0L));
+        }
+    }
+}
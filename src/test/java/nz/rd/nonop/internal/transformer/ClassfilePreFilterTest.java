@@ -0,0 +1,80 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.transformer;
+
+import nz.rd.nonop.internal.config.ScanRuleParser;
+import nz.rd.nonop.internal.logging.ConsoleNonopLogger;
+import nz.rd.nonop.internal.logging.NonopLogger;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class ClassfilePreFilterTest {
+
+    private final NonopLogger nonopLogger = new ConsoleNonopLogger(NonopLogger.Level.OFF);
+    private final ClassLoader loader = getClass().getClassLoader();
+
+    private ClassfilePreFilter preFilter(String scanRules, boolean scanIncludeSynthetic) {
+        NameBasedScanRuleMatcher nameMatcher = new NameBasedScanRuleMatcher(new ScanRuleParser(nonopLogger).parse(scanRules), nonopLogger);
+        return new ClassfilePreFilter(false, false, scanIncludeSynthetic, nameMatcher);
+    }
+
+    private static byte[] classfile(Class<?> clazz) throws IOException {
+        try (InputStream in = clazz.getResourceAsStream("/" + clazz.getName().replace('.', '/') + ".class")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    @Test
+    void readsAccessFlagsAfterConstantPool() throws IOException {
+        // Covers most constant types, including Long and Double, which take two entries
+        assertThat(ClassfilePreFilter.readAccessFlags(classfile(Constants.class)) & 0x0200, equalTo(0));
+        assertThat(ClassfilePreFilter.readAccessFlags(classfile(Runnable.class)) & 0x0200, equalTo(0x0200));
+        assertThat(ClassfilePreFilter.readAccessFlags(new byte[]{1, 2, 3}), equalTo(-1));
+    }
+
+    @Test
+    void rejectsByStage() throws IOException {
+        ClassfilePreFilter preFilter = preFilter("!java.*, *", false);
+        byte[] classfile = classfile(Constants.class);
+
+        assertThat(preFilter.reject(loader, null, classfile), equalTo(ScanStatistics.Stage.UNNAMED));
+        assertThat(preFilter.reject(null, "nz/rd/Foo", classfile), equalTo(ScanStatistics.Stage.BOOTSTRAP));
+        assertThat(preFilter.reject(loader, "java/lang/String", classfile), equalTo(ScanStatistics.Stage.NAME));
+        assertThat(preFilter.reject(loader, "nz/rd/Foo", classfile), nullValue());
+    }
+
+    @Test
+    void rejectsSyntheticClassesUnlessIncluded() throws IOException {
+        byte[] classfile = classfile(Constants.class);
+        // Set ACC_SYNTHETIC in the high byte of the access flags
+        classfile[ClassfilePreFilter.accessFlagsOffset(classfile)] |= 0x10;
+
+        assertThat(preFilter("*", false).reject(loader, "nz/rd/Foo", classfile), equalTo(ScanStatistics.Stage.CLASSFILE_HEADER));
+        assertThat(preFilter("*", true).reject(loader, "nz/rd/Foo", classfile), nullValue());
+    }
+
+    @SuppressWarnings("unused")
+    static class Constants {
+        static final String STRING = "string";
+        static long longValue = 1234567890123L;
+        static double doubleValue = 1.5;
+        float floatValue = 1.5f;
+        int intValue = 123456789;
+
+        Runnable lambda() {
+            return () -> longValue++;
+        }
+    }
+}
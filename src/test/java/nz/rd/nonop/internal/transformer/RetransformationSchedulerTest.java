@@ -0,0 +1,140 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.transformer;
+
+import nz.rd.nonop.config.RetransformConfig;
+import nz.rd.nonop.internal.config.NonopPropertyUtils;
+import nz.rd.nonop.internal.logging.ConsoleNonopLogger;
+import nz.rd.nonop.internal.logging.NonopLogger;
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.Test;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class RetransformationSchedulerTest {
+
+    private final NonopLogger nonopLogger = new ConsoleNonopLogger(NonopLogger.Level.OFF);
+    // Every retransformClasses call, including failed ones
+    private final BlockingQueue<List<Class<?>>> retransformCalls = new LinkedBlockingQueue<>();
+
+    private Instrumentation instrumentation(Class<?> unmodifiableClass) {
+        return (Instrumentation) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Instrumentation.class}, (proxy, method, args) -> {
+            if (!method.getName().equals("retransformClasses")) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            List<Class<?>> classes = Arrays.asList((Class<?>[]) args[0]);
+            retransformCalls.add(classes);
+            if (classes.contains(unmodifiableClass)) {
+                throw new UnmodifiableClassException(unmodifiableClass.getName());
+            }
+            return null;
+        });
+    }
+
+    private RetransformationScheduler scheduler(Class<?> unmodifiableClass, long debounceMillis) throws Exception {
+        Map<String, String> properties = NonopPropertyUtils.loadNonopDefaults();
+        properties.put("nonop.retransform.debounce", String.valueOf(debounceMillis));
+        return new RetransformationScheduler(nonopLogger, instrumentation(unmodifiableClass), RetransformConfig.load(nonopLogger, properties));
+    }
+
+    private RetransformationScheduler idleWaitingScheduler(long idleMaxDelayMillis, BooleanSupplier isIdle) throws Exception {
+        Map<String, String> properties = NonopPropertyUtils.loadNonopDefaults();
+        properties.put("nonop.retransform.debounce", "0");
+        properties.put("nonop.retransform.idle", "true");
+        properties.put("nonop.retransform.idle.maxdelay", String.valueOf(idleMaxDelayMillis));
+        return new RetransformationScheduler(nonopLogger, instrumentation(Void.class), RetransformConfig.load(nonopLogger, properties), isIdle);
+    }
+
+    @Test
+    void shouldRetransformScheduledClassesInOneBatch() throws Exception {
+        try (RetransformationScheduler scheduler = scheduler(Void.class, 200)) {
+            scheduler.schedule(String.class, 0);
+            scheduler.schedule(Integer.class, 0);
+            scheduler.schedule(String.class, 0);
+            scheduler.start();
+
+            List<Class<?>> batch = retransformCalls.poll(5, TimeUnit.SECONDS);
+            assertThat(batch, Matchers.<Class<?>>contains(String.class, Integer.class));
+            assertThat(retransformCalls.poll(300, TimeUnit.MILLISECONDS), is(nullValue()));
+        }
+    }
+
+    @Test
+    void shouldSplitFailedBatchToIsolateUnmodifiableClass() throws Exception {
+        try (RetransformationScheduler scheduler = scheduler(Long.class, 0)) {
+            scheduler.schedule(String.class, 0);
+            scheduler.schedule(Integer.class, 0);
+            scheduler.schedule(Long.class, 0);
+            scheduler.schedule(Short.class, 0);
+            scheduler.start();
+
+            // [S, I, L, Sh] fails -> [S, I] succeeds, [L, Sh] fails -> [L] fails, [Sh] succeeds
+            List<List<Class<?>>> calls = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                calls.add(retransformCalls.poll(5, TimeUnit.SECONDS));
+            }
+            assertThat(calls, contains(
+                    Arrays.<Class<?>>asList(String.class, Integer.class, Long.class, Short.class),
+                    Arrays.<Class<?>>asList(String.class, Integer.class),
+                    Arrays.<Class<?>>asList(Long.class, Short.class),
+                    Arrays.<Class<?>>asList(Long.class),
+                    Arrays.<Class<?>>asList(Short.class)));
+        }
+    }
+
+    @Test
+    void shouldRunCheckThatCanScheduleClass() throws Exception {
+        BlockingQueue<Class<?>> checked = new LinkedBlockingQueue<>();
+        try (RetransformationScheduler scheduler = scheduler(Void.class, 0)) {
+            scheduler.scheduleCheck(String.class, 0, clazz -> {
+                checked.add(clazz);
+                scheduler.schedule(clazz, 0);
+            });
+            scheduler.start();
+
+            assertThat(checked.poll(5, TimeUnit.SECONDS), is(equalTo(String.class)));
+            // The check itself doesn't retransform the class
+            assertThat(retransformCalls.poll(5, TimeUnit.SECONDS), Matchers.<Class<?>>contains(String.class));
+            assertThat(retransformCalls.poll(300, TimeUnit.MILLISECONDS), is(nullValue()));
+        }
+    }
+
+    @Test
+    void shouldHoldBatchUntilIdle() throws Exception {
+        AtomicBoolean idle = new AtomicBoolean(false);
+        try (RetransformationScheduler scheduler = idleWaitingScheduler(60_000, idle::get)) {
+            scheduler.schedule(String.class, 0);
+            scheduler.start();
+
+            assertThat(retransformCalls.poll(500, TimeUnit.MILLISECONDS), is(nullValue()));
+            idle.set(true);
+            assertThat(retransformCalls.poll(5, TimeUnit.SECONDS), Matchers.<Class<?>>contains(String.class));
+        }
+    }
+
+    @Test
+    void shouldRetransformAfterMaxDelayEvenIfNotIdle() throws Exception {
+        try (RetransformationScheduler scheduler = idleWaitingScheduler(300, () -> false)) {
+            long start = System.nanoTime();
+            scheduler.schedule(String.class, 0);
+            scheduler.start();
+
+            assertThat(retransformCalls.poll(5, TimeUnit.SECONDS), Matchers.<Class<?>>contains(String.class));
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), greaterThanOrEqualTo(300L));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+// Copyright 2025 Rich Dougherty <rich@rd.nz>
+
+package nz.rd.nonop.internal.transformer;
+
+import net.bytebuddy.description.type.TypeDescription;
+import net.bytebuddy.dynamic.ClassFileLocator;
+import net.bytebuddy.pool.TypePool;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class TypePoolCacheTest {
+
+    private final ClassLoader loader = getClass().getClassLoader();
+
+    @Test
+    void reusesTypePoolForClassLoader() {
+        TypePoolCache cache = new TypePoolCache(16);
+
+        assertThat(cache.typePoolFor(loader), sameInstance(cache.typePoolFor(loader)));
+        assertThat(cache.typePoolFor(null), sameInstance(cache.typePoolFor(null)));
+    }
+
+    @Test
+    void countsHitsForTypesDescribedAgain() {
+        TypePoolCache cache = new TypePoolCache(16);
+        TypePool typePool = cache.typePoolFor(loader);
+
+        typePool.describe(TypePoolCacheTest.class.getName()).resolve();
+        long missesAfterFirst = cache.getMisses();
+        typePool.describe(TypePoolCacheTest.class.getName()).resolve();
+
+        assertThat(missesAfterFirst, greaterThan(0L));
+        assertThat(cache.getMisses(), equalTo(missesAfterFirst));
+        assertThat(cache.getHits(), greaterThan(0L));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedTypes() {
+        TypePoolCache cache = new TypePoolCache(1);
+        TypePool typePool = cache.typePoolFor(loader);
+
+        typePool.describe(TypePoolCacheTest.class.getName()).resolve();
+        typePool.describe(TypePoolCache.class.getName()).resolve();
+
+        assertThat(cache.getEvictions(), greaterThan(0L));
+    }
+
+    @Test
+    void describesLoadingClassFromClassfileWithoutReadingItFromClassLoader() {
+        TypePoolCache cache = new TypePoolCache(16);
+        // Can't find the class's classfile, but can find its supertypes
+        ClassLoader definingLoader = new URLClassLoader(new URL[0], null);
+        byte[] classfile = ClassFileLocator.ForClassLoader.read(Sample.class);
+
+        TypeDescription typeDescription = cache.describeLoadingClass(definingLoader, Sample.class.getName(), classfile);
+
+        assertThat(typeDescription.getName(), equalTo(Sample.class.getName()));
+        assertThat(typeDescription.getSuperClass().asErasure().getName(), equalTo(Thread.class.getName()));
+        assertThat(cache.typePoolFor(definingLoader).describe(Sample.class.getName()).isResolved(), equalTo(false));
+    }
+
+    static class Sample extends Thread {
+    }
+}
@@ -0,0 +1,158 @@
+package nz.rd.nonoptest.benchmark;
+
+import nz.rd.nonop.internal.baseline.BaselineIndexBuilder;
+import nz.rd.nonop.internal.baseline.UsageBaseline;
+import nz.rd.nonop.internal.logging.ConsoleNonopLogger;
+import nz.rd.nonop.internal.logging.NonopLogger;
+import nz.rd.nonop.internal.model.MethodTable;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Startup cost, heap and lookups per second of a usage baseline read into the heap from simple format usage output,
+ * against the same baseline as a memory-mapped index from BaselineIndexBuilder. Half the lookups are for methods in the
+ * baseline, in random order, so most miss the CPU caches as they would across a large app's classes. Also times the
+ * transformer's query, which finds the used methods of a whole class's method table at once.
+ */
+public class BaselineLookupBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int classes = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int methodsPerClass = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int lookupsPerIteration = args.length > 2 ? Integer.parseInt(args[2]) : 2_000_000;
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        NonopLogger nonopLogger = new ConsoleNonopLogger(NonopLogger.Level.WARN);
+        Path dir = Files.createTempDirectory("nonop-baseline-benchmark");
+        Path usage = dir.resolve("usage.log");
+        Path index = dir.resolve("baseline.idx");
+        try {
+            // Every other method is used
+            try (BufferedWriter out = Files.newBufferedWriter(usage, StandardCharsets.UTF_8)) {
+                for (int c = 0; c < classes; c++) {
+                    for (int m = 0; m < methodsPerClass; m += 2) {
+                        out.write(className(c) + "." + methodKey(m));
+                        out.newLine();
+                    }
+                }
+            }
+            System.out.printf("Classes: %d, methods: %d, used: %d, usage output: %d bytes%n", classes,
+                    classes * methodsPerClass, classes * ((methodsPerClass + 1) / 2), Files.size(usage));
+
+            long start = System.nanoTime();
+            buildIndex(usage, index, nonopLogger);
+            System.out.printf("Index built in %d ms, %d bytes%n", (System.nanoTime() - start) / 1_000_000, Files.size(index));
+
+            long heapBefore = usedHeap();
+            start = System.nanoTime();
+            UsageBaseline heap = UsageBaseline.load(usage, nonopLogger);
+            long heapLoadNanos = System.nanoTime() - start;
+            long heapBytes = usedHeap() - heapBefore;
+
+            heapBefore = usedHeap();
+            start = System.nanoTime();
+            UsageBaseline mapped = UsageBaseline.load(index, nonopLogger);
+            long mappedLoadNanos = System.nanoTime() - start;
+            long mappedBytes = usedHeap() - heapBefore;
+
+            System.out.printf("Heap baseline:   loaded in %6.1f ms, %,d bytes of heap%n", heapLoadNanos / 1e6, heapBytes);
+            System.out.printf("Mapped baseline: loaded in %6.1f ms, %,d bytes of heap%n", mappedLoadNanos / 1e6, mappedBytes);
+
+            Random random = new Random(42);
+            String[] classKeys = new String[lookupsPerIteration];
+            String[] methodKeys = new String[lookupsPerIteration];
+            for (int i = 0; i < lookupsPerIteration; i++) {
+                classKeys[i] = className(random.nextInt(classes));
+                methodKeys[i] = methodKey(random.nextInt(methodsPerClass));
+            }
+
+            String[] names = new String[methodsPerClass];
+            String[] descriptors = new String[methodsPerClass];
+            for (int m = 0; m < methodsPerClass; m++) {
+                names[m] = "handleRequest" + m;
+                descriptors[m] = "(Ljava/lang/String;I)V";
+            }
+            MethodTable methodTable = new MethodTable(names, descriptors);
+            int classesPerIteration = lookupsPerIteration / methodsPerClass;
+
+            for (int i = 0; i < iterations; i++) {
+                start = System.nanoTime();
+                int heapHits = lookUp(heap, classKeys, methodKeys);
+                long heapNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                int mappedHits = lookUp(mapped, classKeys, methodKeys);
+                long mappedNanos = System.nanoTime() - start;
+
+                if (heapHits != mappedHits) {
+                    throw new IllegalStateException("Baselines disagree: " + heapHits + " != " + mappedHits);
+                }
+                System.out.printf("Iteration %d: heap %,12.0f lookups/s, mapped %,12.0f lookups/s", i + 1,
+                        lookupsPerIteration * 1e9 / heapNanos, lookupsPerIteration * 1e9 / mappedNanos);
+
+                start = System.nanoTime();
+                heapHits = usedMethods(heap, classKeys, classesPerIteration, methodTable);
+                heapNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                mappedHits = usedMethods(mapped, classKeys, classesPerIteration, methodTable);
+                mappedNanos = System.nanoTime() - start;
+
+                if (heapHits != mappedHits) {
+                    throw new IllegalStateException("Baselines disagree: " + heapHits + " != " + mappedHits);
+                }
+                System.out.printf("; per class: heap %,10.0f classes/s, mapped %,10.0f classes/s%n",
+                        classesPerIteration * 1e9 / heapNanos, classesPerIteration * 1e9 / mappedNanos);
+            }
+        } finally {
+            Files.deleteIfExists(usage);
+            Files.deleteIfExists(index);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static void buildIndex(Path usage, Path index, NonopLogger nonopLogger) throws Exception {
+        BaselineIndexBuilder builder = new BaselineIndexBuilder();
+        builder.addUsage(usage, nonopLogger);
+        builder.write(index);
+    }
+
+    private static String className(int c) {
+        return "com.example.service" + (c % 97) + ".module" + (c % 13) + ".SomeService" + c;
+    }
+
+    private static String methodKey(int m) {
+        return "handleRequest" + m + "(java.lang.String,int)";
+    }
+
+    private static int lookUp(UsageBaseline baseline, String[] classKeys, String[] methodKeys) {
+        int hits = 0;
+        for (int i = 0; i < classKeys.length; i++) {
+            if (baseline.containsClass(classKeys[i]) && baseline.isUsed(classKeys[i], methodKeys[i])) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static int usedMethods(UsageBaseline baseline, String[] classKeys, int classCount, MethodTable methodTable) {
+        int used = 0;
+        for (int i = 0; i < classCount; i++) {
+            used += baseline.usedMethods(classKeys[i], methodTable).getUsedCount();
+        }
+        return used;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
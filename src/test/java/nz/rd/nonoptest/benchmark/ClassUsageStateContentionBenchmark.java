@@ -0,0 +1,104 @@
+package nz.rd.nonoptest.benchmark;
+
+import nz.rd.nonop.internal.model.ClassUsageState;
+import nz.rd.nonop.internal.model.MethodTable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.IntConsumer;
+
+/**
+ * Many threads recording calls to the methods of the same freshly loaded class, as happens in a startup storm.
+ * Compares the lock-free {@link ClassUsageState} against the previous synchronized, map-based implementation.
+ */
+public class ClassUsageStateContentionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 4;
+        int methods = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        int callsPerMethod = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        String[] names = new String[methods];
+        String[] descriptors = new String[methods];
+        for (int i = 0; i < methods; i++) {
+            names[i] = "method" + i;
+            descriptors[i] = "()V";
+        }
+        MethodTable methodTable = new MethodTable(names, descriptors);
+
+        System.out.printf("Threads: %d, methods: %d, calls per method per thread: %d%n", threads, methods, callsPerMethod);
+        for (int i = 0; i < iterations; i++) {
+            SynchronizedUsageState synchronizedState = new SynchronizedUsageState(methodTable);
+            long synchronizedTime = run(threads, methods, callsPerMethod,
+                    ordinal -> synchronizedState.recordMethodUsed(ordinal));
+
+            ClassUsageState lockFreeState = new ClassUsageState(ClassUsageStateContentionBenchmark.class, methodTable);
+            long lockFreeTime = run(threads, methods, callsPerMethod,
+                    lockFreeState::recordMethodUsed);
+
+            System.out.printf("Iteration %d: synchronized %d ns (%.3f ms), lock-free %d ns (%.3f ms)%n",
+                    i + 1, synchronizedTime, synchronizedTime / 1_000_000.0, lockFreeTime, lockFreeTime / 1_000_000.0);
+        }
+    }
+
+    private static long run(int threads, int methods, int callsPerMethod, IntConsumer recordCall) throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread thread = new Thread(() -> {
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int c = 0; c < callsPerMethod; c++) {
+                    for (int m = 0; m < methods; m++) {
+                        recordCall.accept((m + offset) % methods);
+                    }
+                }
+                done.countDown();
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        ready.await();
+        long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        return System.nanoTime() - startTime;
+    }
+
+    /**
+     * The previous implementation: a monitor around a map keyed by method name and descriptor.
+     */
+    private static final class SynchronizedUsageState {
+        private final MethodTable methodTable;
+        private final Map<String, Integer> callCounts = new HashMap<>();
+        private boolean reinstrumentationScheduled = false;
+
+        SynchronizedUsageState(MethodTable methodTable) {
+            this.methodTable = methodTable;
+        }
+
+        synchronized boolean recordMethodUsed(int ordinal) {
+            String key = methodTable.getMethodName(ordinal) + methodTable.getMethodDescriptor(ordinal);
+            Integer count = callCounts.get(key);
+            if (count == null) {
+                callCounts.put(key, 1);
+                return false;
+            } else if (count == 1) {
+                callCounts.put(key, 2);
+                boolean needed = !reinstrumentationScheduled;
+                reinstrumentationScheduled = true;
+                return needed;
+            }
+            return false;
+        }
+    }
+}
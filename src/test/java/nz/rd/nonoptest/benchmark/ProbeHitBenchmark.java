@@ -0,0 +1,96 @@
+package nz.rd.nonoptest.benchmark;
+
+import nz.rd.nonop.config.ProbeConfig;
+import nz.rd.nonop.config.RetransformConfig;
+import nz.rd.nonop.internal.CoarseClock;
+import nz.rd.nonop.internal.NonopCore;
+import nz.rd.nonop.internal.config.NonopPropertyUtils;
+import nz.rd.nonop.internal.logging.ConsoleNonopLogger;
+import nz.rd.nonop.internal.logging.NonopLogger;
+import nz.rd.nonop.internal.model.ClassUsageState;
+import nz.rd.nonop.internal.model.MethodTable;
+import nz.rd.nonop.internal.model.MethodUsageSnapshot;
+import nz.rd.nonop.internal.model.ThresholdRetransformPolicy;
+import nz.rd.nonop.internal.reporting.UsageReporter;
+import nz.rd.nonop.internal.transformer.RetransformationScheduler;
+
+/**
+ * The steady-state cost of a probe hit that isn't a method's first call, as seen by probes without a usage guard.
+ * Compares {@link NonopCore#methodCalled} against the previous hook, which read the system clock and built its debug
+ * message on every call. Debug logging is off, as in production.
+ */
+public class ProbeHitBenchmark {
+
+    private static long sink = 0;
+
+    public static void main(String[] args) throws Exception {
+        int methods = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int callsPerIteration = args.length > 1 ? Integer.parseInt(args[1]) : 20_000_000;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        NonopLogger nonopLogger = new ConsoleNonopLogger(NonopLogger.Level.INFO);
+        RetransformConfig retransformConfig = RetransformConfig.load(nonopLogger, NonopPropertyUtils.loadNonopDefaults());
+        UsageReporter discardingReporter = new UsageReporter() {
+            @Override
+            public void recordMethodFirstUsage(long timestampMillis, Class<?> clazz, MethodTable methodTable, int methodOrdinal) {
+            }
+
+            @Override
+            public void finishUsageReportingOnShutdown() {
+            }
+        };
+        try (CoarseClock clock = new CoarseClock(CoarseClock.DEFAULT_TICK_MILLIS)) {
+            // The scheduler is never started, so classes that become strippable are queued but not retransformed
+            NonopCore core = new NonopCore(nonopLogger, new RetransformationScheduler(nonopLogger, null, retransformConfig),
+                    discardingReporter, new ThresholdRetransformPolicy(retransformConfig), clock);
+
+            String[] names = new String[methods];
+            String[] descriptors = new String[methods];
+            for (int i = 0; i < methods; i++) {
+                names[i] = "method" + i;
+                descriptors[i] = "()V";
+            }
+            Class<?> clazz = ProbeHitBenchmark.class;
+            core.registerMethodTable(clazz.getClassLoader(), clazz.getName(), MethodUsageSnapshot.noneUsed(new MethodTable(names, descriptors)),
+                    ProbeConfig.ProbeStrategy.RETRANSFORM);
+            // Get every method past its first calls
+            for (int i = 0; i < methods; i++) {
+                core.methodCalled(clazz, i);
+                core.methodCalled(clazz, i);
+            }
+
+            System.out.printf("Methods: %d, calls per iteration: %d%n", methods, callsPerIteration);
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                for (int c = 0; c < callsPerIteration; c++) {
+                    previousMethodCalled(core, nonopLogger, clazz, c % methods);
+                }
+                long previousTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int c = 0; c < callsPerIteration; c++) {
+                    core.methodCalled(clazz, c % methods);
+                }
+                long currentTime = System.nanoTime() - start;
+
+                System.out.printf("Iteration %d: previous %5.1f ns/call, current %5.1f ns/call%n",
+                        i + 1, (double) previousTime / callsPerIteration, (double) currentTime / callsPerIteration);
+            }
+        }
+        if (sink == 42) {
+            System.out.println(); // Keeps the timestamps live
+        }
+    }
+
+    /**
+     * The previous hook's work for a call that isn't a first call.
+     */
+    private static void previousMethodCalled(NonopCore core, NonopLogger nonopLogger, Class<?> clazz, int methodOrdinal) {
+        long callTimestamp = System.currentTimeMillis();
+        nonopLogger.debug("=== MethodCalled hook invoked: " + clazz.getCanonicalName() + " #" + methodOrdinal);
+        ClassUsageState.MarkResult markResult = core.getClassUsageState(clazz).recordMethodUsed(methodOrdinal);
+        if (markResult.isFirstCall()) {
+            sink += callTimestamp;
+        }
+    }
+}
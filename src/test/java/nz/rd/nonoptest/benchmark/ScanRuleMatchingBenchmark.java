@@ -0,0 +1,92 @@
+package nz.rd.nonoptest.benchmark;
+
+import nz.rd.nonop.internal.config.ScanMatcher;
+import nz.rd.nonop.internal.config.ScanRuleParser;
+import nz.rd.nonop.internal.config.ScanRuleTrie;
+import nz.rd.nonop.internal.logging.ConsoleNonopLogger;
+import nz.rd.nonop.internal.logging.NonopLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Matching class names against thousands of exclusion rules, as generated from a large dependency tree. Compares
+ * evaluating the rules in order against the compiled {@link ScanRuleTrie}.
+ */
+public class ScanRuleMatchingBenchmark {
+
+    public static void main(String[] args) {
+        int ruleCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int classNameCount = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        Random random = new Random(42);
+        StringBuilder rules = new StringBuilder("!nz.rd.nonop, !java.*, !javax.*, !sun.*, !jdk.*");
+        for (int i = 0; i < ruleCount; i++) {
+            rules.append(", !").append(packageName(random, i));
+            if (i % 50 == 0) {
+                rules.append(".Generated").append(i); // Some fully qualified class rules
+            } else {
+                rules.append(".*");
+            }
+        }
+        rules.append(", *");
+        List<ScanMatcher> matchers = new ScanRuleParser(new ConsoleNonopLogger(NonopLogger.Level.OFF)).parse(rules.toString());
+        ScanRuleTrie trie = ScanRuleTrie.compile(matchers);
+
+        // Mostly excluded dependency classes, some application classes
+        String[] classNames = new String[classNameCount];
+        for (int i = 0; i < classNameCount; i++) {
+            String packageName = i % 10 == 0 ? "com.example.app" : packageName(random, random.nextInt(ruleCount * 2));
+            classNames[i] = (packageName + ".Class" + i + (i % 3 == 0 ? "$Inner" : "")).replace('.', '/');
+        }
+
+        System.out.printf("Rules: %d, class names: %d%n", matchers.size(), classNameCount);
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            int linearMatches = 0;
+            for (String className : classNames) {
+                if (matchesInOrder(matchers, className)) {
+                    linearMatches++;
+                }
+            }
+            long linearTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int trieMatches = 0;
+            for (String className : classNames) {
+                if (trie.matches(className, '/')) {
+                    trieMatches++;
+                }
+            }
+            long trieTime = System.nanoTime() - start;
+
+            if (linearMatches != trieMatches) {
+                throw new AssertionError("Linear matched " + linearMatches + " but trie matched " + trieMatches);
+            }
+            System.out.printf("Iteration %d: in order %d ns (%.1f ns/class), trie %d ns (%.1f ns/class), %d matched%n",
+                    i + 1, linearTime, (double) linearTime / classNameCount, trieTime, (double) trieTime / classNameCount, trieMatches);
+        }
+    }
+
+    private static String packageName(Random random, int i) {
+        String[] vendors = {"com", "org", "io", "net"};
+        return vendors[i % vendors.length] + ".vendor" + (i / 8) + ".module" + (i % 8);
+    }
+
+    /**
+     * Evaluates the matchers in order, as the transformer did before they were compiled.
+     */
+    private static boolean matchesInOrder(List<ScanMatcher> matchers, String internalClassName) {
+        boolean lastWasInclude = false;
+        for (ScanMatcher matcher : matchers) {
+            Boolean ruleEval = matcher.evalInternalName(internalClassName);
+            if (ruleEval != null) {
+                return ruleEval;
+            }
+            lastWasInclude = matcher.isEffectivelyInclude();
+        }
+        return !lastWasInclude;
+    }
+}
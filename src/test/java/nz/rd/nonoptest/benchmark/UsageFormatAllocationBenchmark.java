@@ -0,0 +1,96 @@
+package nz.rd.nonoptest.benchmark;
+
+import nz.rd.nonop.config.OutputConfig;
+import nz.rd.nonop.internal.config.NonopPropertyUtils;
+import nz.rd.nonop.internal.logging.ConsoleNonopLogger;
+import nz.rd.nonop.internal.logging.NonopLogger;
+import nz.rd.nonop.internal.model.MethodTable;
+import nz.rd.nonop.internal.out.OutputBuffer;
+import nz.rd.nonop.internal.reporting.OutputUsageReporter;
+import nz.rd.nonop.internal.reporting.format.BinaryUsageEventFormatter;
+import nz.rd.nonop.internal.reporting.format.JsonUsageEventFormatter;
+import nz.rd.nonop.internal.reporting.format.SimpleUsageEventFormatter;
+import nz.rd.nonop.internal.reporting.format.UsageEventFormatter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+/**
+ * Bytes allocated per usage event written, once the formatters and output are warmed up. Writes the same events over
+ * and over, so the binary format's dictionary is already full. The last row goes through {@link OutputUsageReporter},
+ * as the agent does, writing to the null device.
+ */
+public class UsageFormatAllocationBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        int eventsPerIteration = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        String[] classNames = {"com.example.Foo", "com.example.service.impl.BarServiceImpl", "Baz"};
+        String[] methodNames = {"<init>", "handleRequest", "toString", "apply"};
+        String[] descriptors = {"()V", "(Ljava/lang/String;I)Ljava/lang/Object;", "([JLjava/util/Map$Entry;)Z", "(DF[[Ljava/lang/Object;)V"};
+        Class<?>[] classes = {UsageFormatAllocationBenchmark.class, String.class, MethodTable.class};
+        MethodTable methodTable = new MethodTable(methodNames, descriptors);
+
+        NonopLogger nonopLogger = new ConsoleNonopLogger(NonopLogger.Level.OFF);
+        Map<String, String> properties = NonopPropertyUtils.loadNonopDefaults();
+        properties.put("nonop.out", File.separatorChar == '\\' ? "NUL" : "/dev/null");
+        OutputUsageReporter reporter = new OutputUsageReporter(nonopLogger, OutputConfig.load(nonopLogger, properties),
+                new SimpleUsageEventFormatter(), false);
+
+        Object[][] formats = {
+                {"simple", new SimpleUsageEventFormatter()},
+                {"json", new JsonUsageEventFormatter()},
+                {"binary", new BinaryUsageEventFormatter()},
+        };
+        OutputBuffer output = new OutputBuffer(new DiscardingOutputStream(), 1 << 16, 1 << 16, 1000);
+
+        for (int i = 0; i < iterations; i++) {
+            for (Object[] format : formats) {
+                UsageEventFormatter formatter = (UsageEventFormatter) format[1];
+                long allocatedBefore = allocatedBytes();
+                long start = System.nanoTime();
+                for (int e = 0; e < eventsPerIteration; e++) {
+                    formatter.writeMethodCalled(output, e, classNames[e % classNames.length],
+                            methodNames[e % methodNames.length], descriptors[e % descriptors.length]);
+                }
+                report(i, (String) format[0], eventsPerIteration, allocatedBefore, start);
+            }
+
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            for (int e = 0; e < eventsPerIteration; e++) {
+                reporter.recordMethodFirstUsage(e, classes[e % classes.length], methodTable, e % methodNames.length);
+            }
+            report(i, "simple via reporter", eventsPerIteration, allocatedBefore, start);
+        }
+        reporter.finishUsageReportingOnShutdown();
+    }
+
+    private static long allocatedBytes() {
+        return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void report(int iteration, String name, int events, long allocatedBefore, long start) {
+        long time = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        System.out.printf("Iteration %d: %-20s %6.1f ns/event, %8.3f bytes allocated/event%n",
+                iteration + 1, name, (double) time / events, (double) allocated / events);
+    }
+
+    private static final class DiscardingOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package nz.rd.nonoptest.benchmark;
+
+import nz.rd.nonop.internal.out.OutputBuffer;
+import nz.rd.nonop.internal.reporting.format.BinaryUsageEventFormatter;
+import nz.rd.nonop.internal.reporting.format.JsonUsageEventFormatter;
+import nz.rd.nonop.internal.reporting.format.SimpleUsageEventFormatter;
+import nz.rd.nonop.internal.reporting.format.UsageEventFormatter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Writing the first uses of a large app's methods in each output format. Compares the bytes written and the time taken
+ * per event, with output discarded after it's counted.
+ */
+public class UsageFormatBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int classCount = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int methodsPerClass = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        Random random = new Random(42);
+        String[] descriptors = {"()V", "()Ljava/lang/String;", "(Ljava/lang/String;)V", "(I)I", "(Ljava/util/List;Ljava/util/Map;)Ljava/util/Optional;", "(JLjava/lang/Object;)Z"};
+        String[] methodNames = {"get", "set", "toString", "hashCode", "equals", "apply", "handle", "<init>", "process", "validate"};
+        int eventCount = classCount * methodsPerClass;
+        String[] classNames = new String[eventCount];
+        String[] names = new String[eventCount];
+        String[] eventDescriptors = new String[eventCount];
+        for (int c = 0; c < classCount; c++) {
+            String className = "com.example.service.module" + (c % 200) + ".impl.SomeComponent" + c;
+            for (int m = 0; m < methodsPerClass; m++) {
+                int i = c * methodsPerClass + m;
+                classNames[i] = className;
+                names[i] = methodNames[random.nextInt(methodNames.length)] + (m / methodNames.length);
+                eventDescriptors[i] = descriptors[random.nextInt(descriptors.length)];
+            }
+        }
+
+        System.out.printf("Events: %d (%d classes, %d methods each)%n", eventCount, classCount, methodsPerClass);
+        for (int i = 0; i < iterations; i++) {
+            run("simple", new SimpleUsageEventFormatter(), i, classNames, names, eventDescriptors);
+            run("json", new JsonUsageEventFormatter(), i, classNames, names, eventDescriptors);
+            run("binary", new BinaryUsageEventFormatter(), i, classNames, names, eventDescriptors);
+        }
+    }
+
+    private static void run(String name, UsageEventFormatter formatter, int iteration, String[] classNames, String[] methodNames, String[] descriptors) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        OutputBuffer output = new OutputBuffer(out, 1 << 20, 1 << 16, 1000);
+        long timestamp = 1700000000000L;
+        long start = System.nanoTime();
+        for (int i = 0; i < classNames.length; i++) {
+            timestamp += i % 4; // Bursts of first uses within the same millisecond
+            formatter.writeMethodCalled(output, timestamp, classNames[i], methodNames[i], descriptors[i]);
+        }
+        output.close();
+        long time = System.nanoTime() - start;
+        System.out.printf("Iteration %d: %-6s %6.1f ns/event, %5.1f bytes/event, %,d bytes%n",
+                iteration + 1, name, (double) time / classNames.length, (double) out.count / classNames.length, out.count);
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}